@@ -0,0 +1,180 @@
+package com.diogobaptista.order_manager_api.benchmark;
+
+import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
+import com.diogobaptista.order_manager_api.dto.StockMovementRequestDTO;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.mapper.StockMovementMapper;
+import com.diogobaptista.order_manager_api.service.AllocationStrategies;
+import com.diogobaptista.order_manager_api.service.CatalogCache;
+import com.diogobaptista.order_manager_api.service.EmailService;
+import com.diogobaptista.order_manager_api.service.FifoAllocationStrategy;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.ItemLaneExecutor;
+import com.diogobaptista.order_manager_api.service.ItemStatsService;
+import com.diogobaptista.order_manager_api.service.OrderAllocationService;
+import com.diogobaptista.order_manager_api.service.OrderService;
+import com.diogobaptista.order_manager_api.service.PendingOrderIndex;
+import com.diogobaptista.order_manager_api.service.StockMovementService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocation paths against {@link InMemoryStore}, so the numbers cover the
+ * services, the item lanes and the audit log but no database. {@code items}
+ * controls contention: with one item every thread competes for the same lane,
+ * with more items the threads spread over the lanes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AllocationBenchmark {
+
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+
+    @Param({"1", "64"})
+    public int items;
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private Path logDir;
+    private FileLogService fileLogService;
+    private ItemLaneExecutor lanes;
+    private InMemoryStore store;
+    private OrderService orderService;
+    private StockMovementService stockMovementService;
+    private OrderAllocationService allocationService;
+    private Item[] itemRows;
+    private User user;
+
+    @Setup
+    public void setUp() throws IOException {
+        logDir = Files.createTempDirectory("allocation-benchmark");
+        fileLogService = new FileLogService(logDir.resolve("orders.log"), 65536, FileLogService.OverflowPolicy.BLOCK,
+                FileLogService.Format.TEXT, 65536, -1, 0, 0, Thread::new);
+        lanes = new ItemLaneExecutor(4);
+        store = new InMemoryStore();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EmailService emailService = new EmailService(store.emailOutboxRepository, fileLogService, meterRegistry);
+        ItemStatsService itemStats = new ItemStatsService(null, TransactionOperations.withoutTransaction());
+        PendingOrderIndex pendingOrders = new PendingOrderIndex(store.orderRepository,
+                new AllocationStrategies(List.of(new FifoAllocationStrategy()), "fifo", ""), 10_000, 600_000);
+        allocationService = new OrderAllocationService(store.orderRepository, store.allocationRepository, emailService, fileLogService,
+                itemStats, pendingOrders, meterRegistry);
+        orderService = new OrderService(store.orderRepository, store.stockMovementRepository, allocationService,
+                store.itemRepository, new CatalogCache(store.itemRepository, store.userRepository, 10_000, 600_000),
+                fileLogService, lanes,
+                TransactionOperations.withoutTransaction(), null, itemStats, pendingOrders, null, 100, meterRegistry);
+        stockMovementService = new StockMovementService(store.stockMovementRepository, store.itemRepository,
+                store.orderRepository, allocationService, fileLogService, new StockMovementMapper(), lanes,
+                TransactionOperations.withoutTransaction(), null, 64, 0, 30_000, meterRegistry);
+
+        user = store.addUser();
+        itemRows = new Item[items];
+        for (int i = 0; i < items; i++) {
+            itemRows[i] = store.addItem(UNLIMITED);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        for (Item item : itemRows) {
+            store.restock(item.getId(), UNLIMITED);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        stockMovementService.shutdown();
+        lanes.shutdown();
+        fileLogService.close();
+        Files.walk(logDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+
+        OrderRequestDTO newOrder;
+        StockMovementRequestDTO movement;
+        Order order;
+        StockMovement stock;
+
+        @Setup
+        public void setUp(AllocationBenchmark benchmark) {
+            Item item = benchmark.itemRows[benchmark.threadIndex.getAndIncrement() % benchmark.items];
+
+            newOrder = new OrderRequestDTO();
+            newOrder.setItemId(item.getId());
+            newOrder.setUserId(benchmark.user.getId());
+            newOrder.setQuantity(5);
+
+            movement = new StockMovementRequestDTO();
+            movement.setOrderId(benchmark.store.addOrder(item, benchmark.user, UNLIMITED).getId());
+            movement.setQuantity(1);
+
+            order = benchmark.store.addOrder(item, benchmark.user, UNLIMITED);
+            stock = new StockMovement();
+            stock.setId(0L);
+            stock.setItem(item);
+            stock.setQuantity(1);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Order createOrder(Caller caller) {
+        return orderService.create(caller.newOrder);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Order createOrderContended(Caller caller) {
+        return orderService.create(caller.newOrder);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<StockMovement> createStockMovement(Caller caller) {
+        return stockMovementService.createStockMovement(caller.movement);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<StockMovement> createStockMovementContended(Caller caller) {
+        return stockMovementService.createStockMovement(caller.movement);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Order fulfillOrderWithStockMovement(Caller caller) {
+        allocationService.fulfillOrderWithStockMovement(caller.order, caller.stock);
+        return caller.order;
+    }
+}
@@ -0,0 +1,85 @@
+package com.diogobaptista.order_manager_api.benchmark;
+
+import com.diogobaptista.order_manager_api.service.AuditEvent;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer-side cost of the audit log. With {@code BLOCK} the score includes
+ * waiting for the writer once the queue fills; with {@code DROP} it does not,
+ * and the dropped count is printed at teardown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileLogBenchmark {
+
+    @Param({"BLOCK", "DROP"})
+    public FileLogService.OverflowPolicy overflowPolicy;
+
+    @Param({"TEXT", "BINARY"})
+    public FileLogService.Format format;
+
+    private Path logDir;
+    private FileLogService fileLogService;
+
+    @Setup
+    public void setUp() throws IOException {
+        logDir = Files.createTempDirectory("file-log-benchmark");
+        fileLogService = new FileLogService(logDir.resolve("orders.log"), 65536, overflowPolicy, format,
+                65536, 1000, 256L * 1024 * 1024, 0, Thread::new);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileLogService.close();
+        System.out.printf("%nwritten=%d dropped=%d writes=%d avgWriteMicros=%.1f%n",
+                fileLogService.writtenLines(), fileLogService.droppedLines(), fileLogService.writeCount(),
+                fileLogService.totalWriteNanos() / 1000.0 / Math.max(1, fileLogService.writeCount()));
+        Files.walk(logDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void appendLine() {
+        fileLogService.appendLine("Order batch ingested [Lines: 500, Created: 480, Partial: 15, Rejected: 5]");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void appendLineContended() {
+        fileLogService.appendLine("Order batch ingested [Lines: 500, Created: 480, Partial: 15, Rejected: 5]");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void appendEvent() {
+        fileLogService.append(AuditEvent.orderPartiallyAllocated(42L, 5, 3));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void appendEventContended() {
+        fileLogService.append(AuditEvent.orderPartiallyAllocated(42L, 5, 3));
+    }
+}
@@ -0,0 +1,185 @@
+package com.diogobaptista.order_manager_api.benchmark;
+
+import com.diogobaptista.order_manager_api.entity.Allocation;
+import com.diogobaptista.order_manager_api.entity.EmailOutbox;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.AllocationRepository;
+import com.diogobaptista.order_manager_api.repository.EmailOutboxRepository;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Map-backed stand-ins for the Spring Data repositories, so the services can be
+ * benchmarked without a database. Only the methods on the allocation path are
+ * implemented; anything else throws {@link UnsupportedOperationException}.
+ * Orders created by the services get ids but are not kept, so long runs do
+ * not grow the heap; only orders added through {@link #addOrder} can be found.
+ */
+public class InMemoryStore {
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, Item> items = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> stock = new ConcurrentHashMap<>();
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final Map<Long, Order> orders = new ConcurrentHashMap<>();
+
+    public final ItemRepository itemRepository = proxy(ItemRepository.class, this::item);
+    public final UserRepository userRepository = proxy(UserRepository.class, (name, args) ->
+            "findById".equals(name) ? Optional.ofNullable(users.get((Long) args[0])) : unsupported(name));
+    public final OrderRepository orderRepository = proxy(OrderRepository.class, this::order);
+    public final StockMovementRepository stockMovementRepository = proxy(StockMovementRepository.class, (name, args) -> {
+        if ("save".equals(name)) {
+            StockMovement movement = (StockMovement) args[0];
+            movement.setId(ids.incrementAndGet());
+            return movement;
+        }
+        if ("saveAll".equals(name)) {
+            List<StockMovement> movements = new ArrayList<>();
+            for (Object movement : (Iterable<?>) args[0]) {
+                ((StockMovement) movement).setId(ids.incrementAndGet());
+                movements.add((StockMovement) movement);
+            }
+            return movements;
+        }
+        return unsupported(name);
+    });
+    public final AllocationRepository allocationRepository = proxy(AllocationRepository.class, (name, args) -> {
+        if ("save".equals(name)) {
+            Allocation allocation = (Allocation) args[0];
+            allocation.setId(ids.incrementAndGet());
+            return allocation;
+        }
+        return unsupported(name);
+    });
+    public final EmailOutboxRepository emailOutboxRepository = proxy(EmailOutboxRepository.class, (name, args) -> {
+        if ("save".equals(name)) {
+            EmailOutbox email = (EmailOutbox) args[0];
+            email.setId(ids.incrementAndGet());
+            return email;
+        }
+        return unsupported(name);
+    });
+
+    public Item addItem(int stockQuantity) {
+        Item item = new Item();
+        item.setId(ids.incrementAndGet());
+        item.setName("Item " + item.getId());
+        item.setStockQuantity(stockQuantity);
+        items.put(item.getId(), item);
+        stock.put(item.getId(), new AtomicInteger(stockQuantity));
+        return item;
+    }
+
+    public User addUser() {
+        User user = new User();
+        user.setId(ids.incrementAndGet());
+        user.setName("User " + user.getId());
+        user.setEmail("user" + user.getId() + "@example.com");
+        users.put(user.getId(), user);
+        return user;
+    }
+
+    public Order addOrder(Item item, User user, int quantity) {
+        Order order = new Order();
+        order.setItem(item);
+        order.setUser(user);
+        order.setQuantity(quantity);
+        order.setId(ids.incrementAndGet());
+        orders.put(order.getId(), order);
+        return order;
+    }
+
+    public void restock(Long itemId, int quantity) {
+        stock.get(itemId).set(quantity);
+    }
+
+    private Object item(String name, Object[] args) {
+        switch (name) {
+            case "findById":
+                return Optional.ofNullable(items.get((Long) args[0]));
+            case "takeStock":
+                return take(stock.get((Long) args[0]), (Integer) args[1]);
+            case "incrementStock":
+                stock.get((Long) args[0]).addAndGet((Integer) args[1]);
+                return 1;
+            default:
+                return unsupported(name);
+        }
+    }
+
+    private Object order(String name, Object[] args) {
+        switch (name) {
+            case "save":
+                Order order = (Order) args[0];
+                if (order.getId() == null) {
+                    order.setId(ids.incrementAndGet());
+                }
+                return order;
+            case "saveAll":
+                List<Order> saved = new ArrayList<>();
+                for (Object entity : (Iterable<?>) args[0]) {
+                    saved.add((Order) order("save", new Object[]{entity}));
+                }
+                return saved;
+            case "findById":
+            case "findWithItemAndUserById":
+                return Optional.ofNullable(orders.get((Long) args[0]));
+            case "findWithItemAndUserByIdIn":
+                List<Order> found = new ArrayList<>();
+                for (Object id : (Collection<?>) args[0]) {
+                    Optional.ofNullable(orders.get((Long) id)).ifPresent(found::add);
+                }
+                return found;
+            case "findItemIdById":
+                return Optional.ofNullable(orders.get((Long) args[0])).map(o -> o.getItem().getId());
+            default:
+                return unsupported(name);
+        }
+    }
+
+    private static int take(AtomicInteger available, int requested) {
+        while (true) {
+            int current = available.get();
+            int taken = Math.min(current, requested);
+            if (taken <= 0 || available.compareAndSet(current, current - taken)) {
+                return Math.max(taken, 0);
+            }
+        }
+    }
+
+    private static Object unsupported(String name) {
+        throw new UnsupportedOperationException(name + " is not stubbed");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, BiFunction<String, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "toString":
+                    return type.getSimpleName() + " (in memory)";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return handler.apply(method.getName(), args);
+            }
+        });
+    }
+}
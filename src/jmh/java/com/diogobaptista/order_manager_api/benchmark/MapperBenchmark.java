@@ -0,0 +1,69 @@
+package com.diogobaptista.order_manager_api.benchmark;
+
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.mapper.OrderMapper;
+import com.diogobaptista.order_manager_api.mapper.StockMovementMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    private final OrderMapper orderMapper = new OrderMapper();
+    private final StockMovementMapper stockMovementMapper = new StockMovementMapper();
+    private Order order;
+    private StockMovement movement;
+
+    @Setup
+    public void setUp() {
+        Item item = new Item();
+        item.setId(1L);
+        User user = new User();
+        user.setId(2L);
+
+        order = new Order();
+        order.setId(3L);
+        order.setItem(item);
+        order.setUser(user);
+        order.setQuantity(5);
+        order.setFulfilledQuantity(3);
+        order.setCreationDate(LocalDateTime.now());
+
+        movement = new StockMovement();
+        movement.setId(4L);
+        movement.setItem(item);
+        movement.setQuantity(3);
+        movement.setCreationDate(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public OrderResponseDTO orderToDto() {
+        return orderMapper.toDto(order);
+    }
+
+    @Benchmark
+    public StockMovementResponseDTO stockMovementToDto() {
+        return stockMovementMapper.toDto(movement);
+    }
+}
@@ -0,0 +1,168 @@
+package com.diogobaptista.order_manager_api.benchmark;
+
+import com.diogobaptista.order_manager_api.Application;
+import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
+import com.diogobaptista.order_manager_api.dto.StockMovementRequestDTO;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.diogobaptista.order_manager_api.service.OrderService;
+import com.diogobaptista.order_manager_api.service.StockMovementService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The same allocation paths as {@link AllocationBenchmark}, but through the
+ * full Spring context against an embedded Postgres, so row locks, Hibernate
+ * and the JDBC round trips are part of the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PostgresAllocationBenchmark {
+
+    private static final int STOCK = 1_000_000_000;
+
+    @Param({"1", "64"})
+    public int items;
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private Path logDir;
+    private OrderService orderService;
+    private StockMovementService stockMovementService;
+    private OrderRepository orderRepository;
+    private ItemRepository itemRepository;
+    private Item[] itemRows;
+    private User user;
+
+    @Setup
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        logDir = Files.createTempDirectory("postgres-benchmark");
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true",
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        "--spring.mail.test-connection=false",
+                        "--email.outbox.poll-interval-ms=3600000",
+                        "--file-log.path=" + logDir.resolve("orders.log"),
+                        "--file-log.fsync-interval-ms=-1");
+
+        orderService = context.getBean(OrderService.class);
+        stockMovementService = context.getBean(StockMovementService.class);
+        orderRepository = context.getBean(OrderRepository.class);
+        itemRepository = context.getBean(ItemRepository.class);
+
+        User newUser = new User();
+        newUser.setName("Benchmark");
+        newUser.setEmail("benchmark@example.com");
+        user = context.getBean(UserRepository.class).save(newUser);
+
+        itemRows = new Item[items];
+        for (int i = 0; i < items; i++) {
+            Item item = new Item();
+            item.setName("Item " + i);
+            item.setStockQuantity(STOCK);
+            itemRows[i] = itemRepository.save(item);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        for (Item item : itemRows) {
+            int left = itemRepository.findStockQuantityById(item.getId()).orElse(0);
+            itemRepository.adjustStock(item.getId(), left, STOCK);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        postgres.close();
+        Files.walk(logDir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+
+        OrderRequestDTO newOrder;
+        StockMovementRequestDTO movement;
+
+        @Setup
+        public void setUp(PostgresAllocationBenchmark benchmark) {
+            Item item = benchmark.itemRows[benchmark.threadIndex.getAndIncrement() % benchmark.items];
+
+            newOrder = new OrderRequestDTO();
+            newOrder.setItemId(item.getId());
+            newOrder.setUserId(benchmark.user.getId());
+            newOrder.setQuantity(5);
+
+            Order open = new Order();
+            open.setItem(item);
+            open.setUser(benchmark.user);
+            open.setQuantity(Integer.MAX_VALUE);
+            open.setCreationDate(LocalDateTime.now());
+            movement = new StockMovementRequestDTO();
+            movement.setOrderId(benchmark.orderRepository.save(open).getId());
+            movement.setQuantity(1);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Order createOrder(Caller caller) {
+        return orderService.create(caller.newOrder);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Order createOrderContended(Caller caller) {
+        return orderService.create(caller.newOrder);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<StockMovement> createStockMovement(Caller caller) {
+        return stockMovementService.createStockMovement(caller.movement);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<StockMovement> createStockMovementContended(Caller caller) {
+        return stockMovementService.createStockMovement(caller.movement);
+    }
+}
@@ -0,0 +1,65 @@
+package com.diogobaptista.order_manager_api.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and status counts for one endpoint. Latency is measured from the
+ * request's scheduled start, not from when a worker picked it up, so time
+ * spent queued behind a slow server is part of the numbers.
+ */
+class EndpointStats {
+
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final String name;
+    private final Histogram latency = new ConcurrentHistogram(MAX_TRACKABLE_NANOS, 3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder failures = new LongAdder();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void record(int status, long latencyNanos) {
+        latency.recordValue(Math.min(latencyNanos, MAX_TRACKABLE_NANOS));
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    void recordFailure(long latencyNanos) {
+        latency.recordValue(Math.min(latencyNanos, MAX_TRACKABLE_NANOS));
+        failures.increment();
+    }
+
+    long count() {
+        return latency.getTotalCount();
+    }
+
+    static String header() {
+        return String.format("%-26s %8s %9s %9s %9s %9s %9s %9s  %s",
+                "endpoint", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+    }
+
+    String row(double seconds) {
+        Map<Object, Long> outcomes = new TreeMap<>((a, b) -> a.toString().compareTo(b.toString()));
+        statuses.forEach((status, count) -> outcomes.put(status, count.sum()));
+        if (failures.sum() > 0) {
+            outcomes.put("io-error", failures.sum());
+        }
+        return String.format("%-26s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s",
+                name, count(), count() / seconds,
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getMaxValue()), outcomes);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,315 @@
+package com.diogobaptista.order_manager_api.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load: requests are started on a fixed schedule at the target
+ * rate, whether or not earlier requests have returned, and each one picks an
+ * operation from the configured mix.
+ */
+class LoadGenerator {
+
+    enum Operation {
+        CREATE_ORDER("POST /orders"),
+        CREATE_STOCK_MOVEMENT("POST /stock-movements"),
+        GET_ORDER("GET /orders/{id}"),
+        LIST_ITEMS("GET /items"),
+        RECEIVE_STOCK("POST /items/{id}/receipts");
+
+        final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        static Operation fromKey(String key) {
+            return valueOf(key.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final String baseUrl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService workers;
+    private final Map<Operation, EndpointStats> stats = new LinkedHashMap<>();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final RecentIds orders = new RecentIds(4096);
+    private final RecentIds openOrders = new RecentIds(4096);
+    private final int restockQuantity;
+    private final long clientDelayNanos;
+    private long[] itemIds;
+    private long[] userIds;
+
+    /**
+     * @param clientDelayNanos pause between the two halves of every request
+     *                         body, imitating a slow client; 0 sends it at once
+     */
+    LoadGenerator(String baseUrl, Map<Operation, Integer> mix, int connections, int restockQuantity,
+                  long clientDelayNanos) {
+        this.baseUrl = baseUrl;
+        this.workers = Executors.newFixedThreadPool(connections);
+        this.restockQuantity = restockQuantity;
+        this.clientDelayNanos = clientDelayNanos;
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+            stats.put(operations[i], new EndpointStats(operations[i].label));
+        }
+        stats.putIfAbsent(Operation.CREATE_ORDER, new EndpointStats(Operation.CREATE_ORDER.label));
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromKey(parts[0]), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Traffic mix has no operations: " + mix);
+        }
+        return weights;
+    }
+
+    /**
+     * Creates the users and items the load runs against. The first
+     * {@code emptyItems} items start without stock, so orders for them stay
+     * open for stock movements and receipts to allocate to.
+     */
+    void seed(int users, int items, int emptyItems, int stockPerItem) throws IOException {
+        long run = System.currentTimeMillis();
+        userIds = new long[users];
+        for (int i = 0; i < users; i++) {
+            ObjectNode user = objectMapper.createObjectNode()
+                    .put("name", "Load " + i)
+                    .put("email", "load-" + run + "-" + i + "@example.com");
+            userIds[i] = createdId(send("POST", "/users", user, 0));
+        }
+        itemIds = new long[items];
+        for (int i = 0; i < items; i++) {
+            ObjectNode item = objectMapper.createObjectNode()
+                    .put("name", "Load item " + run + "-" + i)
+                    .put("stockQuantity", i < emptyItems ? 0 : stockPerItem);
+            itemIds[i] = createdId(send("POST", "/items", item, 0));
+        }
+    }
+
+    /**
+     * Runs the schedule and blocks until every started request has finished.
+     * Requests started during the warmup are executed but not recorded.
+     */
+    void run(double ratePerSecond, long warmupNanos, long durationNanos, boolean poisson) throws InterruptedException {
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        long next = start;
+
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            long scheduled = next;
+            boolean measured = scheduled >= measureFrom;
+            Operation operation = pick();
+            workers.execute(() -> execute(operation, scheduled, measured));
+
+            double interval = poisson
+                    ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos
+                    : meanIntervalNanos;
+            next += Math.max(1, (long) interval);
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.MINUTES);
+    }
+
+    List<String> report(double measuredSeconds) {
+        List<String> lines = new ArrayList<>();
+        lines.add(EndpointStats.header());
+        long total = 0;
+        for (EndpointStats endpoint : stats.values()) {
+            if (endpoint.count() > 0) {
+                lines.add(endpoint.row(measuredSeconds));
+                total += endpoint.count();
+            }
+        }
+        lines.add(String.format("total: %d requests, %.1f req/s", total, total / measuredSeconds));
+        return lines;
+    }
+
+    private Operation pick() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (roll < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void execute(Operation operation, long scheduled, boolean measured) {
+        Operation actual = operation;
+        if ((operation == Operation.GET_ORDER && orders.isEmpty())
+                || (operation == Operation.CREATE_STOCK_MOVEMENT && orders.isEmpty())) {
+            actual = Operation.CREATE_ORDER;
+        }
+
+        EndpointStats endpoint = stats.get(actual);
+        try {
+            Response response = call(actual);
+            if (measured) {
+                endpoint.record(response.status, System.nanoTime() - scheduled);
+            }
+            if (actual == Operation.CREATE_ORDER && response.status == 201) {
+                JsonNode order = objectMapper.readTree(response.body);
+                orders.add(order.get("id").asLong());
+                if (!order.get("complete").asBoolean()) {
+                    openOrders.add(order.get("id").asLong());
+                }
+            }
+        } catch (IOException e) {
+            if (measured) {
+                endpoint.recordFailure(System.nanoTime() - scheduled);
+            }
+        }
+    }
+
+    private Response call(Operation operation) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation) {
+            case CREATE_ORDER:
+                return send("POST", "/orders", objectMapper.createObjectNode()
+                        .put("itemId", itemIds[random.nextInt(itemIds.length)])
+                        .put("userId", userIds[random.nextInt(userIds.length)])
+                        .put("quantity", 1 + random.nextInt(5)));
+            case CREATE_STOCK_MOVEMENT:
+                long orderId = openOrders.isEmpty() ? orders.random() : openOrders.random();
+                return send("POST", "/stock-movements", objectMapper.createObjectNode()
+                        .put("orderId", orderId)
+                        .put("quantity", 1));
+            case GET_ORDER:
+                return send("GET", "/orders/" + orders.random(), null);
+            case LIST_ITEMS:
+                return send("GET", "/items?limit=50", null);
+            case RECEIVE_STOCK:
+                return send("POST", "/items/" + itemIds[random.nextInt(itemIds.length)] + "/receipts",
+                        objectMapper.createObjectNode().put("quantity", restockQuantity));
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    private long createdId(Response response) throws IOException {
+        if (response.status != 201) {
+            throw new IOException("Seeding failed with HTTP " + response.status + ": "
+                    + new String(response.body, StandardCharsets.UTF_8));
+        }
+        return objectMapper.readTree(response.body).get("id").asLong();
+    }
+
+    private Response send(String method, String path, JsonNode body) throws IOException {
+        return send(method, path, body, clientDelayNanos);
+    }
+
+    private Response send(String method, String path, JsonNode body, long delayNanos) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(5_000);
+        connection.setReadTimeout(60_000);
+        if (body != null) {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(bytes.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                int half = bytes.length / 2;
+                out.write(bytes, 0, half);
+                if (delayNanos > 0) {
+                    out.flush();
+                    LockSupport.parkNanos(delayNanos);
+                }
+                out.write(bytes, half, bytes.length - half);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        return new Response(status, in == null ? new byte[0] : readFully(in));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = stream.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static final class Response {
+
+        final int status;
+        final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /** Fixed-size ring of the most recently seen ids, safe to share between workers. */
+    private static final class RecentIds {
+
+        private final AtomicLongArray ids;
+        private final AtomicLong added = new AtomicLong();
+
+        RecentIds(int capacity) {
+            this.ids = new AtomicLongArray(capacity);
+        }
+
+        void add(long id) {
+            ids.set((int) (added.getAndIncrement() % ids.length()), id);
+        }
+
+        boolean isEmpty() {
+            return added.get() == 0;
+        }
+
+        long random() {
+            long size = Math.min(added.get(), ids.length());
+            return ids.get(ThreadLocalRandom.current().nextInt((int) size));
+        }
+    }
+}
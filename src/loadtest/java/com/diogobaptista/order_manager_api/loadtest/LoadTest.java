@@ -0,0 +1,152 @@
+package com.diogobaptista.order_manager_api.loadtest;
+
+import com.diogobaptista.order_manager_api.Application;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots the application, drives a traffic mix at a fixed arrival rate and
+ * checks the stock invariants afterwards. Configured with system properties:
+ *
+ * <ul>
+ *     <li>{@code loadtest.database}: {@code embedded} (default) starts an embedded Postgres,
+ *     {@code local} uses the datasource from application.properties</li>
+ *     <li>{@code loadtest.target-url}: load an already running instance instead of booting one;
+ *     invariants are then checked through {@code loadtest.jdbc-url}, {@code loadtest.jdbc-user}
+ *     and {@code loadtest.jdbc-password} when set</li>
+ *     <li>{@code loadtest.rate} requests per second (200), {@code loadtest.arrival} {@code poisson}
+ *     or {@code constant}, {@code loadtest.warmup-seconds} (10), {@code loadtest.duration-seconds} (60)</li>
+ *     <li>{@code loadtest.mix}: operation weights, see {@link #DEFAULT_MIX}</li>
+ *     <li>{@code loadtest.connections} (256), {@code loadtest.users} (50), {@code loadtest.items} (100),
+ *     {@code loadtest.empty-items} (20, seeded without stock so orders back up),
+ *     {@code loadtest.stock-per-item} (1000), {@code loadtest.restock-quantity} (50)</li>
+ *     <li>{@code loadtest.threads}: comma-separated request thread modes to run one after the other,
+ *     {@code platform} (default) and/or {@code virtual}, each against a freshly booted application;
+ *     {@code virtual} needs Java 21</li>
+ *     <li>{@code loadtest.client-delay-ms} (0): slow clients, each request body is sent in two halves
+ *     this far apart, holding the server's request thread while it waits</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    static final String DEFAULT_MIX =
+            "create-order=40,create-stock-movement=15,get-order=30,list-items=10,receive-stock=5";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] modes = System.getProperty("loadtest.threads", "platform").split(",");
+        List<String> violations = new ArrayList<>();
+        for (String mode : modes) {
+            String threads = mode.trim();
+            if ("virtual".equals(threads) && Runtime.version().feature() < 21) {
+                System.out.println("Skipping virtual threads: Java 21 is required, running on " + Runtime.version());
+                continue;
+            }
+            System.out.printf("%n== %s threads ==%n", threads);
+            violations.addAll(run(threads));
+        }
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("Invariants violated: " + violations);
+        }
+    }
+
+    private static List<String> run(String threads) throws Exception {
+        String targetUrl = System.getProperty("loadtest.target-url");
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+        long warmup = TimeUnit.SECONDS.toNanos(Long.getLong("loadtest.warmup-seconds", 10));
+        long duration = TimeUnit.SECONDS.toNanos(Long.getLong("loadtest.duration-seconds", 60));
+        boolean poisson = !"constant".equals(System.getProperty("loadtest.arrival", "poisson"));
+
+        EmbeddedPostgres postgres = null;
+        ConfigurableApplicationContext context = null;
+        JdbcTemplate jdbc;
+        try {
+            if (targetUrl == null) {
+                List<String> appArgs = new ArrayList<>(Arrays.asList(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + "virtual".equals(threads),
+                        "--spring.mail.host=localhost",
+                        "--spring.mail.test-connection=false",
+                        "--email.outbox.poll-interval-ms=3600000",
+                        "--file-log.path=target/loadtest-orders.log",
+                        "--logging.level.com.diogobaptista.order_manager_api=WARN"));
+                if (!"local".equals(System.getProperty("loadtest.database", "embedded"))) {
+                    postgres = EmbeddedPostgres.builder().start();
+                    appArgs.add("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres")
+                            + "&reWriteBatchedInserts=true");
+                    appArgs.add("--spring.datasource.username=postgres");
+                    appArgs.add("--spring.datasource.password=postgres");
+                }
+                context = new SpringApplicationBuilder(Application.class).run(appArgs.toArray(new String[0]));
+                targetUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                jdbc = context.getBean(JdbcTemplate.class);
+            } else {
+                jdbc = externalJdbc();
+            }
+
+            LoadGenerator generator = new LoadGenerator(targetUrl,
+                    LoadGenerator.parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                    Integer.getInteger("loadtest.connections", 256),
+                    Integer.getInteger("loadtest.restock-quantity", 50),
+                    TimeUnit.MILLISECONDS.toNanos(Long.getLong("loadtest.client-delay-ms", 0)));
+            generator.seed(Integer.getInteger("loadtest.users", 50),
+                    Integer.getInteger("loadtest.items", 100),
+                    Integer.getInteger("loadtest.empty-items", 20),
+                    Integer.getInteger("loadtest.stock-per-item", 1000));
+
+            System.out.printf("Load test against %s: %.0f req/s (%s arrivals), %ds warmup, %ds measured%n",
+                    targetUrl, rate, poisson ? "poisson" : "constant",
+                    TimeUnit.NANOSECONDS.toSeconds(warmup), TimeUnit.NANOSECONDS.toSeconds(duration));
+            generator.run(rate, warmup, duration, poisson);
+            generator.report(duration / 1e9).forEach(System.out::println);
+
+            return checkInvariants(jdbc);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+    }
+
+    static List<String> checkInvariants(JdbcTemplate jdbc) {
+        List<String> violations = new ArrayList<>();
+        if (jdbc == null) {
+            System.out.println("Invariants not checked: no database connection configured");
+            return violations;
+        }
+        Integer negativeStock = jdbc.queryForObject(
+                "select count(*) from item where stock_quantity < 0", Integer.class);
+        if (negativeStock != null && negativeStock > 0) {
+            violations.add(negativeStock + " items with negative stock_quantity");
+        }
+        Integer overFulfilled = jdbc.queryForObject(
+                "select count(*) from \"order\" where fulfilled_quantity > quantity or fulfilled_quantity < 0", Integer.class);
+        if (overFulfilled != null && overFulfilled > 0) {
+            violations.add(overFulfilled + " orders with fulfilled_quantity outside 0..quantity");
+        }
+        System.out.println(violations.isEmpty() ? "Invariants hold" : "Invariants violated: " + violations);
+        return violations;
+    }
+
+    private static JdbcTemplate externalJdbc() {
+        String url = System.getProperty("loadtest.jdbc-url");
+        if (url == null) {
+            return null;
+        }
+        return new JdbcTemplate(new DriverManagerDataSource(url,
+                System.getProperty("loadtest.jdbc-user"), System.getProperty("loadtest.jdbc-password")));
+    }
+}
@@ -0,0 +1,64 @@
+package com.diogobaptista.order_manager_api.controller;
+
+import com.diogobaptista.order_manager_api.service.AllocationBusyException;
+import com.diogobaptista.order_manager_api.service.ExportBusyException;
+import com.diogobaptista.order_manager_api.service.IdempotencyConflictException;
+import com.diogobaptista.order_manager_api.service.InsufficientStockException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Collections;
+import java.util.Map;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<Map<String, String>> idempotencyConflict(IdempotencyConflictException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Map<String, String>> insufficientStock(InsufficientStockException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(ExportBusyException.class)
+    public ResponseEntity<Map<String, String>> exportBusy(ExportBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(Collections.singletonMap("error", e.getMessage()));
+    }
+
+    @ExceptionHandler(AllocationBusyException.class)
+    public ResponseEntity<Map<String, String>> allocationBusy(AllocationBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("error", e.getMessage()));
+    }
+
+    /**
+     * No pooled connection freed up within the pool's connection timeout,
+     * whether inside a transaction or on a plain repository read. The
+     * pool is what bounds database concurrency, so the client is asked to
+     * retry instead of getting a server error.
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<Map<String, String>> databaseBusy(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("error", "Database busy, retry later"));
+    }
+}
@@ -0,0 +1,116 @@
+package com.diogobaptista.order_manager_api.controller;
+
+import com.diogobaptista.order_manager_api.service.ExportLimiter;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+final class CsvResponses {
+
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private static final int BUFFER_BYTES = 8192;
+
+    private CsvResponses() {
+    }
+
+    /**
+     * Downloads every row the source produces as a CSV file, writing each row
+     * as soon as it is read. When the client accepts gzip the body is
+     * compressed on the fly and sent with {@code Content-Encoding: gzip}.
+     * The permit is closed once the body has been written or has failed.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> stream(String filename, String acceptEncoding,
+                                                            ExportLimiter.Permit permit,
+                                                            List<String> header, Function<T, Object[]> fields,
+                                                            Consumer<Consumer<T>> source) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                write(out, gzip, header, fields, source);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, TEXT_CSV_VALUE + ";charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    private static <T> void write(OutputStream out, boolean gzip, List<String> header, Function<T, Object[]> fields,
+                                  Consumer<Consumer<T>> source) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_BYTES);
+        writeLine(writer, header.toArray());
+        try {
+            source.accept(row -> {
+                try {
+                    writeLine(writer, fields.apply(row));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static void writeLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = values[i];
+            if (value instanceof String) {
+                writeText(writer, (String) value);
+            } else if (value != null) {
+                writer.write(value.toString());
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static void writeText(Writer writer, String text) throws IOException {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
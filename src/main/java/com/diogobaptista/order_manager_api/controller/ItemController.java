@@ -1,10 +1,17 @@
 package com.diogobaptista.order_manager_api.controller;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.ItemImportResponseDTO;
 import com.diogobaptista.order_manager_api.dto.ItemRequestDTO;
 import com.diogobaptista.order_manager_api.dto.ItemResponseDTO;
+import com.diogobaptista.order_manager_api.dto.ItemStatsDTO;
+import com.diogobaptista.order_manager_api.dto.StockReceiptRequestDTO;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.mapper.ItemMapper;
+import com.diogobaptista.order_manager_api.service.ItemImportService;
 import com.diogobaptista.order_manager_api.service.ItemService;
+import com.diogobaptista.order_manager_api.service.ItemStatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,11 +20,14 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.validation.Valid;
+import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/items")
@@ -25,18 +35,42 @@ public class ItemController {
 
     private final ItemService service;
     private final ItemMapper mapper;
+    private final ObjectMapper objectMapper;
+    private final ItemStatsService statsService;
+    private final ItemImportService importService;
 
-    public ItemController(ItemService service, ItemMapper mapper) {
+    public ItemController(ItemService service, ItemMapper mapper, ObjectMapper objectMapper,
+                          ItemStatsService statsService, ItemImportService importService) {
         this.service = service;
         this.mapper = mapper;
+        this.objectMapper = objectMapper;
+        this.statsService = statsService;
+        this.importService = importService;
     }
 
     @GetMapping
-    public ResponseEntity<List<ItemResponseDTO>> getAll() {
-        List<ItemResponseDTO> items = service.findAll().stream()
-                .map(mapper::toDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(items);
+    public ResponseEntity<List<ItemResponseDTO>> getAll(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit) {
+        CursorPage<ItemResponseDTO> page = service.findPage(cursor, limit).map(mapper::toDto);
+        return PageResponses.ok(page);
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return NdjsonResponses.stream(objectMapper, service::streamAll);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<ItemStatsDTO>> getAllStats(@RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer limit) {
+        return PageResponses.ok(statsService.findPage(cursor, limit));
+    }
+
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<ItemStatsDTO> getStats(@PathVariable Long id) {
+        return statsService.findByItemId(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/{id}")
@@ -53,6 +87,16 @@ public class ItemController {
         return ResponseEntity.status(201).body(mapper.toDto(saved));
     }
 
+    @PostMapping(value = "/import", consumes = CsvResponses.TEXT_CSV_VALUE)
+    public ResponseEntity<ItemImportResponseDTO> importCsv(InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importCsv(body));
+    }
+
+    @PostMapping(value = "/import", consumes = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ItemImportResponseDTO> importNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importNdjson(body));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<ItemResponseDTO> update(@PathVariable Long id,@Valid @RequestBody ItemRequestDTO dto) {
         return service.updateItem(id, dto)
@@ -61,6 +105,14 @@ public class ItemController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/{id}/receipts")
+    public ResponseEntity<ItemResponseDTO> receiveStock(@PathVariable Long id, @Valid @RequestBody StockReceiptRequestDTO dto) {
+        return service.receiveStock(id, dto.getQuantity())
+                .map(mapper::toDto)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         boolean deleted = service.deleteItem(id);
@@ -0,0 +1,50 @@
+package com.diogobaptista.order_manager_api.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+final class NdjsonResponses {
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private NdjsonResponses() {
+    }
+
+    /**
+     * Writes every row the source produces as one JSON document per line,
+     * serializing each row as soon as it is read. Rows are not flushed one by
+     * one; the servlet buffer decides when bytes go out.
+     */
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            try {
+                source.accept(row -> {
+                    try {
+                        writer.writeValue(generator, row);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+}
@@ -1,52 +1,148 @@
 package com.diogobaptista.order_manager_api.controller;
 
+import com.diogobaptista.order_manager_api.dto.AllocationResponseDTO;
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
+import com.diogobaptista.order_manager_api.dto.OrderBatchResponseDTO;
 import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
 import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.mapper.OrderMapper;
+import com.diogobaptista.order_manager_api.service.ExportLimiter;
+import com.diogobaptista.order_manager_api.service.IdempotencyService;
+import com.diogobaptista.order_manager_api.service.OrderAllocationService;
+import com.diogobaptista.order_manager_api.service.OrderBatchService;
 import com.diogobaptista.order_manager_api.service.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
 
+    private static final List<String> EXPORT_COLUMNS = Arrays.asList(
+            "id", "creation_date", "item_id", "user_id", "basket_id", "quantity", "fulfilled_quantity", "complete");
+
     private final OrderService service;
     private final OrderMapper mapper;
+    private final OrderBatchService batchService;
+    private final ObjectMapper objectMapper;
+    private final OrderAllocationService allocations;
+    private final IdempotencyService idempotency;
+    private final ExportLimiter exportLimiter;
 
-    public OrderController(OrderService service, OrderMapper mapper) {
+    public OrderController(OrderService service, OrderMapper mapper, OrderBatchService batchService,
+                           ObjectMapper objectMapper, OrderAllocationService allocations,
+                           IdempotencyService idempotency, ExportLimiter exportLimiter) {
         this.service = service;
         this.mapper = mapper;
+        this.batchService = batchService;
+        this.objectMapper = objectMapper;
+        this.allocations = allocations;
+        this.idempotency = idempotency;
+        this.exportLimiter = exportLimiter;
     }
 
     @GetMapping
-    public ResponseEntity<List<OrderResponseDTO>> getAll() {
-        List<OrderResponseDTO> orders = service.findAll().stream()
-                .map(mapper::toDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<List<OrderResponseDTO>> getAll(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer limit) {
+        return PageResponses.ok(service.findPage(cursor, limit));
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return NdjsonResponses.stream(objectMapper, service::streamAll);
     }
 
+    /**
+     * Downloads the orders created in {@code [from, to)}, optionally for one item, as CSV,
+     * gzip-compressed when the client accepts it. Answers 503 while the maximum number of
+     * exports is already running.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long itemId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ExportFilter filter = new ExportFilter(from, to, itemId);
+        return CsvResponses.stream("orders.csv", acceptEncoding, exportLimiter.acquire(), EXPORT_COLUMNS,
+                (OrderResponseDTO row) -> new Object[]{row.getId(), row.getCreationDate(), row.getItemId(), row.getUserId(),
+                        row.getBasketId(), row.getQuantity(), row.getFulfilledQuantity(), row.isComplete()},
+                sink -> service.export(filter, sink));
+    }
+
+    /**
+     * The order with that id. A multi-line order has no id of its own: it is
+     * known by the id of its first line, so that id returns the whole order
+     * with the first line's own fulfilment in {@code lines[0]}, while the
+     * other lines come back one by one with that id as their {@code basketId}.
+     */
     @GetMapping("/{id}")
     public ResponseEntity<OrderResponseDTO> getById(@PathVariable Long id) {
         return service.findById(id)
-                .map(mapper::toDto)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Stock movements that filled the order, oldest first; empty for unknown
+     * orders. For a multi-line order this is per line, and its id lists the
+     * first line's.
+     */
+    @GetMapping("/{id}/allocations")
+    public ResponseEntity<List<AllocationResponseDTO>> getAllocations(@PathVariable Long id) {
+        return ResponseEntity.ok(allocations.findByOrderId(id));
+    }
+
+    /**
+     * Creates a single-item order, or a multi-line order when the body has
+     * {@code lines}. With an {@code Idempotency-Key} header, a retry of a
+     * request that already created an order gets the original response back
+     * instead of a second order; the response is stored in the transaction
+     * that creates the order.
+     */
     @PostMapping
-    public ResponseEntity<OrderResponseDTO> create(@RequestBody OrderRequestDTO dto) {
-        Order saved = service.create(dto);
+    public ResponseEntity<OrderResponseDTO> create(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody OrderRequestDTO dto) {
+        if (idempotencyKey == null) {
+            return createOrder(dto, null);
+        }
+        return idempotency.execute("orders", idempotencyKey, dto, OrderResponseDTO.class,
+                completion -> createOrder(dto, completion));
+    }
+
+    private ResponseEntity<OrderResponseDTO> createOrder(OrderRequestDTO dto, IdempotencyService.Completion completion) {
+        if (dto.getLines() != null) {
+            List<Order> lines = completion == null ? service.createBasket(dto)
+                    : service.createBasket(dto, created -> completion.complete(201, mapper.toDto(created)));
+            return ResponseEntity.status(201).body(mapper.toDto(lines));
+        }
+        Order saved = completion == null ? service.create(dto)
+                : service.create(dto, created -> completion.complete(201, mapper.toDto(created)));
         return ResponseEntity.status(201).body(mapper.toDto(saved));
     }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<OrderBatchResponseDTO> createBatch(InputStream body) throws IOException {
+        return ResponseEntity.ok(batchService.ingest(body));
+    }
 }
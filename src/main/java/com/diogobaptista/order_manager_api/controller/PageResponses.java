@@ -0,0 +1,26 @@
+package com.diogobaptista.order_manager_api.controller;
+
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+final class PageResponses {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private PageResponses() {
+    }
+
+    /**
+     * Keeps the plain JSON array body list endpoints always returned; the
+     * cursor for the next page travels in a header and is absent on the last page.
+     */
+    static <T> ResponseEntity<List<T>> ok(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getContent());
+    }
+}
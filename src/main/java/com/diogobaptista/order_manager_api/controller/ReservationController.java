@@ -0,0 +1,56 @@
+package com.diogobaptista.order_manager_api.controller;
+
+import com.diogobaptista.order_manager_api.dto.ReservationRequestDTO;
+import com.diogobaptista.order_manager_api.dto.ReservationResponseDTO;
+import com.diogobaptista.order_manager_api.mapper.ReservationMapper;
+import com.diogobaptista.order_manager_api.service.ReservationService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import jakarta.validation.Valid;
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/items/{itemId}/reservations")
+public class ReservationController {
+
+    private final ReservationService service;
+    private final ReservationMapper mapper;
+
+    public ReservationController(ReservationService service, ReservationMapper mapper) {
+        this.service = service;
+        this.mapper = mapper;
+    }
+
+    @PostMapping
+    public ResponseEntity<ReservationResponseDTO> create(@PathVariable Long itemId,
+                                                         @Valid @RequestBody ReservationRequestDTO dto) {
+        Duration ttl = dto.getMinutes() != null ? Duration.ofMinutes(dto.getMinutes()) : null;
+        return service.reserve(itemId, dto.getQuantity(), ttl)
+                .map(mapper::toDto)
+                .map(reservation -> ResponseEntity.status(201).body(reservation))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ReservationResponseDTO> getById(@PathVariable Long itemId, @PathVariable Long id) {
+        return service.findById(itemId, id)
+                .map(mapper::toDto)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ReservationResponseDTO> release(@PathVariable Long itemId, @PathVariable Long id) {
+        return service.release(itemId, id)
+                .map(mapper::toDto)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,54 +1,123 @@
 package com.diogobaptista.order_manager_api.controller;
 
+import com.diogobaptista.order_manager_api.dto.AllocationResponseDTO;
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
 import com.diogobaptista.order_manager_api.dto.StockMovementRequestDTO;
 import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
 import com.diogobaptista.order_manager_api.mapper.StockMovementMapper;
+import com.diogobaptista.order_manager_api.service.ExportLimiter;
+import com.diogobaptista.order_manager_api.service.IdempotencyService;
+import com.diogobaptista.order_manager_api.service.OrderAllocationService;
 import com.diogobaptista.order_manager_api.service.StockMovementService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/stock-movements")
 public class StockMovementController {
 
+    private static final List<String> EXPORT_COLUMNS = Arrays.asList("id", "creation_date", "item_id", "quantity");
+
     private final StockMovementService service;
     private final StockMovementMapper mapper;
+    private final ObjectMapper objectMapper;
+    private final OrderAllocationService allocations;
+    private final IdempotencyService idempotency;
+    private final ExportLimiter exportLimiter;
 
     public StockMovementController(StockMovementService service,
-                                   StockMovementMapper mapper) {
+                                   StockMovementMapper mapper,
+                                   ObjectMapper objectMapper,
+                                   OrderAllocationService allocations,
+                                   IdempotencyService idempotency,
+                                   ExportLimiter exportLimiter) {
         this.service = service;
         this.mapper = mapper;
+        this.objectMapper = objectMapper;
+        this.allocations = allocations;
+        this.idempotency = idempotency;
+        this.exportLimiter = exportLimiter;
     }
 
     @GetMapping
-    public ResponseEntity<List<StockMovementResponseDTO>> getAll() {
-        return ResponseEntity.ok(
-                service.findAll()
-                        .stream()
-                        .map(mapper::toDto)
-                        .collect(Collectors.toList())
-        );
+    public ResponseEntity<List<StockMovementResponseDTO>> getAll(@RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit) {
+        return PageResponses.ok(service.findPage(cursor, limit));
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return NdjsonResponses.stream(objectMapper, service::streamAll);
+    }
+
+    /**
+     * Downloads the stock movements created in {@code [from, to)}, optionally for one item, as CSV,
+     * gzip-compressed when the client accepts it. Answers 503 while the maximum number of
+     * exports is already running.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long itemId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ExportFilter filter = new ExportFilter(from, to, itemId);
+        return CsvResponses.stream("stock-movements.csv", acceptEncoding, exportLimiter.acquire(),
+                EXPORT_COLUMNS,
+                (StockMovementResponseDTO row) -> new Object[]{row.getId(), row.getCreationDate(), row.getItemId(), row.getQuantity()},
+                sink -> service.export(filter, sink));
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<StockMovementResponseDTO> getById(@PathVariable Long id) {
         return service.findById(id)
-                .map(mapper::toDto)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /** Orders the movement was allocated to; empty for unknown movements. */
+    @GetMapping("/{id}/allocations")
+    public ResponseEntity<List<AllocationResponseDTO>> getAllocations(@PathVariable Long id) {
+        return ResponseEntity.ok(allocations.findByStockMovementId(id));
+    }
+
+    /**
+     * Retries with the same {@code Idempotency-Key} replay the movement created first, whose response is
+     * stored in the transaction that created it.
+     */
     @PostMapping
-    public ResponseEntity<StockMovementResponseDTO> create(@RequestBody StockMovementRequestDTO dto) {
-        return service.createStockMovement(dto)
+    public ResponseEntity<StockMovementResponseDTO> create(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody StockMovementRequestDTO dto) {
+        if (idempotencyKey == null) {
+            return createMovement(dto, null);
+        }
+        return idempotency.execute("stock-movements", idempotencyKey, dto, StockMovementResponseDTO.class,
+                completion -> createMovement(dto, completion));
+    }
+
+    private ResponseEntity<StockMovementResponseDTO> createMovement(StockMovementRequestDTO dto,
+                                                                    IdempotencyService.Completion completion) {
+        Optional<StockMovement> created = completion == null ? service.createStockMovement(dto)
+                : service.createStockMovement(dto, movement -> completion.complete(201, mapper.toDto(movement)));
+        return created
                 .map(mapper::toDto)
                 .map(stockMovementResponseDTO -> ResponseEntity.status(201).body(stockMovementResponseDTO))
                 .orElse(ResponseEntity.badRequest().build());
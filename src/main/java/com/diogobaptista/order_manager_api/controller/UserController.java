@@ -1,10 +1,12 @@
 package com.diogobaptista.order_manager_api.controller;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
 import com.diogobaptista.order_manager_api.dto.UserRequestDTO;
 import com.diogobaptista.order_manager_api.dto.UserResponseDTO;
 import com.diogobaptista.order_manager_api.entity.User;
 import com.diogobaptista.order_manager_api.mapper.UserMapper;
 import com.diogobaptista.order_manager_api.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,10 +15,11 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/users")
@@ -24,18 +27,24 @@ public class UserController {
 
     private final UserService service;
     private final UserMapper mapper;
+    private final ObjectMapper objectMapper;
 
-    public UserController(UserService service, UserMapper mapper) {
+    public UserController(UserService service, UserMapper mapper, ObjectMapper objectMapper) {
         this.service = service;
         this.mapper = mapper;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public ResponseEntity<List<UserResponseDTO>> getAll() {
-        List<UserResponseDTO> users = service.findAll().stream()
-                .map(mapper::toResponse)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(users);
+    public ResponseEntity<List<UserResponseDTO>> getAll(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit) {
+        CursorPage<UserResponseDTO> page = service.findPage(cursor, limit).map(mapper::toResponse);
+        return PageResponses.ok(page);
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonResponses.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        return NdjsonResponses.stream(objectMapper, service::streamAll);
     }
 
     @GetMapping("/{id}")
@@ -0,0 +1,62 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.time.LocalDateTime;
+
+public class AllocationResponseDTO {
+
+    private Long id;
+    private Long orderId;
+    private Long stockMovementId;
+    private int quantity;
+    private LocalDateTime creationDate;
+
+    public AllocationResponseDTO() {}
+
+    public AllocationResponseDTO(Long id, Long orderId, Long stockMovementId, int quantity, LocalDateTime creationDate) {
+        this.id = id;
+        this.orderId = orderId;
+        this.stockMovementId = stockMovementId;
+        this.quantity = quantity;
+        this.creationDate = creationDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+
+    public Long getStockMovementId() {
+        return stockMovementId;
+    }
+
+    public void setStockMovementId(Long stockMovementId) {
+        this.stockMovementId = stockMovementId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(LocalDateTime creationDate) {
+        this.creationDate = creationDate;
+    }
+}
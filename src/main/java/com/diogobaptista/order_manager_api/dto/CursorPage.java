@@ -0,0 +1,57 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class CursorPage<T> {
+
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> content;
+    private final String nextCursor;
+
+    public CursorPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Resolves the requested page size. No limit means the hard cap, which is
+     * also the most any single request can read.
+     */
+    public static int limit(Integer requested) {
+        if (requested == null) {
+            return MAX_LIMIT;
+        }
+        if (requested <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(requested, MAX_LIMIT);
+    }
+
+    /**
+     * Builds a page from rows fetched with {@code limit + 1}: the extra row only
+     * tells whether another page exists and is dropped.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> content = new ArrayList<>(rows.subList(0, limit));
+        return new CursorPage<>(content, cursorOf.apply(content.get(limit - 1)));
+    }
+
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(content.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,29 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Which rows an export covers: those created at or after {@code from} and
+ * before {@code to}, for one item. Every bound is optional.
+ */
+public final class ExportFilter {
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final Long itemId;
+
+    public ExportFilter(LocalDateTime from, LocalDateTime to, Long itemId) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Export range is empty: from " + from + " is not before to " + to);
+        }
+        this.from = from;
+        this.to = to;
+        this.itemId = itemId;
+    }
+
+    public LocalDateTime getFrom() { return from; }
+
+    public LocalDateTime getTo() { return to; }
+
+    public Long getItemId() { return itemId; }
+}
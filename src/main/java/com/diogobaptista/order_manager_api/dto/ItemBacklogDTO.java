@@ -0,0 +1,27 @@
+package com.diogobaptista.order_manager_api.dto;
+
+/**
+ * Open orders for one item and the quantity they are still waiting for.
+ */
+public class ItemBacklogDTO {
+    private Long itemId;
+    private long openOrders;
+    private long openQuantity;
+
+    public ItemBacklogDTO() {}
+
+    public ItemBacklogDTO(Long itemId, long openOrders, long openQuantity) {
+        this.itemId = itemId;
+        this.openOrders = openOrders;
+        this.openQuantity = openQuantity;
+    }
+
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+
+    public long getOpenOrders() { return openOrders; }
+    public void setOpenOrders(long openOrders) { this.openOrders = openOrders; }
+
+    public long getOpenQuantity() { return openQuantity; }
+    public void setOpenQuantity(long openQuantity) { this.openQuantity = openQuantity; }
+}
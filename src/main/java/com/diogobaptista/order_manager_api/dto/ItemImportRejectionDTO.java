@@ -0,0 +1,20 @@
+package com.diogobaptista.order_manager_api.dto;
+
+public class ItemImportRejectionDTO {
+
+    private int line;
+    private String message;
+
+    public ItemImportRejectionDTO() {}
+
+    public ItemImportRejectionDTO(int line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    public int getLine() { return line; }
+    public void setLine(int line) { this.line = line; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
@@ -0,0 +1,33 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ItemImportResponseDTO {
+
+    private int lines;
+    private int inserted;
+    private int updated;
+    private int duplicates;
+    private int rejected;
+    // The first rejected lines only, up to items.import.max-rejections
+    private List<ItemImportRejectionDTO> rejections = new ArrayList<>();
+
+    public int getLines() { return lines; }
+    public void setLines(int lines) { this.lines = lines; }
+
+    public int getInserted() { return inserted; }
+    public void setInserted(int inserted) { this.inserted = inserted; }
+
+    public int getUpdated() { return updated; }
+    public void setUpdated(int updated) { this.updated = updated; }
+
+    public int getDuplicates() { return duplicates; }
+    public void setDuplicates(int duplicates) { this.duplicates = duplicates; }
+
+    public int getRejected() { return rejected; }
+    public void setRejected(int rejected) { this.rejected = rejected; }
+
+    public List<ItemImportRejectionDTO> getRejections() { return rejections; }
+    public void setRejections(List<ItemImportRejectionDTO> rejections) { this.rejections = rejections; }
+}
@@ -1,6 +1,7 @@
 package com.diogobaptista.order_manager_api.dto;
 
-import javax.validation.constraints.NotNull;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 public class ItemRequestDTO {
 
@@ -10,6 +11,10 @@ public class ItemRequestDTO {
     @NotNull(message = "Stock is required")
     private Integer stockQuantity;
 
+    // Optional; left as it is on update when not sent
+    @Size(max = 64, message = "SKU is at most 64 characters")
+    private String sku;
+
     public ItemRequestDTO() {}
 
     public String getName() {
@@ -27,4 +32,12 @@ public class ItemRequestDTO {
     public void setStockQuantity(Integer stockQuantity) {
         this.stockQuantity = stockQuantity;
     }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public void setSku(String sku) {
+        this.sku = sku;
+    }
 }
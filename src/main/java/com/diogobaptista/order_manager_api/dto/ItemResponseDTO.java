@@ -5,6 +5,7 @@ public class ItemResponseDTO {
     private Long id;
     private String name;
     private Integer stockQuantity;
+    private String sku;
 
     public ItemResponseDTO(Long id, String name, Integer stockQuantity) {
         this.id = id;
@@ -12,6 +13,11 @@ public class ItemResponseDTO {
         this.stockQuantity = stockQuantity;
     }
 
+    public ItemResponseDTO(Long id, String name, Integer stockQuantity, String sku) {
+        this(id, name, stockQuantity);
+        this.sku = sku;
+    }
+
     public Long getId() {
         return id;
     }
@@ -24,6 +30,10 @@ public class ItemResponseDTO {
         return stockQuantity;
     }
 
+    public String getSku() {
+        return sku;
+    }
+
     public void setId(long id) {
         this.id = id;
     }
@@ -0,0 +1,43 @@
+package com.diogobaptista.order_manager_api.dto;
+
+/**
+ * Order totals for one item: the open backlog, everything ever ordered and
+ * how much of it has been allocated from stock.
+ */
+public class ItemStatsDTO {
+    private Long itemId;
+    private long openOrders;
+    private long openQuantity;
+    private long orderedQuantity;
+    private long allocatedQuantity;
+
+    public ItemStatsDTO() {}
+
+    public ItemStatsDTO(Long itemId, long openOrders, long openQuantity, long orderedQuantity, long allocatedQuantity) {
+        this.itemId = itemId;
+        this.openOrders = openOrders;
+        this.openQuantity = openQuantity;
+        this.orderedQuantity = orderedQuantity;
+        this.allocatedQuantity = allocatedQuantity;
+    }
+
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+
+    public long getOpenOrders() { return openOrders; }
+    public void setOpenOrders(long openOrders) { this.openOrders = openOrders; }
+
+    public long getOpenQuantity() { return openQuantity; }
+    public void setOpenQuantity(long openQuantity) { this.openQuantity = openQuantity; }
+
+    public long getOrderedQuantity() { return orderedQuantity; }
+    public void setOrderedQuantity(long orderedQuantity) { this.orderedQuantity = orderedQuantity; }
+
+    public long getAllocatedQuantity() { return allocatedQuantity; }
+    public void setAllocatedQuantity(long allocatedQuantity) { this.allocatedQuantity = allocatedQuantity; }
+
+    /** Share of the ordered quantity allocated so far, or null while nothing has been ordered. */
+    public Double getFillRate() {
+        return orderedQuantity == 0 ? null : (double) allocatedQuantity / orderedQuantity;
+    }
+}
@@ -0,0 +1,46 @@
+package com.diogobaptista.order_manager_api.dto;
+
+public class OrderBatchLineResultDTO {
+
+    public enum Status { CREATED, PARTIALLY_ALLOCATED, REJECTED }
+
+    private int line;
+    private Status status;
+    private Long orderId;
+    private int quantity;
+    private int allocatedQuantity;
+    private String message;
+
+    public OrderBatchLineResultDTO() {}
+
+    public OrderBatchLineResultDTO(int line, Status status, Long orderId, int quantity, int allocatedQuantity, String message) {
+        this.line = line;
+        this.status = status;
+        this.orderId = orderId;
+        this.quantity = quantity;
+        this.allocatedQuantity = allocatedQuantity;
+        this.message = message;
+    }
+
+    public static OrderBatchLineResultDTO rejected(int line, int quantity, String message) {
+        return new OrderBatchLineResultDTO(line, Status.REJECTED, null, quantity, 0, message);
+    }
+
+    public int getLine() { return line; }
+    public void setLine(int line) { this.line = line; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+
+    public int getAllocatedQuantity() { return allocatedQuantity; }
+    public void setAllocatedQuantity(int allocatedQuantity) { this.allocatedQuantity = allocatedQuantity; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
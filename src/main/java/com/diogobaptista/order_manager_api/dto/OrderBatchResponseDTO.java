@@ -0,0 +1,38 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderBatchResponseDTO {
+
+    private int created;
+    private int partiallyAllocated;
+    private int rejected;
+    private List<OrderBatchLineResultDTO> lines = new ArrayList<>();
+
+    public void add(OrderBatchLineResultDTO result) {
+        switch (result.getStatus()) {
+            case CREATED:
+                created++;
+                break;
+            case PARTIALLY_ALLOCATED:
+                partiallyAllocated++;
+                break;
+            default:
+                rejected++;
+        }
+        lines.add(result);
+    }
+
+    public int getCreated() { return created; }
+    public void setCreated(int created) { this.created = created; }
+
+    public int getPartiallyAllocated() { return partiallyAllocated; }
+    public void setPartiallyAllocated(int partiallyAllocated) { this.partiallyAllocated = partiallyAllocated; }
+
+    public int getRejected() { return rejected; }
+    public void setRejected(int rejected) { this.rejected = rejected; }
+
+    public List<OrderBatchLineResultDTO> getLines() { return lines; }
+    public void setLines(List<OrderBatchLineResultDTO> lines) { this.lines = lines; }
+}
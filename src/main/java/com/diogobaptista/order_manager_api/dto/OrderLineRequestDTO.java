@@ -0,0 +1,19 @@
+package com.diogobaptista.order_manager_api.dto;
+
+public class OrderLineRequestDTO {
+    private Long itemId;
+    private int quantity;
+
+    public Long getItemId() {
+        return itemId;
+    }
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+    public int getQuantity() {
+        return quantity;
+    }
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,34 @@
+package com.diogobaptista.order_manager_api.dto;
+
+public class OrderLineResponseDTO {
+    private Long id;
+    private Long itemId;
+    private int quantity;
+    private int fulfilledQuantity;
+    private boolean complete;
+
+    public OrderLineResponseDTO() {}
+
+    public OrderLineResponseDTO(Long id, Long itemId, int quantity, int fulfilledQuantity) {
+        this.id = id;
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.fulfilledQuantity = fulfilledQuantity;
+        this.complete = fulfilledQuantity >= quantity;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+
+    public int getFulfilledQuantity() { return fulfilledQuantity; }
+    public void setFulfilledQuantity(int fulfilledQuantity) { this.fulfilledQuantity = fulfilledQuantity; }
+
+    public boolean isComplete() { return complete; }
+    public void setComplete(boolean complete) { this.complete = complete; }
+}
@@ -1,9 +1,15 @@
 package com.diogobaptista.order_manager_api.dto;
 
+import java.util.List;
+
 public class OrderRequestDTO {
     private Long userId;
     private Long itemId;
     private int quantity;
+    // Optional: fill the order from this reservation of the item instead of from free stock
+    private Long reservationId;
+    // Multi-line order: one entry per item, allocated together; itemId, quantity and reservationId are then unset
+    private List<OrderLineRequestDTO> lines;
 
     public Long getUserId() {
         return userId;
@@ -23,4 +29,16 @@ public class OrderRequestDTO {
     public void setQuantity(int quantity) {
         this.quantity = quantity;
     }
+    public Long getReservationId() {
+        return reservationId;
+    }
+    public void setReservationId(Long reservationId) {
+        this.reservationId = reservationId;
+    }
+    public List<OrderLineRequestDTO> getLines() {
+        return lines;
+    }
+    public void setLines(List<OrderLineRequestDTO> lines) {
+        this.lines = lines;
+    }
 }
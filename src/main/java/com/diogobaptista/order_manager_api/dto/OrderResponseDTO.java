@@ -1,6 +1,7 @@
 package com.diogobaptista.order_manager_api.dto;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class OrderResponseDTO {
     private Long id;
@@ -10,6 +11,42 @@ public class OrderResponseDTO {
     private Long itemId;
     private Long userId;
     private LocalDateTime creationDate;
+    private Long basketId;
+    // Set on a multi-line order as a whole, whose quantities are then the totals of its lines
+    private List<OrderLineResponseDTO> lines;
+
+    public OrderResponseDTO() {}
+
+    public OrderResponseDTO(Long id, int quantity, int fulfilledQuantity, Long itemId, Long userId,
+                            LocalDateTime creationDate) {
+        this.id = id;
+        this.quantity = quantity;
+        this.fulfilledQuantity = fulfilledQuantity;
+        this.complete = fulfilledQuantity >= quantity;
+        this.itemId = itemId;
+        this.userId = userId;
+        this.creationDate = creationDate;
+    }
+
+    public OrderResponseDTO(Long id, int quantity, int fulfilledQuantity, Long itemId, Long userId,
+                            LocalDateTime creationDate, Long basketId) {
+        this(id, quantity, fulfilledQuantity, itemId, userId, creationDate);
+        this.basketId = basketId;
+    }
+
+    /**
+     * A multi-line order: its id is the basket id, which is also the id of
+     * its first line, and its quantities add up those of the lines.
+     */
+    public static OrderResponseDTO basket(Long basketId, Long userId, LocalDateTime creationDate,
+                                          List<OrderLineResponseDTO> lines) {
+        int quantity = lines.stream().mapToInt(OrderLineResponseDTO::getQuantity).sum();
+        int fulfilled = lines.stream().mapToInt(OrderLineResponseDTO::getFulfilledQuantity).sum();
+        OrderResponseDTO dto = new OrderResponseDTO(basketId, quantity, fulfilled, null, userId, creationDate, basketId);
+        dto.setComplete(lines.stream().allMatch(OrderLineResponseDTO::isComplete));
+        dto.setLines(lines);
+        return dto;
+    }
 
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -31,4 +68,10 @@ public class OrderResponseDTO {
 
     public LocalDateTime getCreationDate() { return creationDate; }
     public void setCreationDate(LocalDateTime creationDate) { this.creationDate = creationDate; }
+
+    public Long getBasketId() { return basketId; }
+    public void setBasketId(Long basketId) { this.basketId = basketId; }
+
+    public List<OrderLineResponseDTO> getLines() { return lines; }
+    public void setLines(List<OrderLineResponseDTO> lines) { this.lines = lines; }
 }
@@ -0,0 +1,79 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a keyset page, handed to clients as an opaque
+ * token. Lists ordered by id carry only the id; lists ordered by creation
+ * date carry the date and the id that breaks ties.
+ */
+public final class PageCursor {
+
+    private static final String SEPARATOR = "~";
+
+    private final LocalDateTime creationDate;
+    private final long id;
+
+    private PageCursor(LocalDateTime creationDate, long id) {
+        this.creationDate = creationDate;
+        this.id = id;
+    }
+
+    public static String encode(long id) {
+        return toToken(Long.toString(id));
+    }
+
+    public static String encode(LocalDateTime creationDate, long id) {
+        return toToken(creationDate + SEPARATOR + id);
+    }
+
+    public static long decodeId(String token) {
+        String value = fromToken(token);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw invalid(token);
+        }
+    }
+
+    public static PageCursor decodeDated(String token) {
+        String value = fromToken(token);
+        int separator = value.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw invalid(token);
+        }
+        try {
+            return new PageCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw invalid(token);
+        }
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    private static String toToken(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String fromToken(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalid(token);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String token) {
+        return new IllegalArgumentException("Invalid page cursor: " + token);
+    }
+}
@@ -0,0 +1,31 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * An open order as seen by the allocation strategies: who placed it, when,
+ * and how much of it is still unfilled. Immutable; a change in the remaining
+ * quantity replaces the entry.
+ */
+public final class PendingOrder {
+
+    private final Long orderId;
+    private final Long userId;
+    private final LocalDateTime creationDate;
+    private final int remaining;
+
+    public PendingOrder(Long orderId, Long userId, LocalDateTime creationDate, int remaining) {
+        this.orderId = orderId;
+        this.userId = userId;
+        this.creationDate = creationDate;
+        this.remaining = remaining;
+    }
+
+    public Long getOrderId() { return orderId; }
+
+    public Long getUserId() { return userId; }
+
+    public LocalDateTime getCreationDate() { return creationDate; }
+
+    public int getRemaining() { return remaining; }
+}
@@ -0,0 +1,73 @@
+package com.diogobaptista.order_manager_api.dto;
+
+import java.time.LocalDateTime;
+
+public class ReservationResponseDTO {
+
+    private Long id;
+    private Long itemId;
+    private int quantity;
+    private String status;
+    private LocalDateTime expiresAt;
+    private Long orderId;
+
+    public ReservationResponseDTO() {}
+
+    public ReservationResponseDTO(Long id, Long itemId, int quantity, String status, LocalDateTime expiresAt,
+                                  Long orderId) {
+        this.id = id;
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.status = status;
+        this.expiresAt = expiresAt;
+        this.orderId = orderId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Long itemId) {
+        this.itemId = itemId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Long orderId) {
+        this.orderId = orderId;
+    }
+}
@@ -1,6 +1,6 @@
 package com.diogobaptista.order_manager_api.dto;
 
-import javax.validation.constraints.NotNull;
+import jakarta.validation.constraints.NotNull;
 
 public class UserRequestDTO {
 
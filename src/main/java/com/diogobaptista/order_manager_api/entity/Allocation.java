@@ -0,0 +1,72 @@
+package com.diogobaptista.order_manager_api.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import java.time.LocalDateTime;
+
+/**
+ * Quantity of one stock movement allocated to one order.
+ */
+@Entity
+public class Allocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "allocation_seq")
+    @SequenceGenerator(name = "allocation_seq", sequenceName = "allocation_id_seq", allocationSize = 50)
+    private Long id;
+
+    private LocalDateTime creationDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Order order;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private StockMovement stockMovement;
+
+    private int quantity;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(LocalDateTime creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public StockMovement getStockMovement() {
+        return stockMovement;
+    }
+
+    public void setStockMovement(StockMovement stockMovement) {
+        this.stockMovement = stockMovement;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+}
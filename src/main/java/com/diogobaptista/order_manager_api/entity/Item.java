@@ -1,10 +1,11 @@
 package com.diogobaptista.order_manager_api.entity;
 
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 public class Item {
@@ -15,15 +16,31 @@ public class Item {
     @Column(nullable = false)
     private String name;
 
-    @Column(nullable = false)
+    // Catalog key of the item, unique when set; bulk imports match items on it.
+    @Column(unique = true, length = 64)
+    private String sku;
+
+    // Stock only changes through the atomic updates in ItemRepository, never through a dirty entity.
+    @Column(nullable = false, updatable = false)
     private Integer stockQuantity;
 
+    // Part of the stock held by active reservations; allocation only takes stockQuantity - reservedQuantity.
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int reservedQuantity;
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
 
+    public String getSku() { return sku; }
+    public void setSku(String sku) { this.sku = sku; }
+
     public Integer getStockQuantity() { return stockQuantity; }
     public void setStockQuantity(Integer stockQuantity) { this.stockQuantity = stockQuantity; }
+
+    public int getReservedQuantity() { return reservedQuantity; }
+    public void setReservedQuantity(int reservedQuantity) { this.reservedQuantity = reservedQuantity; }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.diogobaptista.order_manager_api.entity;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
-import javax.persistence.ManyToOne;
-import javax.persistence.Table;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 
 @Entity
@@ -13,21 +15,25 @@ import java.time.LocalDateTime;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "order_id_seq", allocationSize = 50)
     private Long id;
 
     private LocalDateTime creationDate;
 
     private int quantity;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Item item;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User user;
 
     private int fulfilledQuantity;
 
+    // Id of the first line of the multi-line order this line belongs to; null for single-item orders
+    private Long basketId;
+
     public boolean isComplete() {
         return fulfilledQuantity >= quantity;
     }
@@ -79,4 +85,12 @@ public class Order {
     public void setFulfilledQuantity(int fulfilledQuantity) {
         this.fulfilledQuantity = fulfilledQuantity;
     }
+
+    public Long getBasketId() {
+        return basketId;
+    }
+
+    public void setBasketId(Long basketId) {
+        this.basketId = basketId;
+    }
 }
@@ -12,15 +12,19 @@ public class ItemMapper {
         Item item = new Item();
         item.setName(dto.getName());
         item.setStockQuantity(dto.getStockQuantity());
+        item.setSku(dto.getSku());
         return item;
     }
 
     public void updateEntity(Item item, ItemRequestDTO dto) {
         item.setName(dto.getName());
         item.setStockQuantity(dto.getStockQuantity());
+        if (dto.getSku() != null) {
+            item.setSku(dto.getSku());
+        }
     }
 
     public ItemResponseDTO toDto(Item item) {
-        return new ItemResponseDTO(item.getId(), item.getName(), item.getStockQuantity());
+        return new ItemResponseDTO(item.getId(), item.getName(), item.getStockQuantity(), item.getSku());
     }
 }
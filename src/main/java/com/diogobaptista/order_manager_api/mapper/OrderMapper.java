@@ -1,9 +1,13 @@
 package com.diogobaptista.order_manager_api.mapper;
 
+import com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO;
 import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
 import com.diogobaptista.order_manager_api.entity.Order;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Component
 public class OrderMapper {
 
@@ -16,6 +20,23 @@ public class OrderMapper {
         dto.setItemId(order.getItem() != null ? order.getItem().getId() : null);
         dto.setUserId(order.getUser() != null ? order.getUser().getId() : null);
         dto.setCreationDate(order.getCreationDate());
+        dto.setBasketId(order.getBasketId());
         return dto;
     }
+
+    /** The lines of one multi-line order, first line first. */
+    public OrderResponseDTO toDto(List<Order> lines) {
+        Order first = lines.get(0);
+        return OrderResponseDTO.basket(first.getBasketId(),
+                first.getUser() != null ? first.getUser().getId() : null,
+                first.getCreationDate(),
+                lines.stream().map(this::toLineDto).collect(Collectors.toList()));
+    }
+
+    public OrderLineResponseDTO toLineDto(Order order) {
+        return new OrderLineResponseDTO(order.getId(),
+                order.getItem() != null ? order.getItem().getId() : null,
+                order.getQuantity(),
+                order.getFulfilledQuantity());
+    }
 }
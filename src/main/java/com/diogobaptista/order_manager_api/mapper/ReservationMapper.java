@@ -0,0 +1,20 @@
+package com.diogobaptista.order_manager_api.mapper;
+
+import com.diogobaptista.order_manager_api.dto.ReservationResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Reservation;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ReservationMapper {
+
+    public ReservationResponseDTO toDto(Reservation entity) {
+        return new ReservationResponseDTO(
+                entity.getId(),
+                entity.getItemId(),
+                entity.getQuantity(),
+                entity.getStatus().name(),
+                entity.getExpiresAt(),
+                entity.getOrderId()
+        );
+    }
+}
@@ -0,0 +1,21 @@
+package com.diogobaptista.order_manager_api.repository;
+
+import com.diogobaptista.order_manager_api.dto.AllocationResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Allocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface AllocationRepository extends JpaRepository<Allocation, Long> {
+
+    String RESPONSE_PROJECTION = "select new com.diogobaptista.order_manager_api.dto.AllocationResponseDTO(" +
+            "a.id, a.order.id, a.stockMovement.id, a.quantity, a.creationDate) from Allocation a ";
+
+    @Query(RESPONSE_PROJECTION + "where a.order.id = :orderId order by a.id")
+    List<AllocationResponseDTO> findByOrderId(@Param("orderId") Long orderId);
+
+    @Query(RESPONSE_PROJECTION + "where a.stockMovement.id = :stockMovementId order by a.id")
+    List<AllocationResponseDTO> findByStockMovementId(@Param("stockMovementId") Long stockMovementId);
+}
@@ -0,0 +1,23 @@
+package com.diogobaptista.order_manager_api.repository;
+
+import com.diogobaptista.order_manager_api.entity.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * Locks up to {@code limit} due emails for the calling transaction. Rows
+     * already locked by another dispatcher are skipped rather than waited on,
+     * so several instances can drain the outbox side by side.
+     */
+    @Query(value = "select * from email_outbox " +
+            "where status = 'PENDING' and next_attempt_at <= :now " +
+            "order by id limit :limit " +
+            "for update skip locked", nativeQuery = true)
+    List<EmailOutbox> claimDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
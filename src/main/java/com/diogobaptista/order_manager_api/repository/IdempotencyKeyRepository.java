@@ -0,0 +1,112 @@
+package com.diogobaptista.order_manager_api.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Claims and completes rows of {@code idempotency_key}. A claim is an insert
+ * that only touches a conflicting row when that row is an uncompleted claim
+ * older than the lease, so of several requests racing with the same key
+ * exactly one gets to run, and a claim left behind by a crashed request does
+ * not block the key forever. Each claim carries a token, and only the holder
+ * of the current token can complete, renew or release it.
+ */
+@Repository
+public class IdempotencyKeyRepository {
+
+    private static final RowMapper<KeyRecord> ROW = (rs, i) -> new KeyRecord(rs.getString("request_hash"),
+            (Integer) rs.getObject("status"), rs.getString("response_body"));
+
+    private final JdbcTemplate jdbc;
+
+    public IdempotencyKeyRepository(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public Optional<KeyRecord> find(String scope, String key) {
+        return jdbc.query("select request_hash, status, response_body from idempotency_key " +
+                "where scope = ? and idempotency_key = ?", ROW, scope, key).stream().findFirst();
+    }
+
+    /**
+     * Returns false when the key is already claimed, whether or not its
+     * request has completed, unless the claim is uncompleted and was taken or
+     * last renewed longer than {@code lease} ago by the database clock; then
+     * it is taken over with {@code token} and this returns true.
+     */
+    public boolean claim(String scope, String key, String requestHash, String token, Duration lease) {
+        return jdbc.update("insert into idempotency_key (scope, idempotency_key, request_hash, claim_token) " +
+                "values (?, ?, ?, ?) " +
+                "on conflict (scope, idempotency_key) do update " +
+                "set request_hash = excluded.request_hash, claim_token = excluded.claim_token, claimed_at = now() " +
+                "where idempotency_key.status is null " +
+                "and idempotency_key.claimed_at < now() - ? * interval '1 millisecond'",
+                scope, key, requestHash, token, lease.toMillis()) == 1;
+    }
+
+    /**
+     * Stores the response to replay, inside the transaction of the request
+     * that produced it. Returns false, changing nothing, when the key is
+     * already completed or its claim no longer carries {@code token}.
+     */
+    public boolean complete(String scope, String key, String token, int status, String responseBody) {
+        return jdbc.update("update idempotency_key set status = ?, response_body = ? " +
+                "where scope = ? and idempotency_key = ? and claim_token = ? and status is null",
+                status, responseBody, scope, key, token) == 1;
+    }
+
+    /** Restarts the lease of a claim still held with {@code token}; false if it is no longer held. */
+    public boolean renew(String scope, String key, String token) {
+        return jdbc.update("update idempotency_key set claimed_at = now() " +
+                "where scope = ? and idempotency_key = ? and claim_token = ? and status is null",
+                scope, key, token) == 1;
+    }
+
+    /** Gives up a claim whose request failed, so that a retry runs it again. */
+    public void release(String scope, String key, String token) {
+        jdbc.update("delete from idempotency_key " +
+                "where scope = ? and idempotency_key = ? and claim_token = ? and status is null",
+                scope, key, token);
+    }
+
+    /** Deletes keys created longer ago than {@code retention}, by the database clock. */
+    public int deleteOlderThan(Duration retention) {
+        return jdbc.update("delete from idempotency_key where created_at < now() - ? * interval '1 millisecond'",
+                retention.toMillis());
+    }
+
+    public static final class KeyRecord {
+
+        private final String requestHash;
+        private final Integer status;
+        private final String responseBody;
+
+        public KeyRecord(String requestHash, Integer status, String responseBody) {
+            this.requestHash = requestHash;
+            this.status = status;
+            this.responseBody = responseBody;
+        }
+
+        public String getRequestHash() {
+            return requestHash;
+        }
+
+        /** Null while the first request with the key is still running. */
+        public Integer getStatus() {
+            return status;
+        }
+
+        public String getResponseBody() {
+            return responseBody;
+        }
+
+        public boolean isCompleted() {
+            return status != null;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.diogobaptista.order_manager_api.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Bulk loads items through the PostgreSQL COPY protocol. Rows are first
+ * spooled to a local file in COPY's CSV format as the caller produces them,
+ * without a connection, then copied from that file into a staging table and
+ * merged into {@code item} on the SKU with a single
+ * {@code INSERT ... ON CONFLICT}.
+ *
+ * <p>The staging table is a temporary table: like an unlogged table it skips
+ * the WAL, and it is private to the import's connection, so concurrent
+ * imports never see each other's rows. It is dropped when the transaction
+ * ends, so {@link #stage} and {@link #merge} must run in the same one.
+ */
+@Repository
+public class ItemImportRepository {
+
+    private static final String COPY = "COPY item_import (line, sku, name, stock_quantity) FROM STDIN (FORMAT csv)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final int bufferBytes;
+
+    public ItemImportRepository(DataSource dataSource,
+                                @Value("${items.import.copy-buffer-bytes:65536}") int bufferBytes) {
+        this.dataSource = dataSource;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+     * Writes whatever {@code loader} writes to a temporary file, ready for
+     * {@link #stage}. Needs no connection, so the request body can take as
+     * long as it likes to arrive. The file is deleted when the spool is
+     * closed, and right away if the loader fails.
+     */
+    public Spool spool(Loader loader) throws IOException {
+        Spool spool = new Spool(Files.createTempFile("item-import-", ".csv"));
+        try (CsvRowWriter rows = new CsvRowWriter(new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(spool.file), StandardCharsets.UTF_8), bufferBytes))) {
+            loader.load(rows);
+        } catch (IOException | RuntimeException e) {
+            spool.close();
+            throw e;
+        }
+        return spool;
+    }
+
+    /**
+     * Creates the staging table and copies the spooled rows into it.
+     *
+     * @return the number of rows staged
+     */
+    public long stage(Spool spool) throws IOException {
+        jdbc.execute("create temp table item_import (line int not null, sku varchar(64) not null, " +
+                "name varchar(255) not null, stock_quantity int not null) on commit drop");
+
+        try (InputStream in = Files.newInputStream(spool.file)) {
+            PGConnection connection = DataSourceUtils.getConnection(dataSource).unwrap(PGConnection.class);
+            return connection.getCopyAPI().copyIn(COPY, in, bufferBytes);
+        } catch (SQLException e) {
+            throw new IOException("COPY into item_import failed", e);
+        }
+    }
+
+    /**
+     * Inserts the staged items with new SKUs and updates the name and stock
+     * of those that exist. When a SKU is staged more than once its last line
+     * wins. Stock is never set below what active reservations hold.
+     *
+     * <p>Imported stock is not a stock movement, which is stock allocated to
+     * an order, so none is recorded; the import is in the audit log. The
+     * existing items are locked first, in ascending id order like order
+     * batches lock them, rather than in the SKU order the merge visits them.
+     */
+    public MergeCounts merge() {
+        jdbc.execute("analyze item_import");
+        jdbc.queryForObject("select count(*) from (" +
+                "select i.id from item i join item_import s on s.sku = i.sku order by i.id for update of i" +
+                ") locked", Long.class);
+        return jdbc.queryForObject(
+                "with staged as (" +
+                "    select distinct on (sku) sku, name, stock_quantity from item_import order by sku, line desc" +
+                "), merged as (" +
+                "    insert into item (sku, name, stock_quantity)" +
+                "    select sku, name, stock_quantity from staged" +
+                "    on conflict (sku) do update" +
+                "        set name = excluded.name," +
+                "            stock_quantity = greatest(excluded.stock_quantity, item.reserved_quantity)" +
+                "    returning xmax = 0 as inserted" +
+                ") " +
+                "select count(*) filter (where inserted) as inserted, count(*) filter (where not inserted) as updated " +
+                "from merged",
+                (rs, i) -> new MergeCounts(rs.getLong("inserted"), rs.getLong("updated")));
+    }
+
+    /** Ids of the staged items that have open orders, to offer their new stock to. */
+    public List<Long> findStagedItemIdsWithOpenOrders() {
+        return jdbc.queryForList(
+                "select distinct o.item_id from \"order\" o " +
+                "join item i on i.id = o.item_id " +
+                "join item_import s on s.sku = i.sku " +
+                "where o.fulfilled_quantity < o.quantity",
+                Long.class);
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        void load(RowWriter rows) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RowWriter {
+        void write(int line, String sku, String name, int stockQuantity) throws IOException;
+    }
+
+    /** Rows spooled to a local file, deleted on close. */
+    public static final class Spool implements Closeable {
+
+        private final Path file;
+
+        Spool(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static final class MergeCounts {
+
+        private final long inserted;
+        private final long updated;
+
+        MergeCounts(long inserted, long updated) {
+            this.inserted = inserted;
+            this.updated = updated;
+        }
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+    }
+
+    private static final class CsvRowWriter implements RowWriter, Closeable {
+
+        private final Writer out;
+
+        CsvRowWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int line, String sku, String name, int stockQuantity) throws IOException {
+            out.write(Integer.toString(line));
+            out.write(',');
+            quoted(sku);
+            out.write(',');
+            quoted(name);
+            out.write(',');
+            out.write(Integer.toString(stockQuantity));
+            out.write('\n');
+        }
+
+        private void quoted(String value) throws IOException {
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -1,8 +1,93 @@
 package com.diogobaptista.order_manager_api.repository;
 
 import com.diogobaptista.order_manager_api.entity.Item;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ItemRepository extends JpaRepository<Item, Long> {}
+import java.util.List;
+import java.util.Optional;
 
+public interface ItemRepository extends JpaRepository<Item, Long> {
 
+    int MAX_TAKE_ATTEMPTS = 5;
+
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.stockQuantity = i.stockQuantity - :quantity " +
+            "where i.id = :id and i.stockQuantity - i.reservedQuantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.stockQuantity = i.stockQuantity + :quantity where i.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Moves stock from the {@code previous} quantity the caller read to
+     * {@code quantity} by their difference, so units taken concurrently are
+     * not overwritten. Fails when that would leave less stock than
+     * reservations hold.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.stockQuantity = i.stockQuantity + (:quantity - :previous) " +
+            "where i.id = :id and i.stockQuantity + (:quantity - :previous) >= i.reservedQuantity")
+    int adjustStock(@Param("id") Long id, @Param("previous") int previous, @Param("quantity") int quantity);
+
+    @Query("select i.stockQuantity from Item i where i.id = :id")
+    Optional<Integer> findStockQuantityById(@Param("id") Long id);
+
+    /** Stock that is neither allocated nor held by a reservation. */
+    @Query("select i.stockQuantity - i.reservedQuantity from Item i where i.id = :id")
+    Optional<Integer> findAvailableQuantityById(@Param("id") Long id);
+
+    /** Holds {@code quantity} units for a reservation, all or nothing. */
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.reservedQuantity = i.reservedQuantity + :quantity " +
+            "where i.id = :id and i.stockQuantity - i.reservedQuantity >= :quantity")
+    int reserveStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.reservedQuantity = i.reservedQuantity - :quantity where i.id = :id")
+    int releaseReservedStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /**
+     * Takes {@code taken} units out of a hold of {@code reserved} units and
+     * gives the rest of the hold back. Fails when stock was set below the
+     * hold in the meantime.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Item i set i.stockQuantity = i.stockQuantity - :taken, " +
+            "i.reservedQuantity = i.reservedQuantity - :reserved " +
+            "where i.id = :id and i.stockQuantity >= :taken")
+    int takeReservedStock(@Param("id") Long id, @Param("taken") int taken, @Param("reserved") int reserved);
+
+    List<Item> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Atomically takes up to {@code requested} units of stock from the item,
+     * leaving reserved stock alone.
+     * When the full quantity is not available the attempt is retried with
+     * whatever is left, a bounded number of times, so concurrent callers
+     * never oversell and never lose each other's updates.
+     *
+     * @return the quantity actually taken, possibly 0
+     */
+    default int takeStock(Long id, int requested) {
+        int wanted = requested;
+        for (int attempt = 0; attempt < MAX_TAKE_ATTEMPTS && wanted > 0; attempt++) {
+            if (decrementStock(id, wanted) == 1) {
+                return wanted;
+            }
+            wanted = Math.min(requested, findAvailableQuantityById(id).orElse(0));
+        }
+        return 0;
+    }
+}
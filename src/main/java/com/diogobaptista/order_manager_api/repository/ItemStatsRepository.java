@@ -0,0 +1,65 @@
+package com.diogobaptista.order_manager_api.repository;
+
+import com.diogobaptista.order_manager_api.dto.ItemStatsDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads and increments the {@code item_stats} running totals. Items without
+ * a stats row yet (nothing ordered) read as zeros.
+ */
+@Repository
+public class ItemStatsRepository {
+
+    private static final String SELECT = "select i.id, coalesce(s.open_orders, 0) open_orders, " +
+            "coalesce(s.open_quantity, 0) open_quantity, coalesce(s.ordered_quantity, 0) ordered_quantity, " +
+            "coalesce(s.allocated_quantity, 0) allocated_quantity " +
+            "from item i left join item_stats s on s.item_id = i.id ";
+
+    private static final String ADD = "insert into item_stats " +
+            "(item_id, open_orders, open_quantity, ordered_quantity, allocated_quantity, updated_at) " +
+            "values (?, ?, ?, ?, ?, now()) on conflict (item_id) do update set " +
+            "open_orders = item_stats.open_orders + excluded.open_orders, " +
+            "open_quantity = item_stats.open_quantity + excluded.open_quantity, " +
+            "ordered_quantity = item_stats.ordered_quantity + excluded.ordered_quantity, " +
+            "allocated_quantity = item_stats.allocated_quantity + excluded.allocated_quantity, " +
+            "updated_at = excluded.updated_at";
+
+    private static final RowMapper<ItemStatsDTO> ROW = (rs, i) -> new ItemStatsDTO(rs.getLong("id"),
+            rs.getLong("open_orders"), rs.getLong("open_quantity"),
+            rs.getLong("ordered_quantity"), rs.getLong("allocated_quantity"));
+
+    private final JdbcTemplate jdbc;
+
+    public ItemStatsRepository(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    public Optional<ItemStatsDTO> findByItemId(Long itemId) {
+        return jdbc.query(SELECT + "where i.id = ?", ROW, itemId).stream().findFirst();
+    }
+
+    public List<ItemStatsDTO> findPageAfter(long afterItemId, int limit) {
+        return jdbc.query(SELECT + "where i.id > ? order by i.id limit ?", ROW, afterItemId, limit);
+    }
+
+    /**
+     * Adds each delta to its item's totals, creating missing rows, as one JDBC
+     * batch. Callers pass the deltas in ascending item id order so concurrent
+     * flushes lock the rows in the same order.
+     */
+    public void addAll(List<ItemStatsDTO> deltas) {
+        jdbc.batchUpdate(ADD, deltas, deltas.size(), (ps, delta) -> {
+            ps.setLong(1, delta.getItemId());
+            ps.setLong(2, delta.getOpenOrders());
+            ps.setLong(3, delta.getOpenQuantity());
+            ps.setLong(4, delta.getOrderedQuantity());
+            ps.setLong(5, delta.getAllocatedQuantity());
+        });
+    }
+}
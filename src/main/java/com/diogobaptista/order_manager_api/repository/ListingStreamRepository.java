@@ -0,0 +1,145 @@
+package com.diogobaptista.order_manager_api.repository;
+
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
+import com.diogobaptista.order_manager_api.dto.ItemResponseDTO;
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
+import com.diogobaptista.order_manager_api.dto.UserResponseDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Streams whole tables as response DTOs straight from a forward-only JDBC
+ * cursor. Rows are handed to the consumer as they are fetched, so nothing is
+ * hydrated into the persistence context and heap use does not grow with the
+ * table. The PostgreSQL driver only uses a server-side cursor inside a
+ * transaction, hence the read-only transactions.
+ *
+ * <p>Orders and stock movements can also be streamed for an
+ * {@link ExportFilter}; its date range and item are served by the
+ * {@code (creation_date, id)} and {@code item_id} indexes. Such an export
+ * runs for at most {@code listing.export.timeout-ms}: the server cancels any
+ * single fetch, and ends the session if the transaction sits idle while a
+ * slow client drains the rows, after that long, and the stream itself gives
+ * up on the first row read past the deadline. Either way the transaction is
+ * rolled back and its connection goes back to the pool.
+ */
+@Repository
+public class ListingStreamRepository {
+
+    private final JdbcTemplate jdbc;
+    private final long exportTimeoutMs;
+
+    public ListingStreamRepository(DataSource dataSource,
+                                   @Value("${listing.stream.fetch-size:500}") int fetchSize,
+                                   @Value("${listing.export.timeout-ms:300000}") long exportTimeoutMs) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(fetchSize);
+        this.exportTimeoutMs = exportTimeoutMs;
+    }
+
+    @Transactional(readOnly = true)
+    public void streamItems(Consumer<ItemResponseDTO> sink) {
+        jdbc.query("select id, name, stock_quantity, sku from item order by id", rs -> {
+            sink.accept(new ItemResponseDTO(rs.getLong("id"), rs.getString("name"), rs.getInt("stock_quantity"),
+                    rs.getString("sku")));
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public void streamUsers(Consumer<UserResponseDTO> sink) {
+        jdbc.query("select id, name, email from \"user\" order by id", rs -> {
+            sink.accept(new UserResponseDTO(rs.getLong("id"), rs.getString("name"), rs.getString("email")));
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public void streamOrders(Consumer<OrderResponseDTO> sink) {
+        queryOrders(new ExportFilter(null, null, null), sink);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamOrders(ExportFilter filter, Consumer<OrderResponseDTO> sink) {
+        queryOrders(filter, withinExportTimeout(sink));
+    }
+
+    @Transactional(readOnly = true)
+    public void streamStockMovements(Consumer<StockMovementResponseDTO> sink) {
+        queryStockMovements(new ExportFilter(null, null, null), sink);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamStockMovements(ExportFilter filter, Consumer<StockMovementResponseDTO> sink) {
+        queryStockMovements(filter, withinExportTimeout(sink));
+    }
+
+    /**
+     * Bounds the current transaction's statements and idle time by the export
+     * timeout, and wraps the sink so that it fails once the timeout has passed.
+     */
+    private <T> Consumer<T> withinExportTimeout(Consumer<T> sink) {
+        jdbc.execute("set local statement_timeout = " + exportTimeoutMs);
+        jdbc.execute("set local idle_in_transaction_session_timeout = " + exportTimeoutMs);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(exportTimeoutMs);
+        return row -> {
+            if (System.nanoTime() - deadline > 0) {
+                throw new QueryTimeoutException("Export did not finish within " + exportTimeoutMs + " ms");
+            }
+            sink.accept(row);
+        };
+    }
+
+    private void queryOrders(ExportFilter filter, Consumer<OrderResponseDTO> sink) {
+        List<Object> args = new ArrayList<>();
+        jdbc.query("select id, creation_date, quantity, fulfilled_quantity, item_id, user_id, basket_id " +
+                "from \"order\"" + where(filter, args) + " order by creation_date, id", rs -> {
+            OrderResponseDTO dto = new OrderResponseDTO();
+            dto.setId(rs.getLong("id"));
+            dto.setCreationDate(rs.getObject("creation_date", LocalDateTime.class));
+            dto.setQuantity(rs.getInt("quantity"));
+            dto.setFulfilledQuantity(rs.getInt("fulfilled_quantity"));
+            dto.setComplete(dto.getFulfilledQuantity() >= dto.getQuantity());
+            dto.setItemId(rs.getLong("item_id"));
+            dto.setUserId(rs.getLong("user_id"));
+            dto.setBasketId(rs.getObject("basket_id", Long.class));
+            sink.accept(dto);
+        }, args.toArray());
+    }
+
+    private void queryStockMovements(ExportFilter filter, Consumer<StockMovementResponseDTO> sink) {
+        List<Object> args = new ArrayList<>();
+        jdbc.query("select id, item_id, quantity, creation_date from stock_movement" + where(filter, args) +
+                " order by creation_date, id", rs -> {
+            sink.accept(new StockMovementResponseDTO(rs.getLong("id"), rs.getLong("item_id"), rs.getInt("quantity"),
+                    rs.getObject("creation_date", LocalDateTime.class)));
+        }, args.toArray());
+    }
+
+    /** The where clause for the filter's bounds, adding their values to {@code args}. */
+    private static String where(ExportFilter filter, List<Object> args) {
+        List<String> conditions = new ArrayList<>(3);
+        if (filter.getFrom() != null) {
+            conditions.add("creation_date >= ?");
+            args.add(filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            conditions.add("creation_date < ?");
+            args.add(filter.getTo());
+        }
+        if (filter.getItemId() != null) {
+            conditions.add("item_id = ?");
+            args.add(filter.getItemId());
+        }
+        return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+    }
+}
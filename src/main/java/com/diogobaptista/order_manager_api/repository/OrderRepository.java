@@ -1,8 +1,72 @@
 package com.diogobaptista.order_manager_api.repository;
 
+import com.diogobaptista.order_manager_api.dto.ItemBacklogDTO;
+import com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO;
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
 import com.diogobaptista.order_manager_api.entity.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface OrderRepository extends JpaRepository<Order, Long> { }
\ No newline at end of file
+public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    String RESPONSE_PROJECTION = "select new com.diogobaptista.order_manager_api.dto.OrderResponseDTO(" +
+            "o.id, o.quantity, o.fulfilledQuantity, o.item.id, o.user.id, o.creationDate, o.basketId) from Order o ";
+
+    @Query("select new com.diogobaptista.order_manager_api.dto.PendingOrder(" +
+            "o.id, o.user.id, o.creationDate, o.quantity - o.fulfilledQuantity) from Order o " +
+            "where o.item.id = :itemId and o.fulfilledQuantity < o.quantity")
+    List<PendingOrder> findPendingEntriesByItemId(@Param("itemId") Long itemId);
+
+    @Query("select o from Order o join fetch o.user where o.id in :ids")
+    List<Order> findWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.diogobaptista.order_manager_api.dto.ItemBacklogDTO(" +
+            "o.item.id, count(o), sum(o.quantity - o.fulfilledQuantity)) from Order o " +
+            "where o.fulfilledQuantity < o.quantity " +
+            "group by o.item.id order by sum(o.quantity - o.fulfilledQuantity) desc")
+    List<ItemBacklogDTO> findLargestBacklogs(Pageable pageable);
+
+    @Query("select o.item.id from Order o where o.id = :id")
+    Optional<Long> findItemIdById(@Param("id") Long id);
+
+    @Query("select o from Order o join fetch o.item join fetch o.user where o.id = :id")
+    Optional<Order> findWithItemAndUserById(@Param("id") Long id);
+
+    @Query("select o from Order o join fetch o.item join fetch o.user where o.id in :ids")
+    List<Order> findWithItemAndUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(RESPONSE_PROJECTION + "where o.id = :id")
+    Optional<OrderResponseDTO> findResponseById(@Param("id") Long id);
+
+    @Query("select new com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO(" +
+            "o.id, o.item.id, o.quantity, o.fulfilledQuantity) from Order o " +
+            "where o.basketId = :basketId order by o.id")
+    List<OrderLineResponseDTO> findLinesByBasketId(@Param("basketId") Long basketId);
+
+    /**
+     * Holds a lock on the multi-line order until the transaction ends, so
+     * that transactions filling its lines check whether it is complete one
+     * after the other. An advisory lock rather than a row lock, because the
+     * first line's row is also updated when that line is filled.
+     */
+    @Query(value = "select 1 from pg_advisory_xact_lock(:basketId)", nativeQuery = true)
+    int lockBasket(@Param("basketId") Long basketId);
+
+    @Query(RESPONSE_PROJECTION + "order by o.creationDate asc, o.id asc")
+    List<OrderResponseDTO> findFirstPage(Pageable pageable);
+
+    @Query(RESPONSE_PROJECTION +
+            "where o.creationDate > :creationDate or (o.creationDate = :creationDate and o.id > :id) " +
+            "order by o.creationDate asc, o.id asc")
+    List<OrderResponseDTO> findPageAfter(@Param("creationDate") LocalDateTime creationDate,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+}
@@ -0,0 +1,32 @@
+package com.diogobaptista.order_manager_api.repository;
+
+import com.diogobaptista.order_manager_api.entity.Reservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+
+    List<Reservation> findByStatus(Reservation.Status status);
+
+    /**
+     * Moves an active reservation to {@code status}. Only one of a concurrent
+     * expiry, release and consumption sees 1 and gets to touch the hold.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Reservation r set r.status = :status " +
+            "where r.id = :id and r.status = com.diogobaptista.order_manager_api.entity.Reservation$Status.ACTIVE")
+    int finish(@Param("id") Long id, @Param("status") Reservation.Status status);
+
+    @Transactional
+    @Modifying
+    @Query("update Reservation r set r.status = com.diogobaptista.order_manager_api.entity.Reservation$Status.CONSUMED, " +
+            "r.orderId = :orderId " +
+            "where r.id = :id and r.status = com.diogobaptista.order_manager_api.entity.Reservation$Status.ACTIVE")
+    int consume(@Param("id") Long id, @Param("orderId") Long orderId);
+}
@@ -1,8 +1,31 @@
 package com.diogobaptista.order_manager_api.repository;
 
+import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {}
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
 
+    String RESPONSE_PROJECTION = "select new com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO(" +
+            "s.id, s.item.id, s.quantity, s.creationDate) from StockMovement s ";
+
+    @Query(RESPONSE_PROJECTION + "where s.id = :id")
+    Optional<StockMovementResponseDTO> findResponseById(@Param("id") Long id);
+
+    @Query(RESPONSE_PROJECTION + "order by s.creationDate asc, s.id asc")
+    List<StockMovementResponseDTO> findFirstPage(Pageable pageable);
+
+    @Query(RESPONSE_PROJECTION +
+            "where s.creationDate > :creationDate or (s.creationDate = :creationDate and s.id > :id) " +
+            "order by s.creationDate asc, s.id asc")
+    List<StockMovementResponseDTO> findPageAfter(@Param("creationDate") LocalDateTime creationDate,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+}
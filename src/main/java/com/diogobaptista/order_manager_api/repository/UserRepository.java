@@ -1,8 +1,12 @@
 package com.diogobaptista.order_manager_api.repository;
 
 import com.diogobaptista.order_manager_api.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
-public interface UserRepository extends JpaRepository<User, Long> {}
+import java.util.List;
 
+public interface UserRepository extends JpaRepository<User, Long> {
 
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+}
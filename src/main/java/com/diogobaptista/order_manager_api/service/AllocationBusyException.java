@@ -0,0 +1,23 @@
+package com.diogobaptista.order_manager_api.service;
+
+/**
+ * A stock movement was not allocated within
+ * {@code stock-movements.wait-timeout-ms}. {@link #isWithdrawn()} tells
+ * whether it was taken out of its batch before being allocated; if not, it
+ * may still commit, and a retry should carry an idempotency key.
+ */
+public class AllocationBusyException extends RuntimeException {
+
+    private final boolean withdrawn;
+
+    public AllocationBusyException(boolean withdrawn, long waitTimeoutMs) {
+        super(withdrawn
+                ? "Stock movement not allocated within " + waitTimeoutMs + " ms, retry later"
+                : "Stock movement still being allocated after " + waitTimeoutMs + " ms, retry later");
+        this.withdrawn = withdrawn;
+    }
+
+    public boolean isWithdrawn() {
+        return withdrawn;
+    }
+}
@@ -0,0 +1,40 @@
+package com.diogobaptista.order_manager_api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts allocation requests by how much of the requested quantity could be
+ * taken from stock: all of it, some of it, or none.
+ */
+final class AllocationOutcomes {
+
+    private static final String NAME = "allocation.outcomes";
+
+    private final Counter full;
+    private final Counter partial;
+    private final Counter none;
+
+    AllocationOutcomes(MeterRegistry registry, String source) {
+        this.full = counter(registry, source, "full");
+        this.partial = counter(registry, source, "partial");
+        this.none = counter(registry, source, "none");
+    }
+
+    void record(int requested, int allocated) {
+        if (allocated <= 0) {
+            none.increment();
+        } else if (allocated < requested) {
+            partial.increment();
+        } else {
+            full.increment();
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String source, String outcome) {
+        return Counter.builder(NAME)
+                .tag("source", source)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,55 @@
+package com.diogobaptista.order_manager_api.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the {@link AllocationStrategy} of each item: the one named in
+ * {@code allocation.strategy.items} ({@code itemId=name} pairs, e.g.
+ * {@code 7=smallest-remaining,9=user-priority}) or else
+ * {@code allocation.strategy.default}. Unknown names fail at startup.
+ */
+@Component
+public class AllocationStrategies {
+
+    private final AllocationStrategy defaultStrategy;
+    private final Map<Long, AllocationStrategy> byItem = new HashMap<>();
+
+    public AllocationStrategies(List<AllocationStrategy> strategies,
+                                @Value("${allocation.strategy.default:fifo}") String defaultName,
+                                @Value("${allocation.strategy.items:}") String perItem) {
+        Map<String, AllocationStrategy> byName = new HashMap<>();
+        for (AllocationStrategy strategy : strategies) {
+            if (byName.put(strategy.getName(), strategy) != null) {
+                throw new IllegalStateException("Two allocation strategies named " + strategy.getName());
+            }
+        }
+
+        this.defaultStrategy = lookup(byName, defaultName.trim());
+        if (!perItem.isBlank()) {
+            for (String pair : perItem.split(",")) {
+                String[] parts = pair.trim().split("=");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Expected itemId=strategy but got '" + pair + "'");
+                }
+                byItem.put(Long.valueOf(parts[0].trim()), lookup(byName, parts[1].trim()));
+            }
+        }
+    }
+
+    public AllocationStrategy forItem(Long itemId) {
+        return byItem.getOrDefault(itemId, defaultStrategy);
+    }
+
+    private static AllocationStrategy lookup(Map<String, AllocationStrategy> byName, String name) {
+        AllocationStrategy strategy = byName.get(name);
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown allocation strategy '" + name + "', known: " + byName.keySet());
+        }
+        return strategy;
+    }
+}
@@ -0,0 +1,23 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+
+import java.util.Comparator;
+
+/**
+ * Decides which open orders of an item are filled first when stock arrives.
+ * Implementations are Spring beans, picked per item by {@link #getName()}
+ * through the {@code allocation.strategy.*} properties; see
+ * {@link AllocationStrategies}.
+ */
+public interface AllocationStrategy {
+
+    /** The name the strategy is selected by in configuration. */
+    String getName();
+
+    /**
+     * The fill order of open orders, first to fill first. Ties are broken by
+     * order id, so the comparator does not need to be total.
+     */
+    Comparator<PendingOrder> comparator();
+}
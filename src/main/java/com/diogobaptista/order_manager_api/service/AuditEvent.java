@@ -0,0 +1,419 @@
+package com.diogobaptista.order_manager_api.service;
+
+import org.slf4j.event.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One line of the audit log, kept as raw fields until the {@link FileLogService}
+ * writer thread formats it. Producers only capture ids, quantities and references
+ * to strings they already hold.
+ */
+public final class AuditEvent {
+
+    public enum Type {
+        MESSAGE(Level.INFO, "{text}"),
+
+        ORDER_ITEM_NOT_FOUND(Level.WARN, "Order failed: Item not found with id={item}"),
+        ORDER_USER_NOT_FOUND(Level.WARN, "Order failed: User not found with id={user}"),
+        ORDER_CREATED(Level.INFO, "Created Order [ID: {order}, User: {text}, Item: {detail}, Qty: {n1}]"),
+        ORDER_NO_STOCK(Level.WARN, "Order {order} created with no stock available [Item: {item}, Requested: {n1}]"),
+        ORDER_MOVEMENT_CREATED(Level.INFO, "StockMovement {movement} created on order creation [Item: {item}, Qty: {n1}]"),
+        ORDER_FULLY_ALLOCATED(Level.INFO, "Order {order} fully allocated on creation [Qty: {n1}]"),
+        ORDER_PARTIALLY_ALLOCATED(Level.INFO, "Order {order} partially allocated on creation [Requested: {n1}, Allocated: {n2}, Remaining: {n3}]"),
+        ORDER_ALLOCATED(Level.INFO, "Allocated {n1} of StockMovement {movement} to Order {order}"),
+        ORDER_COMPLETED(Level.INFO, "Order {order} COMPLETED"),
+        ORDER_BASKET_CREATED(Level.INFO, "Created multi-line Order {order} [User: {text}, Lines: {n1}, Qty: {n2}, Allocated: {n3}]"),
+        ORDER_BASKET_COMPLETED(Level.INFO, "Multi-line Order {order} COMPLETED [Lines: {n1}, Qty: {n2}]"),
+
+        MOVEMENT_ALLOCATED(Level.INFO, "StockMovement {movement} allocated to Order {order} [Qty: {n1}]"),
+        MOVEMENT_ORDER_COMPLETED(Level.WARN, "Order {order} already completed"),
+        MOVEMENT_INVALID_QUANTITY(Level.WARN, "Invalid StockMovement request for Order {order} - Requested: {n1}, Remaining: {n2}"),
+        MOVEMENT_NO_STOCK(Level.WARN, "No stock available for Item {item}"),
+
+        BACKORDERS_ALLOCATED(Level.INFO, "Backorders allocated for Item {item} [Orders: {n1}, Qty: {n2}]"),
+        BATCH_MALFORMED(Level.WARN, "Order batch stopped at line {n1}: malformed JSON"),
+        BATCH_INGESTED(Level.INFO, "Order batch ingested [Lines: {n1}, Created: {n2}, Partial: {n3}, Rejected: {n4}]"),
+
+        ITEM_NAME_BLANK(Level.WARN, "Attempted to create item with empty name"),
+        ITEM_CREATED(Level.INFO, "Created Item [ID: {item}, Name: {text}]"),
+        ITEM_UPDATED(Level.INFO, "Updated Item [ID: {item}]"),
+        ITEM_RECEIPT_INVALID(Level.WARN, "Invalid stock receipt for Item {item} [Qty: {n1}]"),
+        ITEM_STOCK_RECEIVED(Level.INFO, "Received stock for Item {item} [Qty: {n1}]"),
+        ITEM_DELETED(Level.INFO, "Deleted Item [ID: {item}]"),
+        ITEM_DELETE_NOT_FOUND(Level.WARN, "Fail deleting Item [ID: {item}] not found"),
+        ITEMS_IMPORTED(Level.INFO, "Items imported [Lines: {n1}, Inserted: {n2}, Updated: {n3}, Rejected: {n4}]"),
+
+        RESERVATION_CREATED(Level.INFO, "Reservation {reservation} holds {n1} of Item {item} for {n2}s"),
+        RESERVATION_CONSUMED(Level.INFO, "Reservation {reservation} consumed by Order {order} [Qty: {n1}, Released: {n2}]"),
+        RESERVATION_RELEASED(Level.INFO, "Reservation {reservation} {detail} [Item: {item}, Qty: {n1}]"),
+
+        USER_CREATE_INVALID_EMAIL(Level.WARN, "Fail on Create user - Invalid email: {text}"),
+        USER_CREATED(Level.INFO, "Created User [ID: {user}, Email: {text}]"),
+        USER_UPDATE_INVALID_EMAIL(Level.WARN, "Fail on Update user {user} - Invalid email: {text}"),
+        USER_UPDATED(Level.INFO, "Update User [ID: {user}]"),
+        USER_DELETED(Level.INFO, "Deleted User [ID: {user}, Email: {text}]"),
+        USER_DELETE_NOT_FOUND(Level.WARN, "Fail on Delete User [ID: {user}] not found"),
+
+        EMAIL_QUEUED(Level.INFO, "Email queued to {text} for order {order}"),
+        EMAIL_SENT(Level.INFO, "Email sent to {text} for order {order}"),
+        EMAIL_RETRYING(Level.ERROR, "Email to {text} for order {order} failed (attempt {n1}), retrying: {detail}"),
+        EMAIL_FAILED(Level.ERROR, "FAILED to send email to {text} for order {order} after {n1} attempts: {detail}");
+
+        private final Level level;
+        private final String[] literals;
+        private final Field[] fields;
+
+        Type(Level level, String template) {
+            this.level = level;
+            List<String> literals = new ArrayList<>();
+            List<Field> fields = new ArrayList<>();
+            int from = 0;
+            int open;
+            while ((open = template.indexOf('{', from)) >= 0) {
+                int close = template.indexOf('}', open);
+                literals.add(template.substring(from, open));
+                fields.add(Field.valueOf(template.substring(open + 1, close).toUpperCase()));
+                from = close + 1;
+            }
+            literals.add(template.substring(from));
+            this.literals = literals.toArray(new String[0]);
+            this.fields = fields.toArray(new Field[0]);
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+    }
+
+    private enum Field { ORDER, ITEM, USER, MOVEMENT, RESERVATION, N1, N2, N3, N4, TEXT, DETAIL }
+
+    /** Stored in place of an id that was not assigned yet. */
+    public static final long NO_ID = Long.MIN_VALUE;
+
+    private final Type type;
+    private final long timestamp;
+    private long orderId = NO_ID;
+    private long itemId = NO_ID;
+    private long userId = NO_ID;
+    private long movementId = NO_ID;
+    private long reservationId = NO_ID;
+    private int n1;
+    private int n2;
+    private int n3;
+    private int n4;
+    private String text;
+    private String detail;
+
+    private AuditEvent(Type type) {
+        this.type = type;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static AuditEvent message(String text) {
+        return of(Type.MESSAGE).text(text);
+    }
+
+    public static AuditEvent orderItemNotFound(Long itemId) {
+        return of(Type.ORDER_ITEM_NOT_FOUND).item(itemId);
+    }
+
+    public static AuditEvent orderUserNotFound(Long userId) {
+        return of(Type.ORDER_USER_NOT_FOUND).user(userId);
+    }
+
+    public static AuditEvent orderCreated(Long orderId, String userEmail, String itemName, int quantity) {
+        return of(Type.ORDER_CREATED).order(orderId).text(userEmail).detail(itemName).n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent orderNoStock(Long orderId, Long itemId, int requested) {
+        return of(Type.ORDER_NO_STOCK).order(orderId).item(itemId).n(requested, 0, 0, 0);
+    }
+
+    public static AuditEvent orderMovementCreated(Long movementId, Long itemId, int quantity) {
+        return of(Type.ORDER_MOVEMENT_CREATED).movement(movementId).item(itemId).n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent orderFullyAllocated(Long orderId, int quantity) {
+        return of(Type.ORDER_FULLY_ALLOCATED).order(orderId).n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent orderPartiallyAllocated(Long orderId, int requested, int allocated) {
+        return of(Type.ORDER_PARTIALLY_ALLOCATED).order(orderId).n(requested, allocated, requested - allocated, 0);
+    }
+
+    public static AuditEvent orderAllocated(Long orderId, Long movementId, int quantity) {
+        return of(Type.ORDER_ALLOCATED).order(orderId).movement(movementId).n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent orderCompleted(Long orderId) {
+        return of(Type.ORDER_COMPLETED).order(orderId);
+    }
+
+    public static AuditEvent basketCreated(Long basketId, String userEmail, int lines, int quantity, int allocated) {
+        return of(Type.ORDER_BASKET_CREATED).order(basketId).text(userEmail).n(lines, quantity, allocated, 0);
+    }
+
+    public static AuditEvent basketCompleted(Long basketId, int lines, int quantity) {
+        return of(Type.ORDER_BASKET_COMPLETED).order(basketId).n(lines, quantity, 0, 0);
+    }
+
+    public static AuditEvent movementAllocated(Long movementId, Long orderId, int quantity) {
+        return of(Type.MOVEMENT_ALLOCATED).movement(movementId).order(orderId).n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent movementOrderCompleted(Long orderId) {
+        return of(Type.MOVEMENT_ORDER_COMPLETED).order(orderId);
+    }
+
+    public static AuditEvent movementInvalidQuantity(Long orderId, int requested, int remaining) {
+        return of(Type.MOVEMENT_INVALID_QUANTITY).order(orderId).n(requested, remaining, 0, 0);
+    }
+
+    public static AuditEvent movementNoStock(Long itemId) {
+        return of(Type.MOVEMENT_NO_STOCK).item(itemId);
+    }
+
+    public static AuditEvent backordersAllocated(Long itemId, int orders, int quantity) {
+        return of(Type.BACKORDERS_ALLOCATED).item(itemId).n(orders, quantity, 0, 0);
+    }
+
+    public static AuditEvent batchMalformed(int line) {
+        return of(Type.BATCH_MALFORMED).n(line, 0, 0, 0);
+    }
+
+    public static AuditEvent batchIngested(int lines, int created, int partial, int rejected) {
+        return of(Type.BATCH_INGESTED).n(lines, created, partial, rejected);
+    }
+
+    public static AuditEvent itemNameBlank() {
+        return of(Type.ITEM_NAME_BLANK);
+    }
+
+    public static AuditEvent itemCreated(Long itemId, String name) {
+        return of(Type.ITEM_CREATED).item(itemId).text(name);
+    }
+
+    public static AuditEvent itemUpdated(Long itemId) {
+        return of(Type.ITEM_UPDATED).item(itemId);
+    }
+
+    public static AuditEvent itemReceiptInvalid(Long itemId, int quantity) {
+        return of(Type.ITEM_RECEIPT_INVALID).item(itemId).n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent itemStockReceived(Long itemId, int quantity) {
+        return of(Type.ITEM_STOCK_RECEIVED).item(itemId).n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent itemDeleted(Long itemId) {
+        return of(Type.ITEM_DELETED).item(itemId);
+    }
+
+    public static AuditEvent itemDeleteNotFound(Long itemId) {
+        return of(Type.ITEM_DELETE_NOT_FOUND).item(itemId);
+    }
+
+    public static AuditEvent itemsImported(int lines, int inserted, int updated, int rejected) {
+        return of(Type.ITEMS_IMPORTED).n(lines, inserted, updated, rejected);
+    }
+
+    public static AuditEvent reservationCreated(Long reservationId, Long itemId, int quantity, long ttlSeconds) {
+        return of(Type.RESERVATION_CREATED).reservation(reservationId).item(itemId)
+                .n(quantity, (int) Math.min(ttlSeconds, Integer.MAX_VALUE), 0, 0);
+    }
+
+    public static AuditEvent reservationConsumed(Long reservationId, Long orderId, int quantity, int released) {
+        return of(Type.RESERVATION_CONSUMED).reservation(reservationId).order(orderId)
+                .n(quantity, released, 0, 0);
+    }
+
+    /** {@code how} is "expired" or "released". */
+    public static AuditEvent reservationReleased(Long reservationId, Long itemId, int quantity, String how) {
+        return of(Type.RESERVATION_RELEASED).reservation(reservationId).detail(how).item(itemId)
+                .n(quantity, 0, 0, 0);
+    }
+
+    public static AuditEvent userCreateInvalidEmail(String email) {
+        return of(Type.USER_CREATE_INVALID_EMAIL).text(email);
+    }
+
+    public static AuditEvent userCreated(Long userId, String email) {
+        return of(Type.USER_CREATED).user(userId).text(email);
+    }
+
+    public static AuditEvent userUpdateInvalidEmail(Long userId, String email) {
+        return of(Type.USER_UPDATE_INVALID_EMAIL).user(userId).text(email);
+    }
+
+    public static AuditEvent userUpdated(Long userId) {
+        return of(Type.USER_UPDATED).user(userId);
+    }
+
+    public static AuditEvent userDeleted(Long userId, String email) {
+        return of(Type.USER_DELETED).user(userId).text(email);
+    }
+
+    public static AuditEvent userDeleteNotFound(Long userId) {
+        return of(Type.USER_DELETE_NOT_FOUND).user(userId);
+    }
+
+    public static AuditEvent emailQueued(Long orderId, String recipient) {
+        return of(Type.EMAIL_QUEUED).order(orderId).text(recipient);
+    }
+
+    public static AuditEvent emailSent(Long orderId, String recipient) {
+        return of(Type.EMAIL_SENT).order(orderId).text(recipient);
+    }
+
+    public static AuditEvent emailRetrying(Long orderId, String recipient, int attempts, String error) {
+        return of(Type.EMAIL_RETRYING).order(orderId).text(recipient).detail(error).n(attempts, 0, 0, 0);
+    }
+
+    public static AuditEvent emailFailed(Long orderId, String recipient, int attempts, String error) {
+        return of(Type.EMAIL_FAILED).order(orderId).text(recipient).detail(error).n(attempts, 0, 0, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public long getItemId() {
+        return itemId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getMovementId() {
+        return movementId;
+    }
+
+    public long getReservationId() {
+        return reservationId;
+    }
+
+    public int getN1() {
+        return n1;
+    }
+
+    public int getN2() {
+        return n2;
+    }
+
+    public int getN3() {
+        return n3;
+    }
+
+    public int getN4() {
+        return n4;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Appends the human-readable form of this event, the same text the services
+     * used to build with {@code String.format}.
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        String[] literals = type.literals;
+        Field[] fields = type.fields;
+        for (int i = 0; i < fields.length; i++) {
+            out.append(literals[i]);
+            appendField(out, fields[i]);
+        }
+        return out.append(literals[fields.length]);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(64)).toString();
+    }
+
+    private void appendField(StringBuilder out, Field field) {
+        switch (field) {
+            case ORDER: appendId(out, orderId); break;
+            case ITEM: appendId(out, itemId); break;
+            case USER: appendId(out, userId); break;
+            case MOVEMENT: appendId(out, movementId); break;
+            case RESERVATION: appendId(out, reservationId); break;
+            case N1: out.append(n1); break;
+            case N2: out.append(n2); break;
+            case N3: out.append(n3); break;
+            case N4: out.append(n4); break;
+            case TEXT: out.append(text); break;
+            case DETAIL: out.append(detail); break;
+        }
+    }
+
+    private static void appendId(StringBuilder out, long id) {
+        if (id == NO_ID) {
+            out.append("null");
+        } else {
+            out.append(id);
+        }
+    }
+
+    private static AuditEvent of(Type type) {
+        return new AuditEvent(type);
+    }
+
+    private AuditEvent order(Long id) {
+        this.orderId = id != null ? id : NO_ID;
+        return this;
+    }
+
+    private AuditEvent item(Long id) {
+        this.itemId = id != null ? id : NO_ID;
+        return this;
+    }
+
+    private AuditEvent user(Long id) {
+        this.userId = id != null ? id : NO_ID;
+        return this;
+    }
+
+    private AuditEvent movement(Long id) {
+        this.movementId = id != null ? id : NO_ID;
+        return this;
+    }
+
+    private AuditEvent reservation(Long id) {
+        this.reservationId = id != null ? id : NO_ID;
+        return this;
+    }
+
+    private AuditEvent n(int n1, int n2, int n3, int n4) {
+        this.n1 = n1;
+        this.n2 = n2;
+        this.n3 = n3;
+        this.n4 = n4;
+        return this;
+    }
+
+    private AuditEvent text(String text) {
+        this.text = text;
+        return this;
+    }
+
+    private AuditEvent detail(String detail) {
+        this.detail = detail;
+        return this;
+    }
+}
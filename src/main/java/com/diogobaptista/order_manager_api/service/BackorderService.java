@@ -0,0 +1,194 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+public class BackorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackorderService.class);
+
+    private final OrderRepository orderRepository;
+    private final StockMovementRepository stockRepo;
+    private final ItemRepository itemRepository;
+    private final OrderAllocationService allocator;
+    private final PendingOrderIndex pendingOrders;
+    private final FileLogService fileLogService;
+    private final ItemLaneExecutor lanes;
+    private final TransactionOperations transactions;
+    private final int batchSize;
+
+    public BackorderService(OrderRepository orderRepository,
+                            StockMovementRepository stockRepo,
+                            ItemRepository itemRepository,
+                            OrderAllocationService allocator,
+                            PendingOrderIndex pendingOrders,
+                            FileLogService fileLogService,
+                            ItemLaneExecutor lanes,
+                            TransactionOperations transactions,
+                            @Value("${backorder.batch-size:100}") int batchSize) {
+        this.orderRepository = orderRepository;
+        this.stockRepo = stockRepo;
+        this.itemRepository = itemRepository;
+        this.allocator = allocator;
+        this.pendingOrders = pendingOrders;
+        this.fileLogService = fileLogService;
+        this.lanes = lanes;
+        this.transactions = transactions;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Drains the open orders of the given item, in the order of the item's
+     * {@link AllocationStrategy}, until either the item runs out of stock or
+     * there is nothing left to fill. Runs on the item's allocation lane, one
+     * transaction per batch, and stock for each batch is taken with a single
+     * atomic decrement. Takes the id rather than an {@code Item}, since the
+     * stock and the orders are read here anyway.
+     *
+     * @return the quantity allocated to backorders
+     */
+    public int allocateBackorders(Long itemId) {
+        return lanes.call(itemId, () -> drain(itemId));
+    }
+
+    /**
+     * Queues the same drain on the item's lane and returns without waiting
+     * for it, for callers that must not block on allocation. Called from the
+     * item's own lane, the drain runs after the current task instead of
+     * inside it. A drain that cannot be queued or fails is logged.
+     */
+    public CompletableFuture<Integer> offerBackorders(Long itemId) {
+        CompletableFuture<Integer> drained;
+        try {
+            drained = lanes.submitQueued(itemId, () -> drain(itemId));
+        } catch (RejectedExecutionException e) {
+            drained = CompletableFuture.failedFuture(e);
+        }
+        return drained.whenComplete((allocated, e) -> {
+            if (e != null) {
+                log.warn("Could not allocate backorders of item {}", itemId, e);
+            }
+        });
+    }
+
+    private int drain(Long itemId) {
+        int allocatedTotal = 0;
+        int ordersTouched = 0;
+
+        while (true) {
+            BatchResult batch = transactions.execute(status -> allocateBatch(itemId));
+            if (batch == null || batch.allocated == 0) {
+                break;
+            }
+            allocatedTotal += batch.allocated;
+            ordersTouched += batch.orders;
+            if (!batch.more) {
+                break;
+            }
+        }
+
+        if (allocatedTotal > 0) {
+            fileLogService.append(AuditEvent.backordersAllocated(itemId, ordersTouched, allocatedTotal));
+        }
+
+        return allocatedTotal;
+    }
+
+    private BatchResult allocateBatch(Long itemId) {
+        List<PendingOrder> next;
+        List<Order> pending;
+        do {
+            next = pendingOrders.head(itemId, batchSize);
+            if (next.isEmpty()) {
+                return BatchResult.EMPTY;
+            }
+            pending = openOrders(itemId, next);
+        } while (pending.isEmpty());
+
+        int demand = pending.stream()
+                .mapToInt(order -> order.getQuantity() - order.getFulfilledQuantity())
+                .sum();
+        int taken = itemRepository.takeStock(itemId, demand);
+        if (taken <= 0) {
+            return BatchResult.EMPTY;
+        }
+
+        int available = taken;
+        int orders = 0;
+        for (Order order : pending) {
+            if (available <= 0) {
+                break;
+            }
+
+            int allocQty = Math.min(order.getQuantity() - order.getFulfilledQuantity(), available);
+
+            StockMovement stockMovement = new StockMovement();
+            stockMovement.setItem(order.getItem());
+            stockMovement.setQuantity(allocQty);
+            stockMovement.setCreationDate(LocalDateTime.now());
+
+            StockMovement savedMovement = stockRepo.save(stockMovement);
+            available -= allocQty;
+            orders++;
+
+            allocator.fulfillOrderWithStockMovement(order, savedMovement);
+        }
+
+        return new BatchResult(taken, orders, taken == demand && next.size() == batchSize);
+    }
+
+    /**
+     * Reads the orders behind the index entries, in the entries' order, and
+     * drops entries whose order is gone or already filled.
+     */
+    private List<Order> openOrders(Long itemId, List<PendingOrder> entries) {
+        List<Long> ids = new ArrayList<>(entries.size());
+        entries.forEach(entry -> ids.add(entry.getOrderId()));
+        Map<Long, Order> byId = new HashMap<>();
+        orderRepository.findWithUserByIdIn(ids).forEach(order -> byId.put(order.getId(), order));
+
+        List<Order> open = new ArrayList<>(entries.size());
+        for (Long id : ids) {
+            Order order = byId.get(id);
+            if (order == null || order.isComplete()) {
+                pendingOrders.remove(itemId, id);
+            } else {
+                open.add(order);
+            }
+        }
+        return open;
+    }
+
+    private static final class BatchResult {
+
+        static final BatchResult EMPTY = new BatchResult(0, 0, false);
+
+        final int allocated;
+        final int orders;
+        final boolean more;
+
+        BatchResult(int allocated, int orders, boolean more) {
+            this.allocated = allocated;
+            this.orders = orders;
+            this.more = more;
+        }
+    }
+}
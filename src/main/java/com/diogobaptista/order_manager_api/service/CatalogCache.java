@@ -0,0 +1,145 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache of the parts of items and users that only change through
+ * {@link ItemService} and {@link UserService}: item names and user names and
+ * emails. Entries are bounded by size and expire after a TTL, and the services
+ * evict them when they update or delete the row.
+ *
+ * <p>Stock is never cached. The {@link Item} returned by {@link #item(Long)} is
+ * a detached reference without a stock quantity, good for associating an
+ * order or movement with the item and for logging its name; stock is always
+ * read and changed through {@link ItemRepository}.
+ *
+ * <p>Hit, miss, load and eviction counts are published as {@code cache.*}
+ * meters tagged {@code cache=catalog.items} and {@code cache=catalog.users}.
+ */
+@Component
+public class CatalogCache implements MeterBinder {
+
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final Cache<Long, CachedItem> items;
+    private final Cache<Long, CachedUser> users;
+
+    public CatalogCache(ItemRepository itemRepository,
+                        UserRepository userRepository,
+                        @Value("${catalog.cache.max-size:10000}") long maxSize,
+                        @Value("${catalog.cache.ttl-ms:600000}") long ttlMs) {
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.items = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Item> item(Long id) {
+        CachedItem cached = items.get(id, key -> itemRepository.findById(key).map(CachedItem::new).orElse(null));
+        return Optional.ofNullable(cached).map(CachedItem::toReference);
+    }
+
+    /**
+     * The items among {@code ids} that exist, loading the ones not cached yet
+     * with a single query.
+     */
+    public Map<Long, Item> items(Collection<Long> ids) {
+        Map<Long, CachedItem> cached = items.getAll(ids, missing -> {
+            Map<Long, CachedItem> loaded = new LinkedHashMap<>();
+            for (Item item : itemRepository.findAllById(new ArrayList<>(missing))) {
+                loaded.put(item.getId(), new CachedItem(item));
+            }
+            return loaded;
+        });
+        Map<Long, Item> references = new LinkedHashMap<>();
+        cached.forEach((id, item) -> references.put(id, item.toReference()));
+        return references;
+    }
+
+    public Optional<User> user(Long id) {
+        CachedUser cached = users.get(id, key -> userRepository.findById(key).map(CachedUser::new).orElse(null));
+        return Optional.ofNullable(cached).map(CachedUser::toEntity);
+    }
+
+    public void evictItem(Long id) {
+        items.invalidate(id);
+    }
+
+    public void evictAllItems() {
+        items.invalidateAll();
+    }
+
+    public void evictUser(Long id) {
+        users.invalidate(id);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, items, "catalog.items");
+        CaffeineCacheMetrics.monitor(registry, users, "catalog.users");
+    }
+
+    private static final class CachedItem {
+
+        private final Long id;
+        private final String name;
+
+        CachedItem(Item item) {
+            this.id = item.getId();
+            this.name = item.getName();
+        }
+
+        Item toReference() {
+            Item item = new Item();
+            item.setId(id);
+            item.setName(name);
+            return item;
+        }
+    }
+
+    private static final class CachedUser {
+
+        private final Long id;
+        private final String name;
+        private final String email;
+
+        CachedUser(User user) {
+            this.id = user.getId();
+            this.name = user.getName();
+            this.email = user.getEmail();
+        }
+
+        User toEntity() {
+            User user = new User();
+            user.setId(id);
+            user.setName(name);
+            user.setEmail(email);
+            return user;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.entity.EmailOutbox;
+import com.diogobaptista.order_manager_api.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivers queued emails in the background. Each run claims a batch of due
+ * rows with {@code FOR UPDATE SKIP LOCKED}, sends the whole batch over a
+ * single SMTP connection and records the outcome per row in the same
+ * transaction. Failed rows are retried with exponential backoff until they
+ * run out of attempts.
+ */
+@Component
+public class EmailOutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepository repository;
+    private final JavaMailSender mailSender;
+    private final FileLogService fileLogService;
+    private final TransactionOperations transactions;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Timer sendTimer;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository repository,
+                                 JavaMailSender mailSender,
+                                 FileLogService fileLogService,
+                                 TransactionOperations transactions,
+                                 @Value("${email.outbox.batch-size:50}") int batchSize,
+                                 @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${email.outbox.initial-backoff-ms:30000}") long initialBackoffMs,
+                                 @Value("${email.outbox.max-backoff-ms:3600000}") long maxBackoffMs,
+                                 MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.mailSender = mailSender;
+        this.fileLogService = fileLogService;
+        this.transactions = transactions;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.sendTimer = Timer.builder("email.send")
+                .description("SMTP delivery of one outbox batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sent = deliveries(meterRegistry, "sent");
+        this.retried = deliveries(meterRegistry, "retrying");
+        this.failed = deliveries(meterRegistry, "failed");
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        int sent;
+        do {
+            sent = dispatchBatch();
+        } while (sent == batchSize);
+    }
+
+    /**
+     * Sends one batch of due emails.
+     *
+     * @return how many rows were claimed
+     */
+    public int dispatchBatch() {
+        Integer claimed = transactions.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutbox> batch = repository.claimDue(now, batchSize);
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            SimpleMailMessage[] messages = new SimpleMailMessage[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                messages[i] = toMessage(batch.get(i));
+            }
+
+            Map<Object, Exception> failures = sendTimer.record(() -> send(messages));
+            for (int i = 0; i < batch.size(); i++) {
+                Exception failure = failures.get(messages[i]);
+                if (failure == null) {
+                    markSent(batch.get(i), now);
+                } else {
+                    markFailed(batch.get(i), failure, now);
+                }
+            }
+            return batch.size();
+        });
+        return claimed == null ? 0 : claimed;
+    }
+
+    private Map<Object, Exception> send(SimpleMailMessage[] messages) {
+        try {
+            mailSender.send(messages);
+            return Collections.emptyMap();
+        } catch (MailSendException e) {
+            if (!e.getFailedMessages().isEmpty()) {
+                return e.getFailedMessages();
+            }
+            return failAll(messages, e);
+        } catch (MailException e) {
+            // Connection or authentication failure: nothing in the batch went out.
+            return failAll(messages, e);
+        }
+    }
+
+    private static Map<Object, Exception> failAll(SimpleMailMessage[] messages, Exception failure) {
+        Map<Object, Exception> failures = new HashMap<>();
+        for (SimpleMailMessage message : messages) {
+            failures.put(message, failure);
+        }
+        return failures;
+    }
+
+    private void markSent(EmailOutbox email, LocalDateTime now) {
+        email.setStatus(EmailOutbox.Status.SENT);
+        email.setSentAt(now);
+        email.setAttempts(email.getAttempts() + 1);
+        email.setLastError(null);
+        sent.increment();
+        fileLogService.append(AuditEvent.emailSent(email.getOrderId(), email.getRecipient()));
+    }
+
+    private void markFailed(EmailOutbox email, Exception failure, LocalDateTime now) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        email.setLastError(truncate(failure.getMessage()));
+
+        if (attempts >= maxAttempts) {
+            email.setStatus(EmailOutbox.Status.FAILED);
+            failed.increment();
+            fileLogService.append(AuditEvent.emailFailed(email.getOrderId(), email.getRecipient(), attempts, failure.getMessage()));
+            return;
+        }
+
+        email.setNextAttemptAt(now.plus(backoffMs(attempts), ChronoUnit.MILLIS));
+        retried.increment();
+        fileLogService.append(AuditEvent.emailRetrying(email.getOrderId(), email.getRecipient(), attempts, failure.getMessage()));
+    }
+
+    long backoffMs(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        return Math.min(maxBackoffMs, initialBackoffMs << shift);
+    }
+
+    private static Counter deliveries(MeterRegistry registry, String outcome) {
+        return Counter.builder("email.deliveries")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static SimpleMailMessage toMessage(EmailOutbox email) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(email.getRecipient());
+        message.setSubject(email.getSubject());
+        message.setText(email.getBody());
+        return message;
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
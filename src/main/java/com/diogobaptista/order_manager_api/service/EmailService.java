@@ -1,55 +1,64 @@
 package com.diogobaptista.order_manager_api.service;
 
+import com.diogobaptista.order_manager_api.entity.EmailOutbox;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.User;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import com.diogobaptista.order_manager_api.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+
+/**
+ * Queues customer emails in the outbox. Callers run inside the transaction
+ * that changed the order, so the email is committed (or rolled back) together
+ * with it; {@link EmailOutboxDispatcher} does the actual SMTP delivery.
+ */
 @Service
 public class EmailService {
 
-    private static final Logger log = LoggerFactory.getLogger(EmailService.class);
-    private final JavaMailSender mailSender;
+    private final EmailOutboxRepository outboxRepository;
     private final FileLogService fileLogService;
+    private final Timer enqueueTimer;
 
-    public EmailService(JavaMailSender mailSender, FileLogService fileLogService) {
-        this.mailSender = mailSender;
+    public EmailService(EmailOutboxRepository outboxRepository, FileLogService fileLogService, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
         this.fileLogService = fileLogService;
+        this.enqueueTimer = Timer.builder("email.enqueue")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
-    private void logAndWrite(String message, boolean isError) {
-        if (isError) {
-            log.error(message);
-        } else {
-            log.info(message);
-        }
-        fileLogService.appendLine(message);
+    public EmailOutbox enqueueOrderCompleted(User user, Order order) {
+        return enqueueTimer.record(() -> enqueue(user, order.getId(),
+                "Quantity: " + order.getQuantity() + "\n" +
+                "Fulfilled: " + order.getFulfilledQuantity() + "\n"));
     }
-    public void sendOrderCompleted(User user, Order order) {
-        try {
-            SimpleMailMessage message = getSimpleMailMessage(user, order);
-
-            mailSender.send(message);
 
-            log.info("Email sent to {} for order {}", user.getEmail(), order.getId());
-            logAndWrite(String.format("Email sent to %s for order %d", user.getEmail(), order.getId()), false);
-        } catch (Exception e) {
-            logAndWrite(String.format("FAILED to send email to %s for order %d: %s",
-                    user.getEmail(), order.getId(), e.getMessage()), true);        }
+    /** The one email of a multi-line order, sent once all of its lines are filled. */
+    public EmailOutbox enqueueBasketCompleted(User user, Long basketId, int lines, int quantity) {
+        return enqueueTimer.record(() -> enqueue(user, basketId,
+                "Lines: " + lines + "\n" +
+                "Quantity: " + quantity + "\n" +
+                "Fulfilled: " + quantity + "\n"));
     }
 
-    private static SimpleMailMessage getSimpleMailMessage(User user, Order order) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(user.getEmail());
-        message.setSubject("Order Completed: #" + order.getId());
-        message.setText("Hello " + user.getName() + ",\n\n" +
-                "Your order #" + order.getId() + " has been completed.\n" +
-                "Quantity: " + order.getQuantity() + "\n" +
-                "Fulfilled: " + order.getFulfilledQuantity() + "\n\n" +
+    private EmailOutbox enqueue(User user, Long orderId, String summary) {
+        LocalDateTime now = LocalDateTime.now();
+        EmailOutbox email = new EmailOutbox();
+        email.setOrderId(orderId);
+        email.setRecipient(user.getEmail());
+        email.setSubject("Order Completed: #" + orderId);
+        email.setBody("Hello " + user.getName() + ",\n\n" +
+                "Your order #" + orderId + " has been completed.\n" +
+                summary + "\n" +
                 "Thank you for using our service!");
-        return message;
+        email.setCreatedAt(now);
+        email.setNextAttemptAt(now);
+
+        EmailOutbox saved = outboxRepository.save(email);
+        fileLogService.append(AuditEvent.emailQueued(orderId, user.getEmail()));
+        return saved;
     }
 }
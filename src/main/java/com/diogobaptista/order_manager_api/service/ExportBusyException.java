@@ -0,0 +1,12 @@
+package com.diogobaptista.order_manager_api.service;
+
+/**
+ * As many CSV exports as {@code listing.export.max-concurrent} allows were
+ * already running when another one was requested.
+ */
+public class ExportBusyException extends RuntimeException {
+
+    public ExportBusyException(int maxConcurrent) {
+        super("Already running " + maxConcurrent + " exports, retry later");
+    }
+}
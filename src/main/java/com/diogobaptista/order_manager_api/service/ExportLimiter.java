@@ -0,0 +1,57 @@
+package com.diogobaptista.order_manager_api.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps how many CSV exports run at once. Each export keeps a pooled
+ * connection and a read-only transaction open for as long as its download
+ * takes, so without a cap a handful of slow downloads could take the whole
+ * pool. A request over the cap is turned away rather than queued.
+ */
+@Component
+public class ExportLimiter {
+
+    private final int maxConcurrent;
+    private final Semaphore permits;
+
+    public ExportLimiter(@Value("${listing.export.max-concurrent:4}") int maxConcurrent,
+                         MeterRegistry meterRegistry) {
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+        Gauge.builder("listing.exports.active", permits, p -> maxConcurrent - p.availablePermits())
+                .description("CSV exports currently streaming")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a permit for one export, to be closed once its body has been
+     * written or has failed.
+     *
+     * @throws ExportBusyException if every permit is taken
+     */
+    public Permit acquire() {
+        if (!permits.tryAcquire()) {
+            throw new ExportBusyException(maxConcurrent);
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+    }
+
+    /** A running export's hold on the limit; closing it more than once is harmless. */
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,21 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+
+/** Oldest order first. The default. */
+@Component
+public class FifoAllocationStrategy implements AllocationStrategy {
+
+    @Override
+    public String getName() {
+        return "fifo";
+    }
+
+    @Override
+    public Comparator<PendingOrder> comparator() {
+        return Comparator.comparing(PendingOrder::getCreationDate);
+    }
+}
@@ -1,29 +1,519 @@
 package com.diogobaptista.order_manager_api.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Appends audit events to {@code orders.log} without making callers wait for
+ * the disk. Request threads only enqueue; a single writer thread formats the
+ * events, drains them into a reusable direct buffer and writes it to one
+ * long-lived {@link FileChannel}, syncing to disk at most once per fsync
+ * interval and rotating the file by size or age. Both are checked between
+ * events as well as when the queue runs empty, so they keep happening under
+ * sustained load.
+ *
+ * <p>In {@link Format#BINARY} each event is written as a length-prefixed record:
+ * {@code int length}, {@code long timestamp}, the type name, {@code long}
+ * order, item, user, stock movement and reservation ids, four {@code int} values, then the
+ * text and detail strings. Strings are an unsigned {@code short} byte count
+ * ({@code 0xFFFF} for null) followed by UTF-8 bytes.
+ *
+ * <p>Queue depth, dropped lines, time producers spent blocked on a full queue
+ * and the writer's write latency are published as {@code audit.log.*} meters.
+ */
 @Service
-public class FileLogService {
+public class FileLogService implements MeterBinder {
+
+    public enum OverflowPolicy { BLOCK, DROP }
+
+    public enum Format { TEXT, BINARY }
+
+    private static final DateTimeFormatter ROTATION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int MAX_STRING_BYTES = 0xFFFE;
+    // While the queue never empties, sync and rotation deadlines are checked this often, and after every write
+    private static final int MAINTAIN_EVERY_EVENTS = 64;
 
     private final Logger log = LoggerFactory.getLogger(FileLogService.class);
-    private final Path logFile = Paths.get("orders.log");
+    private final Logger audit = LoggerFactory.getLogger(AuditEvent.class);
+
+    private final Path logFile;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Format format;
+    private final long fsyncIntervalNanos;
+    private final long maxFileBytes;
+    private final long maxFileAgeNanos;
+
+    private final Queue<AuditEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong appended = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blockedAppends = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean writerParked;
+
+    // Writer thread state
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(256);
+    private FileChannel channel;
+    private long fileBytes;
+    private long openedAt;
+    private long lastForceAt;
+    private boolean unsynced;
+    private long linesInBuffer;
+    private int eventsSinceMaintain;
+    private long writesAtMaintain;
+    private volatile long written;
+    private volatile long writes;
+    private volatile long totalWriteNanos;
+    private volatile long maxWriteNanos;
+
+    @Autowired
+    public FileLogService(@Value("${file-log.path:orders.log}") String path,
+                          @Value("${file-log.queue-capacity:65536}") int capacity,
+                          @Value("${file-log.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+                          @Value("${file-log.format:TEXT}") Format format,
+                          @Value("${file-log.buffer-bytes:65536}") int bufferBytes,
+                          @Value("${file-log.fsync-interval-ms:1000}") long fsyncIntervalMs,
+                          @Value("${file-log.max-file-bytes:104857600}") long maxFileBytes,
+                          @Value("${file-log.max-file-age-ms:86400000}") long maxFileAgeMs) {
+        this(Paths.get(path), capacity, overflowPolicy, format, bufferBytes, fsyncIntervalMs, maxFileBytes, maxFileAgeMs,
+                runnable -> new Thread(runnable, "file-log-writer"));
+    }
+
+    /**
+     * @param fsyncIntervalMs how often written lines are forced to disk; 0 syncs
+     *                        after every write, a negative value leaves it to the OS
+     * @param maxFileBytes    rotate once the file reaches this size, 0 to disable
+     * @param maxFileAgeMs    rotate once the file is this old, 0 to disable
+     */
+    public FileLogService(Path logFile, int capacity, OverflowPolicy overflowPolicy, Format format, int bufferBytes,
+                          long fsyncIntervalMs, long maxFileBytes, long maxFileAgeMs, ThreadFactory threadFactory) {
+        this.logFile = logFile;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.format = format;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.fsyncIntervalNanos = fsyncIntervalMs < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxFileAgeMs);
+
+        this.writer = threadFactory.newThread(this::drain);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
 
     public void appendLine(String message) {
+        append(AuditEvent.message(message));
+    }
+
+    public void append(AuditEvent event) {
+        if (!reserveSlot()) {
+            dropped.increment();
+            return;
+        }
+        queue.offer(event);
+        appended.incrementAndGet();
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Blocks until every line appended before this call has been written to
+     * the file, or the writer has stopped.
+     */
+    public void flush() {
+        long target = appended.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    public long droppedLines() {
+        return dropped.sum();
+    }
+
+    public long writtenLines() {
+        return written;
+    }
+
+    public long writeCount() {
+        return writes;
+    }
+
+    public long totalWriteNanos() {
+        return totalWriteNanos;
+    }
+
+    public long maxWriteNanos() {
+        return maxWriteNanos;
+    }
+
+    public long blockedAppends() {
+        return blockedAppends.sum();
+    }
+
+    public long totalBlockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("audit.log.queue.depth", this, FileLogService::queueDepth)
+                .description("Audit events waiting for the writer thread")
+                .register(registry);
+        FunctionCounter.builder("audit.log.lines.written", this, FileLogService::writtenLines)
+                .register(registry);
+        FunctionCounter.builder("audit.log.lines.dropped", this, FileLogService::droppedLines)
+                .description("Audit events discarded because the queue was full")
+                .register(registry);
+        FunctionTimer.builder("audit.log.append.blocked", this,
+                        FileLogService::blockedAppends, FileLogService::totalBlockedNanos, TimeUnit.NANOSECONDS)
+                .description("Appends that waited for room in a full queue")
+                .register(registry);
+        FunctionTimer.builder("audit.log.writes", this,
+                        FileLogService::writeCount, FileLogService::totalWriteNanos, TimeUnit.NANOSECONDS)
+                .description("Buffer writes to the log file")
+                .register(registry);
+        TimeGauge.builder("audit.log.writes.max", this, TimeUnit.NANOSECONDS, FileLogService::maxWriteNanos)
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean reserveSlot() {
+        long blockedSince = 0;
         try {
-            if (!Files.exists(logFile)) {
-                Files.createFile(logFile);
+            while (running) {
+                int current = queued.get();
+                if (current < capacity) {
+                    if (queued.compareAndSet(current, current + 1)) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    return false;
+                }
+                if (blockedSince == 0) {
+                    blockedSince = System.nanoTime();
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            return false;
+        } finally {
+            if (blockedSince != 0) {
+                blockedAppends.increment();
+                blockedNanos.add(System.nanoTime() - blockedSince);
             }
-            Files.write(logFile, (message + "\n").getBytes(), StandardOpenOption.APPEND);
+        }
+    }
+
+    private void drain() {
+        try {
+            open();
+        } catch (IOException e) {
+            log.error("Failed to open log file: {}", e.getMessage());
+        }
+
+        while (running || !queue.isEmpty()) {
+            AuditEvent event = queue.poll();
+            if (event != null) {
+                queued.decrementAndGet();
+                write(event);
+                if (++eventsSinceMaintain >= MAINTAIN_EVERY_EVENTS || writes != writesAtMaintain) {
+                    maintainUnderLoad();
+                }
+                continue;
+            }
+
+            writeBuffer();
+            maintain(System.nanoTime());
+
+            writerParked = true;
+            if (queue.isEmpty() && running) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerParked = false;
+        }
+
+        writeBuffer();
+        closeChannel();
+    }
+
+    private void write(AuditEvent event) {
+        if (format == Format.BINARY) {
+            if (isEnabled(event.getType().getLevel())) {
+                line.setLength(0);
+                echo(event.getType().getLevel(), event.appendTo(line));
+            }
+            encodeBinary(event);
+        } else {
+            line.setLength(0);
+            event.appendTo(line);
+            echo(event.getType().getLevel(), line);
+            encodeText(line);
+        }
+        linesInBuffer++;
+    }
+
+    private boolean isEnabled(Level level) {
+        switch (level) {
+            case ERROR: return audit.isErrorEnabled();
+            case WARN: return audit.isWarnEnabled();
+            case INFO: return audit.isInfoEnabled();
+            case DEBUG: return audit.isDebugEnabled();
+            default: return audit.isTraceEnabled();
+        }
+    }
+
+    private void echo(Level level, CharSequence text) {
+        switch (level) {
+            case ERROR: audit.error("{}", text); break;
+            case WARN: audit.warn("{}", text); break;
+            case INFO: audit.info("{}", text); break;
+            case DEBUG: audit.debug("{}", text); break;
+            default: audit.trace("{}", text);
+        }
+    }
+
+    private void encodeText(CharSequence text) {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (encoder.encode(chars, buffer, true) == CoderResult.OVERFLOW) {
+            writeBuffer();
+        }
+        encoder.reset();
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        buffer.put((byte) '\n');
+    }
+
+    private void encodeBinary(AuditEvent event) {
+        byte[] type = event.getType().name().getBytes(StandardCharsets.US_ASCII);
+        byte[] text = utf8(event.getText());
+        byte[] detail = utf8(event.getDetail());
+        int length = 8 + stringBytes(type) + 5 * 8 + 4 * 4 + stringBytes(text) + stringBytes(detail);
+
+        ByteBuffer target = buffer;
+        if (4 + length > buffer.remaining()) {
+            writeBuffer();
+            if (4 + length > buffer.capacity()) {
+                target = ByteBuffer.allocate(4 + length);
+            }
+        }
+        target.putInt(length);
+        target.putLong(event.getTimestamp());
+        putString(target, type);
+        target.putLong(event.getOrderId());
+        target.putLong(event.getItemId());
+        target.putLong(event.getUserId());
+        target.putLong(event.getMovementId());
+        target.putLong(event.getReservationId());
+        target.putInt(event.getN1());
+        target.putInt(event.getN2());
+        target.putInt(event.getN3());
+        target.putInt(event.getN4());
+        putString(target, text);
+        putString(target, detail);
+
+        if (target != buffer) {
+            target.flip();
+            writeFully(target);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_STRING_BYTES ? bytes : Arrays.copyOf(bytes, MAX_STRING_BYTES);
+    }
+
+    private static int stringBytes(byte[] value) {
+        return 2 + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer target, byte[] value) {
+        if (value == null) {
+            target.putShort((short) NULL_STRING);
+            return;
+        }
+        target.putShort((short) value.length);
+        target.put(value);
+    }
+
+    private void writeBuffer() {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+        written += linesInBuffer;
+        linesInBuffer = 0;
+    }
+
+    private void writeFully(ByteBuffer source) {
+        long start = System.nanoTime();
+        try {
+            if (channel == null) {
+                open();
+            }
+            while (source.hasRemaining()) {
+                fileBytes += channel.write(source);
+            }
+            unsynced = true;
         } catch (IOException e) {
             log.error("Failed to write to log file: {}", e.getMessage());
+            closeChannel();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            writes++;
+            totalWriteNanos += elapsed;
+            if (elapsed > maxWriteNanos) {
+                maxWriteNanos = elapsed;
+            }
+        }
+    }
+
+    /**
+     * Between two events, syncs or rotates once a deadline has passed, first
+     * writing out the buffered lines so they land in the file being synced or
+     * rotated. Keeps a busy queue from postponing both indefinitely.
+     */
+    private void maintainUnderLoad() {
+        eventsSinceMaintain = 0;
+        writesAtMaintain = writes;
+        long now = System.nanoTime();
+        if (channel == null) {
+            return;
+        }
+        boolean syncDue = fsyncIntervalNanos >= 0 && (unsynced || buffer.position() > 0)
+                && now - lastForceAt >= fsyncIntervalNanos;
+        boolean tooBig = maxFileBytes > 0 && fileBytes + buffer.position() >= maxFileBytes;
+        boolean tooOld = maxFileAgeNanos > 0 && now - openedAt >= maxFileAgeNanos;
+        if (syncDue || tooBig || tooOld) {
+            writeBuffer();
+            maintain(now);
+            writesAtMaintain = writes;
+        }
+    }
+
+    private void maintain(long now) {
+        if (channel == null) {
+            return;
+        }
+        if (unsynced && fsyncIntervalNanos >= 0 && now - lastForceAt >= fsyncIntervalNanos) {
+            force(now);
+        }
+        boolean tooBig = maxFileBytes > 0 && fileBytes >= maxFileBytes;
+        boolean tooOld = maxFileAgeNanos > 0 && fileBytes > 0 && now - openedAt >= maxFileAgeNanos;
+        if (tooBig || tooOld) {
+            rotate();
+        }
+    }
+
+    private void force(long now) {
+        try {
+            channel.force(false);
+            unsynced = false;
+            lastForceAt = now;
+        } catch (IOException e) {
+            log.error("Failed to sync log file: {}", e.getMessage());
+        }
+    }
+
+    private void rotate() {
+        closeChannel();
+        try {
+            Path rotated = logFile.resolveSibling(logFile.getFileName() + "." + LocalDateTime.now().format(ROTATION_SUFFIX));
+            for (int i = 1; Files.exists(rotated); i++) {
+                rotated = logFile.resolveSibling(logFile.getFileName() + "." + LocalDateTime.now().format(ROTATION_SUFFIX) + "-" + i);
+            }
+            Files.move(logFile, rotated);
+            open();
+        } catch (IOException e) {
+            log.error("Failed to rotate log file: {}", e.getMessage());
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+        openedAt = System.nanoTime();
+        lastForceAt = openedAt;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (unsynced) {
+                channel.force(false);
+                unsynced = false;
+            }
+            channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close log file: {}", e.getMessage());
         }
+        channel = null;
     }
-}
\ No newline at end of file
+}
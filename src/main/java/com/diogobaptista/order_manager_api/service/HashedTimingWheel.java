@@ -0,0 +1,132 @@
+package com.diogobaptista.order_manager_api.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel: a ring of buckets, one per tick. A timeout goes into
+ * the bucket of its deadline tick modulo the ring size, with the number of
+ * full turns still to wait, so scheduling and cancelling are O(1) and a tick
+ * only visits its own bucket instead of every pending timeout.
+ *
+ * <p>{@link #schedule} and {@link Timeout#cancel} may be called from any
+ * thread. {@link #advanceTo} must always be called from the same thread; it
+ * takes the clock as an argument so that time can be driven by tests.
+ */
+public final class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final int mask;
+    private final ArrayDeque<Timeout<T>>[] buckets;
+    private final Queue<Timeout<T>> scheduled = new ConcurrentLinkedQueue<>();
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int ticksPerWheel, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        if (ticksPerWheel <= 0 || Integer.bitCount(ticksPerWheel) != 1) {
+            throw new IllegalArgumentException("Ticks per wheel must be a power of two: " + ticksPerWheel);
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = ticksPerWheel - 1;
+        this.buckets = new ArrayDeque[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /** Schedules {@code value} to expire at the first tick at or after {@code deadlineMillis}. */
+    public Timeout<T> schedule(T value, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(value, deadlineMillis);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Runs every tick due by {@code nowMillis} and returns the values that
+     * expired, in tick order. Values whose deadline has already passed
+     * when they are scheduled expire on the next tick.
+     */
+    public List<T> advanceTo(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        while (startMillis + tick * tickMillis <= nowMillis) {
+            transferScheduled();
+            expireBucket(buckets[(int) (tick & mask)], expired);
+            tick++;
+        }
+        return expired;
+    }
+
+    /** Milliseconds from {@code nowMillis} until the next tick is due. */
+    public long millisUntilNextTick(long nowMillis) {
+        return Math.max(0, startMillis + tick * tickMillis - nowMillis);
+    }
+
+    private void transferScheduled() {
+        Timeout<T> timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long deadlineTick = Math.max(tick, ceilDiv(timeout.deadlineMillis - startMillis, tickMillis));
+            timeout.rounds = (deadlineTick - tick) / buckets.length;
+            buckets[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expireBucket(ArrayDeque<Timeout<T>> bucket, List<T> expired) {
+        for (int i = bucket.size(); i > 0; i--) {
+            Timeout<T> timeout = bucket.poll();
+            if (timeout.cancelled) {
+                continue;
+            }
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                bucket.add(timeout);
+            } else {
+                expired.add(timeout.value);
+            }
+        }
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    public static final class Timeout<T> {
+
+        private final T value;
+        private final long deadlineMillis;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        Timeout(T value, long deadlineMillis) {
+            this.value = value;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+
+        /** The timeout will not expire; it is dropped when the wheel next reaches it. */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
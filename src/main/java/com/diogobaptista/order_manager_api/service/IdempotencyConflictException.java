@@ -0,0 +1,12 @@
+package com.diogobaptista.order_manager_api.service;
+
+/**
+ * The first request with an Idempotency-Key was still running when a
+ * duplicate gave up waiting for it.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public IdempotencyConflictException(String key) {
+        super("A request with Idempotency-Key " + key + " is still in progress");
+    }
+}
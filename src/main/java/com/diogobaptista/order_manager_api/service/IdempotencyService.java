@@ -0,0 +1,342 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.repository.IdempotencyKeyRepository;
+import com.diogobaptista.order_manager_api.repository.IdempotencyKeyRepository.KeyRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Runs a create request at most once per {@code Idempotency-Key} and replays
+ * its response to retries.
+ *
+ * <p>Completed responses are looked up in a bounded in-memory LRU first and
+ * in the {@code idempotency_key} table after that. A request with a new key
+ * claims a row in that table before it runs; a duplicate arriving meanwhile
+ * waits for the first one to finish instead of running itself, on a future
+ * when the first runs on this instance and by polling the row otherwise.
+ *
+ * <p>Only successful responses are stored. When the first request fails or
+ * is rejected its claim is released and the next request with the key runs
+ * again. Reusing a key with a different request body is rejected.
+ *
+ * <p>The action is handed a {@link Completion} and must call it from inside
+ * the transaction that creates its order or movement, so the response is
+ * stored if and only if that transaction commits. The claim is renewed while
+ * the action runs; one that has not been renewed for longer than the lease,
+ * because the instance running it died, is taken over by the next request
+ * with the key. Claims carry a token, and a request whose claim was taken
+ * over cannot store its response, so its transaction rolls back instead of
+ * creating a second order.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long POLL_INTERVAL_MS = 50;
+    /** Returned by {@link #awaitRow} when this request took over an abandoned claim. */
+    private static final Completed TAKEN_OVER = new Completed(null, 0, null);
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyKeyRepository repository;
+    private final ObjectMapper objectMapper;
+    private final long retentionMs;
+    private final long waitTimeoutMs;
+    private final Duration lease;
+    private final Cache<String, Completed> completed;
+    private final Map<String, CompletableFuture<Completed>> running = new ConcurrentHashMap<>();
+    private final Map<String, Claim> held = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter replayed;
+
+    public IdempotencyService(IdempotencyKeyRepository repository,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.cache.max-size:10000}") long cacheSize,
+                              @Value("${idempotency.retention-ms:86400000}") long retentionMs,
+                              @Value("${idempotency.wait-timeout-ms:30000}") long waitTimeoutMs,
+                              @Value("${idempotency.lease-ms:300000}") long leaseMs,
+                              MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.retentionMs = retentionMs;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.lease = Duration.ofMillis(leaseMs);
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMillis(retentionMs))
+                .build();
+        this.executed = counter(meterRegistry, "executed");
+        this.replayed = counter(meterRegistry, "replayed");
+    }
+
+    /**
+     * Returns the stored response for {@code key} in {@code scope} if there
+     * is one, otherwise runs {@code action}, which stores its successful
+     * response through the completion it is given.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, Class<T> bodyType,
+                                         Function<Completion, ResponseEntity<T>> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String id = scope + ':' + key;
+        String requestHash = hash(request);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+
+        while (true) {
+            Completed done = completed.getIfPresent(id);
+            if (done != null) {
+                return replay(done, key, requestHash, bodyType);
+            }
+
+            CompletableFuture<Completed> mine = new CompletableFuture<>();
+            CompletableFuture<Completed> first = running.putIfAbsent(id, mine);
+            if (first != null) {
+                done = await(first, key, deadline);
+                if (done != null) {
+                    return replay(done, key, requestHash, bodyType);
+                }
+                running.remove(id, first);
+                continue;
+            }
+
+            Claim claim = new Claim(scope, key, UUID.randomUUID().toString());
+            try {
+                if (repository.claim(scope, key, requestHash, claim.token, lease)) {
+                    return run(claim, id, requestHash, action, mine);
+                }
+                done = awaitRow(claim, requestHash, deadline);
+                if (done == TAKEN_OVER) {
+                    return run(claim, id, requestHash, action, mine);
+                }
+                mine.complete(done);
+                if (done != null) {
+                    completed.put(id, done);
+                    return replay(done, key, requestHash, bodyType);
+                }
+            } catch (Throwable e) {
+                mine.complete(null);
+                throw e;
+            } finally {
+                running.remove(id, mine);
+            }
+        }
+    }
+
+    /** Deletes keys older than the retention period; retries after that run again. */
+    @Scheduled(initialDelayString = "${idempotency.purge-interval-ms:3600000}",
+            fixedDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purge() {
+        int deleted = repository.deleteOlderThan(Duration.ofMillis(retentionMs));
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    /**
+     * Restarts the lease of every claim whose action is still running here,
+     * so that no other instance takes over a request that may yet commit.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.renew-interval-ms:60000}")
+    public void renewClaims() {
+        for (Claim claim : held.values()) {
+            try {
+                if (!repository.renew(claim.scope, claim.key, claim.token)) {
+                    log.warn("Lost the claim on {} {}; its request will not be stored", claim.scope, claim.key);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not renew the claim on {} {}: {}", claim.scope, claim.key, e.toString());
+            }
+        }
+    }
+
+    private <T> ResponseEntity<T> run(Claim claim, String id, String requestHash,
+                                      Function<Completion, ResponseEntity<T>> action,
+                                      CompletableFuture<Completed> mine) {
+        AtomicReference<Completed> stored = new AtomicReference<>();
+        Completion completion = (status, body) -> {
+            Completed done = new Completed(requestHash, status, toJson(body));
+            if (!repository.complete(claim.scope, claim.key, claim.token, status, done.body)) {
+                // Taken over by another request: failing here rolls back the caller's transaction.
+                throw new IdempotencyConflictException(claim.key);
+            }
+            stored.set(done);
+        };
+
+        ResponseEntity<T> response;
+        held.put(id, claim);
+        try {
+            response = action.apply(completion);
+        } catch (Throwable e) {
+            repository.release(claim.scope, claim.key, claim.token);
+            throw e;
+        } finally {
+            held.remove(id, claim);
+        }
+        executed.increment();
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            repository.release(claim.scope, claim.key, claim.token);
+            mine.complete(null);
+            return response;
+        }
+
+        Completed done = stored.get();
+        if (done == null) {
+            // The action created nothing that needed its response stored alongside it.
+            done = new Completed(requestHash, response.getStatusCode().value(), toJson(response.getBody()));
+            repository.complete(claim.scope, claim.key, claim.token, done.status, done.body);
+        }
+        completed.put(id, done);
+        mine.complete(done);
+        return response;
+    }
+
+    /** Waits for a request running on this instance; null if it stored nothing. */
+    private Completed await(CompletableFuture<Completed> first, String key, long deadline) {
+        try {
+            return first.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(key);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Polls the row claimed by a request running on another instance until it
+     * completes; null if that request released its claim, {@link #TAKEN_OVER}
+     * if it stopped renewing its lease and this request now holds the claim.
+     */
+    private Completed awaitRow(Claim claim, String requestHash, long deadline) {
+        while (true) {
+            KeyRecord row = repository.find(claim.scope, claim.key).orElse(null);
+            if (row == null) {
+                return null;
+            }
+            if (row.isCompleted()) {
+                return new Completed(row.getRequestHash(), row.getStatus(), row.getResponseBody());
+            }
+            if (repository.claim(claim.scope, claim.key, requestHash, claim.token, lease)) {
+                return TAKEN_OVER;
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new IdempotencyConflictException(claim.key);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyConflictException(claim.key);
+            }
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(Completed done, String key, String requestHash, Class<T> bodyType) {
+        if (!done.requestHash.equals(requestHash)) {
+            throw new IllegalArgumentException(HEADER + " " + key + " was already used with a different request");
+        }
+        replayed.increment();
+        try {
+            T body = done.body == null ? null : objectMapper.readValue(done.body, bodyType);
+            return ResponseEntity.status(done.status).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String outcome) {
+        return Counter.builder("idempotency.requests")
+                .description("Requests with an Idempotency-Key, by whether they ran or were replayed")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Stores a successful response under the request's key. Called from inside
+     * the transaction that creates what the response describes; throws
+     * {@link IdempotencyConflictException} if the key was taken over meanwhile,
+     * which must roll that transaction back.
+     */
+    @FunctionalInterface
+    public interface Completion {
+
+        void complete(int status, Object body);
+    }
+
+    private static final class Claim {
+
+        final String scope;
+        final String key;
+        final String token;
+
+        Claim(String scope, String key, String token) {
+            this.scope = scope;
+            this.key = key;
+            this.token = token;
+        }
+    }
+
+    private static final class Completed {
+
+        final String requestHash;
+        final int status;
+        final String body;
+
+        Completed(String requestHash, int status, String body) {
+            this.requestHash = requestHash;
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
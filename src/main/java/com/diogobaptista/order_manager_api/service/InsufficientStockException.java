@@ -0,0 +1,16 @@
+package com.diogobaptista.order_manager_api.service;
+
+/**
+ * A reservation asked for more of an item than is neither allocated nor
+ * already held, or an update would leave less stock than reservations hold.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(Long itemId, int quantity) {
+        super("Not enough stock of item " + itemId + " to reserve " + quantity);
+    }
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,270 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.ItemImportRejectionDTO;
+import com.diogobaptista.order_manager_api.dto.ItemImportResponseDTO;
+import com.diogobaptista.order_manager_api.repository.ItemImportRepository;
+import com.diogobaptista.order_manager_api.repository.ItemImportRepository.MergeCounts;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Creates and refreshes items in bulk from a CSV or NDJSON body, matched on
+ * their SKU. The body is parsed one line at a time into a spool file of
+ * {@link ItemImportRepository}, so memory use does not depend on its size and
+ * a slow upload never holds a connection or transaction. Only once the whole
+ * body has arrived is the spool copied and merged, in one transaction: either
+ * every valid line is applied or none is. Lines that do not parse or validate
+ * are skipped and reported.
+ *
+ * <p>An imported stock replaces the item's stock, like an update through
+ * {@link ItemService}, and records no stock movement. Items with open orders
+ * are offered their new stock once the import has committed.
+ */
+@Service
+public class ItemImportService {
+
+    private static final int MAX_SKU_LENGTH = 64;
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private final ItemImportRepository repository;
+    private final CatalogCache catalog;
+    private final BackorderService backorderService;
+    private final FileLogService fileLogService;
+    private final ObjectMapper objectMapper;
+    private final TransactionOperations transactions;
+    private final int maxRejections;
+
+    public ItemImportService(ItemImportRepository repository,
+                             CatalogCache catalog,
+                             BackorderService backorderService,
+                             FileLogService fileLogService,
+                             ObjectMapper objectMapper,
+                             TransactionOperations transactions,
+                             @Value("${items.import.max-rejections:100}") int maxRejections) {
+        this.repository = repository;
+        this.catalog = catalog;
+        this.backorderService = backorderService;
+        this.fileLogService = fileLogService;
+        this.objectMapper = objectMapper;
+        this.transactions = transactions;
+        this.maxRejections = maxRejections;
+    }
+
+    /**
+     * Imports a CSV document whose first line names the columns: {@code sku},
+     * {@code name} and {@code stock_quantity} (or {@code stockQuantity}), in
+     * any order. Fields may be double-quoted, with {@code ""} for a quote.
+     */
+    public ItemImportResponseDTO importCsv(InputStream body) throws IOException {
+        BufferedReader reader = reader(body);
+        String header = reader.readLine();
+        if (header == null) {
+            throw new IllegalArgumentException("Expected a CSV header line with sku, name and stock_quantity");
+        }
+        CsvColumns columns = CsvColumns.of(splitCsv(header.replace("\uFEFF", "")));
+        return importLines(reader, 1, columns::row);
+    }
+
+    /** Imports one JSON object per line with {@code sku}, {@code name} and {@code stockQuantity}. */
+    public ItemImportResponseDTO importNdjson(InputStream body) throws IOException {
+        return importLines(reader(body), 0, this::jsonRow);
+    }
+
+    private ItemImportResponseDTO importLines(BufferedReader reader, int firstLine, LineParser parser)
+            throws IOException {
+        ItemImportResponseDTO response = new ItemImportResponseDTO();
+        List<Long> restocked;
+        try (ItemImportRepository.Spool spool = repository.spool(rows -> {
+            int number = firstLine;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                response.setLines(response.getLines() + 1);
+                try {
+                    Row row = parser.parse(line);
+                    rows.write(number, row.sku, row.name, row.stockQuantity);
+                } catch (IllegalArgumentException e) {
+                    reject(response, number, e.getMessage());
+                }
+            }
+        })) {
+            restocked = transactions.execute(status -> {
+                try {
+                    long staged = repository.stage(spool);
+                    MergeCounts merged = repository.merge();
+                    response.setInserted(Math.toIntExact(merged.getInserted()));
+                    response.setUpdated(Math.toIntExact(merged.getUpdated()));
+                    response.setDuplicates(Math.toIntExact(staged - merged.getInserted() - merged.getUpdated()));
+                    return repository.findStagedItemIdsWithOpenOrders();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        catalog.evictAllItems();
+        fileLogService.append(AuditEvent.itemsImported(response.getLines(), response.getInserted(),
+                response.getUpdated(), response.getRejected()));
+        for (Long itemId : restocked) {
+            backorderService.allocateBackorders(itemId);
+        }
+        return response;
+    }
+
+    private void reject(ItemImportResponseDTO response, int line, String message) {
+        response.setRejected(response.getRejected() + 1);
+        if (response.getRejections().size() < maxRejections) {
+            response.getRejections().add(new ItemImportRejectionDTO(line, message));
+        }
+    }
+
+    private Row jsonRow(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        JsonNode stock = node.path("stockQuantity");
+        if (!stock.isIntegralNumber() || !stock.canConvertToInt()) {
+            throw new IllegalArgumentException("stockQuantity must be a whole number");
+        }
+        return Row.of(node.path("sku").asText(null), node.path("name").asText(null), stock.asText());
+    }
+
+    private static BufferedReader reader(InputStream body) {
+        return new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /** Splits one CSV line, honouring double-quoted fields. */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @FunctionalInterface
+    private interface LineParser {
+        Row parse(String line);
+    }
+
+    /** Positions of the three columns in the CSV header. */
+    private static final class CsvColumns {
+
+        final int sku;
+        final int name;
+        final int stockQuantity;
+        final int count;
+
+        private CsvColumns(int sku, int name, int stockQuantity, int count) {
+            this.sku = sku;
+            this.name = name;
+            this.stockQuantity = stockQuantity;
+            this.count = count;
+        }
+
+        static CsvColumns of(List<String> header) {
+            List<String> names = new ArrayList<>(header.size());
+            for (String column : header) {
+                names.add(column.trim().toLowerCase(Locale.ROOT).replace("_", ""));
+            }
+            int sku = names.indexOf("sku");
+            int name = names.indexOf("name");
+            int stock = names.indexOf("stockquantity");
+            if (sku < 0 || name < 0 || stock < 0) {
+                throw new IllegalArgumentException("CSV header must name the sku, name and stock_quantity columns, got "
+                        + header);
+            }
+            return new CsvColumns(sku, name, stock, header.size());
+        }
+
+        Row row(String line) {
+            List<String> fields = splitCsv(line);
+            if (fields.size() != count) {
+                throw new IllegalArgumentException("Expected " + count + " fields, got " + fields.size());
+            }
+            return Row.of(fields.get(sku), fields.get(name), fields.get(stockQuantity));
+        }
+    }
+
+    private static final class Row {
+
+        final String sku;
+        final String name;
+        final int stockQuantity;
+
+        private Row(String sku, String name, int stockQuantity) {
+            this.sku = sku;
+            this.name = name;
+            this.stockQuantity = stockQuantity;
+        }
+
+        static Row of(String sku, String name, String stockQuantity) {
+            String trimmedSku = sku == null ? "" : sku.trim();
+            if (trimmedSku.isEmpty() || trimmedSku.length() > MAX_SKU_LENGTH) {
+                throw new IllegalArgumentException("sku must be 1 to " + MAX_SKU_LENGTH + " characters");
+            }
+            if (name == null || name.trim().isEmpty() || name.length() > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("name must be non-blank and at most " + MAX_NAME_LENGTH
+                        + " characters");
+            }
+            int stock;
+            try {
+                stock = Integer.parseInt(stockQuantity == null ? "" : stockQuantity.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("stock_quantity must be a whole number, got " + stockQuantity);
+            }
+            if (stock < 0) {
+                throw new IllegalArgumentException("stock_quantity cannot be negative");
+            }
+            return new Row(trimmedSku, name, stock);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.sql.SqlStatementScope;
+import com.diogobaptista.order_manager_api.sql.SqlStatementStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs stock allocation work on a fixed set of single-threaded lanes, keyed by
+ * item id. Everything that touches the stock of one item runs serially on that
+ * item's lane, while different items are allocated in parallel.
+ * Queue depth and queueing time are published per lane as
+ * {@code allocation.lane.*} meters, and statements a task runs are charged to
+ * the {@link SqlStatementScope} of the thread that submitted it.
+ * With {@code spring.threads.virtual.enabled} on Java 21 the lanes run on
+ * virtual threads, so a lane blocked on JDBC does not hold a carrier.
+ */
+@Component
+public class ItemLaneExecutor implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemLaneExecutor.class);
+
+    private final Lane[] lanes;
+
+    public ItemLaneExecutor(int laneCount) {
+        this(laneCount, false);
+    }
+
+    @Autowired
+    public ItemLaneExecutor(@Value("${allocation.lanes:0}") int laneCount, Environment environment) {
+        this(laneCount, Threading.VIRTUAL.isActive(environment));
+    }
+
+    public ItemLaneExecutor(int laneCount, boolean virtualThreads) {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(i, virtualThreads);
+        }
+        log.info("Allocation runs on {} lanes using {} threads", count, virtualThreads ? "virtual" : "platform");
+    }
+
+    public <T> CompletableFuture<T> submit(Long itemId, Supplier<T> task) {
+        Lane lane = laneFor(itemId);
+        if (lane.isCurrentThread()) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                result.complete(task.get());
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        return lane.submit(task);
+    }
+
+    /**
+     * Queues the task on the item's lane even when called from that lane,
+     * where {@link #submit} would run it inline; it then runs once the
+     * current task has finished.
+     */
+    public <T> CompletableFuture<T> submitQueued(Long itemId, Supplier<T> task) {
+        return laneFor(itemId).submit(task);
+    }
+
+    public <T> T call(Long itemId, Supplier<T> task) {
+        try {
+            return submit(itemId, task).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    public int laneOf(Long itemId) {
+        return itemId == null ? 0 : Math.floorMod(Long.hashCode(itemId), lanes.length);
+    }
+
+    public int queueDepth(int lane) {
+        return lanes[lane].executor.getQueue().size();
+    }
+
+    public long completedTasks(int lane) {
+        return lanes[lane].tasks.sum();
+    }
+
+    public long totalWaitNanos(int lane) {
+        return lanes[lane].waitNanos.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Lane lane : lanes) {
+            Tags tags = Tags.of("lane", Integer.toString(lane.index));
+            Gauge.builder("allocation.lane.queue.depth", lane.executor, executor -> executor.getQueue().size())
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("allocation.lane.tasks", lane.tasks, LongAdder::sum)
+                    .tags(tags)
+                    .register(registry);
+            FunctionTimer.builder("allocation.lane.wait", lane,
+                            l -> l.tasks.sum(), l -> l.waitNanos.sum(), TimeUnit.NANOSECONDS)
+                    .tags(tags)
+                    .description("Time allocation work spent queued before its lane picked it up")
+                    .register(registry);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        for (Lane lane : lanes) {
+            try {
+                if (!lane.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Allocation lane {} did not drain before shutdown", lane.index);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Lane laneFor(Long itemId) {
+        return lanes[laneOf(itemId)];
+    }
+
+    private static final class Lane {
+
+        private final int index;
+        private final ThreadPoolExecutor executor;
+        private final LongAdder tasks = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private volatile Thread thread;
+
+        Lane(int index, boolean virtualThreads) {
+            this.index = index;
+            String name = "allocation-lane-" + index;
+            ThreadFactory virtual = virtualThreads
+                    ? new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory() : null;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread t;
+                        if (virtual != null) {
+                            t = virtual.newThread(runnable);
+                        } else {
+                            t = new Thread(runnable, name);
+                            t.setDaemon(true);
+                        }
+                        thread = t;
+                        return t;
+                    });
+        }
+
+        boolean isCurrentThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<T> task) {
+            long enqueuedAt = System.nanoTime();
+            SqlStatementStats caller = SqlStatementScope.current();
+            return CompletableFuture.supplyAsync(() -> {
+                waitNanos.add(System.nanoTime() - enqueuedAt);
+                tasks.increment();
+                return SqlStatementScope.callWith(caller, task);
+            }, executor);
+        }
+    }
+}
@@ -1,33 +1,53 @@
 package com.diogobaptista.order_manager_api.service;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
 import com.diogobaptista.order_manager_api.dto.ItemRequestDTO;
+import com.diogobaptista.order_manager_api.dto.ItemResponseDTO;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.mapper.ItemMapper;
 import com.diogobaptista.order_manager_api.repository.ItemRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class ItemService {
 
-    private static final Logger logger = LoggerFactory.getLogger(ItemService.class);
-
     private final ItemRepository repository;
     private final FileLogService fileLogService;
     private final ItemMapper mapper;
+    private final BackorderService backorderService;
+    private final ListingStreamRepository listingStream;
+    private final CatalogCache catalog;
 
-    public ItemService(ItemRepository repository, ItemMapper mapper, FileLogService fileLogService) {
+    public ItemService(ItemRepository repository,
+                       ItemMapper mapper,
+                       FileLogService fileLogService,
+                       BackorderService backorderService,
+                       ListingStreamRepository listingStream,
+                       CatalogCache catalog) {
         this.repository = repository;
         this.mapper = mapper;
         this.fileLogService = fileLogService;
+        this.backorderService = backorderService;
+        this.listingStream = listingStream;
+        this.catalog = catalog;
+    }
+
+    public CursorPage<Item> findPage(String cursor, Integer limit) {
+        int size = CursorPage.limit(limit);
+        long afterId = cursor == null ? 0L : PageCursor.decodeId(cursor);
+        List<Item> rows = repository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, item -> PageCursor.encode(item.getId()));
     }
 
-    public List<Item> findAll() {
-        return repository.findAll();
+    public void streamAll(Consumer<ItemResponseDTO> sink) {
+        listingStream.streamItems(sink);
     }
 
     public Optional<Item> findById(Long id) {
@@ -36,44 +56,74 @@ public class ItemService {
 
     public Item createItem(ItemRequestDTO dto) {
         if (dto.getName() == null || dto.getName().trim().isEmpty()) {
-            logAndWrite("Attempted to create item with empty name", "WARN");
+            fileLogService.append(AuditEvent.itemNameBlank());
             throw new IllegalArgumentException("Item name cannot be blank");
         }
 
         Item savedItem = repository.save(mapper.toEntity(dto));
-        logAndWrite(String.format("Created Item [ID: %d, Name: %s]", savedItem.getId(), savedItem.getName()), "INFO");
+        fileLogService.append(AuditEvent.itemCreated(savedItem.getId(), savedItem.getName()));
         return savedItem;
     }
 
+    /**
+     * Updates the item. A new stock quantity is applied as the difference
+     * from the stock read here, so sales made in the meantime are kept, and
+     * is refused when it would leave less than reservations hold.
+     */
     public Optional<Item> updateItem(Long id, ItemRequestDTO dto) {
         return repository.findById(id)
                 .map(existing -> {
+                    int previousStock = existing.getStockQuantity() == null ? 0 : existing.getStockQuantity();
+                    Integer newStock = dto.getStockQuantity();
+                    if (newStock != null && repository.adjustStock(id, previousStock, newStock) == 0) {
+                        throw new InsufficientStockException("Stock of item " + id +
+                                " cannot be set below what its reservations hold");
+                    }
                     mapper.updateEntity(existing, dto);
                     Item updated = repository.save(existing);
-                    logAndWrite(String.format("Updated Item [ID: %d]", id), "INFO");
+                    catalog.evictItem(id);
+                    fileLogService.append(AuditEvent.itemUpdated(id));
+                    if (newStock != null && newStock > previousStock) {
+                        allocateBackorders(updated);
+                    } else {
+                        repository.findStockQuantityById(id).ifPresent(updated::setStockQuantity);
+                    }
                     return updated;
                 });
     }
 
+    public Optional<Item> receiveStock(Long id, int quantity) {
+        if (quantity <= 0) {
+            fileLogService.append(AuditEvent.itemReceiptInvalid(id, quantity));
+            throw new IllegalArgumentException("Received quantity must be positive");
+        }
+
+        return repository.findById(id)
+                .map(existing -> {
+                    repository.incrementStock(id, quantity);
+                    fileLogService.append(AuditEvent.itemStockReceived(id, quantity));
+                    allocateBackorders(existing);
+                    return existing;
+                });
+    }
+
     public boolean deleteItem(Long id) {
         return repository.findById(id)
                 .map(item -> {
                     repository.delete(item);
-                    logAndWrite(String.format("Deleted Item [ID: %d]", id), "INFO");
+                    catalog.evictItem(id);
+                    fileLogService.append(AuditEvent.itemDeleted(id));
                     return true;
                 })
                 .orElseGet(() -> {
-                    logAndWrite(String.format("Fail deleting Item [ID: %d] not found", id), "WARN");
+                    fileLogService.append(AuditEvent.itemDeleteNotFound(id));
                     return false;
                 });
     }
 
-    private void logAndWrite(String message, String level) {
-        if ("WARN".equals(level)) {
-            logger.warn(message);
-        } else {
-            logger.info(message);
-        }
-        fileLogService.appendLine(message);
+    private void allocateBackorders(Item item) {
+        backorderService.allocateBackorders(item.getId());
+        repository.findStockQuantityById(item.getId()).ifPresent(item::setStockQuantity);
     }
+
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.ItemStatsDTO;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
+import com.diogobaptista.order_manager_api.repository.ItemStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the per-item order totals in {@code item_stats} up to date without
+ * putting the stats row on the allocation path. Order creation and allocation
+ * record deltas in memory; the deltas of a transaction are merged into the
+ * pending totals only once it commits, and a scheduled flush adds all pending
+ * totals with one upsert per item. However many orders a hot item takes in
+ * between, its row is written once per flush.
+ *
+ * <p>Reads add the deltas still pending on this instance, so they are
+ * current here and at most one flush interval behind elsewhere; a read that
+ * races a flush can miss the deltas being written. Pending deltas are flushed
+ * on shutdown, and a crash loses at most one interval of them.
+ */
+@Service
+public class ItemStatsService {
+
+    private final Logger log = LoggerFactory.getLogger(ItemStatsService.class);
+
+    private final ItemStatsRepository repository;
+    private final TransactionOperations transactions;
+    private final Map<Long, Delta> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public ItemStatsService(ItemStatsRepository repository, TransactionOperations transactions) {
+        this.repository = repository;
+        this.transactions = transactions;
+    }
+
+    public void recordOrderCreated(Long itemId, int quantity) {
+        record(itemId, 1, quantity, quantity, 0);
+    }
+
+    public void recordAllocation(Long itemId, int quantity, boolean completed) {
+        record(itemId, completed ? -1 : 0, -quantity, 0, quantity);
+    }
+
+    public Optional<ItemStatsDTO> findByItemId(Long itemId) {
+        return repository.findByItemId(itemId).map(this::withPending);
+    }
+
+    public CursorPage<ItemStatsDTO> findPage(String cursor, Integer limit) {
+        int size = CursorPage.limit(limit);
+        long afterId = cursor == null ? 0L : PageCursor.decodeId(cursor);
+        List<ItemStatsDTO> rows = new ArrayList<>();
+        for (ItemStatsDTO row : repository.findPageAfter(afterId, size + 1)) {
+            rows.add(withPending(row));
+        }
+        return CursorPage.of(rows, size, stats -> PageCursor.encode(stats.getItemId()));
+    }
+
+    /**
+     * Writes the pending deltas in one transaction. Deltas that fail to write
+     * are put back and retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${item-stats.flush-interval-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Delta> batch = new TreeMap<>();
+            for (Long itemId : pending.keySet()) {
+                Delta delta = pending.remove(itemId);
+                if (delta != null && !delta.isEmpty()) {
+                    batch.put(itemId, delta);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<ItemStatsDTO> rows = new ArrayList<>(batch.size());
+            batch.forEach((itemId, delta) -> rows.add(delta.toDto(itemId)));
+            try {
+                transactions.executeWithoutResult(status -> repository.addAll(rows));
+            } catch (RuntimeException e) {
+                batch.forEach(this::merge);
+                log.warn("Failed to flush item stats for {} items, will retry", batch.size(), e);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private void record(Long itemId, long openOrders, long openQuantity, long ordered, long allocated) {
+        Delta delta = new Delta(openOrders, openQuantity, ordered, allocated);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            merge(itemId, delta);
+            return;
+        }
+        transactionDeltas().merge(itemId, delta, Delta::plus);
+    }
+
+    /**
+     * Deltas recorded by the current transaction, handed over to the pending
+     * totals after commit and discarded on rollback.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Delta> transactionDeltas() {
+        Map<Long, Delta> deltas = (Map<Long, Delta>) TransactionSynchronizationManager.getResource(this);
+        if (deltas != null) {
+            return deltas;
+        }
+        Map<Long, Delta> created = new HashMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ItemStatsService.this);
+                if (status == STATUS_COMMITTED) {
+                    created.forEach(ItemStatsService.this::merge);
+                }
+            }
+        });
+        return created;
+    }
+
+    private void merge(Long itemId, Delta delta) {
+        pending.merge(itemId, delta, Delta::plus);
+    }
+
+    private ItemStatsDTO withPending(ItemStatsDTO stats) {
+        Delta delta = pending.get(stats.getItemId());
+        if (delta == null) {
+            return stats;
+        }
+        return new ItemStatsDTO(stats.getItemId(),
+                stats.getOpenOrders() + delta.openOrders,
+                stats.getOpenQuantity() + delta.openQuantity,
+                stats.getOrderedQuantity() + delta.ordered,
+                stats.getAllocatedQuantity() + delta.allocated);
+    }
+
+    private static final class Delta {
+
+        final long openOrders;
+        final long openQuantity;
+        final long ordered;
+        final long allocated;
+
+        Delta(long openOrders, long openQuantity, long ordered, long allocated) {
+            this.openOrders = openOrders;
+            this.openQuantity = openQuantity;
+            this.ordered = ordered;
+            this.allocated = allocated;
+        }
+
+        Delta plus(Delta other) {
+            return new Delta(openOrders + other.openOrders, openQuantity + other.openQuantity,
+                    ordered + other.ordered, allocated + other.allocated);
+        }
+
+        boolean isEmpty() {
+            return openOrders == 0 && openQuantity == 0 && ordered == 0 && allocated == 0;
+        }
+
+        ItemStatsDTO toDto(Long itemId) {
+            return new ItemStatsDTO(itemId, openOrders, openQuantity, ordered, allocated);
+        }
+    }
+}
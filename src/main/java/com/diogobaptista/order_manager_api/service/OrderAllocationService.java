@@ -1,34 +1,58 @@
 package com.diogobaptista.order_manager_api.service;
 
+import com.diogobaptista.order_manager_api.dto.AllocationResponseDTO;
+import com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Allocation;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.AllocationRepository;
 import com.diogobaptista.order_manager_api.repository.OrderRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 public class OrderAllocationService {
 
     private final OrderRepository orderRepository;
+    private final AllocationRepository allocationRepository;
     private final EmailService emailService;
     private final FileLogService fileLogService;
-    private final Logger log = LoggerFactory.getLogger(OrderAllocationService.class);
+    private final ItemStatsService itemStats;
+    private final PendingOrderIndex pendingOrders;
+    private final Timer fulfillTimer;
 
     public OrderAllocationService(OrderRepository orderRepository,
+                                  AllocationRepository allocationRepository,
                                   EmailService emailService,
-                                  FileLogService fileLogService) {
+                                  FileLogService fileLogService,
+                                  ItemStatsService itemStats,
+                                  PendingOrderIndex pendingOrders,
+                                  MeterRegistry meterRegistry) {
         this.orderRepository = orderRepository;
+        this.allocationRepository = allocationRepository;
         this.emailService = emailService;
         this.fileLogService = fileLogService;
+        this.itemStats = itemStats;
+        this.pendingOrders = pendingOrders;
+        this.fulfillTimer = Timer.builder("orders.fulfill")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
-    private void logAndWrite(String message) {
-        log.info(message);
-        fileLogService.appendLine(message);
+    public void fulfillOrderWithStockMovement(Order order, StockMovement stock) {
+        fulfillTimer.record(() -> fulfill(order, stock));
     }
 
-    public void fulfillOrderWithStockMovement(Order order, StockMovement stock) {
+    private void fulfill(Order order, StockMovement stock) {
         int needed = order.getQuantity() - order.getFulfilledQuantity();
         int available = stock.getQuantity();
         int used = Math.min(needed, available);
@@ -38,11 +62,118 @@ public class OrderAllocationService {
         order.setFulfilledQuantity(order.getFulfilledQuantity() + used);
         orderRepository.save(order);
 
-        logAndWrite(String.format("Allocated %d of StockMovement %d to Order %d", used, stock.getId(), order.getId()));
+        recordAllocation(order, stock, used);
+    }
+
+    /**
+     * Records that {@code used} units of the movement went to the order: the
+     * allocation ledger row, audit events, stats, the order's place in the
+     * pending-order index and, once the order is complete, its email. The ledger row is only persisted here and is
+     * flushed with the movement insert.
+     *
+     * <p>A line of a multi-line order sends no email of its own. Its order is
+     * checked when the transaction commits, and the one email for the whole
+     * order is queued if all of its lines are filled by then.
+     */
+    public void recordAllocation(Order order, StockMovement stock, int used) {
+        Allocation allocation = new Allocation();
+        allocation.setOrder(order);
+        allocation.setStockMovement(stock);
+        allocation.setQuantity(used);
+        allocation.setCreationDate(LocalDateTime.now());
+        allocationRepository.save(allocation);
+
+        fileLogService.append(AuditEvent.orderAllocated(order.getId(), stock.getId(), used));
+        itemStats.recordAllocation(order.getItem().getId(), used, order.isComplete());
+        pendingOrders.sync(order);
 
         if (order.isComplete()) {
-            logAndWrite(String.format("Order %d COMPLETED", order.getId()));
-            emailService.sendOrderCompleted(order.getUser(), order);
+            fileLogService.append(AuditEvent.orderCompleted(order.getId()));
+            if (order.getBasketId() == null) {
+                emailService.enqueueOrderCompleted(order.getUser(), order);
+            } else {
+                basketLineCompleted(order);
+            }
+        }
+    }
+
+    /**
+     * Queues the email of a multi-line order created in the current
+     * transaction if all of its lines were filled on creation. Nobody else
+     * sees those lines before the commit, so unlike lines filled later they
+     * need neither the lock nor a re-read.
+     */
+    public void basketCreated(List<Order> lines) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Outside a transaction each line was already checked as it was filled.
+            return;
+        }
+        Long basketId = lines.get(0).getBasketId();
+        completedBaskets().remove(basketId);
+        if (lines.stream().allMatch(Order::isComplete)) {
+            int quantity = lines.stream().mapToInt(Order::getQuantity).sum();
+            fileLogService.append(AuditEvent.basketCompleted(basketId, lines.size(), quantity));
+            emailService.enqueueBasketCompleted(lines.get(0).getUser(), basketId, lines.size(), quantity);
+        }
+    }
+
+    private void basketLineCompleted(Order line) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            completeBasket(line.getBasketId(), line.getUser());
+            return;
+        }
+        completedBaskets().putIfAbsent(line.getBasketId(), line.getUser());
+    }
+
+    /**
+     * Queues the email of a multi-line order if all its lines are filled. The
+     * lock makes a transaction that fills another of its lines at the same
+     * time wait for this one to commit, so the later of the two sees every
+     * line filled and exactly one of them queues the email.
+     */
+    private void completeBasket(Long basketId, User user) {
+        orderRepository.lockBasket(basketId);
+        List<OrderLineResponseDTO> lines = orderRepository.findLinesByBasketId(basketId);
+        if (lines.isEmpty() || !lines.stream().allMatch(OrderLineResponseDTO::isComplete)) {
+            return;
+        }
+        int quantity = lines.stream().mapToInt(OrderLineResponseDTO::getQuantity).sum();
+        fileLogService.append(AuditEvent.basketCompleted(basketId, lines.size(), quantity));
+        emailService.enqueueBasketCompleted(user, basketId, lines.size(), quantity);
+    }
+
+    /**
+     * Multi-line orders with a line filled by the current transaction, checked
+     * just before it commits in ascending id order, after every lock on items
+     * and orders is already held, so that the basket locks cannot deadlock.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, User> completedBaskets() {
+        Map<Long, User> baskets = (Map<Long, User>) TransactionSynchronizationManager.getResource(this);
+        if (baskets != null) {
+            return baskets;
         }
+        Map<Long, User> created = new TreeMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                created.forEach(OrderAllocationService.this::completeBasket);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OrderAllocationService.this);
+            }
+        });
+        return created;
+    }
+
+    public List<AllocationResponseDTO> findByOrderId(Long orderId) {
+        return allocationRepository.findByOrderId(orderId);
+    }
+
+    public List<AllocationResponseDTO> findByStockMovementId(Long stockMovementId) {
+        return allocationRepository.findByStockMovementId(stockMovementId);
     }
-}
\ No newline at end of file
+}
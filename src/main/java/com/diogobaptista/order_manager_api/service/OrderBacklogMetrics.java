@@ -0,0 +1,57 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.ItemBacklogDTO;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes the open-order backlog per item as {@code orders.backlog.orders}
+ * and {@code orders.backlog.quantity} gauges. The backlog is re-read on a
+ * schedule rather than per scrape, and only the items with the largest open
+ * quantity get a series, so the number of time series stays bounded.
+ */
+@Component
+public class OrderBacklogMetrics {
+
+    private final OrderRepository orderRepository;
+    private final int maxItems;
+    private final MultiGauge openOrders;
+    private final MultiGauge openQuantity;
+
+    public OrderBacklogMetrics(OrderRepository orderRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${metrics.backlog.max-items:100}") int maxItems) {
+        this.orderRepository = orderRepository;
+        this.maxItems = maxItems;
+        this.openOrders = MultiGauge.builder("orders.backlog.orders")
+                .description("Open orders per item")
+                .register(meterRegistry);
+        this.openQuantity = MultiGauge.builder("orders.backlog.quantity")
+                .description("Quantity still to be allocated to open orders per item")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.backlog.refresh-interval-ms:15000}")
+    public void refresh() {
+        List<ItemBacklogDTO> backlogs = orderRepository.findLargestBacklogs(PageRequest.of(0, maxItems));
+        openOrders.register(backlogs.stream()
+                .map(b -> MultiGauge.Row.of(itemTag(b), b.getOpenOrders()))
+                .collect(Collectors.toList()), true);
+        openQuantity.register(backlogs.stream()
+                .map(b -> MultiGauge.Row.of(itemTag(b), b.getOpenQuantity()))
+                .collect(Collectors.toList()), true);
+    }
+
+    private static Tags itemTag(ItemBacklogDTO backlog) {
+        return Tags.of("item", String.valueOf(backlog.getItemId()));
+    }
+}
@@ -0,0 +1,274 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.OrderBatchLineResultDTO;
+import com.diogobaptista.order_manager_api.dto.OrderBatchLineResultDTO.Status;
+import com.diogobaptista.order_manager_api.dto.OrderBatchResponseDTO;
+import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class OrderBatchService {
+
+    private final OrderRepository orderRepository;
+    private final StockMovementRepository stockRepo;
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final OrderAllocationService allocator;
+    private final FileLogService fileLogService;
+    private final ItemStatsService itemStats;
+    private final PendingOrderIndex pendingOrders;
+    private final ObjectMapper objectMapper;
+    private final TransactionOperations transactions;
+    private final int chunkSize;
+    private final AllocationOutcomes outcomes;
+
+    public OrderBatchService(OrderRepository orderRepository,
+                             StockMovementRepository stockRepo,
+                             ItemRepository itemRepository,
+                             UserRepository userRepository,
+                             OrderAllocationService allocator,
+                             FileLogService fileLogService,
+                             ItemStatsService itemStats,
+                             PendingOrderIndex pendingOrders,
+                             ObjectMapper objectMapper,
+                             TransactionOperations transactions,
+                             @Value("${orders.batch.chunk-size:500}") int chunkSize,
+                             MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.stockRepo = stockRepo;
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.allocator = allocator;
+        this.fileLogService = fileLogService;
+        this.itemStats = itemStats;
+        this.pendingOrders = pendingOrders;
+        this.objectMapper = objectMapper;
+        this.transactions = transactions;
+        this.chunkSize = chunkSize;
+        // Counted with POST /orders: a batch line is the same allocation request
+        this.outcomes = new AllocationOutcomes(meterRegistry, "order");
+    }
+
+    /**
+     * Reads a JSON array of orders from the stream one element at a time and
+     * ingests it in chunks, each chunk in its own transaction. A malformed
+     * document stops the ingestion; chunks ingested before that point stay
+     * committed and are reported.
+     */
+    public OrderBatchResponseDTO ingest(InputStream body) throws IOException {
+        OrderBatchResponseDTO response = new OrderBatchResponseDTO();
+        List<OrderLine> chunk = new ArrayList<>(chunkSize);
+        int lineNumber = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of orders");
+            }
+
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new JsonParseException(parser, "Unexpected end of input");
+                }
+                chunk.add(readLine(parser, lineNumber + 1));
+                lineNumber++;
+
+                if (chunk.size() == chunkSize) {
+                    ingestChunk(chunk).forEach(response::add);
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            ingestChunk(chunk).forEach(response::add);
+            response.add(OrderBatchLineResultDTO.rejected(lineNumber + 1, 0,
+                    "Malformed batch, stopped reading: " + e.getOriginalMessage()));
+            fileLogService.append(AuditEvent.batchMalformed(lineNumber + 1));
+            return response;
+        }
+
+        ingestChunk(chunk).forEach(response::add);
+
+        fileLogService.append(AuditEvent.batchIngested(
+                lineNumber, response.getCreated(), response.getPartiallyAllocated(), response.getRejected()));
+        return response;
+    }
+
+    private OrderLine readLine(JsonParser parser, int lineNumber) throws IOException {
+        JsonNode node = parser.readValueAsTree();
+        try {
+            return new OrderLine(lineNumber, objectMapper.treeToValue(node, OrderRequestDTO.class), null);
+        } catch (JsonProcessingException e) {
+            return new OrderLine(lineNumber, new OrderRequestDTO(), "Malformed order: " + e.getOriginalMessage());
+        }
+    }
+
+    private List<OrderBatchLineResultDTO> ingestChunk(List<OrderLine> lines) {
+        if (lines.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return transactions.execute(status -> allocateChunk(lines));
+    }
+
+    private List<OrderBatchLineResultDTO> allocateChunk(List<OrderLine> lines) {
+        Set<Long> itemIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (OrderLine line : lines) {
+            if (line.request.getItemId() != null) itemIds.add(line.request.getItemId());
+            if (line.request.getUserId() != null) userIds.add(line.request.getUserId());
+        }
+
+        Map<Long, Item> items = itemRepository.findAllById(itemIds).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        OrderBatchLineResultDTO[] results = new OrderBatchLineResultDTO[lines.size()];
+        Map<Long, List<Integer>> linesByItem = new TreeMap<>();
+        List<Order> orders = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < lines.size(); i++) {
+            OrderRequestDTO request = lines.get(i).request;
+            String rejection = lines.get(i).rejection != null ? lines.get(i).rejection : validate(request, items, users);
+            if (rejection != null) {
+                results[i] = OrderBatchLineResultDTO.rejected(lines.get(i).number, request.getQuantity(), rejection);
+                orders.add(null);
+                continue;
+            }
+
+            Order order = new Order();
+            order.setItem(items.get(request.getItemId()));
+            order.setUser(users.get(request.getUserId()));
+            order.setQuantity(request.getQuantity());
+            order.setCreationDate(now);
+            orders.add(order);
+            linesByItem.computeIfAbsent(request.getItemId(), id -> new ArrayList<>()).add(i);
+        }
+
+        // Items are visited in ascending id order so concurrent batches lock item rows in the same order.
+        List<StockMovement> movements = new ArrayList<>();
+        List<Order> allocatedOrders = new ArrayList<>();
+        for (Map.Entry<Long, List<Integer>> entry : linesByItem.entrySet()) {
+            int demand = entry.getValue().stream().mapToInt(i -> orders.get(i).getQuantity()).sum();
+            int available = itemRepository.takeStock(entry.getKey(), demand);
+
+            for (Integer i : entry.getValue()) {
+                Order order = orders.get(i);
+                int allocQty = Math.min(order.getQuantity(), available);
+                if (allocQty <= 0) {
+                    continue;
+                }
+                available -= allocQty;
+                order.setFulfilledQuantity(allocQty);
+
+                StockMovement movement = new StockMovement();
+                movement.setItem(order.getItem());
+                movement.setQuantity(allocQty);
+                movement.setCreationDate(now);
+                movements.add(movement);
+                allocatedOrders.add(order);
+            }
+        }
+
+        List<Order> newOrders = orders.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        orderRepository.saveAll(newOrders);
+        newOrders.forEach(order -> itemStats.recordOrderCreated(order.getItem().getId(), order.getQuantity()));
+        newOrders.forEach(pendingOrders::sync);
+        stockRepo.saveAll(movements);
+
+        for (Order order : newOrders) {
+            outcomes.record(order.getQuantity(), order.getFulfilledQuantity());
+            fileLogService.append(AuditEvent.orderCreated(order.getId(), order.getUser().getEmail(),
+                    order.getItem().getName(), order.getQuantity()));
+            if (order.getFulfilledQuantity() == 0) {
+                fileLogService.append(AuditEvent.orderNoStock(
+                        order.getId(), order.getItem().getId(), order.getQuantity()));
+            }
+        }
+        for (int i = 0; i < allocatedOrders.size(); i++) {
+            Order order = allocatedOrders.get(i);
+            StockMovement movement = movements.get(i);
+            fileLogService.append(AuditEvent.orderMovementCreated(movement.getId(), order.getItem().getId(),
+                    movement.getQuantity()));
+            allocator.recordAllocation(order, movement, order.getFulfilledQuantity());
+            if (order.isComplete()) {
+                fileLogService.append(AuditEvent.orderFullyAllocated(order.getId(), order.getFulfilledQuantity()));
+            } else {
+                fileLogService.append(AuditEvent.orderPartiallyAllocated(
+                        order.getId(), order.getQuantity(), order.getFulfilledQuantity()));
+            }
+        }
+
+        for (int i = 0; i < lines.size(); i++) {
+            Order order = orders.get(i);
+            if (order == null) {
+                continue;
+            }
+            Status status = order.isComplete() ? Status.CREATED : Status.PARTIALLY_ALLOCATED;
+            results[i] = new OrderBatchLineResultDTO(lines.get(i).number, status, order.getId(),
+                    order.getQuantity(), order.getFulfilledQuantity(), null);
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private static String validate(OrderRequestDTO request, Map<Long, Item> items, Map<Long, User> users) {
+        if (request.getQuantity() <= 0) {
+            return "Quantity must be positive";
+        }
+        if (request.getItemId() == null || !items.containsKey(request.getItemId())) {
+            return "Item not found with id=" + request.getItemId();
+        }
+        if (request.getUserId() == null || !users.containsKey(request.getUserId())) {
+            return "User not found with id=" + request.getUserId();
+        }
+        if (request.getReservationId() != null) {
+            return "Reservations can only be consumed by POST /orders";
+        }
+        return null;
+    }
+
+    private static final class OrderLine {
+
+        final int number;
+        final OrderRequestDTO request;
+        final String rejection;
+
+        OrderLine(int number, OrderRequestDTO request, String rejection) {
+            this.number = number;
+            this.request = request;
+            this.rejection = rejection;
+        }
+    }
+}
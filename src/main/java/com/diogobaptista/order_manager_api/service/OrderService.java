@@ -1,71 +1,283 @@
 package com.diogobaptista.order_manager_api.service;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
+import com.diogobaptista.order_manager_api.dto.OrderLineRequestDTO;
 import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
 import com.diogobaptista.order_manager_api.entity.User;
 import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
 import com.diogobaptista.order_manager_api.repository.OrderRepository;
 import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
-import com.diogobaptista.order_manager_api.repository.UserRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 @Service
 public class OrderService {
 
-    private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
-
     private final OrderRepository repository;
     private final StockMovementRepository stockRepo;
     private final OrderAllocationService allocator;
     private final ItemRepository itemRepository;
-    private final UserRepository userRepository;
+    private final CatalogCache catalog;
     private final FileLogService fileLogService;
+    private final ItemLaneExecutor lanes;
+    private final TransactionOperations transactions;
+    private final ListingStreamRepository listingStream;
+    private final ItemStatsService itemStats;
+    private final PendingOrderIndex pendingOrders;
+    private final ReservationService reservations;
+    private final int maxLines;
+    private final Timer createTimer;
+    private final AllocationOutcomes outcomes;
 
     public OrderService(OrderRepository repository,
                         StockMovementRepository stockRepo,
                         OrderAllocationService allocator,
                         ItemRepository itemRepository,
-                        UserRepository userRepository,
-                        FileLogService fileLogService) {
+                        CatalogCache catalog,
+                        FileLogService fileLogService,
+                        ItemLaneExecutor lanes,
+                        TransactionOperations transactions,
+                        ListingStreamRepository listingStream,
+                        ItemStatsService itemStats,
+                        PendingOrderIndex pendingOrders,
+                        ReservationService reservations,
+                        @Value("${orders.max-lines:100}") int maxLines,
+                        MeterRegistry meterRegistry) {
         this.repository = repository;
         this.stockRepo = stockRepo;
         this.allocator = allocator;
         this.itemRepository = itemRepository;
-        this.userRepository = userRepository;
+        this.catalog = catalog;
         this.fileLogService = fileLogService;
+        this.lanes = lanes;
+        this.transactions = transactions;
+        this.listingStream = listingStream;
+        this.itemStats = itemStats;
+        this.pendingOrders = pendingOrders;
+        this.reservations = reservations;
+        this.maxLines = maxLines;
+        this.createTimer = Timer.builder("orders.create")
+                .description("Order creation, including the wait for the item's allocation lane")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.outcomes = new AllocationOutcomes(meterRegistry, "order");
+    }
+
+    public CursorPage<OrderResponseDTO> findPage(String cursor, Integer limit) {
+        int size = CursorPage.limit(limit);
+        Pageable rows = PageRequest.of(0, size + 1);
+        List<OrderResponseDTO> orders;
+        if (cursor == null) {
+            orders = repository.findFirstPage(rows);
+        } else {
+            PageCursor after = PageCursor.decodeDated(cursor);
+            orders = repository.findPageAfter(after.getCreationDate(), after.getId(), rows);
+        }
+        return CursorPage.of(orders, size, order -> PageCursor.encode(order.getCreationDate(), order.getId()));
+    }
+
+    public void streamAll(Consumer<OrderResponseDTO> sink) {
+        listingStream.streamOrders(sink);
     }
 
-    public List<Order> findAll() {
-        return repository.findAll();
+    /** Streams the rows the filter selects, oldest first, straight from a JDBC cursor. */
+    public void export(ExportFilter filter, Consumer<OrderResponseDTO> sink) {
+        listingStream.streamOrders(filter, sink);
     }
 
-    public Optional<Order> findById(Long id) {
-        return repository.findById(id);
+    /**
+     * The order with that id. The first line of a multi-line order stands for
+     * the whole order and comes back with all its lines.
+     */
+    public Optional<OrderResponseDTO> findById(Long id) {
+        return repository.findResponseById(id).map(order -> id.equals(order.getBasketId())
+                ? OrderResponseDTO.basket(id, order.getUserId(), order.getCreationDate(),
+                        repository.findLinesByBasketId(id))
+                : order);
     }
 
     public Order create(OrderRequestDTO dto) {
+        return create(dto, order -> { });
+    }
+
+    /**
+     * Creates the order and hands it to {@code beforeCommit} inside the same
+     * transaction, so that whatever that records commits or rolls back with
+     * the order.
+     */
+    public Order create(OrderRequestDTO dto, Consumer<Order> beforeCommit) {
+        return createTimer.record(() -> lanes.call(dto.getItemId(), () -> transactions.execute(status -> {
+            Order order = allocateNewOrder(dto);
+            beforeCommit.accept(order);
+            return order;
+        })));
+    }
+
+    /**
+     * Creates a multi-line order in one transaction: an order row per line,
+     * all carrying the first line's id as basket id, so each line is filled
+     * and backordered like a single-item order. Items are visited in
+     * ascending id order, so concurrent baskets and order batches take their
+     * item row locks in the same order and cannot deadlock; the lines of one
+     * item share a single stock update and are filled in request order.
+     * Like order batches, this runs on the caller's thread rather than on an
+     * item lane.
+     *
+     * @return the lines in request order
+     */
+    public List<Order> createBasket(OrderRequestDTO dto) {
+        return createBasket(dto, lines -> { });
+    }
+
+    /** Like {@link #create(OrderRequestDTO, Consumer)}, for a multi-line order. */
+    public List<Order> createBasket(OrderRequestDTO dto, Consumer<List<Order>> beforeCommit) {
+        validateLines(dto);
+        return createTimer.record(() -> transactions.execute(status -> {
+            List<Order> lines = allocateNewBasket(dto);
+            beforeCommit.accept(lines);
+            return lines;
+        }));
+    }
+
+    private void validateLines(OrderRequestDTO dto) {
+        List<OrderLineRequestDTO> lines = dto.getLines();
+        if (lines.isEmpty() || lines.size() > maxLines) {
+            throw new IllegalArgumentException("An order must have between 1 and " + maxLines + " lines");
+        }
+        if (dto.getItemId() != null || dto.getQuantity() != 0 || dto.getReservationId() != null) {
+            throw new IllegalArgumentException(
+                    "itemId, quantity and reservationId go on the lines of a multi-line order");
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).getItemId() == null || lines.get(i).getQuantity() <= 0) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " needs an itemId and a positive quantity");
+            }
+        }
+    }
+
+    private List<Order> allocateNewBasket(OrderRequestDTO dto) {
+        User user = catalog.user(dto.getUserId())
+                .orElseThrow(() -> {
+                    fileLogService.append(AuditEvent.orderUserNotFound(dto.getUserId()));
+                    return new NoSuchElementException("Order failed: User not found with id=" + dto.getUserId());
+                });
+
+        Map<Long, Item> items = catalog.items(dto.getLines().stream()
+                .map(OrderLineRequestDTO::getItemId)
+                .collect(Collectors.toSet()));
 
-        Item item = itemRepository.findById(dto.getItemId())
+        LocalDateTime now = LocalDateTime.now();
+        List<Order> orders = new ArrayList<>(dto.getLines().size());
+        Map<Long, List<Order>> ordersByItem = new TreeMap<>();
+        for (OrderLineRequestDTO line : dto.getLines()) {
+            Item item = items.get(line.getItemId());
+            if (item == null) {
+                fileLogService.append(AuditEvent.orderItemNotFound(line.getItemId()));
+                throw new NoSuchElementException("Order failed: Item not found with id=" + line.getItemId());
+            }
+            Order order = new Order();
+            order.setItem(item);
+            order.setUser(user);
+            order.setQuantity(line.getQuantity());
+            order.setCreationDate(now);
+            orders.add(order);
+            ordersByItem.computeIfAbsent(item.getId(), id -> new ArrayList<>()).add(order);
+        }
+
+        // Allocated before the lines are saved, so that they are inserted with their fulfilled quantity.
+        List<Order> allocated = new ArrayList<>();
+        List<StockMovement> movements = new ArrayList<>();
+        for (Map.Entry<Long, List<Order>> entry : ordersByItem.entrySet()) {
+            int demand = entry.getValue().stream().mapToInt(Order::getQuantity).sum();
+            int available = itemRepository.takeStock(entry.getKey(), demand);
+
+            for (Order order : entry.getValue()) {
+                int allocQty = Math.min(order.getQuantity(), available);
+                outcomes.record(order.getQuantity(), allocQty);
+                if (allocQty <= 0) {
+                    continue;
+                }
+                available -= allocQty;
+                order.setFulfilledQuantity(allocQty);
+
+                StockMovement movement = new StockMovement();
+                movement.setItem(order.getItem());
+                movement.setQuantity(allocQty);
+                movement.setCreationDate(now);
+                movements.add(movement);
+                allocated.add(order);
+            }
+        }
+
+        // The first line is saved on its own to learn the basket id; the others are inserted with it in one batch.
+        Order first = repository.save(orders.get(0));
+        first.setBasketId(first.getId());
+        orders.set(0, first);
+        List<Order> others = orders.subList(1, orders.size());
+        others.forEach(order -> order.setBasketId(first.getId()));
+        repository.saveAll(others);
+        stockRepo.saveAll(movements);
+
+        int allocatedQuantity = 0;
+        for (Order order : orders) {
+            itemStats.recordOrderCreated(order.getItem().getId(), order.getQuantity());
+            pendingOrders.sync(order);
+            fileLogService.append(AuditEvent.orderCreated(
+                    order.getId(), user.getEmail(), order.getItem().getName(), order.getQuantity()));
+            if (order.getFulfilledQuantity() == 0) {
+                fileLogService.append(AuditEvent.orderNoStock(
+                        order.getId(), order.getItem().getId(), order.getQuantity()));
+            }
+            allocatedQuantity += order.getFulfilledQuantity();
+        }
+        for (int i = 0; i < allocated.size(); i++) {
+            Order order = allocated.get(i);
+            StockMovement movement = movements.get(i);
+            fileLogService.append(AuditEvent.orderMovementCreated(movement.getId(), order.getItem().getId(),
+                    movement.getQuantity()));
+            allocator.recordAllocation(order, movement, movement.getQuantity());
+        }
+
+        fileLogService.append(AuditEvent.basketCreated(first.getId(), user.getEmail(), orders.size(),
+                orders.stream().mapToInt(Order::getQuantity).sum(), allocatedQuantity));
+        allocator.basketCreated(orders);
+        return orders;
+    }
+
+    private Order allocateNewOrder(OrderRequestDTO dto) {
+
+        Item item = catalog.item(dto.getItemId())
                 .orElseThrow(() -> {
-                    String msg = "Order failed: Item not found with id=" + dto.getItemId();
-                    logAndWrite(msg, "WARN");
-                    return new NoSuchElementException(msg);
+                    fileLogService.append(AuditEvent.orderItemNotFound(dto.getItemId()));
+                    return new NoSuchElementException("Order failed: Item not found with id=" + dto.getItemId());
                 });
 
-        User user = userRepository.findById(dto.getUserId())
+        User user = catalog.user(dto.getUserId())
                 .orElseThrow(() -> {
-                    String msg = "Order failed: User not found with id=" + dto.getUserId();
-                    logAndWrite(msg, "WARN");
-                    return new NoSuchElementException(msg);
+                    fileLogService.append(AuditEvent.orderUserNotFound(dto.getUserId()));
+                    return new NoSuchElementException("Order failed: User not found with id=" + dto.getUserId());
                 });
 
         Order order = new Order();
@@ -75,34 +287,25 @@ public class OrderService {
         order.setCreationDate(LocalDateTime.now());
 
         Order savedOrder = repository.save(order);
+        // Consumed before anything else is recorded, so that a stale reservation rejects the whole order.
+        int allocQty = dto.getReservationId() != null
+                ? reservations.consume(dto.getReservationId(), savedOrder)
+                : 0;
+        itemStats.recordOrderCreated(item.getId(), savedOrder.getQuantity());
+        pendingOrders.sync(savedOrder);
 
-        logAndWrite(
-                String.format(
-                        "Created Order [ID: %d, User: %s, Item: %s, Qty: %d]",
-                        savedOrder.getId(),
-                        user.getEmail(),
-                        item.getName(),
-                        savedOrder.getQuantity()
-                ),
-                "INFO"
-        );
-
-        int availableStock = item.getStockQuantity();
-
-        if (availableStock <= 0) {
-            logAndWrite(
-                    String.format(
-                            "Order %d created with no stock available [Item: %d, Requested: %d]",
-                            savedOrder.getId(),
-                            item.getId(),
-                            savedOrder.getQuantity()
-                    ),
-                    "WARN"
-            );
-            return savedOrder;
+        fileLogService.append(AuditEvent.orderCreated(
+                savedOrder.getId(), user.getEmail(), item.getName(), savedOrder.getQuantity()));
+
+        if (dto.getReservationId() == null) {
+            allocQty = itemRepository.takeStock(item.getId(), savedOrder.getQuantity());
         }
+        outcomes.record(savedOrder.getQuantity(), allocQty);
 
-        int allocQty = Math.min(savedOrder.getQuantity(), availableStock);
+        if (allocQty <= 0) {
+            fileLogService.append(AuditEvent.orderNoStock(savedOrder.getId(), item.getId(), savedOrder.getQuantity()));
+            return savedOrder;
+        }
 
         StockMovement stockMovement = new StockMovement();
         stockMovement.setItem(item);
@@ -111,55 +314,16 @@ public class OrderService {
 
         StockMovement savedMovement = stockRepo.save(stockMovement);
 
-        item.setStockQuantity(availableStock - allocQty);
-        itemRepository.save(item);
-
-        logAndWrite(
-                String.format(
-                        "StockMovement %d created on order creation [Item: %d, Qty: %d]",
-                        savedMovement.getId(),
-                        item.getId(),
-                        allocQty
-                ),
-                "INFO"
-        );
+        fileLogService.append(AuditEvent.orderMovementCreated(savedMovement.getId(), item.getId(), allocQty));
 
         allocator.fulfillOrderWithStockMovement(savedOrder, savedMovement);
 
         if (allocQty == savedOrder.getQuantity()) {
-            logAndWrite(
-                    String.format(
-                            "Order %d fully allocated on creation [Qty: %d]",
-                            savedOrder.getId(),
-                            allocQty
-                    ),
-                    "INFO"
-            );
+            fileLogService.append(AuditEvent.orderFullyAllocated(savedOrder.getId(), allocQty));
         } else {
-            logAndWrite(
-                    String.format(
-                            "Order %d partially allocated on creation [Requested: %d, Allocated: %d, Remaining: %d]",
-                            savedOrder.getId(),
-                            savedOrder.getQuantity(),
-                            allocQty,
-                            savedOrder.getQuantity() - allocQty
-                    ),
-                    "INFO"
-            );
+            fileLogService.append(AuditEvent.orderPartiallyAllocated(savedOrder.getId(), savedOrder.getQuantity(), allocQty));
         }
 
         return savedOrder;
     }
-
-
-    private void logAndWrite(String message, String level) {
-        if ("WARN".equals(level)) {
-            logger.warn(message);
-        } else if ("ERROR".equals(level)) {
-            logger.error(message);
-        } else {
-            logger.info(message);
-        }
-        fileLogService.appendLine(message);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Open orders per item, kept in memory in the fill order of the item's
+ * {@link AllocationStrategy}, so a restock takes the next orders to fill off
+ * the front instead of sorting the backlog in SQL.
+ *
+ * <p>An item's orders are loaded with one query the first time they are
+ * needed and then kept in sync by {@link #sync(Order)}, which every order
+ * creation and allocation calls. Changes made in a transaction are applied
+ * when it commits and dropped on rollback. At most
+ * {@code allocation.index.max-items} items are held; an evicted item is
+ * simply loaded again.
+ *
+ * <p>Changes committed while an item is being loaded, by callers that do
+ * not run on the item's lane, are recorded and replayed onto the loaded
+ * orders, since the query may have read the rows before they committed.
+ * Every item is also reloaded {@code allocation.index.expire-after-write-ms}
+ * after it was loaded, which bounds how long any other drift can last.
+ *
+ * <p>The index decides the order only. Callers re-read the orders it returns
+ * and drop entries that turn out to be filled already.
+ */
+@Component
+public class PendingOrderIndex implements MeterBinder {
+
+    private final OrderRepository orderRepository;
+    private final AllocationStrategies strategies;
+    private final Cache<Long, ItemQueue> items;
+    private final Map<Long, Loading> loading = new ConcurrentHashMap<>();
+
+    public PendingOrderIndex(OrderRepository orderRepository,
+                             AllocationStrategies strategies,
+                             @Value("${allocation.index.max-items:10000}") long maxItems,
+                             @Value("${allocation.index.expire-after-write-ms:600000}") long expireAfterWriteMs) {
+        this.orderRepository = orderRepository;
+        this.strategies = strategies;
+        this.items = Caffeine.newBuilder()
+                .maximumSize(maxItems)
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+                .recordStats()
+                .build();
+    }
+
+    /** The first {@code limit} open orders of the item in fill order. */
+    public List<PendingOrder> head(Long itemId, int limit) {
+        ItemQueue queue = items.get(itemId, this::load);
+        Loading loaded = loading.get(itemId);
+        if (loaded != null && loaded.isFor(queue)) {
+            // The queue is in the cache now, so later changes reach it through apply.
+            loading.remove(itemId, loaded);
+        }
+        return queue.head(limit);
+    }
+
+    /**
+     * Updates the order's entry to its current quantities, or removes it once
+     * the order is complete, when the current transaction commits.
+     */
+    public void sync(Order order) {
+        Long itemId = order.getItem().getId();
+        PendingOrder entry = order.isComplete() ? null : new PendingOrder(order.getId(), order.getUser().getId(),
+                order.getCreationDate(), order.getQuantity() - order.getFulfilledQuantity());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(itemId, order.getId(), entry);
+            return;
+        }
+        transactionChanges().put(order.getId(), new Change(itemId, entry));
+    }
+
+    /** Drops an entry that no longer matches an open order. */
+    public void remove(Long itemId, Long orderId) {
+        apply(itemId, orderId, null);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, items, "allocation.pending-orders");
+    }
+
+    private ItemQueue load(Long itemId) {
+        // Registered before the query, so that no change committed after it started is missed.
+        Loading pending = new Loading();
+        loading.put(itemId, pending);
+        try {
+            ItemQueue queue = new ItemQueue(strategies.forItem(itemId));
+            for (PendingOrder entry : orderRepository.findPendingEntriesByItemId(itemId)) {
+                queue.put(entry.getOrderId(), entry);
+            }
+            pending.loaded(queue);
+            return queue;
+        } catch (RuntimeException e) {
+            loading.remove(itemId, pending);
+            throw e;
+        }
+    }
+
+    private void apply(Long itemId, Long orderId, PendingOrder entry) {
+        Loading pending = loading.get(itemId);
+        if (pending != null) {
+            pending.put(orderId, entry);
+        }
+        // Items that are not loaded pick the change up from the database when they are.
+        ItemQueue queue = items.getIfPresent(itemId);
+        if (queue != null) {
+            queue.put(orderId, entry);
+        }
+    }
+
+    /**
+     * Latest change per order made by the current transaction, applied after
+     * commit and discarded on rollback.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Change> transactionChanges() {
+        Map<Long, Change> changes = (Map<Long, Change>) TransactionSynchronizationManager.getResource(this);
+        if (changes != null) {
+            return changes;
+        }
+        Map<Long, Change> created = new LinkedHashMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(PendingOrderIndex.this);
+                if (status == STATUS_COMMITTED) {
+                    created.forEach((orderId, change) -> apply(change.itemId, orderId, change.entry));
+                }
+            }
+        });
+        return created;
+    }
+
+    private static final class Change {
+
+        final Long itemId;
+        final PendingOrder entry;
+
+        Change(Long itemId, PendingOrder entry) {
+            this.itemId = itemId;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Changes to an item applied while its orders are being read. Until the
+     * read ends they are recorded and then replayed onto the queue; from then
+     * on, until the queue is in the cache, they go to the queue directly. A
+     * change the query already saw is simply put again.
+     */
+    private static final class Loading {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, PendingOrder> changes = new LinkedHashMap<>();
+        private ItemQueue queue;
+
+        void put(Long orderId, PendingOrder entry) {
+            lock.lock();
+            try {
+                if (queue != null) {
+                    queue.put(orderId, entry);
+                } else {
+                    changes.remove(orderId);
+                    changes.put(orderId, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void loaded(ItemQueue loaded) {
+            lock.lock();
+            try {
+                changes.forEach(loaded::put);
+                changes.clear();
+                queue = loaded;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isFor(ItemQueue loaded) {
+            lock.lock();
+            try {
+                return queue == loaded;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The open orders of one item, sorted by its strategy with the order id
+     * as tie-break. A sorted set rather than a binary heap, because entries
+     * are replaced from the middle whenever an order is partly filled.
+     */
+    private static final class ItemQueue {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeSet<PendingOrder> queue;
+        private final Map<Long, PendingOrder> byOrderId = new HashMap<>();
+
+        ItemQueue(AllocationStrategy strategy) {
+            this.queue = new TreeSet<>(strategy.comparator().thenComparing(PendingOrder::getOrderId));
+        }
+
+        void put(Long orderId, PendingOrder entry) {
+            lock.lock();
+            try {
+                PendingOrder previous = byOrderId.remove(orderId);
+                if (previous != null) {
+                    queue.remove(previous);
+                }
+                if (entry != null) {
+                    queue.add(entry);
+                    byOrderId.put(orderId, entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<PendingOrder> head(int limit) {
+            lock.lock();
+            try {
+                List<PendingOrder> head = new ArrayList<>(Math.min(limit, queue.size()));
+                Iterator<PendingOrder> it = queue.iterator();
+                while (it.hasNext() && head.size() < limit) {
+                    head.add(it.next());
+                }
+                return head;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
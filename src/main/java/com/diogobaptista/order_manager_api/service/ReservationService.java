@@ -0,0 +1,344 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.Reservation;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds stock of an item for a checkout for a limited time. A held quantity
+ * stays in the item's stock but is counted in its reserved quantity, which
+ * order creation, stock movements and backorders leave alone. An order that
+ * names the reservation takes the stock out of the hold instead.
+ *
+ * <p>Expiry is driven by a {@link HashedTimingWheel} rather than by polling
+ * the table: each hold is scheduled when it is made, a single thread advances
+ * the wheel once per tick and releases whatever expired in that tick in one
+ * transaction. Reservations are rows in {@code reservation}, so the active
+ * ones are scheduled again when the application starts. Every change of a
+ * reservation is a conditional update from ACTIVE, so an expiry that races a
+ * consumption, or two instances expiring the same hold, touch the stock once.
+ */
+@Service
+public class ReservationService {
+
+    private final Logger log = LoggerFactory.getLogger(ReservationService.class);
+
+    private final ReservationRepository repository;
+    private final ItemRepository itemRepository;
+    private final CatalogCache catalog;
+    private final BackorderService backorderService;
+    private final FileLogService fileLogService;
+    private final TransactionOperations transactions;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final HashedTimingWheel<Hold> wheel;
+    private final Map<Long, HashedTimingWheel.Timeout<Hold>> timeouts = new ConcurrentHashMap<>();
+    private final Counter created;
+    private final Counter consumed;
+    private final Counter released;
+    private final Counter expired;
+    private volatile boolean running;
+    private Thread ticker;
+
+    public ReservationService(ReservationRepository repository,
+                              ItemRepository itemRepository,
+                              CatalogCache catalog,
+                              BackorderService backorderService,
+                              FileLogService fileLogService,
+                              TransactionOperations transactions,
+                              @Value("${reservations.default-ttl-ms:600000}") long defaultTtlMs,
+                              @Value("${reservations.max-ttl-ms:3600000}") long maxTtlMs,
+                              @Value("${reservations.wheel.tick-ms:100}") long tickMs,
+                              @Value("${reservations.wheel.ticks:512}") int ticksPerWheel,
+                              MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.itemRepository = itemRepository;
+        this.catalog = catalog;
+        this.backorderService = backorderService;
+        this.fileLogService = fileLogService;
+        this.transactions = transactions;
+        this.defaultTtl = Duration.ofMillis(defaultTtlMs);
+        this.maxTtl = Duration.ofMillis(maxTtlMs);
+        this.wheel = new HashedTimingWheel<>(tickMs, ticksPerWheel, System.currentTimeMillis());
+        this.created = counter(meterRegistry, "created");
+        this.consumed = counter(meterRegistry, "consumed");
+        this.released = counter(meterRegistry, "released");
+        this.expired = counter(meterRegistry, "expired");
+        Gauge.builder("reservations.active", timeouts, Map::size)
+                .description("Reservations scheduled to expire on this instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Holds {@code quantity} of the item for {@code ttl}, or the default
+     * time when it is null.
+     *
+     * @return empty when the item does not exist
+     * @throws InsufficientStockException when less than {@code quantity} is free
+     */
+    public Optional<Reservation> reserve(Long itemId, int quantity, Duration ttl) {
+        Duration holdFor = ttl != null ? ttl : defaultTtl;
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Reservation quantity must be positive");
+        }
+        if (holdFor.isNegative() || holdFor.isZero() || holdFor.compareTo(maxTtl) > 0) {
+            throw new IllegalArgumentException("Reservation time must be positive and at most "
+                    + maxTtl.toMinutes() + " minutes");
+        }
+        if (catalog.item(itemId).isEmpty()) {
+            return Optional.empty();
+        }
+
+        Reservation saved = transactions.execute(status -> {
+            if (itemRepository.reserveStock(itemId, quantity) != 1) {
+                throw new InsufficientStockException(itemId, quantity);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            Reservation reservation = new Reservation();
+            reservation.setItemId(itemId);
+            reservation.setQuantity(quantity);
+            reservation.setCreatedAt(now);
+            reservation.setExpiresAt(now.plus(holdFor));
+            return repository.save(reservation);
+        });
+
+        schedule(saved);
+        created.increment();
+        fileLogService.append(AuditEvent.reservationCreated(saved.getId(), itemId, quantity, holdFor.getSeconds()));
+        return Optional.of(saved);
+    }
+
+    public Optional<Reservation> findById(Long itemId, Long reservationId) {
+        return repository.findById(reservationId).filter(r -> r.getItemId().equals(itemId));
+    }
+
+    /**
+     * Gives the hold back before it expires. Releasing a reservation that is
+     * no longer active changes nothing.
+     *
+     * @return the reservation as it is now, or empty when the item has no such reservation
+     */
+    public Optional<Reservation> release(Long itemId, Long reservationId) {
+        Optional<Reservation> reservation = findById(itemId, reservationId);
+        reservation.filter(r -> r.getStatus() == Reservation.Status.ACTIVE).ifPresent(r -> {
+            finish(List.of(new Hold(r)), Reservation.Status.RELEASED);
+            r.setStatus(Reservation.Status.RELEASED);
+        });
+        return reservation;
+    }
+
+    /**
+     * Fills a new order from the reservation it names, in the order's
+     * transaction. The order takes its quantity out of the hold and whatever
+     * it does not need is released with it; once the order has committed,
+     * that leftover is offered to the item's backorders like a released hold.
+     *
+     * @return the quantity allocated to the order, which is all of it
+     */
+    public int consume(Long reservationId, Order order) {
+        Long itemId = order.getItem().getId();
+        Reservation reservation = findById(itemId, reservationId)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Reservation " + reservationId + " not found for item " + itemId));
+        if (order.getQuantity() > reservation.getQuantity()) {
+            throw new IllegalArgumentException("Order quantity " + order.getQuantity()
+                    + " exceeds reservation " + reservationId + " of " + reservation.getQuantity());
+        }
+        if (repository.consume(reservationId, order.getId()) != 1) {
+            throw new IllegalArgumentException("Reservation " + reservationId + " is no longer active");
+        }
+        if (itemRepository.takeReservedStock(itemId, order.getQuantity(), reservation.getQuantity()) != 1) {
+            throw new IllegalArgumentException("Reserved stock of item " + itemId + " is no longer on hand");
+        }
+
+        int leftover = reservation.getQuantity() - order.getQuantity();
+        afterCommit(() -> {
+            cancel(reservationId);
+            consumed.increment();
+            if (leftover > 0) {
+                // Queued: consume runs on the item's own lane, inside the order's transaction.
+                backorderService.offerBackorders(itemId);
+            }
+        });
+        fileLogService.append(AuditEvent.reservationConsumed(reservationId, order.getId(), order.getQuantity(),
+                leftover));
+        return order.getQuantity();
+    }
+
+    /**
+     * Runs the wheel up to {@code nowMillis} and releases the holds that
+     * expired. Only the wheel thread calls this outside tests. Holds that
+     * fail to release are scheduled again one tick later.
+     *
+     * @return the number of holds released
+     */
+    public int expireDue(long nowMillis) {
+        List<Hold> due = wheel.advanceTo(nowMillis);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        try {
+            return finish(due, Reservation.Status.EXPIRED);
+        } catch (RuntimeException e) {
+            log.warn("Failed to expire {} reservations, retrying", due.size(), e);
+            for (Hold hold : due) {
+                timeouts.put(hold.id, wheel.schedule(hold, nowMillis + wheel.getTickMillis()));
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Schedules the reservations that were active when the application
+     * stopped, expiring overdue ones on the first tick, and starts the wheel.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<Reservation> active = repository.findByStatus(Reservation.Status.ACTIVE);
+        active.forEach(this::schedule);
+        if (!active.isEmpty()) {
+            log.info("Recovered {} active reservations", active.size());
+        }
+        running = true;
+        ticker = new Thread(this::tick, "reservation-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (ticker == null) {
+            return;
+        }
+        ticker.interrupt();
+        try {
+            ticker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void tick() {
+        while (running) {
+            try {
+                expireDue(System.currentTimeMillis());
+                Thread.sleep(wheel.millisUntilNextTick(System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Reservation wheel tick failed", e);
+            }
+        }
+    }
+
+    /**
+     * Moves the holds that are still active to {@code status} and gives their
+     * quantity back, all in one transaction, then offers the freed stock to
+     * the items' backorders. The offers are queued on the items' lanes rather
+     * than waited for, so a slow drain does not hold up the wheel's next tick.
+     */
+    private int finish(List<Hold> holds, Reservation.Status status) {
+        // Item rows are locked in ascending id order, like multi-line orders and order batches do.
+        List<Hold> byItem = new ArrayList<>(holds);
+        byItem.sort(Comparator.comparing(hold -> hold.itemId));
+        List<Hold> finished = transactions.execute(tx -> {
+            List<Hold> changed = new ArrayList<>(holds.size());
+            for (Hold hold : byItem) {
+                if (repository.finish(hold.id, status) == 1) {
+                    itemRepository.releaseReservedStock(hold.itemId, hold.quantity);
+                    changed.add(hold);
+                }
+            }
+            return changed;
+        });
+
+        Set<Long> itemIds = new LinkedHashSet<>();
+        String how = status == Reservation.Status.EXPIRED ? "expired" : "released";
+        for (Hold hold : holds) {
+            cancel(hold.id);
+        }
+        for (Hold hold : finished) {
+            itemIds.add(hold.itemId);
+            (status == Reservation.Status.EXPIRED ? expired : released).increment();
+            fileLogService.append(AuditEvent.reservationReleased(hold.id, hold.itemId, hold.quantity, how));
+        }
+        for (Long itemId : itemIds) {
+            backorderService.offerBackorders(itemId);
+        }
+        return finished.size();
+    }
+
+    private void schedule(Reservation reservation) {
+        long deadline = reservation.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        timeouts.put(reservation.getId(), wheel.schedule(new Hold(reservation), deadline));
+    }
+
+    private void cancel(Long reservationId) {
+        HashedTimingWheel.Timeout<Hold> timeout = timeouts.remove(reservationId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Counter counter(MeterRegistry registry, String outcome) {
+        return Counter.builder("reservations")
+                .description("Reservations by what happened to them")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /** What the wheel needs to release a reservation without reading it back. */
+    private static final class Hold {
+
+        final Long id;
+        final Long itemId;
+        final int quantity;
+
+        Hold(Reservation reservation) {
+            this.id = reservation.getId();
+            this.itemId = reservation.getItemId();
+            this.quantity = reservation.getQuantity();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+
+/**
+ * Order with the least quantity still missing first, oldest first among
+ * equals. Completes as many orders as possible out of a restock.
+ */
+@Component
+public class SmallestRemainingFirstAllocationStrategy implements AllocationStrategy {
+
+    @Override
+    public String getName() {
+        return "smallest-remaining";
+    }
+
+    @Override
+    public Comparator<PendingOrder> comparator() {
+        return Comparator.comparingInt(PendingOrder::getRemaining)
+                .thenComparing(PendingOrder::getCreationDate);
+    }
+}
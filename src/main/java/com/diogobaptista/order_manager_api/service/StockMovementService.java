@@ -1,93 +1,400 @@
 package com.diogobaptista.order_manager_api.service;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
 import com.diogobaptista.order_manager_api.dto.StockMovementRequestDTO;
+import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
 import com.diogobaptista.order_manager_api.mapper.StockMovementMapper;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
 import com.diogobaptista.order_manager_api.repository.OrderRepository;
 import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
 import com.diogobaptista.order_manager_api.repository.ItemRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
+import jakarta.annotation.PreDestroy;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Allocates stock movements to orders. Concurrent requests for the same item
+ * are group-committed: they queue per item for up to
+ * {@code stock-movements.batch.linger-ms} or until
+ * {@code stock-movements.batch.max-size} of them are waiting, and are then
+ * allocated together on the item's lane in one transaction, with one stock
+ * update for the whole batch and batched inserts, so a hot item's row is
+ * locked once per batch instead of once per request. Each caller still gets
+ * its own movement or its own error, and waits for it at most
+ * {@code stock-movements.wait-timeout-ms}.
+ *
+ * <p>Statements of a batch are charged to whichever thread submitted the
+ * flush, not spread over the requests in it.
+ */
 @Service
 public class StockMovementService {
 
-    private static final Logger log = LoggerFactory.getLogger(StockMovementService.class);
     private final StockMovementRepository repository;
     private final ItemRepository itemRepository;
     private final OrderRepository orderRepository;
     private final OrderAllocationService orderAllocationService;
     private final FileLogService fileLogService;
     private final StockMovementMapper mapper;
+    private final ItemLaneExecutor lanes;
+    private final TransactionOperations transactions;
+    private final ListingStreamRepository listingStream;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final long waitTimeoutMs;
+    private final Map<Long, ItemBatch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService linger;
+    private final Timer createTimer;
+    private final DistributionSummary batchSizes;
+    private final AllocationOutcomes outcomes;
 
     public StockMovementService(StockMovementRepository repository,
                                 ItemRepository itemRepository,
                                 OrderRepository orderRepository,
                                 OrderAllocationService orderAllocationService,
                                 FileLogService fileLogService,
-                                StockMovementMapper mapper) {
+                                StockMovementMapper mapper,
+                                ItemLaneExecutor lanes,
+                                TransactionOperations transactions,
+                                ListingStreamRepository listingStream,
+                                @Value("${stock-movements.batch.max-size:64}") int maxBatchSize,
+                                @Value("${stock-movements.batch.linger-ms:2}") long lingerMs,
+                                @Value("${stock-movements.wait-timeout-ms:30000}") long waitTimeoutMs,
+                                MeterRegistry meterRegistry) {
         this.repository = repository;
         this.itemRepository = itemRepository;
         this.orderRepository = orderRepository;
         this.orderAllocationService = orderAllocationService;
         this.fileLogService = fileLogService;
         this.mapper = mapper;
+        this.lanes = lanes;
+        this.transactions = transactions;
+        this.listingStream = listingStream;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerMs = lingerMs;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.linger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-movement-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.createTimer = Timer.builder("stock.movements.create")
+                .description("Stock movement allocation, including the wait for the item's allocation lane")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("stock.movements.batch.size")
+                .description("Stock movement requests allocated together in one transaction")
+                .register(meterRegistry);
+        this.outcomes = new AllocationOutcomes(meterRegistry, "stock-movement");
+        Gauge.builder("stock.movements.batch.items", batches, Map::size)
+                .description("Items with stock movement requests queued or being allocated")
+                .register(meterRegistry);
     }
 
-    public List<StockMovement> findAll() {
-        return repository.findAll();
+    public CursorPage<StockMovementResponseDTO> findPage(String cursor, Integer limit) {
+        int size = CursorPage.limit(limit);
+        Pageable rows = PageRequest.of(0, size + 1);
+        List<StockMovementResponseDTO> movements;
+        if (cursor == null) {
+            movements = repository.findFirstPage(rows);
+        } else {
+            PageCursor after = PageCursor.decodeDated(cursor);
+            movements = repository.findPageAfter(after.getCreationDate(), after.getId(), rows);
+        }
+        return CursorPage.of(movements, size, sm -> PageCursor.encode(sm.getCreationDate(), sm.getId()));
+    }
+
+    public void streamAll(Consumer<StockMovementResponseDTO> sink) {
+        listingStream.streamStockMovements(sink);
+    }
+
+    /** Streams the rows the filter selects, oldest first, straight from a JDBC cursor. */
+    public void export(ExportFilter filter, Consumer<StockMovementResponseDTO> sink) {
+        listingStream.streamStockMovements(filter, sink);
     }
 
-    public Optional<StockMovement> findById(Long id) {
-        return repository.findById(id);
+    public Optional<StockMovementResponseDTO> findById(Long id) {
+        return repository.findResponseById(id);
     }
 
     public Optional<StockMovement> createStockMovement(StockMovementRequestDTO dto) {
+        return createStockMovement(dto, movement -> { });
+    }
 
-        Order order = getOrder(dto.getOrderId());
-        Item item = order.getItem();
+    /**
+     * Allocates the movement and hands it to {@code beforeCommit} inside the
+     * batch transaction that saves it. If {@code beforeCommit} throws, that
+     * transaction rolls back and every request in the batch fails with it.
+     */
+    public Optional<StockMovement> createStockMovement(StockMovementRequestDTO dto,
+                                                       Consumer<StockMovement> beforeCommit) {
+        return createTimer.record(() -> allocate(dto, beforeCommit));
+    }
 
-        validateOrder(order);
-        int remainingQty = getRemainingQuantity(order);
-        validateRequestedQuantity(dto.getQuantity(), remainingQty, order);
+    @PreDestroy
+    public void shutdown() {
+        // Batches already waiting out their linger still run; the lanes are shut down after this service.
+        linger.shutdown();
+        try {
+            linger.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        int availableStock = getAvailableStock(item);
-        int allocQty = calculateAllocation(dto.getQuantity(), remainingQty, availableStock);
+    private Optional<StockMovement> allocate(StockMovementRequestDTO dto, Consumer<StockMovement> beforeCommit) {
+        Long itemId = orderRepository.findItemIdById(dto.getOrderId())
+                .orElseThrow(() -> new NoSuchElementException("Order not found"));
 
-        StockMovement stockMovement = mapper.toEntity(dto, item);
-        stockMovement.setQuantity(allocQty);
-        stockMovement.setCreationDate(LocalDateTime.now());
+        PendingMovement request = new PendingMovement(dto, beforeCommit);
+        ItemBatch batch = enqueue(itemId, request);
+        try {
+            return request.result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        } catch (TimeoutException e) {
+            throw new AllocationBusyException(withdraw(batch, request), waitTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AllocationBusyException(withdraw(batch, request), waitTimeoutMs);
+        }
+    }
 
-        StockMovement saved = repository.save(stockMovement);
+    /**
+     * Takes a request its caller gave up on out of its batch, if no flush
+     * has picked it up yet, so that it is never allocated. Returns false when
+     * it is already being allocated and may still commit.
+     */
+    private boolean withdraw(ItemBatch batch, PendingMovement request) {
+        batch.lock.lock();
+        try {
+            return batch.pending.remove(request);
+        } finally {
+            batch.lock.unlock();
+        }
+    }
 
-        updateItemStock(item, availableStock, allocQty);
-        orderAllocationService.fulfillOrderWithStockMovement(order, saved);
+    /**
+     * Adds the request to its item's batch. The first request of a batch
+     * schedules the flush on the item's lane after the linger time, and the
+     * request that fills the batch flushes it right away. A batch that was
+     * retired after its last flush is skipped for a fresh one.
+     */
+    private ItemBatch enqueue(Long itemId, PendingMovement request) {
+        while (true) {
+            ItemBatch batch = batches.computeIfAbsent(itemId, id -> new ItemBatch());
+            boolean schedule;
+            boolean full;
+            batch.lock.lock();
+            try {
+                if (batch.retired) {
+                    continue;
+                }
+                batch.pending.add(request);
+                schedule = !batch.scheduled;
+                batch.scheduled = true;
+                full = batch.pending.size() == maxBatchSize;
+            } finally {
+                batch.lock.unlock();
+            }
 
-        logAndWrite(
-                String.format("StockMovement %d allocated to Order %d [Qty: %d]", saved.getId(), order.getId(), allocQty),
-                "INFO"
-        );
+            if (full || (schedule && lingerMs <= 0)) {
+                submitFlush(itemId, batch);
+            } else if (schedule) {
+                try {
+                    linger.schedule(() -> submitFlush(itemId, batch), lingerMs, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    failPending(batch, e);
+                }
+            }
+            return batch;
+        }
+    }
 
-        return Optional.of(saved);
+    private void submitFlush(Long itemId, ItemBatch batch) {
+        try {
+            lanes.submit(itemId, () -> flush(itemId, batch));
+        } catch (RejectedExecutionException e) {
+            failPending(batch, e);
+        }
     }
 
-    private Order getOrder(Long orderId) {
-        return orderRepository.findById(orderId)
-                .orElseThrow(() -> new NoSuchElementException("Order not found"));
+    /** Shutting down: nothing will run the batch, so its callers are failed instead of left waiting. */
+    private static void failPending(ItemBatch batch, RejectedExecutionException e) {
+        batch.lock.lock();
+        try {
+            batch.pending.forEach(request -> request.result.completeExceptionally(e));
+            batch.pending.clear();
+            batch.scheduled = false;
+        } finally {
+            batch.lock.unlock();
+        }
+    }
+
+    /**
+     * Allocates everything queued for the item, at most max-size requests per
+     * transaction. Requests that arrive while a batch is being written join
+     * the next batch without waiting for another linger. Once nothing is
+     * left the batch is retired and dropped from the map, so items that are
+     * no longer being moved do not keep an entry.
+     */
+    private Void flush(Long itemId, ItemBatch batch) {
+        while (true) {
+            List<PendingMovement> chunk = new ArrayList<>();
+            batch.lock.lock();
+            try {
+                if (batch.pending.isEmpty()) {
+                    batch.scheduled = false;
+                    batch.retired = true;
+                    batches.remove(itemId, batch);
+                    return null;
+                }
+                while (!batch.pending.isEmpty() && chunk.size() < maxBatchSize) {
+                    chunk.add(batch.pending.poll());
+                }
+            } finally {
+                batch.lock.unlock();
+            }
+            allocateChunk(itemId, chunk);
+        }
+    }
+
+    private void allocateChunk(Long itemId, List<PendingMovement> chunk) {
+        batchSizes.record(chunk.size());
+        try {
+            transactions.execute(status -> allocateToOrders(itemId, chunk));
+        } catch (RuntimeException | Error e) {
+            // The batch shares one transaction, so a database failure fails every request in it.
+            chunk.forEach(request -> request.result.completeExceptionally(e));
+            return;
+        }
+        chunk.forEach(PendingMovement::complete);
+    }
+
+    /**
+     * Allocates a batch of requests for one item with one order read, one
+     * stock update and batched inserts. Each request gets the result it would
+     * have got running alone, in arrival order: the first pass adds up what
+     * the valid requests ask for, the second hands out what was taken.
+     */
+    private Void allocateToOrders(Long itemId, List<PendingMovement> chunk) {
+        Set<Long> orderIds = new HashSet<>();
+        chunk.forEach(request -> orderIds.add(request.dto.getOrderId()));
+        Map<Long, Order> orders = orderRepository.findWithItemAndUserByIdIn(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+
+        Map<Long, Integer> remaining = new HashMap<>();
+        int demand = 0;
+        for (PendingMovement request : chunk) {
+            Order order = orders.get(request.dto.getOrderId());
+            int requested = request.dto.getQuantity();
+            if (order == null || requested <= 0) {
+                continue;
+            }
+            int left = remaining.computeIfAbsent(order.getId(), id -> getRemainingQuantity(order));
+            if (left > 0 && requested <= left) {
+                demand += requested;
+                remaining.put(order.getId(), left - requested);
+            }
+        }
+        int available = demand > 0 ? itemRepository.takeStock(itemId, demand) : 0;
+
+        LocalDateTime now = LocalDateTime.now();
+        List<PendingMovement> allocated = new ArrayList<>();
+        List<StockMovement> movements = new ArrayList<>();
+        Map<Long, Order> touched = new LinkedHashMap<>();
+        for (PendingMovement request : chunk) {
+            try {
+                Order order = orders.get(request.dto.getOrderId());
+                if (order == null) {
+                    throw new NoSuchElementException("Order not found");
+                }
+                validateOrder(order);
+                int remainingQty = getRemainingQuantity(order);
+                validateRequestedQuantity(request.dto.getQuantity(), remainingQty, order);
+
+                int allocQty = takeAvailableStock(order.getItem(), Math.min(request.dto.getQuantity(), remainingQty),
+                        available);
+                available -= allocQty;
+
+                StockMovement stockMovement = mapper.toEntity(request.dto, order.getItem());
+                stockMovement.setQuantity(allocQty);
+                stockMovement.setCreationDate(now);
+                order.setFulfilledQuantity(order.getFulfilledQuantity() + allocQty);
+
+                request.order = order;
+                allocated.add(request);
+                movements.add(stockMovement);
+                touched.put(order.getId(), order);
+            } catch (RuntimeException e) {
+                request.rejection = e;
+            }
+        }
+        if (available > 0) {
+            // Not reached while both passes agree; keeps stock exact if they ever do not.
+            itemRepository.incrementStock(itemId, available);
+        }
+
+        List<StockMovement> saved = repository.saveAll(movements);
+        orderRepository.saveAll(touched.values());
+        for (int i = 0; i < allocated.size(); i++) {
+            PendingMovement request = allocated.get(i);
+            request.movement = saved.get(i);
+            orderAllocationService.recordAllocation(request.order, request.movement, request.movement.getQuantity());
+            fileLogService.append(AuditEvent.movementAllocated(request.movement.getId(), request.order.getId(),
+                    request.movement.getQuantity()));
+        }
+        allocated.forEach(request -> request.beforeCommit.accept(request.movement));
+        return null;
     }
 
     private void validateOrder(Order order) {
         if (order.isComplete()) {
-            logAndWrite(String.format("Order %d already completed", order.getId()), "WARN");
+            fileLogService.append(AuditEvent.movementOrderCompleted(order.getId()));
             throw new IllegalStateException("Order already completed");
         }
     }
@@ -98,39 +405,56 @@ public class StockMovementService {
 
     private void validateRequestedQuantity(int requestedQty, int remainingQty, Order order) {
         if (requestedQty > remainingQty) {
-            logAndWrite(
-                    String.format("Invalid StockMovement request for Order %d - Requested: %d, Remaining: %d",
-                            order.getId(), requestedQty, remainingQty),
-                    "WARN"
-            );
+            fileLogService.append(AuditEvent.movementInvalidQuantity(order.getId(), requestedQty, remainingQty));
             throw new IllegalArgumentException("Requested quantity exceeds remaining quantity");
         }
     }
 
-    private int getAvailableStock(Item item) {
-        int stock = item.getStockQuantity();
-        if (stock <= 0) {
-            logAndWrite(String.format("No stock available for Item %d", item.getId()), "WARN");
+    private int takeAvailableStock(Item item, int wantedQty, int available) {
+        int taken = Math.max(Math.min(wantedQty, available), 0);
+        outcomes.record(wantedQty, taken);
+        if (taken <= 0) {
+            fileLogService.append(AuditEvent.movementNoStock(item.getId()));
             throw new IllegalStateException("No stock available");
         }
-        return stock;
+        return taken;
     }
 
-    private int calculateAllocation(int requestedQty, int remainingQty, int availableStock) {
-        return Math.min(requestedQty, Math.min(remainingQty, availableStock));
-    }
+    /** One caller's request, waiting in its item's batch. */
+    private static final class PendingMovement {
 
-    private void updateItemStock(Item item, int availableStock, int allocQty) {
-        item.setStockQuantity(availableStock - allocQty);
-        itemRepository.save(item);
-    }
+        final StockMovementRequestDTO dto;
+        final Consumer<StockMovement> beforeCommit;
+        final CompletableFuture<Optional<StockMovement>> result = new CompletableFuture<>();
+        Order order;
+        StockMovement movement;
+        RuntimeException rejection;
 
-    private void logAndWrite(String message, String level) {
-        if ("WARN".equals(level)) {
-            log.warn(message);
-        } else {
-            log.info(message);
+        PendingMovement(StockMovementRequestDTO dto, Consumer<StockMovement> beforeCommit) {
+            this.dto = dto;
+            this.beforeCommit = beforeCommit;
         }
-        fileLogService.appendLine(message);
+
+        void complete() {
+            if (rejection != null) {
+                result.completeExceptionally(rejection);
+            } else {
+                result.complete(Optional.of(movement));
+            }
+        }
+    }
+
+    /**
+     * Requests for one item waiting to be flushed. {@code scheduled} is set
+     * while a flush is due to run, so that only the first request of a batch
+     * schedules one. {@code retired} is set when a flush found it empty and
+     * removed it from {@code batches}; requests then start a new batch.
+     */
+    private static final class ItemBatch {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final Queue<PendingMovement> pending = new ArrayDeque<>();
+        boolean scheduled;
+        boolean retired;
     }
 }
@@ -0,0 +1,56 @@
+package com.diogobaptista.order_manager_api.service;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Orders of higher-priority users first, oldest first within a priority.
+ * Priorities come from {@code allocation.strategy.user-priorities} as
+ * {@code userId=priority} pairs, e.g. {@code 12=10,40=5}; users not listed
+ * have priority 0.
+ */
+@Component
+public class UserPriorityAllocationStrategy implements AllocationStrategy {
+
+    private final Map<Long, Integer> priorities;
+
+    public UserPriorityAllocationStrategy(@Value("${allocation.strategy.user-priorities:}") String priorities) {
+        this.priorities = parse(priorities);
+    }
+
+    @Override
+    public String getName() {
+        return "user-priority";
+    }
+
+    @Override
+    public Comparator<PendingOrder> comparator() {
+        Comparator<PendingOrder> byPriority = Comparator.comparingInt(order -> priorityOf(order.getUserId()));
+        return byPriority.reversed().thenComparing(PendingOrder::getCreationDate);
+    }
+
+    int priorityOf(Long userId) {
+        return priorities.getOrDefault(userId, 0);
+    }
+
+    static Map<Long, Integer> parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> parsed = new HashMap<>();
+        for (String pair : spec.split(",")) {
+            String[] parts = pair.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected userId=priority but got '" + pair + "'");
+            }
+            parsed.put(Long.valueOf(parts[0].trim()), Integer.valueOf(parts[1].trim()));
+        }
+        return parsed;
+    }
+}
@@ -1,59 +1,72 @@
 package com.diogobaptista.order_manager_api.service;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
 import com.diogobaptista.order_manager_api.dto.UserRequestDTO;
+import com.diogobaptista.order_manager_api.dto.UserResponseDTO;
 import com.diogobaptista.order_manager_api.entity.User;
 import com.diogobaptista.order_manager_api.mapper.UserMapper;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
 import com.diogobaptista.order_manager_api.repository.UserRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
-
 @Service
 public class UserService {
 
-    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
-
     private final UserRepository repository;
     private final UserMapper mapper;
     private final FileLogService fileLogService; // Adicionado
+    private final ListingStreamRepository listingStream;
+    private final CatalogCache catalog;
 
     private static final Pattern EMAIL_PATTERN = Pattern.compile(
             "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$"
     );
 
-    public UserService(UserRepository repository, UserMapper mapper, FileLogService fileLogService) {
+    public UserService(UserRepository repository, UserMapper mapper, FileLogService fileLogService,
+                       ListingStreamRepository listingStream, CatalogCache catalog) {
         this.repository = repository;
         this.mapper = mapper;
         this.fileLogService = fileLogService;
+        this.listingStream = listingStream;
+        this.catalog = catalog;
+    }
+
+    public CursorPage<User> findPage(String cursor, Integer limit) {
+        int size = CursorPage.limit(limit);
+        long afterId = cursor == null ? 0L : PageCursor.decodeId(cursor);
+        List<User> rows = repository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, size + 1));
+        return CursorPage.of(rows, size, user -> PageCursor.encode(user.getId()));
     }
 
-    public List<User> findAll() {
-        return repository.findAll();
+    public void streamAll(Consumer<UserResponseDTO> sink) {
+        listingStream.streamUsers(sink);
     }
 
     public Optional<User> findById(Long id) {
-        return repository.findById(id);
+        return catalog.user(id);
     }
 
     public User createUser(UserRequestDTO dto) {
         if (isEmailInvalid(dto.getEmail())) {
-            logAndWrite("Fail on Create user - Invalid email: " + dto.getEmail(), "WARN");
+            fileLogService.append(AuditEvent.userCreateInvalidEmail(dto.getEmail()));
             throw new IllegalArgumentException("Invalid email format: " + dto.getEmail());
         }
 
         User savedUser = repository.save(mapper.toEntity(dto));
-        logAndWrite(String.format("Created User [ID: %d, Email: %s]", savedUser.getId(), savedUser.getEmail()), "INFO");
+        fileLogService.append(AuditEvent.userCreated(savedUser.getId(), savedUser.getEmail()));
         return savedUser;
     }
 
     public Optional<User> updateUser(Long id, UserRequestDTO dto) {
         if (isEmailInvalid(dto.getEmail())) {
-            logAndWrite(String.format("Fail on Update user %d - Invalid email: %s", id, dto.getEmail()), "WARN");
+            fileLogService.append(AuditEvent.userUpdateInvalidEmail(id, dto.getEmail()));
             throw new IllegalArgumentException("Invalid email format: " + dto.getEmail());
         }
 
@@ -61,7 +74,8 @@ public class UserService {
                 .map(existing -> {
                     mapper.updateEntity(existing, dto);
                     User updated = repository.save(existing);
-                    logAndWrite(String.format("Update User [ID: %d]", id), "INFO");
+                    catalog.evictUser(id);
+                    fileLogService.append(AuditEvent.userUpdated(id));
                     return updated;
                 });
     }
@@ -70,11 +84,12 @@ public class UserService {
         return repository.findById(id)
                 .map(user -> {
                     repository.delete(user);
-                    logAndWrite(String.format("Deleted User [ID: %d, Email: %s]", id, user.getEmail()), "INFO");
+                    catalog.evictUser(id);
+                    fileLogService.append(AuditEvent.userDeleted(id, user.getEmail()));
                     return true;
                 })
                 .orElseGet(() -> {
-                    logAndWrite(String.format("Fail on Delete User [ID: %d] not found", id), "WARN");
+                    fileLogService.append(AuditEvent.userDeleteNotFound(id));
                     return false;
                 });
     }
@@ -83,12 +98,4 @@ public class UserService {
         return email == null || !EMAIL_PATTERN.matcher(email).matches();
     }
 
-    private void logAndWrite(String message, String level) {
-        if ("WARN".equals(level)) {
-            logger.warn(message);
-        } else {
-            logger.info(message);
-        }
-        fileLogService.appendLine(message);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package com.diogobaptista.order_manager_api.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens a {@link SqlStatementScope} per HTTP request and records what the
+ * request cost the database as {@code http.sql.statements},
+ * {@code http.sql.rows} and {@code http.sql.time}, tagged with method and URI
+ * pattern. With {@code sql.statements.response-headers=true} (the {@code debug}
+ * profile) the counts are also returned as {@code X-Sql-*} headers, and any
+ * SQL repeated {@code sql.statements.repeat-warn-threshold} times in one
+ * request is logged as a likely N+1.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "sql.statements.enabled", matchIfMissing = true)
+public class SqlStatementFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String ROWS_HEADER = "X-Sql-Rows";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final boolean responseHeaders;
+    private final int repeatWarnThreshold;
+
+    public SqlStatementFilter(ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${sql.statements.response-headers:false}") boolean responseHeaders,
+                              @Value("${sql.statements.repeat-warn-threshold:20}") int repeatWarnThreshold) {
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.responseHeaders = responseHeaders;
+        this.repeatWarnThreshold = repeatWarnThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (SqlStatementScope scope = SqlStatementScope.open()) {
+            SqlStatementStats stats = scope.stats();
+            HttpServletResponse target = response;
+            StatsHeaderResponse headerResponse = null;
+            if (responseHeaders) {
+                headerResponse = new StatsHeaderResponse(response, stats);
+                target = headerResponse;
+            }
+            try {
+                chain.doFilter(request, target);
+            } finally {
+                if (headerResponse != null) {
+                    headerResponse.writeHeaders();
+                }
+                record(request, stats);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatementStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        Tags tags = Tags.of("method", request.getMethod(), "uri", uri);
+
+        DistributionSummary.builder("http.sql.statements").tags(tags).register(meterRegistry)
+                .record(stats.statements());
+        DistributionSummary.builder("http.sql.rows").tags(tags).register(meterRegistry)
+                .record(stats.rows());
+        Timer.builder("http.sql.time").tags(tags).register(meterRegistry)
+                .record(stats.nanos(), TimeUnit.NANOSECONDS);
+
+        if (responseHeaders || log.isDebugEnabled()) {
+            for (Map.Entry<String, Long> repeated : stats.repeatedStatements(repeatWarnThreshold).entrySet()) {
+                log.warn("Possible N+1 query in {} {}: {} executions of [{}]",
+                        request.getMethod(), uri, repeated.getValue(), repeated.getKey());
+            }
+        }
+    }
+
+    /** Adds the counts as headers just before the response is committed. */
+    private static final class StatsHeaderResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatementStats stats;
+        private boolean written;
+
+        StatsHeaderResponse(HttpServletResponse response, SqlStatementStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeaders() {
+            if (written || isCommitted()) {
+                return;
+            }
+            written = true;
+            setHeader(STATEMENTS_HEADER, Long.toString(stats.statements()));
+            setHeader(ROWS_HEADER, Long.toString(stats.rows()));
+            setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.3f", stats.nanos() / 1_000_000.0));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeaders();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.diogobaptista.order_manager_api.sql;
+
+import java.util.function.Supplier;
+
+/**
+ * Binds a {@link SqlStatementStats} to the current thread so that
+ * {@link StatementCountingDataSource} knows whom to charge for a statement.
+ * Scopes nest: when an inner scope closes, its counts are added to the one it
+ * was opened in.
+ *
+ * <pre>{@code
+ * SqlStatementStats stats = SqlStatementScope.measure(() -> orderService.create(dto));
+ * assertTrue(stats.statements() <= 7);
+ * }</pre>
+ */
+public final class SqlStatementScope implements AutoCloseable {
+
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+
+    private final SqlStatementStats stats = new SqlStatementStats();
+    private final SqlStatementStats parent;
+
+    private SqlStatementScope() {
+        this.parent = CURRENT.get();
+        CURRENT.set(stats);
+    }
+
+    public static SqlStatementScope open() {
+        return new SqlStatementScope();
+    }
+
+    public static SqlStatementStats measure(Runnable work) {
+        try (SqlStatementScope scope = open()) {
+            work.run();
+            return scope.stats();
+        }
+    }
+
+    /** The stats statements on this thread are charged to, or null outside any scope. */
+    public static SqlStatementStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code task} charging its statements to {@code stats}, typically
+     * captured with {@link #current()} on the thread that handed the task over.
+     */
+    public static <T> T callWith(SqlStatementStats stats, Supplier<T> task) {
+        SqlStatementStats previous = CURRENT.get();
+        if (previous == stats) {
+            return task.get();
+        }
+        CURRENT.set(stats);
+        try {
+            return task.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public SqlStatementStats stats() {
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        restore(parent);
+        if (parent != null) {
+            stats.addTo(parent);
+        }
+    }
+
+    private static void restore(SqlStatementStats stats) {
+        if (stats == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(stats);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.diogobaptista.order_manager_api.sql;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Statements, rows and database time spent on behalf of one unit of work,
+ * usually an HTTP request. A batch counts as one statement, since it is one
+ * round trip. Updated from the request thread and from the allocation lane
+ * that runs its writes.
+ */
+public class SqlStatementStats {
+
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final Map<String, LongAdder> executionsBySql = new ConcurrentHashMap<>();
+
+    void recordExecution(String sql, long elapsedNanos) {
+        statements.increment();
+        nanos.add(elapsedNanos);
+        if (sql != null) {
+            executionsBySql.computeIfAbsent(sql, s -> new LongAdder()).increment();
+        }
+    }
+
+    void recordRows(long count) {
+        if (count > 0) {
+            rows.add(count);
+        }
+    }
+
+    void addTo(SqlStatementStats other) {
+        other.statements.add(statements.sum());
+        other.rows.add(rows.sum());
+        other.nanos.add(nanos.sum());
+        executionsBySql.forEach((sql, count) ->
+                other.executionsBySql.computeIfAbsent(sql, s -> new LongAdder()).add(count.sum()));
+    }
+
+    public long statements() {
+        return statements.sum();
+    }
+
+    public long rows() {
+        return rows.sum();
+    }
+
+    public long nanos() {
+        return nanos.sum();
+    }
+
+    public long executions(String sql) {
+        LongAdder count = executionsBySql.get(sql);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * SQL strings that ran at least {@code threshold} times, the usual sign
+     * of an N+1 query.
+     */
+    public Map<String, Long> repeatedStatements(int threshold) {
+        if (threshold <= 0) {
+            return Collections.emptyMap();
+        }
+        return executionsBySql.entrySet().stream()
+                .filter(e -> e.getValue().sum() >= threshold)
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sum()));
+    }
+
+    @Override
+    public String toString() {
+        return statements() + " statements, " + rows() + " rows, " + nanos() / 1_000 + "us";
+    }
+}
@@ -0,0 +1,122 @@
+package com.diogobaptista.order_manager_api.sql;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps connections so every statement execution is charged to the
+ * {@link SqlStatementScope} open on the calling thread: one statement per
+ * execute call (a whole batch counts once), its elapsed time, and the rows it
+ * updated or the result set rows the caller read. Outside a scope statements
+ * go through untouched apart from the proxy call.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    public StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) proxy(Connection.class, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return wrap((Statement) result, sql, method.getReturnType());
+            }
+            return result;
+        });
+    }
+
+    private static Statement wrap(Statement statement, String preparedSql, Class<?> type) {
+        Class<?> statementType = type == CallableStatement.class ? CallableStatement.class
+                : type == PreparedStatement.class ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) proxy(statementType, (proxy, method, args) -> {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                Object result = invoke(statement, method, args);
+                return "getResultSet".equals(name) ? countRows((ResultSet) result) : result;
+            }
+            SqlStatementStats stats = SqlStatementScope.current();
+            if (stats == null) {
+                return invoke(statement, method, args);
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invoke(statement, method, args);
+            } finally {
+                stats.recordExecution(sql, System.nanoTime() - start);
+            }
+
+            if (result instanceof ResultSet) {
+                return countRows((ResultSet) result, stats);
+            }
+            if (result instanceof Integer || result instanceof Long) {
+                stats.recordRows(((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    stats.recordRows(count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    stats.recordRows(count);
+                }
+            } else if (Boolean.FALSE.equals(result)) {
+                stats.recordRows(statement.getUpdateCount());
+            }
+            return result;
+        });
+    }
+
+    private static ResultSet countRows(ResultSet resultSet) {
+        SqlStatementStats stats = SqlStatementScope.current();
+        return resultSet == null || stats == null ? resultSet : countRows(resultSet, stats);
+    }
+
+    private static ResultSet countRows(ResultSet resultSet, SqlStatementStats stats) {
+        return (ResultSet) proxy(ResultSet.class, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                stats.recordRows(1);
+            }
+            return result;
+        });
+    }
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
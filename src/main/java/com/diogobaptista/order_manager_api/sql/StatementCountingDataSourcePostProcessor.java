@@ -0,0 +1,24 @@
+package com.diogobaptista.order_manager_api.sql;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application's {@link DataSource} in a {@link StatementCountingDataSource}.
+ * Disabled with {@code sql.statements.enabled=false}.
+ */
+@Component
+@ConditionalOnProperty(name = "sql.statements.enabled", matchIfMissing = true)
+public class StatementCountingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)) {
+            return new StatementCountingDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+}
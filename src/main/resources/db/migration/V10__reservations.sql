@@ -0,0 +1,19 @@
+-- Quantity held for checkouts. Held stock stays in item.stock_quantity but is counted in reserved_quantity,
+-- and allocation only takes stock_quantity - reserved_quantity.
+ALTER TABLE item ADD COLUMN reserved_quantity INT NOT NULL DEFAULT 0;
+
+CREATE TABLE reservation (
+    id BIGSERIAL PRIMARY KEY,
+    item_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    status VARCHAR(16) NOT NULL DEFAULT 'ACTIVE',
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    expires_at TIMESTAMP NOT NULL,
+    order_id BIGINT,
+    CONSTRAINT fk_reservation_item FOREIGN KEY (item_id) REFERENCES item(id),
+    CONSTRAINT fk_reservation_order FOREIGN KEY (order_id) REFERENCES "order"(id)
+);
+
+-- Expiry is driven in memory; the table is only scanned for active holds when the application starts.
+CREATE INDEX idx_reservation_active ON reservation (id) WHERE status = 'ACTIVE';
+CREATE INDEX idx_reservation_item_id ON reservation (item_id);
@@ -0,0 +1,12 @@
+-- Multi-line orders. Each line is an order row, so stock movements, backorders and the allocation ledger
+-- treat it like any single-item order; the lines of one order share basket_id, the id of its first line.
+-- Single-item orders leave it null.
+ALTER TABLE "order" ADD COLUMN basket_id BIGINT;
+ALTER TABLE "order" ADD CONSTRAINT fk_order_basket FOREIGN KEY (basket_id) REFERENCES "order"(id);
+
+CREATE INDEX idx_order_basket_id ON "order" (basket_id, id) WHERE basket_id IS NOT NULL;
+
+-- A stock movement batch or a backorder drain can complete many orders, and baskets, in one transaction,
+-- each queuing its own completion email. Ids are handed out by Hibernate in blocks of 50, like orders and
+-- allocations, so those inserts batch with the allocation rows instead of each fetching its own id.
+ALTER SEQUENCE email_outbox_id_seq INCREMENT BY 50;
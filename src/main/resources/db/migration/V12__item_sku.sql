@@ -0,0 +1,4 @@
+-- Stock keeping unit: the key POST /items/import merges on. Items created before it have none.
+ALTER TABLE item ADD COLUMN sku VARCHAR(64);
+
+CREATE UNIQUE INDEX idx_item_sku ON item (sku);
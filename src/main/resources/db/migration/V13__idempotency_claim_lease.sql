@@ -0,0 +1,3 @@
+-- When the current claim on a key was taken. A claim still uncompleted after idempotency.lease-ms is treated as
+-- abandoned by a request that crashed, and the next request with the key takes it over instead of waiting forever.
+ALTER TABLE idempotency_key ADD COLUMN claimed_at TIMESTAMP NOT NULL DEFAULT now();
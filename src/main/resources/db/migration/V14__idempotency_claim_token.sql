@@ -0,0 +1,4 @@
+-- Identifies the request holding a claim. The response is stored, the lease renewed and a failed claim released
+-- only while the row still carries that request's token, so a request whose claim was taken over cannot complete
+-- or drop the key under the request that took it.
+ALTER TABLE idempotency_key ADD COLUMN claim_token VARCHAR(36);
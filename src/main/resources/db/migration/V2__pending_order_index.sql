@@ -0,0 +1,3 @@
+CREATE INDEX idx_order_pending_by_item
+    ON "order" (item_id, creation_date, id)
+    WHERE fulfilled_quantity < quantity;
@@ -0,0 +1,3 @@
+-- Order and stock movement ids are handed out by Hibernate in blocks of 50 so inserts can be batched.
+ALTER SEQUENCE order_id_seq INCREMENT BY 50;
+ALTER SEQUENCE stock_movement_id_seq INCREMENT BY 50;
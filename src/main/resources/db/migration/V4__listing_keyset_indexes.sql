@@ -0,0 +1,3 @@
+-- Keyset pages and streams of orders and stock movements walk (creation_date, id).
+CREATE INDEX IF NOT EXISTS idx_order_creation_date_id ON "order" (creation_date, id);
+CREATE INDEX IF NOT EXISTS idx_stock_movement_creation_date_id ON stock_movement (creation_date, id);
@@ -0,0 +1,18 @@
+CREATE TABLE email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    order_id BIGINT,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(16) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT now(),
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    sent_at TIMESTAMP
+);
+
+-- The dispatcher only ever scans rows that are still waiting to go out.
+CREATE INDEX idx_email_outbox_due
+    ON email_outbox (next_attempt_at, id)
+    WHERE status = 'PENDING';
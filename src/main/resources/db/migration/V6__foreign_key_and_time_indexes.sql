@@ -0,0 +1,13 @@
+-- Every statement is CONCURRENTLY so the indexes build without blocking writes on a live table;
+-- Flyway runs such a script outside a transaction.
+
+-- Foreign key columns: looked up by item and user, and scanned by the FK checks on every item or user delete.
+-- Open orders per item are already covered by the partial idx_order_pending_by_item from V2.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_item_id ON "order" (item_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_user_id ON "order" (user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_stock_movement_item_id ON stock_movement (item_id);
+
+-- Orders and movements are append-only, so creation_date follows the physical row order and a BRIN
+-- index covers a time range in a handful of pages.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_creation_date_brin ON "order" USING brin (creation_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_stock_movement_creation_date_brin ON stock_movement USING brin (creation_date);
@@ -0,0 +1,18 @@
+-- One row per quantity allocated from a stock movement to an order. Allocations made before this
+-- migration were never linked to their movement and are not backfilled.
+CREATE TABLE allocation (
+    id BIGSERIAL PRIMARY KEY,
+    creation_date TIMESTAMP NOT NULL DEFAULT now(),
+    order_id BIGINT NOT NULL,
+    stock_movement_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    CONSTRAINT fk_allocation_order FOREIGN KEY (order_id) REFERENCES "order"(id),
+    CONSTRAINT fk_allocation_stock_movement FOREIGN KEY (stock_movement_id) REFERENCES stock_movement(id)
+);
+
+-- Ids are handed out by Hibernate in blocks of 50, like orders and movements, so inserts batch.
+ALTER SEQUENCE allocation_id_seq INCREMENT BY 50;
+
+-- Both lookup directions, already in response order.
+CREATE INDEX idx_allocation_order_id ON allocation (order_id, id);
+CREATE INDEX idx_allocation_stock_movement_id ON allocation (stock_movement_id, id);
@@ -0,0 +1,14 @@
+-- One row per Idempotency-Key seen on a create endpoint. The row is claimed (status NULL) before the request
+-- runs and completed with the response to replay; the primary key is what makes concurrent duplicates collide.
+CREATE TABLE idempotency_key (
+    scope VARCHAR(32) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status INT,
+    response_body TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    PRIMARY KEY (scope, idempotency_key)
+);
+
+-- Expired keys are purged oldest first.
+CREATE INDEX idx_idempotency_key_created_at ON idempotency_key (created_at);
@@ -0,0 +1,202 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
+import com.diogobaptista.order_manager_api.service.BackorderService;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.ItemLaneExecutor;
+import com.diogobaptista.order_manager_api.service.OrderAllocationService;
+import com.diogobaptista.order_manager_api.service.PendingOrderIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+public class BackorderServiceTest {
+
+    private OrderRepository orderRepository;
+    private StockMovementRepository stockRepository;
+    private ItemRepository itemRepository;
+    private OrderAllocationService allocator;
+    private PendingOrderIndex pendingOrders;
+    private ItemLaneExecutor lanes;
+    private BackorderService service;
+
+    @BeforeEach
+    void setup() {
+        orderRepository = mock(OrderRepository.class);
+        stockRepository = mock(StockMovementRepository.class);
+        itemRepository = mock(ItemRepository.class);
+        allocator = mock(OrderAllocationService.class);
+        pendingOrders = mock(PendingOrderIndex.class);
+        FileLogService fileLogService = mock(FileLogService.class);
+        lanes = new ItemLaneExecutor(1);
+
+        service = new BackorderService(orderRepository, stockRepository, itemRepository,
+                allocator, pendingOrders, fileLogService, lanes, TransactionOperations.withoutTransaction(), 2);
+
+        when(stockRepository.save(any(StockMovement.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void offerBackorders_fromTheItemsLane_runsAfterTheCurrentTask() throws Exception {
+        when(pendingOrders.head(1L, 2)).thenReturn(Collections.emptyList());
+        AtomicBoolean drainedInline = new AtomicBoolean();
+
+        CompletableFuture<Integer> offered = lanes.call(1L, () -> {
+            CompletableFuture<Integer> drain = service.offerBackorders(1L);
+            drainedInline.set(drain.isDone());
+            return drain;
+        });
+
+        assertFalse(drainedInline.get());
+        assertEquals(0, offered.get(5, TimeUnit.SECONDS));
+        verify(pendingOrders).head(1L, 2);
+    }
+
+    @Test
+    void allocateBackorders_fillsOrdersInIndexOrderUntilStockRunsOut() {
+        Item item = item(10);
+        Order first = order(1L, item, 4, 0);
+        Order second = order(2L, item, 8, 0);
+
+        when(pendingOrders.head(1L, 2)).thenReturn(entries(first, second));
+        // The database returns the orders in its own order; the index order wins.
+        when(orderRepository.findWithUserByIdIn(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(second, first));
+        when(itemRepository.takeStock(1L, 12)).thenReturn(10);
+
+        int allocated = service.allocateBackorders(item.getId());
+
+        assertEquals(10, allocated);
+
+        ArgumentCaptor<StockMovement> movements = ArgumentCaptor.forClass(StockMovement.class);
+        verify(stockRepository, times(2)).save(movements.capture());
+        assertEquals(4, movements.getAllValues().get(0).getQuantity());
+        assertEquals(6, movements.getAllValues().get(1).getQuantity());
+        assertSame(item, movements.getAllValues().get(0).getItem());
+
+        verify(allocator).fulfillOrderWithStockMovement(eq(first), any());
+        verify(allocator).fulfillOrderWithStockMovement(eq(second), any());
+        verify(itemRepository, never()).save(any());
+        verify(pendingOrders, times(1)).head(1L, 2);
+    }
+
+    @Test
+    void allocateBackorders_loadsNextBatchWhenStockRemains() {
+        Item item = item(10);
+        Order[] firstBatch = {order(1L, item, 2, 0), order(2L, item, 3, 1)};
+        Order third = order(3L, item, 1, 0);
+
+        when(pendingOrders.head(1L, 2))
+                .thenReturn(entries(firstBatch))
+                .thenReturn(entries(third));
+        when(orderRepository.findWithUserByIdIn(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(firstBatch));
+        when(orderRepository.findWithUserByIdIn(Collections.singletonList(3L)))
+                .thenReturn(Collections.singletonList(third));
+        when(itemRepository.takeStock(1L, 4)).thenReturn(4);
+        when(itemRepository.takeStock(1L, 1)).thenReturn(1);
+
+        int allocated = service.allocateBackorders(item.getId());
+
+        assertEquals(5, allocated);
+        verify(allocator, times(3)).fulfillOrderWithStockMovement(any(), any());
+        verify(pendingOrders, times(2)).head(1L, 2);
+    }
+
+    @Test
+    void allocateBackorders_noPendingOrders_doesNothing() {
+        Item item = item(10);
+
+        when(pendingOrders.head(1L, 2)).thenReturn(Collections.emptyList());
+
+        int allocated = service.allocateBackorders(item.getId());
+
+        assertEquals(0, allocated);
+        verifyNoInteractions(stockRepository, allocator, itemRepository);
+    }
+
+    @Test
+    void allocateBackorders_noStock_leavesOrdersPending() {
+        Item item = item(0);
+
+        Order order = order(1L, item, 4, 0);
+
+        when(pendingOrders.head(1L, 2)).thenReturn(entries(order));
+        when(orderRepository.findWithUserByIdIn(Collections.singletonList(1L)))
+                .thenReturn(Collections.singletonList(order));
+        when(itemRepository.takeStock(1L, 4)).thenReturn(0);
+
+        int allocated = service.allocateBackorders(item.getId());
+
+        assertEquals(0, allocated);
+        verifyNoInteractions(stockRepository, allocator);
+    }
+
+    @Test
+    void allocateBackorders_dropsStaleEntriesAndMovesOn() {
+        Item item = item(10);
+        Order filled = order(1L, item, 4, 4);
+        Order open = order(2L, item, 3, 0);
+
+        when(pendingOrders.head(1L, 2))
+                .thenReturn(entries(filled))
+                .thenReturn(entries(open))
+                .thenReturn(Collections.emptyList());
+        when(orderRepository.findWithUserByIdIn(Collections.singletonList(1L)))
+                .thenReturn(Collections.singletonList(filled));
+        when(orderRepository.findWithUserByIdIn(Collections.singletonList(2L)))
+                .thenReturn(Collections.singletonList(open));
+        when(itemRepository.takeStock(1L, 3)).thenReturn(3);
+
+        int allocated = service.allocateBackorders(item.getId());
+
+        assertEquals(3, allocated);
+        verify(pendingOrders).remove(1L, 1L);
+        verify(allocator).fulfillOrderWithStockMovement(eq(open), any());
+        verify(allocator, never()).fulfillOrderWithStockMovement(eq(filled), any());
+    }
+
+    private static List<PendingOrder> entries(Order... orders) {
+        List<PendingOrder> entries = new ArrayList<>();
+        for (Order order : orders) {
+            entries.add(new PendingOrder(order.getId(), 1L, LocalDateTime.of(2024, 1, 1, 12, 0),
+                    order.getQuantity() - order.getFulfilledQuantity()));
+        }
+        return entries;
+    }
+
+    private static Item item(int stock) {
+        Item item = new Item();
+        item.setId(1L);
+        item.setStockQuantity(stock);
+        return item;
+    }
+
+    private static Order order(Long id, Item item, int quantity, int fulfilled) {
+        Order order = new Order();
+        order.setId(id);
+        order.setItem(item);
+        order.setQuantity(quantity);
+        order.setFulfilledQuantity(fulfilled);
+        return order;
+    }
+}
@@ -0,0 +1,113 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.diogobaptista.order_manager_api.service.CatalogCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CatalogCacheTest {
+
+    private ItemRepository itemRepository;
+    private CatalogCache cache;
+
+    @BeforeEach
+    void setup() {
+        itemRepository = mock(ItemRepository.class);
+        cache = new CatalogCache(itemRepository, mock(UserRepository.class), 100, 60_000);
+    }
+
+    @Test
+    void item_loadsOnceAndNeverCarriesStock() {
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Keyboard");
+        item.setStockQuantity(10);
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+
+        Item first = cache.item(1L).orElseThrow(AssertionError::new);
+        Item second = cache.item(1L).orElseThrow(AssertionError::new);
+
+        assertEquals("Keyboard", second.getName());
+        assertNull(first.getStockQuantity());
+        assertNotSame(first, second);
+        verify(itemRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void item_missingRowsAreNotCached() {
+        when(itemRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertFalse(cache.item(1L).isPresent());
+        assertFalse(cache.item(1L).isPresent());
+
+        verify(itemRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void items_loadsMissingOnesInOneQueryAndSkipsUnknownIds() {
+        Item cached = new Item();
+        cached.setId(1L);
+        cached.setName("Keyboard");
+        Item loaded = new Item();
+        loaded.setId(2L);
+        loaded.setName("Mouse");
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(cached));
+        when(itemRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(loaded));
+        cache.item(1L);
+
+        Map<Long, Item> items = cache.items(Arrays.asList(1L, 2L, 3L));
+
+        assertEquals(Set.of(1L, 2L), items.keySet());
+        assertEquals("Mouse", items.get(2L).getName());
+        verify(itemRepository).findAllById(argThat(ids -> Set.of(2L, 3L).equals(toSet(ids))));
+    }
+
+    @Test
+    void evictItem_reloadsOnNextLookup() {
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Keyboard");
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        cache.item(1L);
+
+        item.setName("Mechanical keyboard");
+        cache.evictItem(1L);
+
+        assertEquals("Mechanical keyboard", cache.item(1L).map(Item::getName).orElse(null));
+    }
+
+    @Test
+    void bindTo_publishesHitsAndMisses() {
+        Item item = new Item();
+        item.setId(1L);
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        cache.item(1L);
+        cache.item(1L);
+
+        assertEquals(1, registry.get("cache.gets").tag("cache", "catalog.items").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("cache", "catalog.items").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    private static Set<Long> toSet(Iterable<Long> ids) {
+        Set<Long> set = new HashSet<>();
+        ids.forEach(set::add);
+        return set;
+    }
+}
@@ -0,0 +1,146 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.entity.EmailOutbox;
+import com.diogobaptista.order_manager_api.repository.EmailOutboxRepository;
+import com.diogobaptista.order_manager_api.service.EmailOutboxDispatcher;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.transaction.support.TransactionOperations;
+
+import jakarta.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private EmailOutboxRepository repository;
+    private FileLogService fileLogService;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(EmailOutboxRepository.class);
+        fileLogService = mock(FileLogService.class);
+    }
+
+    @Test
+    void dispatchBatch_deliversClaimedEmailsAndMarksThemSent() throws Exception {
+        EmailOutbox first = pending(1L, "alice@example.com");
+        EmailOutbox second = pending(2L, "bob@example.com");
+        when(repository.claimDue(any(), eq(10))).thenReturn(Arrays.asList(first, second));
+
+        int claimed = dispatcher(greenMailSender()).dispatchBatch();
+
+        assertEquals(2, claimed);
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(2, received.length);
+        assertEquals("Order Completed: #1", received[0].getSubject());
+        assertTrue(GreenMailUtil.getBody(received[1]).contains("order #2"));
+        assertEquals(EmailOutbox.Status.SENT, first.getStatus());
+        assertEquals(EmailOutbox.Status.SENT, second.getStatus());
+        assertNotNull(first.getSentAt());
+        assertEquals(1, first.getAttempts());
+    }
+
+    @Test
+    void dispatchBatch_nothingDue_sendsNothing() {
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        when(repository.claimDue(any(), anyInt())).thenReturn(Collections.emptyList());
+
+        assertEquals(0, dispatcher(mailSender).dispatchBatch());
+
+        verifyNoInteractions(mailSender);
+    }
+
+    @Test
+    void dispatchBatch_smtpUnavailable_reschedulesWithBackoff() {
+        EmailOutbox email = pending(1L, "alice@example.com");
+        when(repository.claimDue(any(), anyInt())).thenReturn(Collections.singletonList(email));
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher(mailSender).dispatchBatch();
+
+        assertEquals(EmailOutbox.Status.PENDING, email.getStatus());
+        assertEquals(1, email.getAttempts());
+        assertEquals("Connection refused", email.getLastError());
+        assertFalse(email.getNextAttemptAt().isBefore(before.plusSeconds(30)));
+    }
+
+    @Test
+    void dispatchBatch_onlyFailedMessagesAreRetried() {
+        EmailOutbox delivered = pending(1L, "alice@example.com");
+        EmailOutbox rejected = pending(2L, "bob@example.com");
+        when(repository.claimDue(any(), anyInt())).thenReturn(Arrays.asList(delivered, rejected));
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        doAnswer(invocation -> {
+            Map<Object, Exception> failed = new LinkedHashMap<>();
+            failed.put(invocation.getArgument(1), new IllegalStateException("Mailbox unavailable"));
+            throw new MailSendException(failed);
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher(mailSender).dispatchBatch();
+
+        assertEquals(EmailOutbox.Status.SENT, delivered.getStatus());
+        assertEquals(EmailOutbox.Status.PENDING, rejected.getStatus());
+        assertEquals("Mailbox unavailable", rejected.getLastError());
+    }
+
+    @Test
+    void dispatchBatch_lastAttemptFails_marksFailed() {
+        EmailOutbox email = pending(1L, "alice@example.com");
+        email.setAttempts(2);
+        when(repository.claimDue(any(), anyInt())).thenReturn(Collections.singletonList(email));
+        JavaMailSender mailSender = mock(JavaMailSender.class);
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher(mailSender).dispatchBatch();
+
+        assertEquals(EmailOutbox.Status.FAILED, email.getStatus());
+        assertEquals(3, email.getAttempts());
+    }
+
+    private EmailOutboxDispatcher dispatcher(JavaMailSender mailSender) {
+        return new EmailOutboxDispatcher(repository, mailSender, fileLogService,
+                TransactionOperations.withoutTransaction(), 10, 3, 30_000, 600_000,
+                new SimpleMeterRegistry());
+    }
+
+    private static JavaMailSender greenMailSender() {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("localhost");
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+        return sender;
+    }
+
+    private static EmailOutbox pending(Long orderId, String recipient) {
+        EmailOutbox email = new EmailOutbox();
+        email.setId(orderId);
+        email.setOrderId(orderId);
+        email.setRecipient(recipient);
+        email.setSubject("Order Completed: #" + orderId);
+        email.setBody("Your order #" + orderId + " has been completed.");
+        email.setCreatedAt(LocalDateTime.now());
+        email.setNextAttemptAt(LocalDateTime.now());
+        return email;
+    }
+}
@@ -1,31 +1,34 @@
 package com.diogobaptista.order_manager_api;
 
+import com.diogobaptista.order_manager_api.entity.EmailOutbox;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.EmailOutboxRepository;
 import com.diogobaptista.order_manager_api.service.EmailService;
 import com.diogobaptista.order_manager_api.service.FileLogService;
-import org.junit.jupiter.api.Assertions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.mockito.ArgumentCaptor;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class EmailServiceTest {
 
-    private JavaMailSender mailSender;
+    private EmailOutboxRepository outboxRepository;
     private EmailService emailService;
 
     @BeforeEach
     public void setup() {
-        mailSender = mock(JavaMailSender.class);
+        outboxRepository = mock(EmailOutboxRepository.class);
         FileLogService fileLogService = mock(FileLogService.class);
-        emailService = new EmailService(mailSender, fileLogService);
+        emailService = new EmailService(outboxRepository, fileLogService, new SimpleMeterRegistry());
+        when(outboxRepository.save(any(EmailOutbox.class))).thenAnswer(invocation -> invocation.getArgument(0));
     }
 
     @Test
-    public void sendOrderCompleted_sendsEmail() {
+    public void enqueueOrderCompleted_queuesRenderedEmail() {
         User user = new User();
         user.setEmail("test@example.com");
         user.setName("Alice");
@@ -35,36 +38,49 @@ public class EmailServiceTest {
         order.setQuantity(5);
         order.setFulfilledQuantity(5);
 
-        emailService.sendOrderCompleted(user, order);
-
-        verify(mailSender).send(argThat((SimpleMailMessage message) ->
-                {
-                    Assertions.assertNotNull(message.getTo());
-                    if (!message.getTo()[0].equals("test@example.com") ||
-                            !message.getSubject().equals("Order Completed: #100")) return false;
-                    Assertions.assertNotNull(message.getText());
-                    return message.getText().contains("Hello Alice") &&
-                            message.getText().contains("Quantity: 5") &&
-                            message.getText().contains("Fulfilled: 5");
-                }
-        ));
+        emailService.enqueueOrderCompleted(user, order);
+
+        ArgumentCaptor<EmailOutbox> captor = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(outboxRepository).save(captor.capture());
+        EmailOutbox email = captor.getValue();
+        assertEquals("test@example.com", email.getRecipient());
+        assertEquals("Order Completed: #100", email.getSubject());
+        assertTrue(email.getBody().contains("Hello Alice"));
+        assertTrue(email.getBody().contains("Quantity: 5"));
+        assertTrue(email.getBody().contains("Fulfilled: 5"));
+        assertEquals(100L, email.getOrderId());
     }
 
     @Test
-    public void sendOrderCompleted_mailSenderThrows_exceptionIsHandled() {
+    public void enqueueBasketCompleted_queuesOneEmailForTheWholeOrder() {
         User user = new User();
         user.setEmail("test@example.com");
         user.setName("Alice");
 
+        emailService.enqueueBasketCompleted(user, 200L, 3, 9);
+
+        ArgumentCaptor<EmailOutbox> captor = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(outboxRepository).save(captor.capture());
+        EmailOutbox email = captor.getValue();
+        assertEquals("Order Completed: #200", email.getSubject());
+        assertTrue(email.getBody().contains("Lines: 3"));
+        assertTrue(email.getBody().contains("Quantity: 9"));
+        assertEquals(200L, email.getOrderId());
+    }
+
+    @Test
+    public void enqueueOrderCompleted_isPendingAndDueImmediately() {
+        User user = new User();
+        user.setEmail("test@example.com");
+
         Order order = new Order();
         order.setId(101L);
-        order.setQuantity(3);
-        order.setFulfilledQuantity(3);
-
-        doThrow(new RuntimeException("SMTP error")).when(mailSender).send(any(SimpleMailMessage.class));
 
-        emailService.sendOrderCompleted(user, order);
+        EmailOutbox email = emailService.enqueueOrderCompleted(user, order);
 
-        verify(mailSender, times(1)).send(any(SimpleMailMessage.class));
+        assertEquals(EmailOutbox.Status.PENDING, email.getStatus());
+        assertEquals(0, email.getAttempts());
+        assertNotNull(email.getNextAttemptAt());
+        assertFalse(email.getNextAttemptAt().isAfter(email.getCreatedAt()));
     }
 }
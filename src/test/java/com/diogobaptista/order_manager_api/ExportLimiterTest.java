@@ -0,0 +1,37 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.service.ExportBusyException;
+import com.diogobaptista.order_manager_api.service.ExportLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExportLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExportLimiter limiter = new ExportLimiter(2, meterRegistry);
+
+    @Test
+    void acquire_pastTheLimit_isRefusedUntilAPermitIsClosed() {
+        ExportLimiter.Permit first = limiter.acquire();
+        limiter.acquire();
+
+        assertThrows(ExportBusyException.class, limiter::acquire);
+        assertEquals(2, meterRegistry.get("listing.exports.active").gauge().value());
+
+        first.close();
+        assertNotNull(limiter.acquire());
+    }
+
+    @Test
+    void close_twice_releasesOnePermit() {
+        ExportLimiter.Permit permit = limiter.acquire();
+        permit.close();
+        permit.close();
+
+        limiter.acquire();
+        limiter.acquire();
+        assertThrows(ExportBusyException.class, limiter::acquire);
+    }
+}
@@ -0,0 +1,222 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.service.AuditEvent;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.FileLogService.Format;
+import com.diogobaptista.order_manager_api.service.FileLogService.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileLogServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendLine_writesLinesInOrder() throws IOException {
+        Path file = dir.resolve("orders.log");
+        FileLogService service = new FileLogService(file, 1024, OverflowPolicy.BLOCK, Format.TEXT, 64, 0, 0, 0, Thread::new);
+
+        service.appendLine("first");
+        service.appendLine("second, with ümlauts and a line longer than the sixty-four byte buffer");
+        service.appendLine("third");
+        service.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals("first", lines.get(0));
+        assertEquals("second, with ümlauts and a line longer than the sixty-four byte buffer", lines.get(1));
+        assertEquals("third", lines.get(2));
+        assertEquals(3, service.writtenLines());
+        assertTrue(service.writeCount() > 0);
+    }
+
+    @Test
+    void appendLine_manyProducers_keepsEveryLine() throws Exception {
+        Path file = dir.resolve("orders.log");
+        FileLogService service = new FileLogService(file, 16, OverflowPolicy.BLOCK, Format.TEXT, 4096, 10, 0, 0, Thread::new);
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+
+        for (int p = 0; p < 8; p++) {
+            int producer = p;
+            producers.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    service.appendLine("producer " + producer + " line " + i);
+                }
+            });
+        }
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+        service.flush();
+
+        Set<String> lines = new HashSet<>(Files.readAllLines(file, StandardCharsets.UTF_8));
+        assertEquals(4000, lines.size());
+        assertEquals(0, service.droppedLines());
+        assertEquals(0, service.queueDepth());
+        service.close();
+    }
+
+    @Test
+    void appendLine_queueFullWithDropPolicy_dropsLines() throws Exception {
+        Path file = dir.resolve("orders.log");
+        CountDownLatch writerReleased = new CountDownLatch(1);
+        FileLogService service = new FileLogService(file, 2, OverflowPolicy.DROP, Format.TEXT, 1024, 0, 0, 0,
+                runnable -> new Thread(() -> {
+                    await(writerReleased);
+                    runnable.run();
+                }));
+
+        for (int i = 0; i < 5; i++) {
+            service.appendLine("line " + i);
+        }
+        assertEquals(2, service.queueDepth());
+        assertEquals(3, service.droppedLines());
+
+        writerReleased.countDown();
+        service.close();
+        assertEquals(2, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void appendLine_fileReachesMaxSize_rotates() throws IOException {
+        Path file = dir.resolve("orders.log");
+        FileLogService service = new FileLogService(file, 1024, OverflowPolicy.BLOCK, Format.TEXT, 1024, 0, 20, 0, Thread::new);
+
+        for (int i = 0; i < 5; i++) {
+            service.appendLine("a line of twenty+ bytes " + i);
+            service.flush();
+        }
+        service.close();
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.collect(Collectors.toList());
+        }
+        assertTrue(files.size() > 1);
+        List<String> all = new ArrayList<>();
+        for (Path f : files) {
+            all.addAll(Files.readAllLines(f, StandardCharsets.UTF_8));
+        }
+        assertEquals(5, all.size());
+    }
+
+    @Test
+    void appendLine_queueNeverEmpties_stillRotatesBySize() throws IOException {
+        Path file = dir.resolve("orders.log");
+        CountDownLatch writerReleased = new CountDownLatch(1);
+        FileLogService service = new FileLogService(file, 4096, OverflowPolicy.BLOCK, Format.TEXT, 1024, 0, 4096, 0,
+                runnable -> new Thread(() -> {
+                    await(writerReleased);
+                    runnable.run();
+                }));
+
+        // Everything is queued before the writer starts, so it only sees an empty queue at the very end
+        for (int i = 0; i < 2000; i++) {
+            service.appendLine("a queued line of about forty bytes " + i);
+        }
+        writerReleased.countDown();
+        service.close();
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.collect(Collectors.toList());
+        }
+        assertTrue(files.size() >= 10, "rotated into " + files.size() + " files");
+        List<String> all = new ArrayList<>();
+        for (Path f : files) {
+            assertTrue(Files.size(f) < 4096 + 1024 + 64, f + " grew to " + Files.size(f) + " bytes");
+            all.addAll(Files.readAllLines(f, StandardCharsets.UTF_8));
+        }
+        assertEquals(2000, all.size());
+    }
+
+    @Test
+    void append_textFormat_writesEventMessage() throws IOException {
+        Path file = dir.resolve("orders.log");
+        FileLogService service = new FileLogService(file, 1024, OverflowPolicy.BLOCK, Format.TEXT, 1024, 0, 0, 0, Thread::new);
+
+        service.append(AuditEvent.orderPartiallyAllocated(7L, 5, 3));
+        service.append(AuditEvent.itemCreated(null, "Keyboard"));
+        service.append(AuditEvent.reservationReleased(42L, 3L, 2, "expired"));
+        service.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals("Order 7 partially allocated on creation [Requested: 5, Allocated: 3, Remaining: 2]", lines.get(0));
+        assertEquals("Created Item [ID: null, Name: Keyboard]", lines.get(1));
+        assertEquals("Reservation 42 expired [Item: 3, Qty: 2]", lines.get(2));
+    }
+
+    @Test
+    void append_binaryFormat_writesLengthPrefixedRecords() throws IOException {
+        Path file = dir.resolve("orders.log");
+        FileLogService service = new FileLogService(file, 1024, OverflowPolicy.BLOCK, Format.BINARY, 1024, 0, 0, 0, Thread::new);
+
+        service.append(AuditEvent.orderCreated(7L, "user@test.com", "Keyboard", 5));
+        service.append(AuditEvent.reservationCreated(42L, 3L, 2, 60));
+        service.close();
+
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file));
+        int length = records.getInt();
+        int next = records.position() + length;
+        assertTrue(records.getLong() > 0);
+        assertEquals("ORDER_CREATED", readString(records));
+        assertEquals(7L, records.getLong());
+        assertEquals(AuditEvent.NO_ID, records.getLong());
+        assertEquals(AuditEvent.NO_ID, records.getLong());
+        assertEquals(AuditEvent.NO_ID, records.getLong());
+        assertEquals(AuditEvent.NO_ID, records.getLong());
+        assertEquals(5, records.getInt());
+        records.position(records.position() + 12);
+        assertEquals("user@test.com", readString(records));
+        assertEquals("Keyboard", readString(records));
+        assertEquals(next, records.position());
+
+        records.getInt();
+        records.getLong();
+        assertEquals("RESERVATION_CREATED", readString(records));
+        assertEquals(AuditEvent.NO_ID, records.getLong());
+        assertEquals(3L, records.getLong());
+        records.position(records.position() + 16);
+        assertEquals(42L, records.getLong());
+        assertEquals(2, records.getInt());
+        assertEquals(60, records.getInt());
+        records.position(records.position() + 8);
+        assertNull(readString(records));
+    }
+
+    private static String readString(ByteBuffer records) {
+        int length = records.getShort() & 0xFFFF;
+        if (length == 0xFFFF) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        records.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.service.HashedTimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private final HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8, START);
+
+    @Test
+    void advanceTo_expiresAtFirstTickAtOrAfterDeadline() {
+        wheel.schedule("a", START + 25);
+
+        assertEquals(Collections.emptyList(), wheel.advanceTo(START + 29));
+        assertEquals(List.of("a"), wheel.advanceTo(START + 30));
+        assertEquals(Collections.emptyList(), wheel.advanceTo(START + 100));
+    }
+
+    @Test
+    void advanceTo_deadlineSeveralTurnsAhead_waitsForItsRound() {
+        // 8 buckets of 10ms: 250ms is three full turns plus one bucket.
+        wheel.schedule("far", START + 250);
+        wheel.schedule("near", START + 10);
+
+        assertEquals(List.of("near"), wheel.advanceTo(START + 240));
+        assertEquals(List.of("far"), wheel.advanceTo(START + 250));
+    }
+
+    @Test
+    void advanceTo_returnsExpiriesInTickOrder() {
+        wheel.schedule("c", START + 50);
+        wheel.schedule("a", START + 10);
+        wheel.schedule("b", START + 30);
+
+        assertEquals(Arrays.asList("a", "b", "c"), wheel.advanceTo(START + 1000));
+    }
+
+    @Test
+    void cancel_preventsExpiry() {
+        HashedTimingWheel.Timeout<String> cancelled = wheel.schedule("a", START + 20);
+        wheel.schedule("b", START + 20);
+        wheel.advanceTo(START);
+
+        cancelled.cancel();
+
+        assertEquals(List.of("b"), wheel.advanceTo(START + 20));
+    }
+
+    @Test
+    void schedule_pastDeadline_expiresOnNextTick() {
+        wheel.advanceTo(START + 100);
+        wheel.schedule("late", START + 5);
+
+        assertEquals(List.of("late"), wheel.advanceTo(START + 110));
+    }
+
+    @Test
+    void millisUntilNextTick_countsFromLastTickRun() {
+        wheel.advanceTo(START + 32);
+
+        assertEquals(8, wheel.millisUntilNextTick(START + 32));
+    }
+
+    @Test
+    void ticksPerWheel_mustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<String>(10, 6, START));
+    }
+}
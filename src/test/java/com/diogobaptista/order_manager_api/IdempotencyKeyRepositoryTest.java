@@ -0,0 +1,139 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.repository.IdempotencyKeyRepository;
+import com.diogobaptista.order_manager_api.repository.IdempotencyKeyRepository.KeyRecord;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Claims, completes, releases and purges {@code idempotency_key} rows on an
+ * embedded Postgres.
+ */
+public class IdempotencyKeyRepositoryTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbc;
+    private static IdempotencyKeyRepository repository;
+
+    @BeforeAll
+    static void migrate() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure().dataSource(postgres.getPostgresDatabase())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false")).load().migrate();
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+        repository = new IdempotencyKeyRepository(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void claim_succeedsOncePerKeyAndScope() {
+        assertTrue(repository.claim("orders", "claim-1", "hash", "token", LEASE));
+        assertFalse(repository.claim("orders", "claim-1", "hash", "token", LEASE));
+        assertTrue(repository.claim("stock-movements", "claim-1", "hash", "token", LEASE));
+
+        KeyRecord claimed = repository.find("orders", "claim-1").orElseThrow(AssertionError::new);
+        assertFalse(claimed.isCompleted());
+    }
+
+    @Test
+    void claim_takesOverUncompletedClaimOlderThanTheLease() {
+        repository.claim("orders", "stale-1", "first", "first", LEASE);
+        assertFalse(repository.claim("orders", "stale-1", "second", "second", LEASE));
+
+        jdbc.update("update idempotency_key set claimed_at = now() - interval '10 minutes' " +
+                "where idempotency_key = 'stale-1'");
+        assertTrue(repository.claim("orders", "stale-1", "second", "second", LEASE));
+        assertFalse(repository.claim("orders", "stale-1", "third", "third", LEASE));
+        assertEquals("second", repository.find("orders", "stale-1").orElseThrow(AssertionError::new).getRequestHash());
+    }
+
+    @Test
+    void claim_neverTakesOverACompletedKey() {
+        repository.claim("orders", "done-1", "hash", "token", LEASE);
+        repository.complete("orders", "done-1", "token", 201, "{\"id\":1}");
+        jdbc.update("update idempotency_key set claimed_at = now() - interval '10 minutes' " +
+                "where idempotency_key = 'done-1'");
+
+        assertFalse(repository.claim("orders", "done-1", "hash", "token", LEASE));
+        repository.complete("orders", "done-1", "token", 500, "{}");
+        assertEquals(201, repository.find("orders", "done-1").orElseThrow(AssertionError::new).getStatus());
+    }
+
+    @Test
+    void complete_storesResponseToReplay() {
+        repository.claim("orders", "complete-1", "hash", "token", LEASE);
+        repository.complete("orders", "complete-1", "token", 201, "{\"id\":7}");
+
+        KeyRecord stored = repository.find("orders", "complete-1").orElseThrow(AssertionError::new);
+        assertEquals("hash", stored.getRequestHash());
+        assertEquals(201, stored.getStatus());
+        assertEquals("{\"id\":7}", stored.getResponseBody());
+    }
+
+    @Test
+    void release_onlyDropsUncompletedClaims() {
+        repository.claim("orders", "release-1", "hash", "token", LEASE);
+        repository.release("orders", "release-1", "token");
+        assertTrue(repository.claim("orders", "release-1", "hash", "token", LEASE));
+
+        repository.complete("orders", "release-1", "token", 201, "{}");
+        repository.release("orders", "release-1", "token");
+        assertTrue(repository.find("orders", "release-1").isPresent());
+    }
+
+    @Test
+    void complete_renew_andRelease_needTheCurrentToken() {
+        repository.claim("orders", "token-1", "hash", "first", LEASE);
+        jdbc.update("update idempotency_key set claimed_at = now() - interval '10 minutes' " +
+                "where idempotency_key = 'token-1'");
+        assertTrue(repository.claim("orders", "token-1", "hash", "second", LEASE));
+
+        assertFalse(repository.renew("orders", "token-1", "first"));
+        assertFalse(repository.complete("orders", "token-1", "first", 201, "{\"id\":1}"));
+        repository.release("orders", "token-1", "first");
+        assertFalse(repository.find("orders", "token-1").orElseThrow(AssertionError::new).isCompleted());
+
+        assertTrue(repository.renew("orders", "token-1", "second"));
+        assertTrue(repository.complete("orders", "token-1", "second", 201, "{\"id\":2}"));
+        assertEquals("{\"id\":2}", repository.find("orders", "token-1").orElseThrow(AssertionError::new)
+                .getResponseBody());
+    }
+
+    @Test
+    void renew_keepsARunningClaimFromBeingTakenOver() {
+        repository.claim("orders", "renew-1", "hash", "first", LEASE);
+        jdbc.update("update idempotency_key set claimed_at = now() - interval '10 minutes' " +
+                "where idempotency_key = 'renew-1'");
+
+        assertTrue(repository.renew("orders", "renew-1", "first"));
+        assertFalse(repository.claim("orders", "renew-1", "hash", "second", LEASE));
+    }
+
+    @Test
+    void deleteOlderThan_purgesOldKeys() {
+        repository.claim("orders", "old-1", "hash", "token", LEASE);
+        jdbc.update("update idempotency_key set created_at = now() - interval '2 days' where idempotency_key = 'old-1'");
+        repository.claim("orders", "new-1", "hash", "token", LEASE);
+
+        repository.deleteOlderThan(Duration.ofDays(1));
+
+        assertFalse(repository.find("orders", "old-1").isPresent());
+        assertTrue(repository.find("orders", "new-1").isPresent());
+    }
+}
@@ -0,0 +1,295 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.repository.IdempotencyKeyRepository;
+import com.diogobaptista.order_manager_api.repository.IdempotencyKeyRepository.KeyRecord;
+import com.diogobaptista.order_manager_api.service.IdempotencyConflictException;
+import com.diogobaptista.order_manager_api.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class IdempotencyServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private IdempotencyKeyRepository repository;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(IdempotencyKeyRepository.class);
+        when(repository.claim(anyString(), anyString(), anyString(), anyString(), any())).thenReturn(true);
+        when(repository.complete(anyString(), anyString(), anyString(), anyInt(), any())).thenReturn(true);
+        service = new IdempotencyService(repository, objectMapper, 100, 60_000, 5_000, 300_000,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void retry_replaysStoredResponseWithoutRunningAgain() {
+        AtomicInteger runs = new AtomicInteger();
+        Function<IdempotencyService.Completion, ResponseEntity<OrderResponseDTO>> create = completion -> {
+            runs.incrementAndGet();
+            return created(completion, response(7L));
+        };
+
+        ResponseEntity<OrderResponseDTO> first = service.execute("orders", "k1", request(),
+                OrderResponseDTO.class, create);
+        ResponseEntity<OrderResponseDTO> retry = service.execute("orders", "k1", request(),
+                OrderResponseDTO.class, create);
+
+        assertEquals(1, runs.get());
+        assertEquals(201, retry.getStatusCode().value());
+        assertEquals(7L, retry.getBody().getId());
+        assertEquals(first.getBody().getCreationDate(), retry.getBody().getCreationDate());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(repository).complete(eq("orders"), eq("k1"), anyString(), eq(201), anyString());
+        verify(repository, never()).find(anyString(), anyString());
+    }
+
+    @Test
+    void cacheMiss_replaysResponseStoredInTable() throws Exception {
+        String stored = objectMapper.writeValueAsString(response(9L));
+        String hash = hashOf(request());
+        when(repository.claim(eq("orders"), eq("k2"), eq(hash), anyString(), any())).thenReturn(false);
+        when(repository.find("orders", "k2")).thenReturn(Optional.of(new KeyRecord(hash, 201, stored)));
+
+        ResponseEntity<OrderResponseDTO> replayed = service.execute("orders", "k2", request(),
+                OrderResponseDTO.class, completion -> fail("should not run"));
+
+        assertEquals(201, replayed.getStatusCode().value());
+        assertEquals(9L, replayed.getBody().getId());
+    }
+
+    @Test
+    void sameKeyWithDifferentRequest_isRejected() {
+        service.execute("orders", "k3", request(), OrderResponseDTO.class,
+                completion -> created(completion, response(1L)));
+        OrderRequestDTO other = request();
+        other.setQuantity(99);
+
+        assertThrows(IllegalArgumentException.class, () -> service.execute("orders", "k3", other,
+                OrderResponseDTO.class, completion -> fail("should not run")));
+    }
+
+    @Test
+    void sameKeyInAnotherScope_runsSeparately() {
+        AtomicInteger runs = new AtomicInteger();
+        Function<IdempotencyService.Completion, ResponseEntity<OrderResponseDTO>> create = completion -> {
+            runs.incrementAndGet();
+            return created(completion, response(1L));
+        };
+
+        service.execute("orders", "k4", request(), OrderResponseDTO.class, create);
+        service.execute("stock-movements", "k4", request(), OrderResponseDTO.class, create);
+
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void failedRequest_releasesClaimSoRetryRuns() {
+        assertThrows(IllegalArgumentException.class, () -> service.execute("orders", "k5", request(),
+                OrderResponseDTO.class, completion -> {
+                    throw new IllegalArgumentException("Item not found");
+                }));
+        verify(repository).release(eq("orders"), eq("k5"), anyString());
+
+        ResponseEntity<OrderResponseDTO> retry = service.execute("orders", "k5", request(), OrderResponseDTO.class,
+                completion -> created(completion, response(3L)));
+
+        assertEquals(3L, retry.getBody().getId());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void unsuccessfulResponse_isNotStored() {
+        service.execute("orders", "k6", request(), OrderResponseDTO.class,
+                completion -> ResponseEntity.badRequest().build());
+
+        verify(repository).release(eq("orders"), eq("k6"), anyString());
+        verify(repository, never()).complete(anyString(), anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void concurrentDuplicates_waitForFirstExecution() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Function<IdempotencyService.Completion, ResponseEntity<OrderResponseDTO>> create = completion -> {
+            runs.incrementAndGet();
+            running.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return created(completion, response(11L));
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<OrderResponseDTO>> first = executor.submit(
+                    () -> service.execute("orders", "k7", request(), OrderResponseDTO.class, create));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            Future<ResponseEntity<OrderResponseDTO>> duplicate = executor.submit(
+                    () -> service.execute("orders", "k7", request(), OrderResponseDTO.class, create));
+            Thread.sleep(100);
+            assertFalse(duplicate.isDone());
+            release.countDown();
+
+            assertEquals(11L, first.get(5, TimeUnit.SECONDS).getBody().getId());
+            assertEquals(11L, duplicate.get(5, TimeUnit.SECONDS).getBody().getId());
+            assertEquals(1, runs.get());
+            verify(repository, times(1)).claim(anyString(), anyString(), anyString(), anyString(), any());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void abandonedClaimOnAnotherInstance_isTakenOverAndRun() throws Exception {
+        String hash = hashOf(request());
+        when(repository.claim(eq("orders"), eq("k8"), eq(hash), anyString(), any())).thenReturn(false, true);
+        when(repository.find("orders", "k8")).thenReturn(Optional.of(new KeyRecord(hash, null, null)));
+
+        ResponseEntity<OrderResponseDTO> response = service.execute("orders", "k8", request(),
+                OrderResponseDTO.class, completion -> created(completion, response(12L)));
+
+        assertEquals(12L, response.getBody().getId());
+        assertNull(response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(repository).complete(eq("orders"), eq("k8"), anyString(), eq(201), anyString());
+    }
+
+    @Test
+    void completionOfAClaimTakenOverMeanwhile_failsTheAction() {
+        when(repository.complete(eq("orders"), eq("k9"), anyString(), anyInt(), anyString())).thenReturn(false);
+        AtomicBoolean committed = new AtomicBoolean();
+
+        assertThrows(IdempotencyConflictException.class, () -> service.execute("orders", "k9", request(),
+                OrderResponseDTO.class, completion -> {
+                    created(completion, response(13L));
+                    committed.set(true);
+                    return ResponseEntity.status(201).body(response(13L));
+                }));
+
+        assertFalse(committed.get());
+        verify(repository).release(eq("orders"), eq("k9"), anyString());
+    }
+
+    @Test
+    void error_releasesTheClaimAndWakesDuplicates() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> service.execute("orders", "k10", request(),
+                    OrderResponseDTO.class, completion -> {
+                        running.countDown();
+                        try {
+                            fail.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new OutOfMemoryError("simulated");
+                    }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            Future<ResponseEntity<OrderResponseDTO>> duplicate = executor.submit(
+                    () -> service.execute("orders", "k10", request(), OrderResponseDTO.class,
+                            completion -> created(completion, response(14L))));
+            Thread.sleep(100);
+            fail.countDown();
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(OutOfMemoryError.class, error.getCause());
+            assertEquals(14L, duplicate.get(2, TimeUnit.SECONDS).getBody().getId());
+            verify(repository).release(eq("orders"), eq("k10"), anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void renewClaims_restartsTheLeaseOfRunningRequestsOnly() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service.execute("orders", "k11", request(), OrderResponseDTO.class,
+                completion -> created(completion, response(15L)));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slow = executor.submit(() -> service.execute("orders", "k12", request(),
+                    OrderResponseDTO.class, completion -> {
+                        running.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return created(completion, response(16L));
+                    }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+            service.renewClaims();
+            release.countDown();
+            slow.get(5, TimeUnit.SECONDS);
+            service.renewClaims();
+
+            verify(repository).renew(eq("orders"), eq("k12"), anyString());
+            verify(repository, never()).renew(eq("orders"), eq("k11"), anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void blankKey_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.execute("orders", " ", request(),
+                OrderResponseDTO.class, completion -> fail("should not run")));
+    }
+
+    private String hashOf(OrderRequestDTO request) throws Exception {
+        byte[] json = objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+    }
+
+    /** What a create action does: stores its response in its transaction, then returns it. */
+    private static ResponseEntity<OrderResponseDTO> created(IdempotencyService.Completion completion,
+                                                            OrderResponseDTO body) {
+        completion.complete(201, body);
+        return ResponseEntity.status(201).body(body);
+    }
+
+    private static OrderRequestDTO request() {
+        OrderRequestDTO request = new OrderRequestDTO();
+        request.setItemId(1L);
+        request.setUserId(2L);
+        request.setQuantity(5);
+        return request;
+    }
+
+    private static OrderResponseDTO response(Long id) {
+        return new OrderResponseDTO(id, 5, 5, 1L, 2L, LocalDateTime.of(2024, 1, 1, 12, 0));
+    }
+}
@@ -0,0 +1,151 @@
+package com.diogobaptista.order_manager_api;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Applies the Flyway migrations to an embedded Postgres, loads enough rows for
+ * the planner to care, and checks with EXPLAIN that the SQL behind the
+ * repository queries is served by the intended indexes.
+ */
+public class IndexPlanTest {
+
+    private static final int ITEMS = 500;
+    private static final int USERS = 2_000;
+    private static final int ORDERS = 200_000;
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbc;
+
+    @BeforeAll
+    static void migrateAndLoad() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure().dataSource(postgres.getPostgresDatabase())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false")).load().migrate();
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+
+        jdbc.update("insert into item (name, stock_quantity) " +
+                "select 'Item ' || i, 100 from generate_series(1, ?) i", ITEMS);
+        jdbc.update("insert into \"user\" (name, email) " +
+                "select 'User ' || i, 'user' || i || '@example.com' from generate_series(1, ?) i", USERS);
+        // One order in a hundred is still open; rows are appended in creation order.
+        jdbc.update("insert into \"order\" (creation_date, item_id, user_id, quantity, fulfilled_quantity) " +
+                "select timestamp '2024-01-01' + i * interval '1 minute', 1 + i % ?, 1 + i % ?, 5, " +
+                "case when i % 100 = 0 then 2 else 5 end from generate_series(1, ?) i", ITEMS, USERS, ORDERS);
+        jdbc.update("insert into stock_movement (creation_date, item_id, quantity) " +
+                "select timestamp '2024-01-01' + i * interval '1 minute', 1 + i % ?, 5 from generate_series(1, ?) i",
+                ITEMS, ORDERS);
+        jdbc.update("insert into allocation (creation_date, order_id, stock_movement_id, quantity) " +
+                "select o.creation_date, o.id, m.id, 5 from \"order\" o join stock_movement m on m.id = o.id");
+        jdbc.execute("vacuum analyze");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void pendingOrdersForItem_usePartialIndex() {
+        String plan = explain("select o.*, u.* from \"order\" o join \"user\" u on u.id = o.user_id " +
+                "where o.item_id = 7 and o.fulfilled_quantity < o.quantity " +
+                "order by o.creation_date, o.id limit 100");
+
+        assertTrue(plan.contains("idx_order_pending_by_item"), plan);
+        assertFalse(plan.contains("Seq Scan on \"order\""), plan);
+    }
+
+    @Test
+    void backlogAggregation_scansOnlyOpenOrders() {
+        String plan = explain("select o.item_id, count(o.id), sum(o.quantity - o.fulfilled_quantity) " +
+                "from \"order\" o where o.fulfilled_quantity < o.quantity " +
+                "group by o.item_id order by sum(o.quantity - o.fulfilled_quantity) desc limit 100");
+
+        assertTrue(plan.contains("idx_order_pending_by_item"), plan);
+        assertFalse(plan.contains("Seq Scan on \"order\""), plan);
+    }
+
+    @Test
+    void ordersOfUser_useForeignKeyIndex() {
+        assertTrue(explain("select id from \"order\" where user_id = 42").contains("idx_order_user_id"));
+    }
+
+    @Test
+    void movementsOfItem_useForeignKeyIndex() {
+        String plan = explain("select id from stock_movement where item_id = 42");
+
+        assertTrue(plan.contains("idx_stock_movement_item_id"), plan);
+    }
+
+    @Test
+    void itemDeleteForeignKeyChecks_useIndexes() {
+        // The lookups Postgres runs for the FK triggers when an item row is deleted.
+        assertTrue(explain("select 1 from only \"order\" x where item_id = 42 for key share of x")
+                .contains("idx_order_item_id"));
+        assertTrue(explain("select 1 from only stock_movement x where item_id = 42 for key share of x")
+                .contains("idx_stock_movement_item_id"));
+    }
+
+    @Test
+    void allocationsOfOrder_useOrderIndex() {
+        String plan = explain("select id, order_id, stock_movement_id, quantity, creation_date " +
+                "from allocation where order_id = 42 order by id");
+
+        assertTrue(plan.contains("idx_allocation_order_id"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    void allocationsOfMovement_useMovementIndex() {
+        String plan = explain("select id, order_id, stock_movement_id, quantity, creation_date " +
+                "from allocation where stock_movement_id = 42 order by id");
+
+        assertTrue(plan.contains("idx_allocation_stock_movement_id"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    void timeRangeOfMovements_usesBrinIndex() {
+        String plan = explainWithoutBtreeScans("select count(*) from stock_movement " +
+                "where creation_date >= timestamp '2024-02-01' and creation_date < timestamp '2024-02-08'");
+
+        assertTrue(plan.contains("idx_stock_movement_creation_date_brin"), plan);
+    }
+
+    private static String explain(String sql) {
+        List<String> lines = jdbc.queryForList("explain " + sql, String.class);
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Explains with plain btree index scans disabled, leaving the planner a
+     * choice between a sequential scan and bitmap scans over the BRIN index.
+     */
+    private static String explainWithoutBtreeScans(String sql) {
+        return jdbc.execute((Statement statement) -> {
+            statement.execute("set enable_indexscan = off");
+            statement.execute("set enable_indexonlyscan = off");
+            try (ResultSet rs = statement.executeQuery("explain " + sql)) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+                return plan.toString();
+            } finally {
+                statement.execute("reset all");
+            }
+        });
+    }
+}
@@ -1,11 +1,18 @@
 package com.diogobaptista.order_manager_api;
 
 import com.diogobaptista.order_manager_api.controller.ItemController;
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.ItemImportRejectionDTO;
+import com.diogobaptista.order_manager_api.dto.ItemImportResponseDTO;
 import com.diogobaptista.order_manager_api.dto.ItemRequestDTO;
 import com.diogobaptista.order_manager_api.dto.ItemResponseDTO;
+import com.diogobaptista.order_manager_api.dto.ItemStatsDTO;
+import com.diogobaptista.order_manager_api.dto.StockReceiptRequestDTO;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.mapper.ItemMapper;
+import com.diogobaptista.order_manager_api.service.ItemImportService;
 import com.diogobaptista.order_manager_api.service.ItemService;
+import com.diogobaptista.order_manager_api.service.ItemStatsService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,10 +20,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.CannotCreateTransactionException;
 
+import java.io.InputStream;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,6 +44,12 @@ public class ItemControllerTest {
     @MockBean
     private ItemMapper mapper;
 
+    @MockBean
+    private ItemStatsService statsService;
+
+    @MockBean
+    private ItemImportService importService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -82,6 +99,15 @@ public class ItemControllerTest {
                 .andExpect(jsonPath("$.name").value("Gaming Mouse"));
     }
 
+    @Test
+    public void getById_PoolExhausted_ServiceUnavailable() throws Exception {
+        when(service.findById(1L)).thenThrow(new CannotCreateTransactionException("Connection is not available"));
+
+        mockMvc.perform(get("/items/{id}", 1L))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
     @Test
     public void delete_NotFound() throws Exception {
         when(service.deleteItem(99L)).thenReturn(false);
@@ -89,4 +115,120 @@ public class ItemControllerTest {
         mockMvc.perform(delete("/items/99"))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void receiveStock_Success() throws Exception {
+        StockReceiptRequestDTO request = new StockReceiptRequestDTO();
+        request.setQuantity(25);
+
+        Item item = new Item();
+        ItemResponseDTO response = new ItemResponseDTO(1L, "Gaming Mouse", 25);
+
+        when(service.receiveStock(eq(1L), eq(25))).thenReturn(Optional.of(item));
+        when(mapper.toDto(item)).thenReturn(response);
+
+        mockMvc.perform(post("/items/{id}/receipts", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stockQuantity").value(25));
+    }
+
+    @Test
+    public void receiveStock_ValidationError() throws Exception {
+        StockReceiptRequestDTO request = new StockReceiptRequestDTO();
+        request.setQuantity(0);
+
+        mockMvc.perform(post("/items/{id}/receipts", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getAll_ShouldReturnPageWithNextCursor() throws Exception {
+        Item item = new Item();
+        when(service.findPage(null, 1)).thenReturn(new CursorPage<>(Collections.singletonList(item), "MQ"));
+        when(mapper.toDto(item)).thenReturn(new ItemResponseDTO(1L, "Mechanical Keyboard", 50));
+
+        mockMvc.perform(get("/items").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "MQ"))
+                .andExpect(jsonPath("$[0].name").value("Mechanical Keyboard"));
+    }
+
+    @Test
+    public void getStats_Success() throws Exception {
+        when(statsService.findByItemId(1L)).thenReturn(Optional.of(new ItemStatsDTO(1L, 2, 6, 20, 14)));
+
+        mockMvc.perform(get("/items/1/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.openOrders").value(2))
+                .andExpect(jsonPath("$.openQuantity").value(6))
+                .andExpect(jsonPath("$.allocatedQuantity").value(14))
+                .andExpect(jsonPath("$.fillRate").value(0.7));
+    }
+
+    @Test
+    public void getStats_NotFound() throws Exception {
+        when(statsService.findByItemId(99L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/items/99/stats"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void getAllStats_ShouldReturnPageWithNextCursor() throws Exception {
+        when(statsService.findPage(null, 1)).thenReturn(
+                new CursorPage<>(Collections.singletonList(new ItemStatsDTO(1L, 0, 0, 0, 0)), "MQ"));
+
+        mockMvc.perform(get("/items/stats").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "MQ"))
+                .andExpect(jsonPath("$[0].itemId").value(1))
+                .andExpect(jsonPath("$[0].fillRate").doesNotExist());
+    }
+
+    @Test
+    public void importCsv_ReturnsCounts() throws Exception {
+        ItemImportResponseDTO response = new ItemImportResponseDTO();
+        response.setLines(2);
+        response.setInserted(1);
+        response.setRejected(1);
+        response.getRejections().add(new ItemImportRejectionDTO(3, "stock_quantity cannot be negative"));
+        when(importService.importCsv(any(InputStream.class))).thenReturn(response);
+
+        mockMvc.perform(post("/items/import")
+                        .contentType("text/csv")
+                        .content("sku,name,stock_quantity\nA-1,Desk,4\nA-2,Chair,-1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rejections[0].line").value(3));
+    }
+
+    @Test
+    public void importNdjson_UsesNdjsonParser() throws Exception {
+        ItemImportResponseDTO response = new ItemImportResponseDTO();
+        response.setLines(1);
+        response.setUpdated(1);
+        when(importService.importNdjson(any(InputStream.class))).thenReturn(response);
+
+        mockMvc.perform(post("/items/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"sku\":\"A-1\",\"name\":\"Desk\",\"stockQuantity\":4}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1));
+    }
+
+    @Test
+    public void importCsv_BadHeader_Returns400() throws Exception {
+        when(importService.importCsv(any(InputStream.class)))
+                .thenThrow(new IllegalArgumentException("CSV header must name the sku, name and stock_quantity columns"));
+
+        mockMvc.perform(post("/items/import")
+                        .contentType("text/csv")
+                        .content("foo\n"))
+                .andExpect(status().isBadRequest());
+    }
+}
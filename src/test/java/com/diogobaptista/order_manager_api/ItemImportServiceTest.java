@@ -0,0 +1,255 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.ItemImportResponseDTO;
+import com.diogobaptista.order_manager_api.repository.ItemImportRepository;
+import com.diogobaptista.order_manager_api.service.AuditEvent;
+import com.diogobaptista.order_manager_api.service.BackorderService;
+import com.diogobaptista.order_manager_api.service.CatalogCache;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.ItemImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Imports CSV and NDJSON bodies through COPY into an embedded Postgres and
+ * checks how they are merged into {@code item}.
+ */
+public class ItemImportServiceTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbc;
+
+    private CatalogCache catalog;
+    private BackorderService backorderService;
+    private FileLogService fileLogService;
+    private ItemImportService service;
+
+    @BeforeAll
+    static void migrate() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure().dataSource(postgres.getPostgresDatabase())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false")).load().migrate();
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = postgres.getPostgresDatabase();
+        catalog = mock(CatalogCache.class);
+        backorderService = mock(BackorderService.class);
+        fileLogService = mock(FileLogService.class);
+        service = new ItemImportService(new ItemImportRepository(dataSource, 8192), catalog, backorderService,
+                fileLogService, new ObjectMapper(),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), 2);
+    }
+
+    @Test
+    void importCsv_insertsNewSkusAndUpdatesExistingOnes() throws IOException {
+        jdbc.update("insert into item (sku, name, stock_quantity) values ('CSV-1', 'Old name', 3)");
+
+        ItemImportResponseDTO response = service.importCsv(body(
+                "sku,name,stock_quantity\n" +
+                "CSV-1,Keyboard,10\n" +
+                "CSV-2,\"Mouse, wireless\",5\n" +
+                "CSV-3,\"24\"\" Monitor\",0\n"));
+
+        assertEquals(3, response.getLines());
+        assertEquals(2, response.getInserted());
+        assertEquals(1, response.getUpdated());
+        assertEquals(0, response.getRejected());
+        assertEquals("Keyboard", name("CSV-1"));
+        assertEquals(10, stock("CSV-1"));
+        assertEquals("Mouse, wireless", name("CSV-2"));
+        assertEquals("24\" Monitor", name("CSV-3"));
+        verify(catalog).evictAllItems();
+        verify(fileLogService).append(any(AuditEvent.class));
+    }
+
+    @Test
+    void importCsv_acceptsColumnsInAnyOrder() throws IOException {
+        ItemImportResponseDTO response = service.importCsv(body(
+                "stockQuantity,SKU,name\n" +
+                "7,ORDER-1,Desk\n"));
+
+        assertEquals(1, response.getInserted());
+        assertEquals(7, stock("ORDER-1"));
+    }
+
+    @Test
+    void importCsv_rejectsInvalidLinesAndKeepsTheRest() throws IOException {
+        ItemImportResponseDTO response = service.importCsv(body(
+                "sku,name,stock_quantity\n" +
+                "BAD-1,Chair,-1\n" +
+                "BAD-2,,4\n" +
+                "BAD-3,Lamp,many\n" +
+                "\n" +
+                "BAD-4,Lamp,2\n"));
+
+        assertEquals(4, response.getLines());
+        assertEquals(3, response.getRejected());
+        assertEquals(1, response.getInserted());
+        assertEquals(2, response.getRejections().size());
+        assertEquals(2, response.getRejections().get(0).getLine());
+        assertEquals(3, response.getRejections().get(1).getLine());
+        assertEquals(0, count("BAD-1") + count("BAD-2") + count("BAD-3"));
+        assertEquals(1, count("BAD-4"));
+    }
+
+    @Test
+    void importCsv_lastDuplicateLineWins() throws IOException {
+        ItemImportResponseDTO response = service.importCsv(body(
+                "sku,name,stock_quantity\n" +
+                "DUP-1,First,1\n" +
+                "DUP-1,Second,2\n" +
+                "DUP-1,Third,3\n"));
+
+        assertEquals(1, response.getInserted());
+        assertEquals(2, response.getDuplicates());
+        assertEquals("Third", name("DUP-1"));
+        assertEquals(3, stock("DUP-1"));
+    }
+
+    @Test
+    void importCsv_withoutRequiredColumns_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.importCsv(body("sku,name\nX,Y\n")));
+        assertThrows(IllegalArgumentException.class, () -> service.importCsv(body("")));
+    }
+
+    @Test
+    void importNdjson_insertsAndRejectsPerLine() throws IOException {
+        ItemImportResponseDTO response = service.importNdjson(body(
+                "{\"sku\":\"JSON-1\",\"name\":\"Cable\",\"stockQuantity\":12}\n" +
+                "{\"sku\":\"JSON-2\",\"name\":\"Plug\",\"stockQuantity\":1.5}\n" +
+                "not json\n"));
+
+        assertEquals(3, response.getLines());
+        assertEquals(1, response.getInserted());
+        assertEquals(2, response.getRejected());
+        assertEquals(12, stock("JSON-1"));
+        assertEquals(0, count("JSON-2"));
+    }
+
+    @Test
+    void import_neverSetsStockBelowReservedQuantity() throws IOException {
+        jdbc.update("insert into item (sku, name, stock_quantity, reserved_quantity) values ('RES-1', 'Held', 10, 4)");
+
+        service.importNdjson(body("{\"sku\":\"RES-1\",\"name\":\"Held\",\"stockQuantity\":1}\n"));
+
+        assertEquals(4, stock("RES-1"));
+    }
+
+    @Test
+    void import_offersNewStockToItemsWithOpenOrders() throws IOException {
+        jdbc.update("insert into item (sku, name, stock_quantity) values ('OPEN-1', 'Backordered', 0)");
+        Long itemId = jdbc.queryForObject("select id from item where sku = 'OPEN-1'", Long.class);
+        jdbc.update("insert into \"user\" (name, email) values ('Buyer', 'buyer@import.test')");
+        Long userId = jdbc.queryForObject("select id from \"user\" where email = 'buyer@import.test'", Long.class);
+        jdbc.update("insert into \"order\" (item_id, user_id, quantity) values (?, ?, 2)", itemId, userId);
+
+        service.importCsv(body("sku,name,stock_quantity\nOPEN-1,Backordered,5\nOPEN-2,Fresh,5\n"));
+
+        verify(backorderService).allocateBackorders(itemId);
+        verify(backorderService, times(1)).allocateBackorders(any());
+    }
+
+    @Test
+    void import_replacesStockWithoutRecordingStockMovements() throws IOException {
+        jdbc.update("insert into item (sku, name, stock_quantity) values ('MOV-1', 'Up', 3)");
+        jdbc.update("insert into item (sku, name, stock_quantity) values ('MOV-2', 'Down', 8)");
+        jdbc.update("insert into item (sku, name, stock_quantity) values ('MOV-3', 'Same', 4)");
+
+        service.importCsv(body("sku,name,stock_quantity\nMOV-1,Up,10\nMOV-2,Down,5\nMOV-3,Same,4\nMOV-4,New,6\n"));
+
+        assertEquals(10, stock("MOV-1"));
+        assertEquals(5, stock("MOV-2"));
+        for (String sku : List.of("MOV-1", "MOV-2", "MOV-3", "MOV-4")) {
+            assertEquals(List.of(), movements(sku));
+        }
+    }
+
+    @Test
+    void import_readsTheWholeBodyBeforeOpeningATransaction() throws IOException {
+        AtomicBoolean readInTransaction = new AtomicBoolean();
+        InputStream body = new FilterInputStream(body("sku,name,stock_quantity\nTX-1,Slow,1\n")) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                readInTransaction.compareAndSet(false, TransactionSynchronizationManager.isActualTransactionActive());
+                return super.read(b, off, len);
+            }
+        };
+
+        service.importCsv(body);
+
+        assertFalse(readInTransaction.get());
+        assertEquals(1, stock("TX-1"));
+    }
+
+    @Test
+    void import_whenTheBodyFails_neverOpensATransaction() {
+        TransactionOperations transactions = mock(TransactionOperations.class);
+        service = new ItemImportService(new ItemImportRepository(postgres.getPostgresDatabase(), 8192), catalog,
+                backorderService, fileLogService, new ObjectMapper(), transactions, 2);
+        InputStream body = new SequenceInputStream(body("sku,name,stock_quantity\nCUT-1,Cut,1\n"),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connection reset");
+                    }
+                });
+
+        assertThrows(IOException.class, () -> service.importCsv(body));
+        verifyNoInteractions(transactions);
+        assertEquals(0, count("CUT-1"));
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String name(String sku) {
+        return jdbc.queryForObject("select name from item where sku = ?", String.class, sku);
+    }
+
+    private static int stock(String sku) {
+        return jdbc.queryForObject("select stock_quantity from item where sku = ?", Integer.class, sku);
+    }
+
+    private static List<Integer> movements(String sku) {
+        return jdbc.queryForList("select m.quantity from stock_movement m join item i on i.id = m.item_id " +
+                "where i.sku = ? order by m.id", Integer.class, sku);
+    }
+
+    private static int count(String sku) {
+        return jdbc.queryForObject("select count(*) from item where sku = ?", Integer.class, sku);
+    }
+}
@@ -0,0 +1,111 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.service.ItemLaneExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItemLaneExecutorTest {
+
+    private ItemLaneExecutor lanes;
+
+    @BeforeEach
+    void setup() {
+        lanes = new ItemLaneExecutor(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lanes.shutdown();
+    }
+
+    @Test
+    void call_sameItem_runsSeriallyOnOneLane() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            futures.add(lanes.submit(7L, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                String thread = Thread.currentThread().getName();
+                running.decrementAndGet();
+                return thread;
+            }));
+        }
+
+        futures.forEach(CompletableFuture::join);
+        assertEquals(1, maxRunning.get());
+        assertEquals(1, futures.stream().map(CompletableFuture::join).distinct().count());
+        assertEquals(50, lanes.completedTasks(lanes.laneOf(7L)));
+    }
+
+    @Test
+    void submit_differentLanes_runInParallel() throws Exception {
+        assertNotEquals(lanes.laneOf(1L), lanes.laneOf(2L));
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CompletableFuture<Void> slow = lanes.submit(1L, () -> {
+            await(blocked);
+            return null;
+        });
+
+        assertEquals("done", lanes.submit(2L, () -> "done").get(5, TimeUnit.SECONDS));
+        assertFalse(slow.isDone());
+
+        blocked.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void call_taskThrows_rethrowsOriginalException() {
+        assertThrows(NoSuchElementException.class, () -> lanes.call(3L, () -> {
+            throw new NoSuchElementException("missing");
+        }));
+    }
+
+    @Test
+    void call_nestedOnSameLane_runsInline() {
+        String result = lanes.call(5L, () -> lanes.call(5L, () -> "nested"));
+
+        assertEquals("nested", result);
+    }
+
+    @Test
+    void queueDepth_reportsWaitingTasks() {
+        CountDownLatch blocked = new CountDownLatch(1);
+        int lane = lanes.laneOf(9L);
+
+        CompletableFuture<Void> first = lanes.submit(9L, () -> {
+            await(blocked);
+            return null;
+        });
+        CompletableFuture<Integer> second = lanes.submit(9L, () -> 2);
+        CompletableFuture<Integer> third = lanes.submit(9L, () -> 3);
+
+        assertTrue(lanes.queueDepth(lane) >= 2);
+
+        blocked.countDown();
+        CompletableFuture.allOf(first, second, third).join();
+        assertEquals(0, lanes.queueDepth(lane));
+        assertTrue(lanes.totalWaitNanos(lane) > 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
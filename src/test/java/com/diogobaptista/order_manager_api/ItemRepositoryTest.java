@@ -0,0 +1,56 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class ItemRepositoryTest {
+
+    private ItemRepository repository;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(ItemRepository.class, CALLS_REAL_METHODS);
+    }
+
+    @Test
+    void takeStock_fullQuantityAvailable_takesRequested() {
+        doReturn(1).when(repository).decrementStock(1L, 5);
+
+        assertEquals(5, repository.takeStock(1L, 5));
+        verify(repository, never()).findAvailableQuantityById(any());
+    }
+
+    @Test
+    void takeStock_partialQuantityAvailable_takesWhatIsLeft() {
+        doReturn(0).when(repository).decrementStock(1L, 5);
+        doReturn(1).when(repository).decrementStock(1L, 3);
+        doReturn(Optional.of(3)).when(repository).findAvailableQuantityById(1L);
+
+        assertEquals(3, repository.takeStock(1L, 5));
+    }
+
+    @Test
+    void takeStock_noStock_takesNothing() {
+        doReturn(0).when(repository).decrementStock(eq(1L), anyInt());
+        doReturn(Optional.of(0)).when(repository).findAvailableQuantityById(1L);
+
+        assertEquals(0, repository.takeStock(1L, 5));
+        verify(repository, times(1)).decrementStock(eq(1L), anyInt());
+    }
+
+    @Test
+    void takeStock_contendedStock_givesUpAfterBoundedRetries() {
+        doReturn(0).when(repository).decrementStock(eq(1L), anyInt());
+        doReturn(Optional.of(2)).when(repository).findAvailableQuantityById(1L);
+
+        assertEquals(0, repository.takeStock(1L, 5));
+        verify(repository, times(ItemRepository.MAX_TAKE_ATTEMPTS)).decrementStock(eq(1L), anyInt());
+    }
+}
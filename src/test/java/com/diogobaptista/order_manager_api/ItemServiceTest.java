@@ -4,7 +4,12 @@ import com.diogobaptista.order_manager_api.dto.ItemRequestDTO;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.mapper.ItemMapper;
 import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.diogobaptista.order_manager_api.service.BackorderService;
+import com.diogobaptista.order_manager_api.service.CatalogCache;
 import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.InsufficientStockException;
 import com.diogobaptista.order_manager_api.service.ItemService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,9 +20,12 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -25,6 +33,7 @@ public class ItemServiceTest {
 
     private ItemRepository repository;
     private ItemMapper mapper;
+    private BackorderService backorderService;
     private ItemService service;
 
     @BeforeEach
@@ -32,7 +41,9 @@ public class ItemServiceTest {
         repository = mock(ItemRepository.class);
         mapper = mock(ItemMapper.class);
         FileLogService fileLogService = mock(FileLogService.class);
-        service = new ItemService(repository, mapper, fileLogService);
+        backorderService = mock(BackorderService.class);
+        service = new ItemService(repository, mapper, fileLogService, backorderService,
+                mock(ListingStreamRepository.class), new CatalogCache(repository, mock(UserRepository.class), 100, 60_000));
     }
 
     @Test
@@ -106,4 +117,95 @@ public class ItemServiceTest {
         verify(repository).delete(item);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void updateItem_stockIncreased_allocatesBackorders() {
+        ItemRequestDTO dto = new ItemRequestDTO();
+        dto.setName("Item");
+        dto.setStockQuantity(20);
+
+        Item existing = new Item();
+        existing.setId(1L);
+        existing.setStockQuantity(0);
+
+        when(repository.findById(1L)).thenReturn(Optional.of(existing));
+        doAnswer(invocation -> {
+            existing.setStockQuantity(dto.getStockQuantity());
+            return null;
+        }).when(mapper).updateEntity(existing, dto);
+        when(repository.save(existing)).thenReturn(existing);
+        when(repository.adjustStock(1L, 0, 20)).thenReturn(1);
+
+        service.updateItem(1L, dto);
+
+        verify(repository).adjustStock(1L, 0, 20);
+        verify(backorderService).allocateBackorders(existing.getId());
+    }
+
+    @Test
+    public void updateItem_belowReservedStock_isRefusedBeforeSaving() {
+        ItemRequestDTO dto = new ItemRequestDTO();
+        dto.setName("Item");
+        dto.setStockQuantity(1);
+
+        Item existing = new Item();
+        existing.setId(1L);
+        existing.setStockQuantity(10);
+
+        when(repository.findById(1L)).thenReturn(Optional.of(existing));
+        when(repository.adjustStock(1L, 10, 1)).thenReturn(0);
+
+        assertThrows(InsufficientStockException.class, () -> service.updateItem(1L, dto));
+        verify(repository, never()).save(any());
+        verify(backorderService, never()).allocateBackorders(any());
+    }
+
+    @Test
+    public void updateItem_stockDecreased_doesNotAllocateBackorders() {
+        ItemRequestDTO dto = new ItemRequestDTO();
+        dto.setName("Item");
+        dto.setStockQuantity(5);
+
+        Item existing = new Item();
+        existing.setId(1L);
+        existing.setStockQuantity(10);
+
+        when(repository.findById(1L)).thenReturn(Optional.of(existing));
+        doAnswer(invocation -> {
+            existing.setStockQuantity(dto.getStockQuantity());
+            return null;
+        }).when(mapper).updateEntity(existing, dto);
+        when(repository.save(existing)).thenReturn(existing);
+        when(repository.adjustStock(1L, 10, 5)).thenReturn(1);
+        when(repository.findStockQuantityById(1L)).thenReturn(Optional.of(5));
+
+        service.updateItem(1L, dto);
+
+        verify(repository).adjustStock(1L, 10, 5);
+        verify(backorderService, never()).allocateBackorders(any());
+    }
+
+    @Test
+    public void receiveStock_existingItem_increasesStockAndAllocatesBackorders() {
+        Item existing = new Item();
+        existing.setId(1L);
+        existing.setStockQuantity(3);
+
+        when(repository.findById(1L)).thenReturn(Optional.of(existing));
+        when(repository.findStockQuantityById(1L)).thenReturn(Optional.of(10));
+
+        Optional<Item> result = service.receiveStock(1L, 7);
+
+        assertTrue(result.isPresent());
+        assertEquals(10, result.get().getStockQuantity());
+        verify(repository).incrementStock(1L, 7);
+        verify(repository, never()).save(any());
+        verify(backorderService).allocateBackorders(existing.getId());
+    }
+
+    @Test
+    public void receiveStock_nonPositiveQuantity_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> service.receiveStock(1L, 0));
+
+        verify(repository, never()).findById(any());
+    }
+}
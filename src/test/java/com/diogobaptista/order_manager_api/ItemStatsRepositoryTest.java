@@ -0,0 +1,84 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.ItemStatsDTO;
+import com.diogobaptista.order_manager_api.repository.ItemStatsRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the stats queries and the upsert against an embedded Postgres, with
+ * orders created before the {@code item_stats} migration to check the backfill.
+ */
+public class ItemStatsRepositoryTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbc;
+    private static ItemStatsRepository repository;
+
+    @BeforeAll
+    static void migrate() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure().dataSource(postgres.getPostgresDatabase())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false")).target("6").load().migrate();
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+
+        jdbc.update("insert into item (id, name, stock_quantity) values (1, 'Keyboard', 0), (2, 'Mouse', 0), (3, 'Cable', 0)");
+        jdbc.update("insert into \"user\" (id, name, email) values (1, 'Ana', 'ana@example.com')");
+        jdbc.update("insert into \"order\" (item_id, user_id, quantity, fulfilled_quantity) values " +
+                "(1, 1, 10, 10), (1, 1, 5, 2), (1, 1, 3, 0), (2, 1, 4, 4)");
+
+        Flyway.configure().dataSource(postgres.getPostgresDatabase())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false")).load().migrate();
+        repository = new ItemStatsRepository(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void migration_backfillsTotalsFromExistingOrders() {
+        ItemStatsDTO keyboard = repository.findByItemId(1L).orElseThrow(AssertionError::new);
+
+        assertEquals(2, keyboard.getOpenOrders());
+        assertEquals(6, keyboard.getOpenQuantity());
+        assertEquals(18, keyboard.getOrderedQuantity());
+        assertEquals(12, keyboard.getAllocatedQuantity());
+    }
+
+    @Test
+    void findByItemId_readsZerosForItemsWithoutOrders() {
+        ItemStatsDTO cable = repository.findByItemId(3L).orElseThrow(AssertionError::new);
+
+        assertEquals(0, cable.getOrderedQuantity());
+        assertNull(cable.getFillRate());
+        assertFalse(repository.findByItemId(42L).isPresent());
+    }
+
+    @Test
+    void addAll_incrementsExistingRowsAndCreatesMissingOnes() {
+        jdbc.update("insert into item (id, name, stock_quantity) values (10, 'Monitor', 0), (11, 'Dock', 0)");
+
+        repository.addAll(Collections.singletonList(new ItemStatsDTO(10L, 1, 5, 5, 0)));
+        repository.addAll(Arrays.asList(new ItemStatsDTO(10L, -1, -5, 0, 5), new ItemStatsDTO(11L, 2, 7, 7, 0)));
+
+        List<ItemStatsDTO> page = repository.findPageAfter(9L, 10);
+        assertEquals(2, page.size());
+        assertEquals(0, page.get(0).getOpenOrders());
+        assertEquals(1.0, page.get(0).getFillRate());
+        assertEquals(7, page.get(1).getOpenQuantity());
+    }
+}
@@ -0,0 +1,130 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.ItemStatsDTO;
+import com.diogobaptista.order_manager_api.repository.ItemStatsRepository;
+import com.diogobaptista.order_manager_api.service.ItemStatsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class ItemStatsServiceTest {
+
+    private ItemStatsRepository repository;
+    private ItemStatsService service;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(ItemStatsRepository.class);
+        service = new ItemStatsService(repository, TransactionOperations.withoutTransaction());
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_writesOneSummedDeltaPerItem() {
+        service.recordOrderCreated(2L, 5);
+        service.recordOrderCreated(1L, 3);
+        service.recordAllocation(1L, 3, true);
+        service.recordOrderCreated(2L, 4);
+        service.recordAllocation(2L, 1, false);
+
+        service.flush();
+
+        ArgumentCaptor<List<ItemStatsDTO>> rows = ArgumentCaptor.forClass(List.class);
+        verify(repository).addAll(rows.capture());
+        assertEquals(2, rows.getValue().size());
+
+        ItemStatsDTO first = rows.getValue().get(0);
+        assertEquals(1L, first.getItemId());
+        assertEquals(0, first.getOpenOrders());
+        assertEquals(0, first.getOpenQuantity());
+        assertEquals(3, first.getAllocatedQuantity());
+
+        ItemStatsDTO second = rows.getValue().get(1);
+        assertEquals(2L, second.getItemId());
+        assertEquals(2, second.getOpenOrders());
+        assertEquals(8, second.getOpenQuantity());
+        assertEquals(9, second.getOrderedQuantity());
+        assertEquals(1, second.getAllocatedQuantity());
+
+        service.flush();
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void deltas_countOnlyOnceTheTransactionCommits() {
+        when(repository.findByItemId(1L)).thenReturn(Optional.of(new ItemStatsDTO(1L, 0, 0, 0, 0)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordOrderCreated(1L, 5);
+        assertEquals(0, service.findByItemId(1L).orElseThrow(AssertionError::new).getOrderedQuantity());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(5, service.findByItemId(1L).orElseThrow(AssertionError::new).getOrderedQuantity());
+    }
+
+    @Test
+    void deltas_ofRolledBackTransactionAreDropped() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.recordOrderCreated(1L, 5);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        service.flush();
+
+        verify(repository, never()).addAll(anyList());
+    }
+
+    @Test
+    void flush_keepsDeltasWhenTheWriteFails() {
+        doThrow(new IllegalStateException("database down")).doNothing().when(repository).addAll(anyList());
+        service.recordOrderCreated(1L, 5);
+
+        service.flush();
+        service.recordOrderCreated(1L, 2);
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ItemStatsDTO>> rows = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(2)).addAll(rows.capture());
+        assertEquals(7, rows.getValue().get(0).getOrderedQuantity());
+    }
+
+    @Test
+    void findByItemId_addsPendingDeltas() {
+        when(repository.findByItemId(1L)).thenReturn(Optional.of(new ItemStatsDTO(1L, 1, 4, 10, 6)));
+        service.recordOrderCreated(1L, 10);
+        service.recordAllocation(1L, 4, false);
+
+        ItemStatsDTO stats = service.findByItemId(1L).orElseThrow(AssertionError::new);
+
+        assertEquals(2, stats.getOpenOrders());
+        assertEquals(10, stats.getOpenQuantity());
+        assertEquals(20, stats.getOrderedQuantity());
+        assertEquals(10, stats.getAllocatedQuantity());
+        assertEquals(0.5, stats.getFillRate());
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+    }
+}
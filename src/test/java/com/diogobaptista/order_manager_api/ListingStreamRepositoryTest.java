@@ -0,0 +1,206 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams orders and stock movements for export filters from an embedded
+ * Postgres, each inside a read-only transaction as the export endpoints run
+ * them, so that rows come from a server-side cursor and the export timeouts
+ * apply on the server.
+ */
+public class ListingStreamRepositoryTest {
+
+    private static final LocalDateTime AUGUST = LocalDateTime.of(2026, 8, 31, 23, 59, 59);
+    private static final LocalDateTime SEPTEMBER = LocalDateTime.of(2026, 9, 1, 0, 0);
+    private static final LocalDateTime OCTOBER = LocalDateTime.of(2026, 10, 1, 0, 0);
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+    private static TransactionTemplate readOnly;
+    private static ListingStreamRepository repository;
+    private static long keyboard;
+    private static long mouse;
+
+    @BeforeAll
+    static void migrate() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        // One instance throughout: the transaction manager binds connections to it.
+        dataSource = postgres.getPostgresDatabase();
+        Flyway.configure().dataSource(dataSource)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false")).load().migrate();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+        repository = new ListingStreamRepository(dataSource, 2, 60_000);
+
+        keyboard = jdbc.queryForObject("insert into item (name, stock_quantity) values ('Keyboard', 0) returning id",
+                Long.class);
+        mouse = jdbc.queryForObject("insert into item (name, stock_quantity) values ('Mouse', 0) returning id",
+                Long.class);
+        long user = jdbc.queryForObject(
+                "insert into \"user\" (name, email) values ('Finance', 'finance@export.test') returning id", Long.class);
+        for (LocalDateTime at : List.of(AUGUST, SEPTEMBER, SEPTEMBER.plusDays(10), OCTOBER)) {
+            jdbc.update("insert into \"order\" (creation_date, item_id, user_id, quantity) values (?, ?, ?, 1)",
+                    at, keyboard, user);
+            jdbc.update("insert into stock_movement (creation_date, item_id, quantity) values (?, ?, 5)", at, keyboard);
+        }
+        jdbc.update("insert into \"order\" (creation_date, item_id, user_id, quantity) values (?, ?, ?, 2)",
+                SEPTEMBER.plusDays(5), mouse, user);
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void streamOrders_withoutBounds_streamsEveryRowOldestFirst() {
+        List<OrderResponseDTO> orders = new ArrayList<>();
+        inTransaction(() -> repository.streamOrders(new ExportFilter(null, null, null), orders::add));
+
+        assertEquals(5, orders.size());
+        assertEquals(AUGUST, orders.get(0).getCreationDate());
+        assertEquals(OCTOBER, orders.get(4).getCreationDate());
+    }
+
+    @Test
+    void streamOrders_keepsRowsInsideTheHalfOpenRange() {
+        List<OrderResponseDTO> orders = new ArrayList<>();
+        inTransaction(() -> repository.streamOrders(new ExportFilter(SEPTEMBER, OCTOBER, null), orders::add));
+
+        assertEquals(3, orders.size());
+        assertEquals(SEPTEMBER, orders.get(0).getCreationDate());
+        assertEquals(mouse, orders.get(1).getItemId());
+        assertEquals(SEPTEMBER.plusDays(10), orders.get(2).getCreationDate());
+    }
+
+    @Test
+    void streamOrders_filtersByItem() {
+        List<OrderResponseDTO> orders = new ArrayList<>();
+        inTransaction(() -> repository.streamOrders(new ExportFilter(SEPTEMBER, null, mouse), orders::add));
+
+        assertEquals(1, orders.size());
+        assertEquals(2, orders.get(0).getQuantity());
+    }
+
+    @Test
+    void streamStockMovements_combinesRangeAndItem() {
+        List<StockMovementResponseDTO> movements = new ArrayList<>();
+        inTransaction(() -> repository.streamStockMovements(new ExportFilter(null, OCTOBER, keyboard),
+                movements::add));
+
+        assertEquals(3, movements.size());
+        assertEquals(AUGUST, movements.get(0).getCreationDate());
+    }
+
+    @Test
+    void streamOrders_readsRowsThroughAServerSideCursor() {
+        JdbcTemplate sameTransaction = new JdbcTemplate(dataSource);
+        List<Integer> openCursors = new ArrayList<>();
+
+        inTransaction(() -> repository.streamOrders(new ExportFilter(null, null, null), row -> openCursors.add(
+                sameTransaction.queryForObject("select count(*) from pg_cursors where name <> ''", Integer.class))));
+
+        // Two rows per fetch: the cursor stays open until the last, short fetch.
+        assertEquals(List.of(1, 1, 1, 1, 0), openCursors);
+    }
+
+    @Test
+    void streamOrders_appliesTheExportTimeoutsToItsTransaction() {
+        JdbcTemplate sameTransaction = new JdbcTemplate(dataSource);
+        List<String> settings = new ArrayList<>();
+
+        inTransaction(() -> new ListingStreamRepository(dataSource, 2, 1_234).streamOrders(
+                new ExportFilter(SEPTEMBER, OCTOBER, mouse), row -> {
+                    settings.add(sameTransaction.queryForObject("show statement_timeout", String.class));
+                    settings.add(sameTransaction.queryForObject("show idle_in_transaction_session_timeout",
+                            String.class));
+                }));
+
+        assertEquals(List.of("1234ms", "1234ms"), settings);
+        assertEquals("0", new JdbcTemplate(dataSource).queryForObject("show statement_timeout", String.class));
+    }
+
+    @Test
+    void streamOrders_blockedPastTheExportTimeout_isCancelledByTheServer() throws Exception {
+        ListingStreamRepository impatient = new ListingStreamRepository(dataSource, 2, 200);
+        List<OrderResponseDTO> orders = new ArrayList<>();
+
+        try (Connection locker = dataSource.getConnection()) {
+            locker.setAutoCommit(false);
+            try (Statement statement = locker.createStatement()) {
+                statement.execute("lock table \"order\" in access exclusive mode");
+            }
+            try {
+                DataAccessException timedOut = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> assertThrows(DataAccessException.class, () -> inTransaction(
+                                () -> impatient.streamOrders(new ExportFilter(null, null, null), orders::add))));
+                assertTrue(timedOut.getMessage().contains("statement timeout"), timedOut.getMessage());
+            } finally {
+                locker.rollback();
+            }
+        }
+        assertTrue(orders.isEmpty());
+    }
+
+    @Test
+    void streamOrders_slowReaderPastTheExportTimeout_isStoppedAndItsIdleSessionEnded() {
+        ListingStreamRepository slow = new ListingStreamRepository(dataSource, 2, 50);
+        List<OrderResponseDTO> orders = new ArrayList<>();
+
+        TransactionSystemException rollback = assertThrows(TransactionSystemException.class, () -> inTransaction(
+                () -> slow.streamOrders(new ExportFilter(null, null, null), row -> {
+                    orders.add(row);
+                    sleep(300);
+                })));
+
+        assertInstanceOf(QueryTimeoutException.class, rollback.getApplicationException());
+        assertTrue(rollback.getMostSpecificCause().getMessage().contains("idle-in-transaction timeout"),
+                rollback.getMostSpecificCause().getMessage());
+        assertEquals(1, orders.size());
+    }
+
+    @Test
+    void exportFilter_rejectsEmptyRange() {
+        assertThrows(IllegalArgumentException.class, () -> new ExportFilter(OCTOBER, SEPTEMBER, null));
+        assertThrows(IllegalArgumentException.class, () -> new ExportFilter(OCTOBER, OCTOBER, null));
+    }
+
+    private static void inTransaction(Runnable export) {
+        readOnly.executeWithoutResult(status -> export.run());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package com.diogobaptista.order_manager_api;
 
+import com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
 import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.AllocationRepository;
 import com.diogobaptista.order_manager_api.repository.OrderRepository;
 import com.diogobaptista.order_manager_api.service.EmailService;
 import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.ItemStatsService;
 import com.diogobaptista.order_manager_api.service.OrderAllocationService;
+import com.diogobaptista.order_manager_api.service.PendingOrderIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
@@ -16,15 +30,20 @@ import static org.mockito.Mockito.*;
 public class OrderAllocationServiceTest {
 
     private OrderRepository orderRepository;
+    private AllocationRepository allocationRepository;
     private EmailService emailService;
+    private ItemStatsService itemStats;
     private OrderAllocationService orderAllocationService;
 
     @BeforeEach
     public void setup() {
         orderRepository = mock(OrderRepository.class);
+        allocationRepository = mock(AllocationRepository.class);
         emailService = mock(EmailService.class);
+        itemStats = mock(ItemStatsService.class);
         FileLogService fileLogService = mock(FileLogService.class);
-        orderAllocationService = new OrderAllocationService(orderRepository, emailService, fileLogService);
+        orderAllocationService = new OrderAllocationService(orderRepository, allocationRepository, emailService, fileLogService,
+                itemStats, mock(PendingOrderIndex.class), new SimpleMeterRegistry());
     }
 
     @Test
@@ -34,6 +53,7 @@ public class OrderAllocationServiceTest {
         order.setQuantity(10);
         order.setFulfilledQuantity(3);
         order.setUser(new User());
+        order.setItem(item(5L));
 
         StockMovement stock = new StockMovement();
         stock.setId(2L);
@@ -43,7 +63,8 @@ public class OrderAllocationServiceTest {
 
         assertEquals(7, order.getFulfilledQuantity());
         verify(orderRepository).save(order);
-        verify(emailService, never()).sendOrderCompleted(any(), any());
+        verify(itemStats).recordAllocation(5L, 4, false);
+        verify(emailService, never()).enqueueOrderCompleted(any(), any());
     }
 
     @Test
@@ -87,6 +108,7 @@ public class OrderAllocationServiceTest {
         order.setQuantity(10);
         order.setFulfilledQuantity(8);
         order.setUser(new User());
+        order.setItem(item(5L));
 
         StockMovement stock = new StockMovement();
         stock.setId(2L);
@@ -96,6 +118,101 @@ public class OrderAllocationServiceTest {
 
         assertEquals(10, order.getFulfilledQuantity());
         verify(orderRepository).save(order);
-        verify(emailService).sendOrderCompleted(any(), eq(order));
+        verify(emailService).enqueueOrderCompleted(any(), eq(order));
+        verify(itemStats).recordAllocation(5L, 2, true);
+    }
+
+    @Test
+    public void basketLine_queuesOneEmailAtCommitOnceEveryLineIsFilled() {
+        Order line = basketLine(11L, 10L, 4, 1);
+        when(orderRepository.findLinesByBasketId(10L)).thenReturn(Arrays.asList(
+                new OrderLineResponseDTO(10L, 5L, 2, 2),
+                new OrderLineResponseDTO(11L, 5L, 4, 4)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        orderAllocationService.fulfillOrderWithStockMovement(line, movement(3));
+        verify(emailService, never()).enqueueOrderCompleted(any(), any());
+        verify(orderRepository, never()).lockBasket(any());
+        commit();
+
+        InOrder check = inOrder(orderRepository);
+        check.verify(orderRepository).lockBasket(10L);
+        check.verify(orderRepository).findLinesByBasketId(10L);
+        verify(emailService).enqueueBasketCompleted(line.getUser(), 10L, 2, 6);
+        verify(emailService, never()).enqueueOrderCompleted(any(), any());
+    }
+
+    @Test
+    public void basketLine_otherLinesStillOpen_queuesNoEmail() {
+        Order line = basketLine(11L, 10L, 4, 1);
+        when(orderRepository.findLinesByBasketId(10L)).thenReturn(Arrays.asList(
+                new OrderLineResponseDTO(10L, 5L, 2, 1),
+                new OrderLineResponseDTO(11L, 5L, 4, 4)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        orderAllocationService.fulfillOrderWithStockMovement(line, movement(3));
+        commit();
+
+        verify(orderRepository).lockBasket(10L);
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    public void basketCreated_allLinesFilled_queuesOneEmailWithoutLocking() {
+        Order first = basketLine(10L, 10L, 2, 0);
+        Order second = basketLine(11L, 10L, 3, 0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        orderAllocationService.recordAllocation(fill(first), movement(2), 2);
+        orderAllocationService.recordAllocation(fill(second), movement(3), 3);
+        orderAllocationService.basketCreated(Arrays.asList(first, second));
+        commit();
+
+        verify(emailService).enqueueBasketCompleted(first.getUser(), 10L, 2, 5);
+        verify(orderRepository, never()).lockBasket(any());
+        verify(orderRepository, never()).findLinesByBasketId(any());
+    }
+
+    @AfterEach
+    public void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private static Order basketLine(Long id, Long basketId, int quantity, int fulfilled) {
+        Order order = new Order();
+        order.setId(id);
+        order.setBasketId(basketId);
+        order.setQuantity(quantity);
+        order.setFulfilledQuantity(fulfilled);
+        order.setUser(new User());
+        order.setItem(item(5L));
+        return order;
+    }
+
+    private static Order fill(Order order) {
+        order.setFulfilledQuantity(order.getQuantity());
+        return order;
+    }
+
+    private static StockMovement movement(int quantity) {
+        StockMovement stock = new StockMovement();
+        stock.setId(2L);
+        stock.setQuantity(quantity);
+        return stock;
+    }
+
+    private static Item item(Long id) {
+        Item item = new Item();
+        item.setId(id);
+        return item;
     }
 }
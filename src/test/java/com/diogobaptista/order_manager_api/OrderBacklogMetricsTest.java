@@ -0,0 +1,54 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.ItemBacklogDTO;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.service.OrderBacklogMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OrderBacklogMetricsTest {
+
+    private OrderRepository orderRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderBacklogMetrics metrics;
+
+    @BeforeEach
+    void setup() {
+        orderRepository = mock(OrderRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new OrderBacklogMetrics(orderRepository, meterRegistry, 2);
+    }
+
+    @Test
+    void refresh_publishesGaugesPerItem() {
+        when(orderRepository.findLargestBacklogs(PageRequest.of(0, 2))).thenReturn(Arrays.asList(
+                new ItemBacklogDTO(1L, 3, 40),
+                new ItemBacklogDTO(2L, 1, 5)));
+
+        metrics.refresh();
+
+        assertEquals(3, meterRegistry.get("orders.backlog.orders").tag("item", "1").gauge().value());
+        assertEquals(40, meterRegistry.get("orders.backlog.quantity").tag("item", "1").gauge().value());
+        assertEquals(5, meterRegistry.get("orders.backlog.quantity").tag("item", "2").gauge().value());
+    }
+
+    @Test
+    void refresh_removesItemsWithoutBacklog() {
+        when(orderRepository.findLargestBacklogs(any()))
+                .thenReturn(Collections.singletonList(new ItemBacklogDTO(1L, 3, 40)))
+                .thenReturn(Collections.emptyList());
+
+        metrics.refresh();
+        metrics.refresh();
+
+        assertNull(meterRegistry.find("orders.backlog.orders").tag("item", "1").gauge());
+    }
+}
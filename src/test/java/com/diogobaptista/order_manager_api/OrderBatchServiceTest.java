@@ -0,0 +1,200 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.OrderBatchLineResultDTO;
+import com.diogobaptista.order_manager_api.dto.OrderBatchLineResultDTO.Status;
+import com.diogobaptista.order_manager_api.dto.OrderBatchResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.diogobaptista.order_manager_api.service.AuditEvent;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.ItemStatsService;
+import com.diogobaptista.order_manager_api.service.OrderAllocationService;
+import com.diogobaptista.order_manager_api.service.OrderBatchService;
+import com.diogobaptista.order_manager_api.service.PendingOrderIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class OrderBatchServiceTest {
+
+    private OrderRepository orderRepository;
+    private StockMovementRepository stockRepository;
+    private ItemRepository itemRepository;
+    private UserRepository userRepository;
+    private OrderAllocationService allocator;
+    private ItemStatsService itemStats;
+    private FileLogService fileLogService;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderBatchService service;
+
+    @BeforeEach
+    void setup() {
+        orderRepository = mock(OrderRepository.class);
+        stockRepository = mock(StockMovementRepository.class);
+        itemRepository = mock(ItemRepository.class);
+        userRepository = mock(UserRepository.class);
+        allocator = mock(OrderAllocationService.class);
+        itemStats = mock(ItemStatsService.class);
+        fileLogService = mock(FileLogService.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        service = new OrderBatchService(orderRepository, stockRepository, itemRepository, userRepository,
+                allocator, fileLogService, itemStats, mock(PendingOrderIndex.class), new ObjectMapper(),
+                TransactionOperations.withoutTransaction(), 2, meterRegistry);
+
+        Item keyboard = new Item();
+        keyboard.setId(1L);
+        Item mouse = new Item();
+        mouse.setId(2L);
+        User user = new User();
+        user.setId(10L);
+
+        when(itemRepository.findAllById(any())).thenReturn(Arrays.asList(keyboard, mouse));
+        when(userRepository.findAllById(any())).thenReturn(Collections.singletonList(user));
+    }
+
+    @Test
+    void ingest_reportsPerLineResults() throws IOException {
+        when(itemRepository.takeStock(1L, 8)).thenReturn(6);
+        when(itemRepository.takeStock(2L, 1)).thenReturn(1);
+
+        OrderBatchResponseDTO response = service.ingest(json("[" +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":5}," +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":3}," +
+                "{\"itemId\":99,\"userId\":10,\"quantity\":1}," +
+                "{\"itemId\":2,\"userId\":10,\"quantity\":1}," +
+                "{\"itemId\":2,\"userId\":10,\"quantity\":0}" +
+                "]"));
+
+        List<OrderBatchLineResultDTO> lines = response.getLines();
+        assertEquals(5, lines.size());
+        assertEquals(Status.CREATED, lines.get(0).getStatus());
+        assertEquals(5, lines.get(0).getAllocatedQuantity());
+        assertEquals(Status.PARTIALLY_ALLOCATED, lines.get(1).getStatus());
+        assertEquals(1, lines.get(1).getAllocatedQuantity());
+        assertEquals(Status.REJECTED, lines.get(2).getStatus());
+        assertEquals(Status.CREATED, lines.get(3).getStatus());
+        assertEquals(Status.REJECTED, lines.get(4).getStatus());
+
+        assertEquals(2, response.getCreated());
+        assertEquals(1, response.getPartiallyAllocated());
+        assertEquals(2, response.getRejected());
+    }
+
+    @Test
+    void ingest_looksUpItemsAndUsersOncePerChunk() throws IOException {
+        service.ingest(json("[" +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":1}," +
+                "{\"itemId\":2,\"userId\":10,\"quantity\":1}," +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":1}" +
+                "]"));
+
+        verify(itemRepository, times(2)).findAllById(any());
+        verify(userRepository, times(2)).findAllById(any());
+        verify(itemRepository, never()).findById(any());
+        verify(userRepository, never()).findById(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void ingest_savesOrdersAndMovementsInBulk() throws IOException {
+        when(itemRepository.takeStock(1L, 3)).thenReturn(3);
+
+        service.ingest(json("[" +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":1}," +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":2}" +
+                "]"));
+
+        ArgumentCaptor<List<Order>> orders = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<StockMovement>> movements = ArgumentCaptor.forClass(List.class);
+        verify(orderRepository).saveAll(orders.capture());
+        verify(stockRepository).saveAll(movements.capture());
+        assertEquals(2, orders.getValue().size());
+        assertEquals(2, movements.getValue().size());
+        verify(orderRepository, never()).save(any());
+        verify(allocator, times(2)).recordAllocation(any(), any(), anyInt());
+    }
+
+    @Test
+    void ingest_recordsOutcomesAndAuditEventsPerLine() throws IOException {
+        when(itemRepository.takeStock(1L, 5)).thenReturn(3);
+
+        service.ingest(json("[" +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":2}," +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":3}," +
+                "{\"itemId\":2,\"userId\":10,\"quantity\":1}" +
+                "]"));
+
+        assertEquals(1.0, outcome("full"));
+        assertEquals(1.0, outcome("partial"));
+        assertEquals(1.0, outcome("none"));
+
+        ArgumentCaptor<AuditEvent> events = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(fileLogService, atLeastOnce()).append(events.capture());
+        assertEquals(3, count(events.getAllValues(), AuditEvent.Type.ORDER_CREATED));
+        assertEquals(1, count(events.getAllValues(), AuditEvent.Type.ORDER_FULLY_ALLOCATED));
+        assertEquals(1, count(events.getAllValues(), AuditEvent.Type.ORDER_PARTIALLY_ALLOCATED));
+        assertEquals(1, count(events.getAllValues(), AuditEvent.Type.ORDER_NO_STOCK));
+    }
+
+    @Test
+    void ingest_malformedLine_isRejectedInPlace() throws IOException {
+        OrderBatchResponseDTO response = service.ingest(json("[" +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":1}," +
+                "{\"itemId\":\"abc\",\"userId\":10,\"quantity\":1}" +
+                "]"));
+
+        assertEquals(2, response.getLines().size());
+        assertEquals(Status.REJECTED, response.getLines().get(1).getStatus());
+        assertEquals(2, response.getLines().get(1).getLine());
+    }
+
+    @Test
+    void ingest_truncatedDocument_keepsIngestedLines() throws IOException {
+        OrderBatchResponseDTO response = service.ingest(json("[" +
+                "{\"itemId\":1,\"userId\":10,\"quantity\":1}," +
+                "{\"itemId\":1,\"userId\""));
+
+        assertEquals(2, response.getLines().size());
+        assertEquals(Status.PARTIALLY_ALLOCATED, response.getLines().get(0).getStatus());
+        assertEquals(Status.REJECTED, response.getLines().get(1).getStatus());
+        assertEquals(2, response.getLines().get(1).getLine());
+    }
+
+    @Test
+    void ingest_notAnArray_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> service.ingest(json("{\"itemId\":1}")));
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("allocation.outcomes").tag("source", "order").tag("outcome", outcome)
+                .counter().count();
+    }
+
+    private static long count(List<AuditEvent> events, AuditEvent.Type type) {
+        return events.stream().filter(event -> event.getType() == type).count();
+    }
+
+    private static ByteArrayInputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,10 +1,22 @@
 package com.diogobaptista.order_manager_api;
 
 import com.diogobaptista.order_manager_api.controller.OrderController;
+import com.diogobaptista.order_manager_api.dto.AllocationResponseDTO;
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
+import com.diogobaptista.order_manager_api.dto.OrderBatchLineResultDTO;
+import com.diogobaptista.order_manager_api.dto.OrderBatchResponseDTO;
+import com.diogobaptista.order_manager_api.dto.OrderLineRequestDTO;
+import com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO;
 import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
 import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.mapper.OrderMapper;
+import com.diogobaptista.order_manager_api.service.ExportBusyException;
+import com.diogobaptista.order_manager_api.service.ExportLimiter;
+import com.diogobaptista.order_manager_api.service.IdempotencyService;
+import com.diogobaptista.order_manager_api.service.OrderAllocationService;
+import com.diogobaptista.order_manager_api.service.OrderBatchService;
 import com.diogobaptista.order_manager_api.service.OrderService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -12,13 +24,31 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -35,16 +65,26 @@ public class OrderControllerTest {
     @MockBean
     private OrderMapper mapper;
 
+    @MockBean
+    private OrderBatchService batchService;
+
+    @MockBean
+    private OrderAllocationService allocations;
+
+    @MockBean
+    private IdempotencyService idempotency;
+
+    @MockBean
+    private ExportLimiter exportLimiter;
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Test
     public void getAll_ShouldReturnList() throws Exception {
-        Order order = new Order();
         OrderResponseDTO responseDTO = new OrderResponseDTO(); // Assuming default constructor
 
-        when(service.findAll()).thenReturn(Collections.singletonList(order));
-        when(mapper.toDto(any(Order.class))).thenReturn(responseDTO);
+        when(service.findPage(null, null)).thenReturn(new CursorPage<>(Collections.singletonList(responseDTO), null));
 
         mockMvc.perform(get("/orders"))
                 .andExpect(status().isOk())
@@ -54,11 +94,9 @@ public class OrderControllerTest {
     @Test
     public void getById_ShouldReturnOrder() throws Exception {
         Long orderId = 1L;
-        Order order = new Order();
         OrderResponseDTO responseDTO = new OrderResponseDTO();
 
-        when(service.findById(orderId)).thenReturn(Optional.of(order));
-        when(mapper.toDto(order)).thenReturn(responseDTO);
+        when(service.findById(orderId)).thenReturn(Optional.of(responseDTO));
 
         mockMvc.perform(get("/orders/{id}", orderId))
                 .andExpect(status().isOk());
@@ -86,4 +124,238 @@ public class OrderControllerTest {
                         .content(objectMapper.writeValueAsString(requestDTO)))
                 .andExpect(status().isCreated());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void create_WithLines_ShouldReturnPerLineFulfilment() throws Exception {
+        OrderLineRequestDTO line = new OrderLineRequestDTO();
+        line.setItemId(1L);
+        line.setQuantity(3);
+        OrderRequestDTO requestDTO = new OrderRequestDTO();
+        requestDTO.setUserId(2L);
+        requestDTO.setLines(Arrays.asList(line, line));
+        List<Order> lines = Arrays.asList(new Order(), new Order());
+        LocalDateTime created = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        when(service.createBasket(any(OrderRequestDTO.class))).thenReturn(lines);
+        when(mapper.toDto(lines)).thenReturn(OrderResponseDTO.basket(10L, 2L, created, Arrays.asList(
+                new OrderLineResponseDTO(10L, 1L, 3, 3),
+                new OrderLineResponseDTO(11L, 1L, 3, 1))));
+
+        mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(10))
+                .andExpect(jsonPath("$.quantity").value(6))
+                .andExpect(jsonPath("$.fulfilledQuantity").value(4))
+                .andExpect(jsonPath("$.complete").value(false))
+                .andExpect(jsonPath("$.lines[0].complete").value(true))
+                .andExpect(jsonPath("$.lines[1].id").value(11))
+                .andExpect(jsonPath("$.lines[1].fulfilledQuantity").value(1));
+
+        verify(service, never()).create(any(OrderRequestDTO.class));
+    }
+
+    @Test
+    public void create_WithIdempotencyKey_ReturnsStoredResponse() throws Exception {
+        OrderRequestDTO requestDTO = new OrderRequestDTO();
+        OrderResponseDTO stored = new OrderResponseDTO(7L, 2, 2, 1L, 1L, LocalDateTime.of(2024, 1, 1, 12, 0));
+
+        when(idempotency.execute(eq("orders"), eq("retry-1"), any(), eq(OrderResponseDTO.class), any()))
+                .thenReturn(ResponseEntity.status(201)
+                        .header(IdempotencyService.REPLAYED_HEADER, "true")
+                        .body(stored));
+
+        mockMvc.perform(post("/orders")
+                        .header(IdempotencyService.HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.id").value(7));
+
+        verify(service, never()).create(any(OrderRequestDTO.class));
+    }
+
+    @Test
+    public void createBatch_ShouldReturnLineResults() throws Exception {
+        OrderBatchResponseDTO response = new OrderBatchResponseDTO();
+        response.add(new OrderBatchLineResultDTO(1, OrderBatchLineResultDTO.Status.CREATED, 7L, 2, 2, null));
+        response.add(OrderBatchLineResultDTO.rejected(2, 1, "Item not found with id=9"));
+
+        when(batchService.ingest(any(InputStream.class))).thenReturn(response);
+
+        mockMvc.perform(post("/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"itemId\":1,\"userId\":1,\"quantity\":2},{\"itemId\":9,\"userId\":1,\"quantity\":1}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.lines[0].orderId").value(7))
+                .andExpect(jsonPath("$.lines[1].status").value("REJECTED"));
+    }
+
+    @Test
+    public void getAll_WithMoreRows_ShouldReturnNextCursorHeader() throws Exception {
+        OrderResponseDTO responseDTO = new OrderResponseDTO();
+        responseDTO.setId(7L);
+
+        when(service.findPage(eq("abc"), eq(1))).thenReturn(new CursorPage<>(Collections.singletonList(responseDTO), "next"));
+
+        mockMvc.perform(get("/orders").param("cursor", "abc").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "next"))
+                .andExpect(jsonPath("$[0].id").value(7));
+    }
+
+    @Test
+    public void getAll_LastPage_ShouldOmitNextCursorHeader() throws Exception {
+        when(service.findPage(null, null)).thenReturn(new CursorPage<>(Collections.emptyList(), null));
+
+        mockMvc.perform(get("/orders"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    public void getAll_InvalidCursor_ShouldReturnBadRequest() throws Exception {
+        when(service.findPage(eq("bogus"), any())).thenThrow(new IllegalArgumentException("Invalid page cursor: bogus"));
+
+        mockMvc.perform(get("/orders").param("cursor", "bogus"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid page cursor: bogus"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void stream_ShouldWriteOneJsonDocumentPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<OrderResponseDTO> sink = invocation.getArgument(0);
+            for (long id = 1; id <= 2; id++) {
+                OrderResponseDTO dto = new OrderResponseDTO();
+                dto.setId(id);
+                dto.setQuantity(3);
+                sink.accept(dto);
+            }
+            return null;
+        }).when(service).streamAll(any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/orders/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("id").asLong());
+        assertEquals(2, objectMapper.readTree(lines[1]).get("id").asLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void export_ShouldWriteCsvForTheFilter() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<OrderResponseDTO> sink = invocation.getArgument(1);
+            sink.accept(new OrderResponseDTO(1L, 3, 3, 7L, 2L, LocalDateTime.of(2026, 9, 30, 23, 59, 1), null));
+            sink.accept(new OrderResponseDTO(2L, 4, 1, 7L, 2L, LocalDateTime.of(2026, 9, 30, 23, 59, 2), 1L));
+            return null;
+        }).when(service).export(argThat(filter -> filter.getItemId() == 7L
+                && filter.getFrom().equals(LocalDateTime.of(2026, 9, 1, 0, 0))
+                && filter.getTo().equals(LocalDateTime.of(2026, 10, 1, 0, 0))), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/orders/export")
+                        .param("from", "2026-09-01T00:00:00")
+                        .param("to", "2026-10-01T00:00:00")
+                        .param("itemId", "7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"orders.csv\""))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals("id,creation_date,item_id,user_id,basket_id,quantity,fulfilled_quantity,complete\n" +
+                "1,2026-09-30T23:59:01,7,2,,3,3,true\n" +
+                "2,2026-09-30T23:59:02,7,2,1,4,1,false\n", body);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void export_ShouldGzipWhenAccepted() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<OrderResponseDTO> sink = invocation.getArgument(1);
+            sink.accept(new OrderResponseDTO(1L, 3, 0, 7L, 2L, LocalDateTime.of(2026, 9, 1, 8, 0), null));
+            return null;
+        }).when(service).export(any(ExportFilter.class), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/orders/export").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            String csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(2, csv.split("\n").length);
+            assertEquals("1,2026-09-01T08:00,7,2,,3,0,false", csv.split("\n")[1]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void export_ShouldReleaseItsPermitOnceWritten() throws Exception {
+        ExportLimiter.Permit permit = mock(ExportLimiter.Permit.class);
+        when(exportLimiter.acquire()).thenReturn(permit);
+
+        MvcResult result = mockMvc.perform(get("/orders/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        verify(service).export(any(ExportFilter.class), any(Consumer.class));
+        verify(permit).close();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void export_WhenTooManyAreRunning_ShouldReturn503() throws Exception {
+        when(exportLimiter.acquire()).thenThrow(new ExportBusyException(4));
+
+        mockMvc.perform(get("/orders/export"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+
+        verify(service, never()).export(any(ExportFilter.class), any(Consumer.class));
+    }
+
+    @Test
+    public void export_EmptyRange_ShouldReturn400() throws Exception {
+        mockMvc.perform(get("/orders/export")
+                        .param("from", "2026-10-01T00:00:00")
+                        .param("to", "2026-09-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getAllocations_ShouldListMovementsThatFilledTheOrder() throws Exception {
+        when(allocations.findByOrderId(7L)).thenReturn(Collections.singletonList(
+                new AllocationResponseDTO(1L, 7L, 9L, 3, LocalDateTime.of(2024, 1, 1, 12, 0))));
+
+        mockMvc.perform(get("/orders/7/allocations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].orderId").value(7))
+                .andExpect(jsonPath("$[0].stockMovementId").value(9))
+                .andExpect(jsonPath("$[0].quantity").value(3));
+    }
+}
@@ -0,0 +1,187 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO;
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.StockMovement;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the read queries against an in-memory database and counts the SQL
+ * statements Hibernate prepares, so a list page stays one statement no matter
+ * how many rows, items or users it touches.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class OrderRepositoryTest {
+
+    private static final int ROWS = 20;
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    private Statistics statistics;
+    private Item firstItem;
+    private Order firstOrder;
+
+    @BeforeEach
+    void setup() {
+        LocalDateTime now = LocalDateTime.of(2024, 3, 1, 10, 0);
+        for (int i = 0; i < ROWS; i++) {
+            Item item = new Item();
+            item.setName("Item " + i);
+            item.setStockQuantity(10);
+            em.persist(item);
+
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            em.persist(user);
+
+            Order order = new Order();
+            order.setItem(item);
+            order.setUser(user);
+            order.setQuantity(3);
+            order.setFulfilledQuantity(i % 2);
+            order.setCreationDate(now.plusMinutes(i));
+            em.persist(order);
+
+            StockMovement movement = new StockMovement();
+            movement.setItem(item);
+            movement.setQuantity(1);
+            movement.setCreationDate(now.plusMinutes(i));
+            em.persist(movement);
+
+            if (i == 0) {
+                firstItem = item;
+                firstOrder = order;
+            }
+        }
+        em.flush();
+        em.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findFirstPage_ordersIsOneStatement() {
+        List<OrderResponseDTO> page = orderRepository.findFirstPage(PageRequest.of(0, ROWS));
+
+        assertEquals(ROWS, page.size());
+        assertEquals(firstItem.getId(), page.get(0).getItemId());
+        assertNotNull(page.get(0).getUserId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findPageAfter_ordersIsOneStatement() {
+        OrderResponseDTO first = orderRepository.findFirstPage(PageRequest.of(0, 1)).get(0);
+        statistics.clear();
+
+        List<OrderResponseDTO> page = orderRepository.findPageAfter(first.getCreationDate(), first.getId(),
+                PageRequest.of(0, ROWS));
+
+        assertEquals(ROWS - 1, page.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findFirstPage_stockMovementsIsOneStatement() {
+        List<StockMovementResponseDTO> page = stockMovementRepository.findFirstPage(PageRequest.of(0, ROWS));
+
+        assertEquals(ROWS, page.size());
+        assertEquals(firstItem.getId(), page.get(0).getItemId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findResponseById_isOneStatement() {
+        assertTrue(orderRepository.findResponseById(firstOrder.getId()).isPresent());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findLinesByBasketId_returnsTheLinesInIdOrder() {
+        Order first = em.find(Order.class, firstOrder.getId());
+        first.setBasketId(first.getId());
+        Order second = new Order();
+        second.setItem(first.getItem());
+        second.setUser(first.getUser());
+        second.setQuantity(4);
+        second.setCreationDate(first.getCreationDate());
+        second.setBasketId(first.getId());
+        em.persist(second);
+        em.flush();
+        statistics.clear();
+
+        List<OrderLineResponseDTO> lines = orderRepository.findLinesByBasketId(first.getId());
+
+        assertEquals(2, lines.size());
+        assertEquals(first.getId(), lines.get(0).getId());
+        assertEquals(4, lines.get(1).getQuantity());
+        assertEquals(firstItem.getId(), lines.get(1).getItemId());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findWithItemAndUserById_loadsAssociationsInOneStatement() {
+        Order order = orderRepository.findWithItemAndUserById(firstOrder.getId()).orElseThrow(AssertionError::new);
+
+        assertEquals("Item 0", order.getItem().getName());
+        assertEquals("user0@example.com", order.getUser().getEmail());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findPendingEntriesByItemId_projectsRemainingQuantity() {
+        List<PendingOrder> pending = orderRepository.findPendingEntriesByItemId(firstItem.getId());
+
+        assertEquals(1, pending.size());
+        assertEquals(firstOrder.getId(), pending.get(0).getOrderId());
+        assertEquals(firstOrder.getQuantity() - firstOrder.getFulfilledQuantity(), pending.get(0).getRemaining());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findWithUserByIdIn_fetchesUsersWithOrders() {
+        List<Order> orders = orderRepository.findWithUserByIdIn(Collections.singletonList(firstOrder.getId()));
+
+        assertEquals(1, orders.size());
+        assertEquals("user0@example.com", orders.get(0).getUser().getEmail());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -1,24 +1,44 @@
 package com.diogobaptista.order_manager_api;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.OrderLineRequestDTO;
+import com.diogobaptista.order_manager_api.dto.OrderLineResponseDTO;
 import com.diogobaptista.order_manager_api.dto.OrderRequestDTO;
+import com.diogobaptista.order_manager_api.dto.OrderResponseDTO;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
 import com.diogobaptista.order_manager_api.entity.User;
 import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
 import com.diogobaptista.order_manager_api.repository.OrderRepository;
 import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
 import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.diogobaptista.order_manager_api.service.CatalogCache;
 import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.ItemLaneExecutor;
+import com.diogobaptista.order_manager_api.service.ItemStatsService;
 import com.diogobaptista.order_manager_api.service.OrderAllocationService;
 import com.diogobaptista.order_manager_api.service.OrderService;
+import com.diogobaptista.order_manager_api.service.PendingOrderIndex;
+import com.diogobaptista.order_manager_api.service.ReservationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.ArrayList;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,7 +50,10 @@ public class OrderServiceTest {
     private OrderAllocationService allocator;
     private ItemRepository itemRepository;
     private UserRepository userRepository;
+    private ItemStatsService itemStats;
+    private ReservationService reservations;
     private OrderService service;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setup() {
@@ -39,15 +62,26 @@ public class OrderServiceTest {
         allocator = mock(OrderAllocationService.class);
         itemRepository = mock(ItemRepository.class);
         userRepository = mock(UserRepository.class);
+        itemStats = mock(ItemStatsService.class);
         FileLogService fileLogService = mock(FileLogService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        reservations = mock(ReservationService.class);
 
         service = new OrderService(
                 orderRepository,
                 stockRepository,
                 allocator,
                 itemRepository,
-                userRepository,
-                fileLogService
+                new CatalogCache(itemRepository, userRepository, 100, 60_000),
+                fileLogService,
+                new ItemLaneExecutor(1),
+                TransactionOperations.withoutTransaction(),
+                mock(ListingStreamRepository.class),
+                itemStats,
+                mock(PendingOrderIndex.class),
+                reservations,
+                100,
+                meterRegistry
         );
     }
 
@@ -79,14 +113,44 @@ public class OrderServiceTest {
 
         Order result = service.create(dto);
 
+        verify(itemRepository).takeStock(1L, 5);
         assertNotNull(result);
-        assertEquals(item, result.getItem());
-        assertEquals(user, result.getUser());
+        assertEquals(item.getId(), result.getItem().getId());
+        assertEquals(user.getEmail(), result.getUser().getEmail());
         assertEquals(5, result.getQuantity());
 
         verify(stockRepository, never()).save(any());
         verify(allocator, never())
                 .fulfillOrderWithStockMovement(any(), any());
+        assertEquals(1, allocationOutcomes("none"));
+    }
+
+    @Test
+    void create_handsTheSavedOrderToBeforeCommit_andFailingItFailsTheCreate() {
+        Item item = new Item();
+        item.setId(1L);
+        User user = new User();
+        user.setId(2L);
+        OrderRequestDTO dto = new OrderRequestDTO();
+        dto.setItemId(1L);
+        dto.setUserId(2L);
+        dto.setQuantity(5);
+        Order savedOrder = new Order();
+        savedOrder.setId(100L);
+        savedOrder.setItem(item);
+        savedOrder.setUser(user);
+        savedOrder.setQuantity(5);
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(user));
+        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
+        List<Order> seen = new ArrayList<>();
+
+        Order result = service.create(dto, seen::add);
+
+        assertEquals(List.of(result), seen);
+        assertThrows(IllegalStateException.class, () -> service.create(dto, order -> {
+            throw new IllegalStateException("claim lost");
+        }));
     }
 
     @Test
@@ -118,14 +182,17 @@ public class OrderServiceTest {
         when(userRepository.findById(2L)).thenReturn(Optional.of(user));
         when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
         when(stockRepository.save(any(StockMovement.class))).thenReturn(savedMovement);
+        when(itemRepository.takeStock(1L, 5)).thenReturn(5);
 
         Order result = service.create(dto);
 
-        assertEquals(5, item.getStockQuantity());
-
-        verify(stockRepository).save(any(StockMovement.class));
-        verify(itemRepository).save(item);
+        ArgumentCaptor<StockMovement> movement = ArgumentCaptor.forClass(StockMovement.class);
+        verify(stockRepository).save(movement.capture());
+        assertEquals(5, movement.getValue().getQuantity());
+        verify(itemRepository, never()).save(any());
         verify(allocator).fulfillOrderWithStockMovement(savedOrder, savedMovement);
+        assertEquals(1, allocationOutcomes("full"));
+        assertEquals(1, meterRegistry.get("orders.create").timer().count());
     }
 
     @Test
@@ -157,14 +224,55 @@ public class OrderServiceTest {
         when(userRepository.findById(2L)).thenReturn(Optional.of(user));
         when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
         when(stockRepository.save(any(StockMovement.class))).thenReturn(savedMovement);
+        when(itemRepository.takeStock(1L, 5)).thenReturn(3);
 
         Order result = service.create(dto);
 
-        assertEquals(0, item.getStockQuantity());
+        ArgumentCaptor<StockMovement> movement = ArgumentCaptor.forClass(StockMovement.class);
+        verify(stockRepository).save(movement.capture());
+        assertEquals(3, movement.getValue().getQuantity());
+        verify(itemRepository, never()).save(any());
+        verify(allocator).fulfillOrderWithStockMovement(savedOrder, savedMovement);
+        assertEquals(1, allocationOutcomes("partial"));
+        assertEquals(0, allocationOutcomes("full"));
+    }
+
+    @Test
+    void create_withReservation_takesStockFromTheHold() {
+        Item item = new Item();
+        item.setId(1L);
+        item.setName("Keyboard");
+
+        User user = new User();
+        user.setId(2L);
+        user.setEmail("user@test.com");
+
+        OrderRequestDTO dto = new OrderRequestDTO();
+        dto.setItemId(1L);
+        dto.setUserId(2L);
+        dto.setQuantity(4);
+        dto.setReservationId(9L);
+
+        Order savedOrder = new Order();
+        savedOrder.setId(202L);
+        savedOrder.setItem(item);
+        savedOrder.setUser(user);
+        savedOrder.setQuantity(4);
+
+        StockMovement savedMovement = new StockMovement();
+        savedMovement.setId(302L);
+
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(user));
+        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
+        when(stockRepository.save(any(StockMovement.class))).thenReturn(savedMovement);
+        when(reservations.consume(9L, savedOrder)).thenReturn(4);
+
+        service.create(dto);
 
-        verify(stockRepository).save(any(StockMovement.class));
-        verify(itemRepository).save(item);
+        verify(itemRepository, never()).takeStock(any(), anyInt());
         verify(allocator).fulfillOrderWithStockMovement(savedOrder, savedMovement);
+        assertEquals(1, allocationOutcomes("full"));
     }
 
     @Test
@@ -198,31 +306,198 @@ public class OrderServiceTest {
     }
 
     @Test
-    void findAll_returnsOrders() {
-        when(orderRepository.findAll()).thenReturn(Arrays.asList(new Order(), new Order()));
+    void createBasket_takesItemsInAscendingIdOrderWithOneStockUpdateEach() {
+        User user = new User();
+        user.setId(2L);
+        user.setEmail("user@test.com");
+        when(userRepository.findById(2L)).thenReturn(Optional.of(user));
+        when(itemRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(item(1L), item(3L)));
+        when(itemRepository.takeStock(1L, 4)).thenReturn(4);
+        when(itemRepository.takeStock(3L, 3)).thenReturn(2);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId(500L);
+            return order;
+        });
+
+        List<Order> lines = service.createBasket(basket(2L, line(3L, 2), line(1L, 4), line(3L, 1)));
+
+        InOrder locks = inOrder(itemRepository);
+        locks.verify(itemRepository).takeStock(1L, 4);
+        locks.verify(itemRepository).takeStock(3L, 3);
+        assertEquals(Arrays.asList(2, 4, 0), lines.stream().map(Order::getFulfilledQuantity).collect(Collectors.toList()));
+        assertTrue(lines.stream().allMatch(order -> Long.valueOf(500L).equals(order.getBasketId())));
+        verify(orderRepository).save(lines.get(0));
+        verify(orderRepository).saveAll(lines.subList(1, 3));
+
+        ArgumentCaptor<List<StockMovement>> movements = ArgumentCaptor.forClass(List.class);
+        verify(stockRepository).saveAll(movements.capture());
+        assertEquals(Arrays.asList(4, 2), movements.getValue().stream()
+                .map(StockMovement::getQuantity).collect(Collectors.toList()));
+        verify(allocator).recordAllocation(lines.get(1), movements.getValue().get(0), 4);
+        verify(allocator).recordAllocation(lines.get(0), movements.getValue().get(1), 2);
+        verify(itemStats, times(3)).recordOrderCreated(any(), anyInt());
+        verify(allocator).basketCreated(lines);
+        assertEquals(2, allocationOutcomes("full"));
+        assertEquals(1, allocationOutcomes("none"));
+    }
+
+    @Test
+    void createBasket_unknownItem_failsBeforeTakingStock() {
+        User user = new User();
+        user.setId(2L);
+        when(userRepository.findById(2L)).thenReturn(Optional.of(user));
+        when(itemRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(item(1L)));
+
+        assertThrows(NoSuchElementException.class,
+                () -> service.createBasket(basket(2L, line(1L, 1), line(9L, 1))));
+
+        verify(itemRepository, never()).takeStock(any(), anyInt());
+        verify(orderRepository, never()).save(any());
+    }
+
+    @Test
+    void createBasket_invalidLines_areRejected() {
+        OrderRequestDTO withItemOnOrder = basket(2L, line(1L, 1));
+        withItemOnOrder.setItemId(1L);
+
+        assertThrows(IllegalArgumentException.class, () -> service.createBasket(basket(2L)));
+        assertThrows(IllegalArgumentException.class, () -> service.createBasket(basket(2L, line(1L, 0))));
+        assertThrows(IllegalArgumentException.class, () -> service.createBasket(withItemOnOrder));
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void findPage_moreRowsThanLimit_returnsCursorOfLastRow() {
+        LocalDateTime now = LocalDateTime.of(2024, 3, 1, 10, 0);
+        OrderResponseDTO first = order(1L, now);
+        OrderResponseDTO second = order(2L, now);
+        OrderResponseDTO third = order(3L, now.plusSeconds(1));
+        when(orderRepository.findFirstPage(any(Pageable.class))).thenReturn(Arrays.asList(first, second, third));
+
+        CursorPage<OrderResponseDTO> page = service.findPage(null, 2);
+
+        assertEquals(Arrays.asList(first, second), page.getContent());
+        assertEquals(PageCursor.encode(now, 2L), page.getNextCursor());
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(orderRepository).findFirstPage(pageable.capture());
+        assertEquals(3, pageable.getValue().getPageSize());
+    }
+
+    @Test
+    void findPage_withCursor_seeksPastLastRow() {
+        LocalDateTime now = LocalDateTime.of(2024, 3, 1, 10, 0);
+        when(orderRepository.findPageAfter(eq(now), eq(2L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(order(3L, now)));
+
+        CursorPage<OrderResponseDTO> page = service.findPage(PageCursor.encode(now, 2L), 2);
+
+        assertEquals(1, page.getContent().size());
+        assertNull(page.getNextCursor());
+        verify(orderRepository, never()).findFirstPage(any());
+    }
 
-        List<Order> orders = service.findAll();
+    @Test
+    void findPage_limitAboveCap_isCapped() {
+        when(orderRepository.findFirstPage(any(Pageable.class))).thenReturn(Arrays.asList());
+
+        service.findPage(null, 50_000);
 
-        assertEquals(2, orders.size());
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(orderRepository).findFirstPage(pageable.capture());
+        assertEquals(CursorPage.MAX_LIMIT + 1, pageable.getValue().getPageSize());
+    }
+
+    @Test
+    void findPage_invalidCursor_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> service.findPage("not-a-cursor", 10));
     }
 
     @Test
     void findById_existingOrder_returnsOrder() {
-        Order order = new Order();
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        OrderResponseDTO order = order(1L, LocalDateTime.now());
+        when(orderRepository.findResponseById(1L)).thenReturn(Optional.of(order));
 
-        Optional<Order> result = service.findById(1L);
+        Optional<OrderResponseDTO> result = service.findById(1L);
 
         assertTrue(result.isPresent());
         assertEquals(order, result.get());
     }
 
+    @Test
+    void findById_firstLineOfBasket_returnsTheWholeOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        when(orderRepository.findResponseById(10L))
+                .thenReturn(Optional.of(new OrderResponseDTO(10L, 2, 2, 1L, 5L, now, 10L)));
+        when(orderRepository.findLinesByBasketId(10L)).thenReturn(Arrays.asList(
+                new OrderLineResponseDTO(10L, 1L, 2, 2),
+                new OrderLineResponseDTO(11L, 3L, 4, 1)));
+
+        OrderResponseDTO basket = service.findById(10L).orElseThrow(AssertionError::new);
+
+        assertEquals(6, basket.getQuantity());
+        assertEquals(3, basket.getFulfilledQuantity());
+        assertFalse(basket.isComplete());
+        assertNull(basket.getItemId());
+        assertEquals(5L, basket.getUserId());
+        assertEquals(2, basket.getLines().size());
+        assertEquals(10L, basket.getBasketId());
+        assertEquals(10L, basket.getLines().get(0).getId());
+    }
+
+    @Test
+    void findById_otherLineOfBasket_returnsTheLineWithItsBasketId() {
+        LocalDateTime now = LocalDateTime.now();
+        OrderResponseDTO line = new OrderResponseDTO(11L, 4, 1, 3L, 5L, now, 10L);
+        when(orderRepository.findResponseById(11L)).thenReturn(Optional.of(line));
+
+        OrderResponseDTO result = service.findById(11L).orElseThrow(AssertionError::new);
+
+        assertSame(line, result);
+        assertEquals(10L, result.getBasketId());
+        assertNull(result.getLines());
+        verify(orderRepository, never()).findLinesByBasketId(any());
+    }
+
     @Test
     void findById_nonExistingOrder_returnsEmpty() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findResponseById(1L)).thenReturn(Optional.empty());
 
-        Optional<Order> result = service.findById(1L);
+        Optional<OrderResponseDTO> result = service.findById(1L);
 
         assertFalse(result.isPresent());
     }
+
+    private static Item item(Long id) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName("Item " + id);
+        return item;
+    }
+
+    private static OrderLineRequestDTO line(Long itemId, int quantity) {
+        OrderLineRequestDTO line = new OrderLineRequestDTO();
+        line.setItemId(itemId);
+        line.setQuantity(quantity);
+        return line;
+    }
+
+    private static OrderRequestDTO basket(Long userId, OrderLineRequestDTO... lines) {
+        OrderRequestDTO dto = new OrderRequestDTO();
+        dto.setUserId(userId);
+        dto.setLines(Arrays.asList(lines));
+        return dto;
+    }
+
+    private static OrderResponseDTO order(Long id, LocalDateTime creationDate) {
+        return new OrderResponseDTO(id, 1, 0, 1L, 1L, creationDate);
+    }
+
+    private double allocationOutcomes(String outcome) {
+        return meterRegistry.get("allocation.outcomes")
+                .tag("source", "order")
+                .tag("outcome", outcome)
+                .counter()
+                .count();
+    }
 }
@@ -0,0 +1,51 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageCursorTest {
+
+    @Test
+    void datedCursor_roundTrips() {
+        LocalDateTime date = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_000);
+
+        PageCursor cursor = PageCursor.decodeDated(PageCursor.encode(date, 42L));
+
+        assertEquals(date, cursor.getCreationDate());
+        assertEquals(42L, cursor.getId());
+    }
+
+    @Test
+    void idCursor_roundTrips() {
+        assertEquals(42L, PageCursor.decodeId(PageCursor.encode(42L)));
+    }
+
+    @Test
+    void decode_garbage_throwsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decodeId("%%%"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decodeDated(PageCursor.encode(42L)));
+    }
+
+    @Test
+    void limit_isCappedAndMustBePositive() {
+        assertEquals(CursorPage.MAX_LIMIT, CursorPage.limit(null));
+        assertEquals(CursorPage.MAX_LIMIT, CursorPage.limit(CursorPage.MAX_LIMIT * 10));
+        assertEquals(5, CursorPage.limit(5));
+        assertThrows(IllegalArgumentException.class, () -> CursorPage.limit(0));
+    }
+
+    @Test
+    void of_dropsLookaheadRow() {
+        CursorPage<Integer> page = CursorPage.of(Arrays.asList(1, 2, 3), 2, String::valueOf);
+
+        assertEquals(Arrays.asList(1, 2), page.getContent());
+        assertEquals("2", page.getNextCursor());
+        assertNull(CursorPage.of(Arrays.asList(1, 2), 2, String::valueOf).getNextCursor());
+    }
+}
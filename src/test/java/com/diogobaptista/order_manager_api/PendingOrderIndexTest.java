@@ -0,0 +1,164 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.dto.PendingOrder;
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.OrderRepository;
+import com.diogobaptista.order_manager_api.service.AllocationStrategies;
+import com.diogobaptista.order_manager_api.service.FifoAllocationStrategy;
+import com.diogobaptista.order_manager_api.service.PendingOrderIndex;
+import com.diogobaptista.order_manager_api.service.SmallestRemainingFirstAllocationStrategy;
+import com.diogobaptista.order_manager_api.service.UserPriorityAllocationStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PendingOrderIndexTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private OrderRepository orderRepository;
+    private PendingOrderIndex index;
+
+    @BeforeEach
+    void setup() {
+        orderRepository = mock(OrderRepository.class);
+        // Item 1 uses the default FIFO, item 2 smallest-remaining, item 3 user priority with user 30 first.
+        AllocationStrategies strategies = new AllocationStrategies(Arrays.asList(
+                new FifoAllocationStrategy(),
+                new SmallestRemainingFirstAllocationStrategy(),
+                new UserPriorityAllocationStrategy("30=10")),
+                "fifo", "2=smallest-remaining, 3=user-priority");
+        index = new PendingOrderIndex(orderRepository, strategies, 100, 600_000);
+
+        List<PendingOrder> backlog = Arrays.asList(
+                new PendingOrder(10L, 20L, T0.plusMinutes(1), 5),
+                new PendingOrder(11L, 30L, T0.plusMinutes(2), 1),
+                new PendingOrder(12L, 20L, T0, 3));
+        for (long itemId = 1; itemId <= 3; itemId++) {
+            when(orderRepository.findPendingEntriesByItemId(itemId)).thenReturn(backlog);
+        }
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void head_ordersByTheItemsStrategy() {
+        assertEquals(Arrays.asList(12L, 10L, 11L), ids(index.head(1L, 10)));
+        assertEquals(Arrays.asList(11L, 12L, 10L), ids(index.head(2L, 10)));
+        assertEquals(Arrays.asList(11L, 12L, 10L), ids(index.head(3L, 10)));
+    }
+
+    @Test
+    void head_loadsEachItemOnce() {
+        index.head(1L, 1);
+        index.head(1L, 2);
+
+        verify(orderRepository, times(1)).findPendingEntriesByItemId(1L);
+        verify(orderRepository, never()).findPendingEntriesByItemId(2L);
+    }
+
+    @Test
+    void sync_reordersPartlyFilledOrderAndRemovesCompletedOnes() {
+        index.head(2L, 10);
+
+        index.sync(order(2L, 10L, 5, 4));
+        index.sync(order(2L, 11L, 1, 1));
+
+        List<PendingOrder> head = index.head(2L, 10);
+        assertEquals(Arrays.asList(10L, 12L), ids(head));
+        assertEquals(1, head.get(0).getRemaining());
+    }
+
+    @Test
+    void sync_addsNewOrdersOfLoadedItemsOnly() {
+        index.head(1L, 10);
+
+        index.sync(order(1L, 13L, 2, 0));
+        index.sync(order(4L, 14L, 2, 0));
+
+        assertEquals(Arrays.asList(12L, 10L, 11L, 13L), ids(index.head(1L, 10)));
+        verify(orderRepository, never()).findPendingEntriesByItemId(4L);
+    }
+
+    @Test
+    void sync_committedWhileTheItemLoads_isNotLost() {
+        List<PendingOrder> readBeforeCommit = Arrays.asList(
+                new PendingOrder(10L, 20L, T0.plusMinutes(1), 5),
+                new PendingOrder(12L, 20L, T0, 3));
+        when(orderRepository.findPendingEntriesByItemId(5L)).thenAnswer(invocation -> {
+            index.sync(order(5L, 13L, 2, 0));
+            index.sync(order(5L, 10L, 5, 5));
+            return readBeforeCommit;
+        });
+
+        assertEquals(Arrays.asList(12L, 13L), ids(index.head(5L, 10)));
+
+        index.sync(order(5L, 14L, 1, 0));
+        assertEquals(Arrays.asList(12L, 13L, 14L), ids(index.head(5L, 10)));
+    }
+
+    @Test
+    void sync_inTransaction_appliesOnCommitOnly() {
+        index.head(1L, 10);
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.sync(order(1L, 12L, 3, 3));
+        assertEquals(3, index.head(1L, 10).size());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(Arrays.asList(10L, 11L), ids(index.head(1L, 10)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.sync(order(1L, 10L, 5, 5));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(Arrays.asList(10L, 11L), ids(index.head(1L, 10)));
+    }
+
+    @Test
+    void unknownStrategyName_failsAtStartup() {
+        assertThrows(IllegalArgumentException.class, () -> new AllocationStrategies(
+                Arrays.asList(new FifoAllocationStrategy()), "fifo", "1=largest-first"));
+    }
+
+    private static Order order(Long itemId, Long orderId, int quantity, int fulfilled) {
+        Item item = new Item();
+        item.setId(itemId);
+        User user = new User();
+        user.setId(20L);
+        Order order = new Order();
+        order.setId(orderId);
+        order.setItem(item);
+        order.setUser(user);
+        order.setQuantity(quantity);
+        order.setFulfilledQuantity(fulfilled);
+        order.setCreationDate(T0.plusMinutes(orderId));
+        return order;
+    }
+
+    private static List<Long> ids(List<PendingOrder> entries) {
+        return entries.stream().map(PendingOrder::getOrderId).collect(Collectors.toList());
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+    }
+}
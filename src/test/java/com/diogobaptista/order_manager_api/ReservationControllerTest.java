@@ -0,0 +1,100 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.controller.ReservationController;
+import com.diogobaptista.order_manager_api.dto.ReservationRequestDTO;
+import com.diogobaptista.order_manager_api.dto.ReservationResponseDTO;
+import com.diogobaptista.order_manager_api.entity.Reservation;
+import com.diogobaptista.order_manager_api.mapper.ReservationMapper;
+import com.diogobaptista.order_manager_api.service.InsufficientStockException;
+import com.diogobaptista.order_manager_api.service.ReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ReservationController.class)
+public class ReservationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReservationService service;
+
+    @MockBean
+    private ReservationMapper mapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void create_Success() throws Exception {
+        Reservation reservation = new Reservation();
+        when(service.reserve(1L, 2, Duration.ofMinutes(15))).thenReturn(Optional.of(reservation));
+        when(mapper.toDto(reservation)).thenReturn(new ReservationResponseDTO(5L, 1L, 2, "ACTIVE",
+                LocalDateTime.of(2024, 1, 1, 12, 15), null));
+
+        mockMvc.perform(post("/items/1/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request(2, 15))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(5))
+                .andExpect(jsonPath("$.status").value("ACTIVE"));
+    }
+
+    @Test
+    public void create_NotEnoughStock_Conflict() throws Exception {
+        when(service.reserve(eq(1L), eq(20), any())).thenThrow(new InsufficientStockException(1L, 20));
+
+        mockMvc.perform(post("/items/1/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request(20, null))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void create_UnknownItem_NotFound() throws Exception {
+        when(service.reserve(eq(9L), eq(1), any())).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/items/9/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request(1, null))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void create_ValidationError() throws Exception {
+        mockMvc.perform(post("/items/1/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request(0, null))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void release_UnknownReservation_NotFound() throws Exception {
+        when(service.release(1L, 5L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(delete("/items/1/reservations/5"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static ReservationRequestDTO request(int quantity, Integer minutes) {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setQuantity(quantity);
+        request.setMinutes(minutes);
+        return request;
+    }
+}
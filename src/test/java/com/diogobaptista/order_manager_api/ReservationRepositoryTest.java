@@ -0,0 +1,99 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Reservation;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the conditional stock and reservation updates behind reservations
+ * against an in-memory database.
+ */
+@DataJpaTest(properties = "spring.flyway.enabled=false")
+public class ReservationRepositoryTest {
+
+    @Autowired
+    private TestEntityManager em;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private Long itemId;
+
+    @BeforeEach
+    void setup() {
+        Item item = new Item();
+        item.setName("Keyboard");
+        item.setStockQuantity(10);
+        itemId = em.persistAndFlush(item).getId();
+    }
+
+    @Test
+    void reservedStock_isNotTakenByAllocation() {
+        assertEquals(1, itemRepository.reserveStock(itemId, 6));
+
+        assertEquals(4, itemRepository.takeStock(itemId, 5));
+        assertEquals(0, itemRepository.reserveStock(itemId, 1));
+        assertEquals(0, itemRepository.findAvailableQuantityById(itemId).orElseThrow());
+    }
+
+    @Test
+    void takeReservedStock_releasesWhatTheOrderDoesNotNeed() {
+        itemRepository.reserveStock(itemId, 6);
+
+        assertEquals(1, itemRepository.takeReservedStock(itemId, 4, 6));
+
+        em.clear();
+        Item item = em.find(Item.class, itemId);
+        assertEquals(6, item.getStockQuantity());
+        assertEquals(0, item.getReservedQuantity());
+    }
+
+    @Test
+    void finish_onlyMovesActiveReservations() {
+        itemRepository.reserveStock(itemId, 2);
+        Long id = em.persistAndFlush(reservation()).getId();
+
+        assertEquals(1, reservationRepository.consume(id, null));
+        assertEquals(0, reservationRepository.finish(id, Reservation.Status.EXPIRED));
+
+        em.clear();
+        assertEquals(Reservation.Status.CONSUMED, reservationRepository.findById(id).orElseThrow().getStatus());
+        assertTrue(reservationRepository.findByStatus(Reservation.Status.ACTIVE).isEmpty());
+    }
+
+    private Reservation reservation() {
+        Reservation reservation = new Reservation();
+        reservation.setItemId(itemId);
+        reservation.setQuantity(2);
+        reservation.setCreatedAt(LocalDateTime.now());
+        reservation.setExpiresAt(LocalDateTime.now().plusMinutes(10));
+        return reservation;
+    }
+
+    @Test
+    void adjustStock_keepsConcurrentSalesAndRespectsReservations() {
+        itemRepository.reserveStock(itemId, 3);
+        assertEquals(2, itemRepository.takeStock(itemId, 2));
+
+        // A PUT that read 10 and asks for 15 adds 5 to the 8 left after the sale
+        assertEquals(1, itemRepository.adjustStock(itemId, 10, 15));
+        assertEquals(13, itemRepository.findStockQuantityById(itemId).orElseThrow());
+
+        assertEquals(0, itemRepository.adjustStock(itemId, 13, 2));
+        assertEquals(1, itemRepository.adjustStock(itemId, 13, 3));
+        assertEquals(3, itemRepository.findStockQuantityById(itemId).orElseThrow());
+    }
+}
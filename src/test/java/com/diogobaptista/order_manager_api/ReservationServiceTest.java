@@ -0,0 +1,215 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.Order;
+import com.diogobaptista.order_manager_api.entity.Reservation;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ReservationRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.diogobaptista.order_manager_api.service.BackorderService;
+import com.diogobaptista.order_manager_api.service.CatalogCache;
+import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.InsufficientStockException;
+import com.diogobaptista.order_manager_api.service.ReservationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReservationServiceTest {
+
+    private ReservationRepository repository;
+    private ItemRepository itemRepository;
+    private BackorderService backorderService;
+    private ReservationService service;
+    private SimpleMeterRegistry meterRegistry;
+    private Item item;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(ReservationRepository.class);
+        itemRepository = mock(ItemRepository.class);
+        backorderService = mock(BackorderService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ReservationService(repository, itemRepository,
+                new CatalogCache(itemRepository, mock(UserRepository.class), 100, 60_000),
+                backorderService, mock(FileLogService.class), TransactionOperations.withoutTransaction(),
+                600_000, 3_600_000, 100, 64, meterRegistry);
+
+        item = new Item();
+        item.setId(1L);
+        item.setName("Keyboard");
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(item));
+
+        AtomicLong ids = new AtomicLong();
+        when(repository.save(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            reservation.setId(ids.incrementAndGet());
+            return reservation;
+        });
+    }
+
+    @Test
+    void reserve_holdsStockAndSchedulesExpiry() {
+        when(itemRepository.reserveStock(1L, 3)).thenReturn(1);
+
+        Reservation reservation = service.reserve(1L, 3, Duration.ofMinutes(5)).orElseThrow(AssertionError::new);
+
+        assertEquals(Reservation.Status.ACTIVE, reservation.getStatus());
+        assertEquals(3, reservation.getQuantity());
+        assertEquals(1, meterRegistry.get("reservations.active").gauge().value());
+    }
+
+    @Test
+    void reserve_notEnoughFreeStock_isRejected() {
+        when(itemRepository.reserveStock(1L, 3)).thenReturn(0);
+
+        assertThrows(InsufficientStockException.class, () -> service.reserve(1L, 3, null));
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void reserve_unknownItem_isEmpty() {
+        when(itemRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertFalse(service.reserve(2L, 3, null).isPresent());
+        verify(itemRepository, never()).reserveStock(any(), anyInt());
+    }
+
+    @Test
+    void reserve_longerThanMaximum_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.reserve(1L, 3, Duration.ofHours(2)));
+    }
+
+    @Test
+    void expireDue_releasesHoldsPastTheirDeadlineOnly() {
+        when(itemRepository.reserveStock(eq(1L), anyInt())).thenReturn(1);
+        when(repository.finish(anyLong(), eq(Reservation.Status.EXPIRED))).thenReturn(1);
+        Reservation shortHold = service.reserve(1L, 3, Duration.ofMinutes(1)).orElseThrow(AssertionError::new);
+        service.reserve(1L, 4, Duration.ofMinutes(30));
+
+        assertEquals(1, service.expireDue(System.currentTimeMillis() + Duration.ofMinutes(2).toMillis()));
+
+        verify(repository).finish(shortHold.getId(), Reservation.Status.EXPIRED);
+        verify(itemRepository).releaseReservedStock(1L, 3);
+        verify(backorderService).offerBackorders(1L);
+        assertEquals(1, meterRegistry.get("reservations.active").gauge().value());
+    }
+
+    @Test
+    void expireDue_holdAlreadyConsumed_leavesStockAlone() {
+        when(itemRepository.reserveStock(1L, 3)).thenReturn(1);
+        when(repository.finish(anyLong(), eq(Reservation.Status.EXPIRED))).thenReturn(0);
+        service.reserve(1L, 3, Duration.ofMinutes(1));
+
+        assertEquals(0, service.expireDue(System.currentTimeMillis() + Duration.ofMinutes(2).toMillis()));
+
+        verify(itemRepository, never()).releaseReservedStock(any(), anyInt());
+        verify(backorderService, never()).offerBackorders(any());
+    }
+
+    @Test
+    void expireDue_failedRelease_isRetriedOnNextTick() {
+        when(itemRepository.reserveStock(1L, 3)).thenReturn(1);
+        when(repository.finish(anyLong(), eq(Reservation.Status.EXPIRED)))
+                .thenThrow(new IllegalStateException("database down"))
+                .thenReturn(1);
+        service.reserve(1L, 3, Duration.ofMinutes(1));
+        long later = System.currentTimeMillis() + Duration.ofMinutes(2).toMillis();
+
+        assertEquals(0, service.expireDue(later));
+        assertEquals(1, service.expireDue(later + 200));
+        verify(itemRepository).releaseReservedStock(1L, 3);
+    }
+
+    @Test
+    void consume_takesOrderQuantityOutOfTheHold() {
+        Reservation reservation = reservation(7L, 5);
+        when(repository.findById(7L)).thenReturn(Optional.of(reservation));
+        when(repository.consume(7L, 100L)).thenReturn(1);
+        when(itemRepository.takeReservedStock(1L, 3, 5)).thenReturn(1);
+
+        assertEquals(3, service.consume(7L, order(100L, 3)));
+        verify(backorderService).offerBackorders(1L);
+    }
+
+    @Test
+    void consume_wholeHold_offersNothingToBackorders() {
+        Reservation reservation = reservation(7L, 3);
+        when(repository.findById(7L)).thenReturn(Optional.of(reservation));
+        when(repository.consume(7L, 100L)).thenReturn(1);
+        when(itemRepository.takeReservedStock(1L, 3, 3)).thenReturn(1);
+
+        service.consume(7L, order(100L, 3));
+
+        verify(backorderService, never()).offerBackorders(any());
+    }
+
+    @Test
+    void consume_moreThanReserved_isRejected() {
+        when(repository.findById(7L)).thenReturn(Optional.of(reservation(7L, 2)));
+
+        assertThrows(IllegalArgumentException.class, () -> service.consume(7L, order(100L, 3)));
+        verify(repository, never()).consume(any(), any());
+    }
+
+    @Test
+    void consume_reservationOfAnotherItem_isRejected() {
+        Reservation reservation = reservation(7L, 5);
+        reservation.setItemId(2L);
+        when(repository.findById(7L)).thenReturn(Optional.of(reservation));
+
+        assertThrows(IllegalArgumentException.class, () -> service.consume(7L, order(100L, 3)));
+    }
+
+    @Test
+    void consume_expiredReservation_isRejected() {
+        when(repository.findById(7L)).thenReturn(Optional.of(reservation(7L, 5)));
+        when(repository.consume(7L, 100L)).thenReturn(0);
+
+        assertThrows(IllegalArgumentException.class, () -> service.consume(7L, order(100L, 3)));
+        verify(itemRepository, never()).takeReservedStock(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void start_reschedulesActiveReservationsAndRunsTheWheel() {
+        Reservation overdue = reservation(7L, 5);
+        overdue.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        when(repository.findByStatus(Reservation.Status.ACTIVE)).thenReturn(List.of(overdue));
+        when(repository.finish(7L, Reservation.Status.EXPIRED)).thenReturn(1);
+
+        service.start();
+        try {
+            verify(itemRepository, timeout(2000)).releaseReservedStock(1L, 5);
+        } finally {
+            service.stop();
+        }
+    }
+
+    private static Reservation reservation(Long id, int quantity) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setItemId(1L);
+        reservation.setQuantity(quantity);
+        reservation.setCreatedAt(LocalDateTime.now());
+        reservation.setExpiresAt(LocalDateTime.now().plusMinutes(10));
+        return reservation;
+    }
+
+    private Order order(Long id, int quantity) {
+        Order order = new Order();
+        order.setId(id);
+        order.setItem(item);
+        order.setQuantity(quantity);
+        return order;
+    }
+}
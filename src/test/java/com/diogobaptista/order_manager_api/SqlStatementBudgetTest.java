@@ -0,0 +1,183 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.entity.Item;
+import com.diogobaptista.order_manager_api.entity.User;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static com.diogobaptista.order_manager_api.sql.SqlStatementFilter.STATEMENTS_HEADER;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Boots the whole application on an in-memory database and checks how many
+ * SQL statements each endpoint issues, as reported in the {@code X-Sql-Statements}
+ * header. A failure here means a change added round trips to a hot path.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:budget;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.mail.test-connection=false",
+        "email.outbox.poll-interval-ms=3600000",
+        "metrics.backlog.refresh-interval-ms=3600000",
+        "item-stats.flush-interval-ms=3600000",
+        "idempotency.purge-interval-ms=3600000",
+        "file-log.path=target/sql-budget-orders.log",
+        "sql.statements.response-headers=true"
+})
+@AutoConfigureMockMvc
+public class SqlStatementBudgetTest {
+
+    /**
+     * Item and user lookups, order insert, stock update, movement insert,
+     * allocation insert, order update and completion email insert, plus the
+     * order, movement, allocation and email sequence fetches on first use
+     * (they are pooled 50 at a time afterwards).
+     */
+    private static final int CREATE_ORDER_BUDGET = 12;
+
+    /** Once the item and user are in the catalog cache the two lookups disappear. */
+    private static final int CREATE_ORDER_WARM_BUDGET = 6;
+
+    private static final int BASKET_LINES = 5;
+
+    /**
+     * User and item lookups, one stock update per item, the first line's
+     * insert and basket id update, one batched insert each for the other
+     * lines, the movements and the allocations, and the one completion email,
+     * plus the sequence fetches on first use. Five single-item orders take 30 even
+     * with a warm cache.
+     */
+    private static final int CREATE_BASKET_BUDGET = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Item item;
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        Item newItem = new Item();
+        newItem.setName("Budget item " + System.nanoTime());
+        newItem.setStockQuantity(1000);
+        item = itemRepository.save(newItem);
+
+        User newUser = new User();
+        newUser.setName("Budget");
+        newUser.setEmail("budget-" + System.nanoTime() + "@example.com");
+        user = userRepository.save(newUser);
+    }
+
+    @Test
+    void createOrder_staysWithinBudget() throws Exception {
+        long statements = statements(createOrder());
+
+        assertTrue(statements <= CREATE_ORDER_BUDGET,
+                "POST /orders ran " + statements + " statements, budget is " + CREATE_ORDER_BUDGET);
+    }
+
+    @Test
+    void createOrder_withWarmCatalogCache_skipsLookups() throws Exception {
+        createOrder();
+
+        long statements = statements(createOrder());
+
+        assertTrue(statements <= CREATE_ORDER_WARM_BUDGET,
+                "POST /orders ran " + statements + " statements, budget is " + CREATE_ORDER_WARM_BUDGET);
+    }
+
+    @Test
+    void createBasket_staysWithinBudget() throws Exception {
+        StringBuilder lines = new StringBuilder("{\"itemId\":" + item.getId() + ",\"quantity\":2}");
+        for (int i = 1; i < BASKET_LINES; i++) {
+            Item other = new Item();
+            other.setName("Budget item " + System.nanoTime());
+            other.setStockQuantity(1000);
+            lines.append(",{\"itemId\":").append(itemRepository.save(other).getId()).append(",\"quantity\":2}");
+        }
+
+        MvcResult result = mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":" + user.getId() + ",\"lines\":[" + lines + "]}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.lines.length()").value(BASKET_LINES))
+                .andExpect(jsonPath("$.complete").value(true))
+                .andReturn();
+
+        long statements = statements(result);
+        assertTrue(statements <= CREATE_BASKET_BUDGET,
+                "POST /orders with " + BASKET_LINES + " lines ran " + statements + " statements, budget is "
+                        + CREATE_BASKET_BUDGET);
+    }
+
+    @Test
+    void listOrders_isOneStatement() throws Exception {
+        assertEquals(1, statements(mockMvc.perform(get("/orders").param("limit", "50"))
+                .andExpect(status().isOk())
+                .andReturn()));
+    }
+
+    @Test
+    void getOrder_isOneStatement() throws Exception {
+        assertEquals(1, statements(mockMvc.perform(get("/orders/{id}", Long.MAX_VALUE))
+                .andExpect(status().isNotFound())
+                .andReturn()));
+    }
+
+    @Test
+    void orderAllocations_isOneStatement() throws Exception {
+        MvcResult created = createOrder();
+        String orderId = JsonPath.read(created.getResponse().getContentAsString(), "$.id").toString();
+
+        MvcResult result = mockMvc.perform(get("/orders/{id}/allocations", orderId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].quantity").value(2))
+                .andReturn();
+
+        assertEquals(1, statements(result));
+    }
+
+    @Test
+    void listItems_isOneStatement() throws Exception {
+        assertEquals(1, statements(mockMvc.perform(get("/items").param("limit", "50"))
+                .andExpect(status().isOk())
+                .andReturn()));
+    }
+
+    private MvcResult createOrder() throws Exception {
+        return mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"itemId\":" + item.getId() + ",\"userId\":" + user.getId() + ",\"quantity\":2}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+    }
+
+    private static long statements(MvcResult result) {
+        String header = result.getResponse().getHeader(STATEMENTS_HEADER);
+        assertNotNull(header, "missing " + STATEMENTS_HEADER + " header");
+        return Long.parseLong(header);
+    }
+}
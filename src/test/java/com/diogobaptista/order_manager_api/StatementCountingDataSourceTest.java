@@ -0,0 +1,91 @@
+package com.diogobaptista.order_manager_api;
+
+import com.diogobaptista.order_manager_api.sql.SqlStatementScope;
+import com.diogobaptista.order_manager_api.sql.SqlStatementStats;
+import com.diogobaptista.order_manager_api.sql.StatementCountingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCountingDataSourceTest {
+
+    private static final String SELECT_ALL = "select id from stock";
+
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setup() {
+        jdbc = new JdbcTemplate(new StatementCountingDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:statements;DB_CLOSE_DELAY=-1", "sa", "")));
+        jdbc.execute("drop table if exists stock");
+        jdbc.execute("create table stock (id int primary key, quantity int)");
+        jdbc.batchUpdate("insert into stock values (?, ?)", Arrays.asList(
+                new Object[]{1, 10}, new Object[]{2, 20}, new Object[]{3, 30}));
+    }
+
+    @Test
+    void countsStatementsAndRowsInsideScope() {
+        SqlStatementStats stats = SqlStatementScope.measure(() -> {
+            assertEquals(3, jdbc.queryForList(SELECT_ALL, Integer.class).size());
+            jdbc.update("update stock set quantity = quantity - 1 where quantity >= 20");
+        });
+
+        assertEquals(2, stats.statements());
+        assertEquals(5, stats.rows());
+        assertTrue(stats.nanos() > 0);
+        assertEquals(1, stats.executions(SELECT_ALL));
+    }
+
+    @Test
+    void batchCountsAsOneStatement() {
+        SqlStatementStats stats = SqlStatementScope.measure(() ->
+                jdbc.batchUpdate("update stock set quantity = ? where id = ?", Arrays.asList(
+                        new Object[]{0, 1}, new Object[]{0, 2}, new Object[]{0, 3})));
+
+        assertEquals(1, stats.statements());
+        assertEquals(3, stats.rows());
+    }
+
+    @Test
+    void nestedScopeAddsToParent() {
+        SqlStatementStats inner;
+        try (SqlStatementScope outer = SqlStatementScope.open()) {
+            jdbc.queryForList(SELECT_ALL, Integer.class);
+            inner = SqlStatementScope.measure(() -> jdbc.queryForList(SELECT_ALL, Integer.class));
+
+            assertEquals(1, inner.statements());
+            assertEquals(2, outer.stats().statements());
+        }
+        assertNull(SqlStatementScope.current());
+    }
+
+    @Test
+    void callWithChargesWorkOnAnotherThreadToCaller() {
+        SqlStatementStats stats = SqlStatementScope.measure(() -> {
+            SqlStatementStats caller = SqlStatementScope.current();
+            CompletableFuture.supplyAsync(() -> SqlStatementScope.callWith(caller,
+                    () -> jdbc.queryForList(SELECT_ALL, Integer.class))).join();
+        });
+
+        assertEquals(1, stats.statements());
+        assertEquals(3, stats.rows());
+    }
+
+    @Test
+    void repeatedStatementsAreReported() {
+        SqlStatementStats stats = SqlStatementScope.measure(() -> {
+            for (int id = 1; id <= 3; id++) {
+                jdbc.queryForObject("select quantity from stock where id = ?", Integer.class, id);
+            }
+        });
+
+        assertEquals(3L, stats.repeatedStatements(3).get("select quantity from stock where id = ?"));
+        assertTrue(stats.repeatedStatements(4).isEmpty());
+    }
+}
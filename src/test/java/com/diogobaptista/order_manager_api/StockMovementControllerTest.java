@@ -1,10 +1,18 @@
 package com.diogobaptista.order_manager_api;
 
 import com.diogobaptista.order_manager_api.controller.StockMovementController;
+import com.diogobaptista.order_manager_api.dto.AllocationResponseDTO;
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.ExportFilter;
 import com.diogobaptista.order_manager_api.dto.StockMovementRequestDTO;
 import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
 import com.diogobaptista.order_manager_api.mapper.StockMovementMapper;
+import com.diogobaptista.order_manager_api.service.AllocationBusyException;
+import com.diogobaptista.order_manager_api.service.IdempotencyConflictException;
+import com.diogobaptista.order_manager_api.service.ExportLimiter;
+import com.diogobaptista.order_manager_api.service.IdempotencyService;
+import com.diogobaptista.order_manager_api.service.OrderAllocationService;
 import com.diogobaptista.order_manager_api.service.StockMovementService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -13,12 +21,19 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -35,16 +50,23 @@ public class StockMovementControllerTest {
     @MockBean
     private StockMovementMapper mapper;
 
+    @MockBean
+    private OrderAllocationService allocations;
+
+    @MockBean
+    private IdempotencyService idempotency;
+
+    @MockBean
+    private ExportLimiter exportLimiter;
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Test
     public void getAll_ShouldReturnList() throws Exception {
-        StockMovement movement = new StockMovement();
         StockMovementResponseDTO responseDTO = new StockMovementResponseDTO();
 
-        when(service.findAll()).thenReturn(Collections.singletonList(movement));
-        when(mapper.toDto(any(StockMovement.class))).thenReturn(responseDTO);
+        when(service.findPage(null, null)).thenReturn(new CursorPage<>(Collections.singletonList(responseDTO), null));
 
         mockMvc.perform(get("/stock-movements"))
                 .andExpect(status().isOk())
@@ -54,11 +76,9 @@ public class StockMovementControllerTest {
     @Test
     public void getById_Success() throws Exception {
         Long id = 1L;
-        StockMovement movement = new StockMovement();
         StockMovementResponseDTO responseDTO = new StockMovementResponseDTO();
 
-        when(service.findById(id)).thenReturn(Optional.of(movement));
-        when(mapper.toDto(movement)).thenReturn(responseDTO);
+        when(service.findById(id)).thenReturn(Optional.of(responseDTO));
 
         mockMvc.perform(get("/stock-movements/{id}", id))
                 .andExpect(status().isOk());
@@ -100,4 +120,67 @@ public class StockMovementControllerTest {
                         .content(objectMapper.writeValueAsString(requestDTO)))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void create_NotAllocatedInTime_ServiceUnavailable() throws Exception {
+        StockMovementRequestDTO requestDTO = new StockMovementRequestDTO();
+
+        when(service.createStockMovement(any(StockMovementRequestDTO.class)))
+                .thenThrow(new AllocationBusyException(true, 30_000));
+
+        mockMvc.perform(post("/stock-movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDTO)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void create_DuplicateStillInProgress_Conflict() throws Exception {
+        StockMovementRequestDTO requestDTO = new StockMovementRequestDTO();
+
+        when(idempotency.execute(eq("stock-movements"), eq("retry-1"), any(),
+                eq(StockMovementResponseDTO.class), any()))
+                .thenThrow(new IdempotencyConflictException("retry-1"));
+
+        mockMvc.perform(post("/stock-movements")
+                        .header(IdempotencyService.HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestDTO)))
+                .andExpect(status().isConflict())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    public void getAllocations_ShouldListOrdersFilledByTheMovement() throws Exception {
+        when(allocations.findByStockMovementId(7L)).thenReturn(Collections.singletonList(
+                new AllocationResponseDTO(1L, 7L, 9L, 3, LocalDateTime.of(2024, 1, 1, 12, 0))));
+
+        mockMvc.perform(get("/stock-movements/7/allocations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].orderId").value(7))
+                .andExpect(jsonPath("$[0].stockMovementId").value(9))
+                .andExpect(jsonPath("$[0].quantity").value(3));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void export_ShouldWriteCsv() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<StockMovementResponseDTO> sink = invocation.getArgument(1);
+            sink.accept(new StockMovementResponseDTO(5L, 3L, 20, LocalDateTime.of(2026, 9, 15, 10, 30)));
+            return null;
+        }).when(service).export(any(ExportFilter.class), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/stock-movements/export").param("itemId", "3"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"stock-movements.csv\""))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals("id,creation_date,item_id,quantity\n5,2026-09-15T10:30,3,20\n", body);
+    }
+}
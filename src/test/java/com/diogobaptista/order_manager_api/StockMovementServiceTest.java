@@ -1,26 +1,49 @@
 package com.diogobaptista.order_manager_api;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
 import com.diogobaptista.order_manager_api.dto.StockMovementRequestDTO;
+import com.diogobaptista.order_manager_api.dto.StockMovementResponseDTO;
 import com.diogobaptista.order_manager_api.entity.Item;
 import com.diogobaptista.order_manager_api.entity.Order;
 import com.diogobaptista.order_manager_api.entity.StockMovement;
 import com.diogobaptista.order_manager_api.mapper.StockMovementMapper;
 import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
 import com.diogobaptista.order_manager_api.repository.OrderRepository;
 import com.diogobaptista.order_manager_api.repository.StockMovementRepository;
+import com.diogobaptista.order_manager_api.service.AllocationBusyException;
+import com.diogobaptista.order_manager_api.service.AuditEvent;
 import com.diogobaptista.order_manager_api.service.FileLogService;
+import com.diogobaptista.order_manager_api.service.ItemLaneExecutor;
 import com.diogobaptista.order_manager_api.service.OrderAllocationService;
 import com.diogobaptista.order_manager_api.service.StockMovementService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -40,30 +63,63 @@ class StockMovementServiceTest {
     private FileLogService fileLogService;
     @Mock
     private StockMovementMapper mapper;
+    @Mock
+    private ListingStreamRepository listingStream;
 
-    @InjectMocks
+    private final ItemLaneExecutor lanes = new ItemLaneExecutor(1);
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     private StockMovementService service;
 
+    @BeforeEach
+    void setup() {
+        TransactionOperations counting = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                transactions.incrementAndGet();
+                return action.doInTransaction(null);
+            }
+        };
+        service = new StockMovementService(repository, itemRepository, orderRepository, orderAllocationService,
+                fileLogService, mapper, lanes, counting, listingStream, 64, 0, 30_000, meterRegistry);
+    }
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+        lanes.shutdown();
+    }
+
+    @Test
+    void findPage_shouldReturnPageWithNextCursor() {
+        LocalDateTime now = LocalDateTime.of(2024, 3, 1, 10, 0);
+        StockMovementResponseDTO first = new StockMovementResponseDTO(1L, 1L, 5, now);
+        StockMovementResponseDTO second = new StockMovementResponseDTO(2L, 1L, 5, now);
+        when(repository.findFirstPage(any(Pageable.class))).thenReturn(Arrays.asList(first, second));
+
+        CursorPage<StockMovementResponseDTO> result = service.findPage(null, 1);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(PageCursor.encode(now, 1L), result.getNextCursor());
+    }
 
     @Test
-    void findAll_shouldReturnAllStockMovements() {
-        List<StockMovement> list = Arrays.asList(
-                new StockMovement(),
-                new StockMovement()
-        );
-        when(repository.findAll()).thenReturn(list);
+    void findPage_withCursor_shouldSeekAfterCursor() {
+        LocalDateTime now = LocalDateTime.of(2024, 3, 1, 10, 0);
+        when(repository.findPageAfter(eq(now), eq(1L), any(Pageable.class))).thenReturn(Arrays.asList());
 
-        List<StockMovement> result = service.findAll();
+        CursorPage<StockMovementResponseDTO> result = service.findPage(PageCursor.encode(now, 1L), 10);
 
-        assertEquals(2, result.size());
+        assertTrue(result.getContent().isEmpty());
+        assertNull(result.getNextCursor());
     }
 
     @Test
     void findById_shouldReturnOptional() {
-        StockMovement sm = new StockMovement();
-        when(repository.findById(1L)).thenReturn(Optional.of(sm));
+        StockMovementResponseDTO sm = new StockMovementResponseDTO();
+        when(repository.findResponseById(1L)).thenReturn(Optional.of(sm));
 
-        Optional<StockMovement> result = service.findById(1L);
+        Optional<StockMovementResponseDTO> result = service.findById(1L);
 
         assertTrue(result.isPresent());
     }
@@ -88,18 +144,152 @@ class StockMovementServiceTest {
         StockMovement sm = new StockMovement();
         sm.setId(99L);
 
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order));
         when(mapper.toEntity(dto, item)).thenReturn(sm);
-        when(repository.save(any())).thenReturn(sm);
+        when(repository.saveAll(anyList())).thenReturn(List.of(sm));
+        when(itemRepository.takeStock(1L, 3)).thenReturn(3);
 
         Optional<StockMovement> result = service.createStockMovement(dto);
 
         assertTrue(result.isPresent());
-        assertEquals(7, item.getStockQuantity());
+        assertEquals(3, sm.getQuantity());
+
+        verify(itemRepository).takeStock(1L, 3);
+        verify(itemRepository, never()).save(any());
+        verify(orderAllocationService).recordAllocation(order, sm, 3);
+        assertEquals(5, order.getFulfilledQuantity());
+        verify(fileLogService).append(argThat(e -> e.getType() == AuditEvent.Type.MOVEMENT_ALLOCATED));
+    }
+
+    @Test
+    void flushedBatch_isDroppedAndTheNextRequestStartsAFreshOne() throws Exception {
+        Item item = item();
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order(1L, item, 5)));
+        when(mapper.toEntity(any(), eq(item))).thenAnswer(invocation -> new StockMovement());
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.takeStock(eq(1L), anyInt())).thenReturn(1);
+
+        assertTrue(service.createStockMovement(movement(1L, 1)).isPresent());
+        lanes.call(1L, () -> null);
+        assertEquals(0, meterRegistry.get("stock.movements.batch.items").gauge().value());
+
+        assertTrue(service.createStockMovement(movement(1L, 1)).isPresent());
+        assertEquals(2, transactions.get());
+    }
+
+    @Test
+    void beforeCommit_getsTheSavedMovementInsideTheBatchTransaction_andFailingItFailsTheRequest() {
+        Item item = item();
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order(1L, item, 5)));
+        when(mapper.toEntity(any(), eq(item))).thenAnswer(invocation -> new StockMovement());
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.takeStock(eq(1L), anyInt())).thenReturn(1);
+        List<StockMovement> seen = new ArrayList<>();
+
+        Optional<StockMovement> result = service.createStockMovement(movement(1L, 1), movement -> {
+            assertEquals(1, transactions.get());
+            seen.add(movement);
+        });
+
+        assertEquals(List.of(result.orElseThrow(AssertionError::new)), seen);
+        assertThrows(IllegalStateException.class, () -> service.createStockMovement(movement(1L, 1), movement -> {
+            throw new IllegalStateException("claim lost");
+        }));
+    }
+
+    @Test
+    void concurrentRequestsForOneItem_shareOneTransactionAndOneStockUpdate() throws Exception {
+        Item item = item();
+        List<Order> orders = Arrays.asList(order(1L, item, 5), order(2L, item, 5), order(3L, item, 5));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(orders);
+        when(mapper.toEntity(any(), eq(item))).thenAnswer(invocation -> new StockMovement());
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.takeStock(1L, 6)).thenReturn(6);
+
+        List<Optional<StockMovement>> results = runQueuedBehindBusyLane(movement(1L, 2), movement(2L, 2), movement(3L, 2));
+
+        for (Optional<StockMovement> result : results) {
+            assertEquals(2, result.orElseThrow(AssertionError::new).getQuantity());
+        }
+        assertEquals(1, transactions.get());
+        verify(itemRepository, times(1)).takeStock(any(), anyInt());
+        verify(repository, times(1)).saveAll(argThat(movements -> ((List<?>) movements).size() == 3));
+    }
+
+    @Test
+    void batchShortOfStock_fillsRequestsInArrivalOrder() throws Exception {
+        Item item = item();
+        List<Order> orders = Arrays.asList(order(1L, item, 5), order(2L, item, 5), order(3L, item, 5));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(orders);
+        when(mapper.toEntity(any(), eq(item))).thenAnswer(invocation -> new StockMovement());
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.takeStock(1L, 6)).thenReturn(3);
+
+        ExecutionException noStock = assertThrows(ExecutionException.class,
+                () -> runQueuedBehindBusyLane(movement(1L, 2), movement(2L, 2), movement(3L, 2)));
+
+        assertInstanceOf(IllegalStateException.class, noStock.getCause());
+        assertEquals(2, orders.get(0).getFulfilledQuantity());
+        assertEquals(1, orders.get(1).getFulfilledQuantity());
+        assertEquals(0, orders.get(2).getFulfilledQuantity());
+        verify(fileLogService).append(argThat(e -> e.getType() == AuditEvent.Type.MOVEMENT_NO_STOCK));
+    }
+
+    @Test
+    void secondRequestForSameOrderInBatch_seesTheFirstOnesAllocation() throws Exception {
+        Item item = item();
+        Order order = order(1L, item, 3);
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order));
+        when(mapper.toEntity(any(), eq(item))).thenAnswer(invocation -> new StockMovement());
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(itemRepository.takeStock(1L, 3)).thenReturn(3);
+
+        ExecutionException completed = assertThrows(ExecutionException.class,
+                () -> runQueuedBehindBusyLane(movement(1L, 3), movement(1L, 1)));
+
+        assertInstanceOf(IllegalStateException.class, completed.getCause());
+        assertTrue(order.isComplete());
+        verify(fileLogService).append(argThat(e -> e.getType() == AuditEvent.Type.MOVEMENT_ORDER_COMPLETED));
+    }
+
+    @Test
+    void lingerRejectedWhileShuttingDown_failsTheRequestInsteadOfLeavingItsBatchStuck() {
+        StockMovementService lingering = service(50, 30_000);
+        lingering.shutdown();
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+
+        assertThrows(RejectedExecutionException.class, () -> lingering.createStockMovement(movement(1L, 1)));
+        assertThrows(RejectedExecutionException.class, () -> lingering.createStockMovement(movement(1L, 1)));
+        verifyNoInteractions(itemRepository);
+    }
 
-        verify(itemRepository).save(item);
-        verify(orderAllocationService).fulfillOrderWithStockMovement(order, sm);
-        verify(fileLogService).appendLine(contains("StockMovement"));
+    @Test
+    void requestNotAllocatedWithinTheWaitTimeout_isWithdrawnAndNeverAllocated() throws Exception {
+        StockMovementService impatient = service(0, 50);
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        CountDownLatch busy = new CountDownLatch(1);
+        lanes.submit(1L, () -> {
+            try {
+                busy.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+
+        try {
+            AllocationBusyException timedOut = assertThrows(AllocationBusyException.class,
+                    () -> impatient.createStockMovement(movement(1L, 1)));
+            assertTrue(timedOut.isWithdrawn());
+        } finally {
+            busy.countDown();
+            impatient.shutdown();
+        }
+        lanes.call(1L, () -> null);
+        verifyNoInteractions(itemRepository, repository);
     }
 
     /* ---------- Exceptions ---------- */
@@ -109,10 +299,12 @@ class StockMovementServiceTest {
         StockMovementRequestDTO dto = new StockMovementRequestDTO();
         dto.setOrderId(1L);
 
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.empty());
 
         assertThrows(NoSuchElementException.class,
                 () -> service.createStockMovement(dto));
+
+        verify(orderRepository, never()).findById(any());
     }
 
     @Test
@@ -126,12 +318,13 @@ class StockMovementServiceTest {
         dto.setOrderId(1L);
         dto.setQuantity(1);
 
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order));
 
         assertThrows(IllegalStateException.class,
                 () -> service.createStockMovement(dto));
 
-        verify(fileLogService).appendLine(contains("already completed"));
+        verify(fileLogService).append(argThat(e -> e.getType() == AuditEvent.Type.MOVEMENT_ORDER_COMPLETED));
     }
 
     @Test
@@ -149,12 +342,13 @@ class StockMovementServiceTest {
         dto.setOrderId(1L);
         dto.setQuantity(5);
 
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order));
 
         assertThrows(IllegalArgumentException.class,
                 () -> service.createStockMovement(dto));
 
-        verify(fileLogService).appendLine(contains("Invalid StockMovement"));
+        verify(fileLogService).append(argThat(e -> e.getType() == AuditEvent.Type.MOVEMENT_INVALID_QUANTITY));
     }
 
     @Test
@@ -173,12 +367,13 @@ class StockMovementServiceTest {
         dto.setOrderId(1L);
         dto.setQuantity(1);
 
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order));
 
         assertThrows(IllegalStateException.class,
                 () -> service.createStockMovement(dto));
 
-        verify(fileLogService).appendLine(contains("No stock available"));
+        verify(fileLogService).append(argThat(e -> e.getType() == AuditEvent.Type.MOVEMENT_NO_STOCK));
     }
 
     @Test
@@ -198,15 +393,82 @@ class StockMovementServiceTest {
 
         StockMovement sm = new StockMovement();
 
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.findItemIdById(1L)).thenReturn(Optional.of(1L));
+        when(orderRepository.findWithItemAndUserByIdIn(anyCollection())).thenReturn(List.of(order));
         when(mapper.toEntity(dto, item)).thenReturn(sm);
-        when(repository.save(any())).thenReturn(sm);
+        when(repository.saveAll(anyList())).thenReturn(List.of(sm));
+        when(itemRepository.takeStock(any(), eq(5))).thenReturn(2);
 
         service.createStockMovement(dto);
 
-        assertEquals(0, item.getStockQuantity());
         assertEquals(2, sm.getQuantity());
     }
 
-}
+    private StockMovementService service(long lingerMs, long waitTimeoutMs) {
+        return new StockMovementService(repository, itemRepository, orderRepository, orderAllocationService,
+                fileLogService, mapper, lanes, TransactionOperations.withoutTransaction(), listingStream, 64,
+                lingerMs, waitTimeoutMs, meterRegistry);
+    }
+
+    /**
+     * Queues the requests, in order, while the item's lane is busy, then lets
+     * the lane go so that they are flushed as one batch.
+     */
+    private List<Optional<StockMovement>> runQueuedBehindBusyLane(StockMovementRequestDTO... requests)
+            throws Exception {
+        for (StockMovementRequestDTO request : requests) {
+            lenient().when(orderRepository.findItemIdById(request.getOrderId())).thenReturn(Optional.of(1L));
+        }
+        CountDownLatch busy = new CountDownLatch(1);
+        lanes.submit(1L, () -> {
+            try {
+                busy.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+
+        ExecutorService callers = Executors.newFixedThreadPool(requests.length);
+        try {
+            List<Future<Optional<StockMovement>>> futures = new ArrayList<>();
+            for (int i = 0; i < requests.length; i++) {
+                StockMovementRequestDTO request = requests[i];
+                futures.add(callers.submit(() -> service.createStockMovement(request)));
+                verify(orderRepository, timeout(1000).times(i + 1)).findItemIdById(any());
+                Thread.sleep(20);
+            }
+            busy.countDown();
+
+            List<Optional<StockMovement>> results = new ArrayList<>();
+            for (Future<Optional<StockMovement>> future : futures) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            busy.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    private static Item item() {
+        Item item = new Item();
+        item.setId(1L);
+        return item;
+    }
+
+    private static Order order(Long id, Item item, int quantity) {
+        Order order = new Order();
+        order.setId(id);
+        order.setItem(item);
+        order.setQuantity(quantity);
+        return order;
+    }
 
+    private static StockMovementRequestDTO movement(Long orderId, int quantity) {
+        StockMovementRequestDTO dto = new StockMovementRequestDTO();
+        dto.setOrderId(orderId);
+        dto.setQuantity(quantity);
+        return dto;
+    }
+}
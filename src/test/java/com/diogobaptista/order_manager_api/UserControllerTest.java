@@ -1,6 +1,7 @@
 package com.diogobaptista.order_manager_api;
 
 import com.diogobaptista.order_manager_api.controller.UserController;
+import com.diogobaptista.order_manager_api.dto.CursorPage;
 import com.diogobaptista.order_manager_api.dto.UserRequestDTO;
 import com.diogobaptista.order_manager_api.dto.UserResponseDTO;
 import com.diogobaptista.order_manager_api.entity.User;
@@ -43,7 +44,7 @@ public class UserControllerTest {
         User user = new User();
         UserResponseDTO responseDTO = new UserResponseDTO(1L, "John Doe", "john@example.com");
 
-        when(service.findAll()).thenReturn(Collections.singletonList(user));
+        when(service.findPage(null, null)).thenReturn(new CursorPage<>(Collections.singletonList(user), null));
         when(mapper.toResponse(any(User.class))).thenReturn(responseDTO);
 
         mockMvc.perform(get("/users"))
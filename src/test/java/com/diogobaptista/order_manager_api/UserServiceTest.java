@@ -1,13 +1,19 @@
 package com.diogobaptista.order_manager_api;
 
+import com.diogobaptista.order_manager_api.dto.CursorPage;
+import com.diogobaptista.order_manager_api.dto.PageCursor;
 import com.diogobaptista.order_manager_api.dto.UserRequestDTO;
 import com.diogobaptista.order_manager_api.entity.User;
 import com.diogobaptista.order_manager_api.mapper.UserMapper;
+import com.diogobaptista.order_manager_api.repository.ItemRepository;
+import com.diogobaptista.order_manager_api.repository.ListingStreamRepository;
 import com.diogobaptista.order_manager_api.repository.UserRepository;
+import com.diogobaptista.order_manager_api.service.CatalogCache;
 import com.diogobaptista.order_manager_api.service.FileLogService;
 import com.diogobaptista.order_manager_api.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
 
 import java.util.Arrays;
 import java.util.List;
@@ -27,7 +33,8 @@ public class UserServiceTest {
         repository = mock(UserRepository.class);
         mapper = mock(UserMapper.class);
         FileLogService fileLogService = mock(FileLogService.class);
-        service = new UserService(repository, mapper, fileLogService);
+        service = new UserService(repository, mapper, fileLogService, mock(ListingStreamRepository.class),
+                new CatalogCache(mock(ItemRepository.class), repository, 100, 60_000));
     }
 
     @Test
@@ -62,18 +69,36 @@ public class UserServiceTest {
     }
 
     @Test
-    public void findAll_returnsUsers() {
+    public void findPage_returnsUsersAfterCursor() {
         User user1 = new User();
+        user1.setId(6L);
         user1.setName("Alice");
         User user2 = new User();
+        user2.setId(7L);
         user2.setName("Bob");
 
-        when(repository.findAll()).thenReturn(Arrays.asList(user1, user2));
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(5L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(user1, user2));
 
-        List<User> users = service.findAll();
+        CursorPage<User> page = service.findPage(PageCursor.encode(5L), 10);
+        List<User> users = page.getContent();
         assertEquals(2, users.size());
         assertEquals("Alice", users.get(0).getName());
         assertEquals("Bob", users.get(1).getName());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    public void findPage_firstPage_startsFromTheBeginning() {
+        User user = new User();
+        user.setId(1L);
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(user, new User()));
+
+        CursorPage<User> page = service.findPage(null, 1);
+
+        assertEquals(1, page.getContent().size());
+        assertEquals(PageCursor.encode(1L), page.getNextCursor());
     }
 
     @Test
@@ -88,6 +113,32 @@ public class UserServiceTest {
         assertEquals("Alice", result.get().getName());
     }
 
+    @Test
+    public void findById_servedFromCacheUntilUpdated() {
+        User user = new User();
+        user.setId(1L);
+        user.setName("Alice");
+        user.setEmail("alice@test.com");
+        UserRequestDTO dto = new UserRequestDTO();
+        dto.setName("Alice Updated");
+        dto.setEmail("alice.updated@test.com");
+
+        when(repository.findById(1L)).thenReturn(Optional.of(user));
+        when(repository.save(user)).thenReturn(user);
+
+        assertEquals("alice@test.com", service.findById(1L).get().getEmail());
+        assertEquals("alice@test.com", service.findById(1L).get().getEmail());
+        verify(repository, times(1)).findById(1L);
+
+        doAnswer(invocation -> {
+            user.setEmail(dto.getEmail());
+            return null;
+        }).when(mapper).updateEntity(user, dto);
+        service.updateUser(1L, dto);
+
+        assertEquals("alice.updated@test.com", service.findById(1L).get().getEmail());
+    }
+
     @Test
     public void findById_nonExistingUser_returnsEmpty() {
         when(repository.findById(1L)).thenReturn(Optional.empty());